@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.FutureArrays;
+import org.apache.lucene.util.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Range intersections of a single-segment 1D BKD tree, which is how
+ * {@link org.apache.lucene.util.bkd.BKDReader#intersect} is used by point
+ * range queries.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BKDReaderBenchmark {
+
+  private static final String FIELD = "point";
+  private static final int NUM_RANGES = 64;
+
+  @Param({"1000000"})
+  public int numDocs;
+
+  /** Percentage of the documents that every range matches. */
+  @Param({"1", "10", "50"})
+  public int selectivity;
+
+  private Path path;
+  private Directory dir;
+  private DirectoryReader reader;
+  private PointValues points;
+  private byte[][] lowerBounds;
+  private byte[][] upperBounds;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    path = Files.createTempDirectory("bkdReaderBenchmark");
+    dir = new MMapDirectory(path);
+    final Random random = new Random(0);
+    try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig())) {
+      final Document doc = new Document();
+      final IntPoint point = new IntPoint(FIELD, 0);
+      doc.add(point);
+      for (int i = 0; i < numDocs; ++i) {
+        point.setIntValue(random.nextInt(numDocs));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+    }
+    reader = DirectoryReader.open(dir);
+    points = reader.leaves().get(0).reader().getPointValues(FIELD);
+
+    lowerBounds = new byte[NUM_RANGES][];
+    upperBounds = new byte[NUM_RANGES][];
+    final int width = (int) ((long) numDocs * selectivity / 100);
+    for (int i = 0; i < NUM_RANGES; ++i) {
+      final int lower = random.nextInt(numDocs - width + 1);
+      lowerBounds[i] = new byte[Integer.BYTES];
+      IntPoint.encodeDimension(lower, lowerBounds[i], 0);
+      upperBounds[i] = new byte[Integer.BYTES];
+      IntPoint.encodeDimension(lower + width - 1, upperBounds[i], 0);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    IOUtils.close(reader, dir);
+    IOUtils.rm(path);
+  }
+
+  @Benchmark
+  public int intersect() throws IOException {
+    int count = 0;
+    for (int i = 0; i < NUM_RANGES; ++i) {
+      final CountingVisitor visitor = new CountingVisitor(lowerBounds[i], upperBounds[i]);
+      points.intersect(visitor);
+      count += visitor.count;
+    }
+    return count;
+  }
+
+  private static class CountingVisitor implements IntersectVisitor {
+
+    private final byte[] lower, upper;
+    int count;
+
+    CountingVisitor(byte[] lower, byte[] upper) {
+      this.lower = lower;
+      this.upper = upper;
+    }
+
+    @Override
+    public void visit(int docID) throws IOException {
+      count++;
+    }
+
+    @Override
+    public void visit(int docID, byte[] packedValue) throws IOException {
+      if (FutureArrays.compareUnsigned(packedValue, 0, Integer.BYTES, lower, 0, Integer.BYTES) >= 0
+          && FutureArrays.compareUnsigned(packedValue, 0, Integer.BYTES, upper, 0, Integer.BYTES) <= 0) {
+        count++;
+      }
+    }
+
+    @Override
+    public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+      if (FutureArrays.compareUnsigned(minPackedValue, 0, Integer.BYTES, upper, 0, Integer.BYTES) > 0
+          || FutureArrays.compareUnsigned(maxPackedValue, 0, Integer.BYTES, lower, 0, Integer.BYTES) < 0) {
+        return Relation.CELL_OUTSIDE_QUERY;
+      }
+      if (FutureArrays.compareUnsigned(minPackedValue, 0, Integer.BYTES, lower, 0, Integer.BYTES) >= 0
+          && FutureArrays.compareUnsigned(maxPackedValue, 0, Integer.BYTES, upper, 0, Integer.BYTES) <= 0) {
+        return Relation.CELL_INSIDE_QUERY;
+      }
+      return Relation.CELL_CROSSES_QUERY;
+    }
+  }
+}
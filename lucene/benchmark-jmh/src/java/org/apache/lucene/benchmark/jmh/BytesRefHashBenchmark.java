@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Additions of terms to a {@link BytesRefHash}, which is what the indexing
+ * chain does for every token. The stream of terms follows a Zipfian-like
+ * distribution so that most additions are for terms that already exist.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BytesRefHashBenchmark {
+
+  private static final int NUM_ADDS = 1 << 16;
+
+  /** Number of unique terms. */
+  @Param({"1000", "100000"})
+  public int numUniqueTerms;
+
+  private BytesRef[] terms;
+  private BytesRefHash hash;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final Random random = new Random(0);
+    final BytesRef[] uniqueTerms = new BytesRef[numUniqueTerms];
+    for (int i = 0; i < numUniqueTerms; ++i) {
+      final byte[] bytes = new byte[2 + random.nextInt(10)];
+      for (int j = 0; j < bytes.length; ++j) {
+        bytes[j] = (byte) ('a' + random.nextInt(26));
+      }
+      uniqueTerms[i] = new BytesRef(bytes);
+    }
+    terms = new BytesRef[NUM_ADDS];
+    for (int i = 0; i < NUM_ADDS; ++i) {
+      // skew towards low ordinals
+      final double r = random.nextDouble();
+      terms[i] = uniqueTerms[(int) (r * r * r * numUniqueTerms)];
+    }
+    hash = new BytesRefHash();
+  }
+
+  @Benchmark
+  public int add() {
+    hash.clear();
+    hash.reinit();
+    int count = 0;
+    for (BytesRef term : terms) {
+      if (hash.add(term) >= 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
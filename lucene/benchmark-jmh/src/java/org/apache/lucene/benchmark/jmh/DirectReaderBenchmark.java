@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.DirectReader;
+import org.apache.lucene.util.packed.DirectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads of values that have been written with {@link DirectWriter}, like
+ * numeric doc values do, both sequentially and in random order.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectReaderBenchmark {
+
+  private static final int NUM_VALUES = 1 << 20;
+  private static final int NUM_RANDOM_READS = 1 << 16;
+
+  /** Number of bits per value, only values that {@link DirectWriter} supports are valid. */
+  @Param({"1", "4", "8", "12", "20", "32", "64"})
+  public int bitsPerValue;
+
+  private Path path;
+  private Directory dir;
+  private IndexInput in;
+  private LongValues values;
+  private int[] randomIndices;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    path = Files.createTempDirectory("directReaderBenchmark");
+    dir = new MMapDirectory(path);
+    final Random random = new Random(0);
+    final long mask = bitsPerValue == 64 ? -1L : (1L << bitsPerValue) - 1;
+    try (IndexOutput out = dir.createOutput("values", IOContext.DEFAULT)) {
+      final DirectWriter writer = DirectWriter.getInstance(out, NUM_VALUES, bitsPerValue);
+      for (int i = 0; i < NUM_VALUES; ++i) {
+        writer.add(random.nextLong() & mask);
+      }
+      writer.finish();
+    }
+    in = dir.openInput("values", IOContext.READ);
+    values = DirectReader.getInstance(in.randomAccessSlice(0, in.length()), bitsPerValue);
+    randomIndices = new int[NUM_RANDOM_READS];
+    for (int i = 0; i < NUM_RANDOM_READS; ++i) {
+      randomIndices[i] = random.nextInt(NUM_VALUES);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    IOUtils.close(in, dir);
+    IOUtils.rm(path);
+  }
+
+  @Benchmark
+  public long sequentialReads() {
+    long sum = 0;
+    for (int i = 0; i < NUM_VALUES; ++i) {
+      sum += values.get(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long randomReads() {
+    long sum = 0;
+    for (int index : randomIndices) {
+      sum += values.get(index);
+    }
+    return sum;
+  }
+}
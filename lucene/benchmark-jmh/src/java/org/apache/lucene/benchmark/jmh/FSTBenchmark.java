@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exact lookups in an FST through {@link FST#findTargetArc}, which is what
+ * terms dictionaries do when seeking.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FSTBenchmark {
+
+  private static final int NUM_LOOKUPS = 1024;
+
+  @Param({"100000"})
+  public int numTerms;
+
+  /** Size of the alphabet of terms, large alphabets produce arcs with many targets. */
+  @Param({"4", "26", "256"})
+  public int alphabetSize;
+
+  private FST<Long> fst;
+  private FST.BytesReader bytesReader;
+  private BytesRef[] lookups;
+  private final FST.Arc<Long> arc = new FST.Arc<>();
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final Random random = new Random(0);
+    final BytesRef[] terms = new BytesRef[numTerms];
+    for (int i = 0; i < numTerms; ++i) {
+      final byte[] bytes = new byte[1 + random.nextInt(12)];
+      for (int j = 0; j < bytes.length; ++j) {
+        bytes[j] = (byte) random.nextInt(alphabetSize);
+      }
+      terms[i] = new BytesRef(bytes);
+    }
+    Arrays.sort(terms);
+
+    final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    final Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, outputs);
+    final IntsRefBuilder scratch = new IntsRefBuilder();
+    BytesRef previous = null;
+    long ord = 0;
+    for (BytesRef term : terms) {
+      if (term.equals(previous)) {
+        continue;
+      }
+      builder.add(Util.toIntsRef(term, scratch), ord++);
+      previous = term;
+    }
+    fst = builder.finish();
+    bytesReader = fst.getBytesReader();
+
+    // half of the lookups are for existing terms
+    lookups = new BytesRef[NUM_LOOKUPS];
+    for (int i = 0; i < NUM_LOOKUPS; ++i) {
+      if (random.nextBoolean()) {
+        lookups[i] = terms[random.nextInt(numTerms)];
+      } else {
+        final byte[] bytes = new byte[1 + random.nextInt(12)];
+        for (int j = 0; j < bytes.length; ++j) {
+          bytes[j] = (byte) random.nextInt(alphabetSize);
+        }
+        lookups[i] = new BytesRef(bytes);
+      }
+    }
+  }
+
+  @Benchmark
+  public long findTargetArc() throws IOException {
+    long sum = 0;
+    for (BytesRef lookup : lookups) {
+      fst.getFirstArc(arc);
+      long output = fst.outputs.getNoOutput();
+      boolean found = true;
+      for (int i = 0; i < lookup.length; ++i) {
+        if (fst.findTargetArc(lookup.bytes[lookup.offset + i] & 0xFF, arc, arc, bytesReader) == null) {
+          found = false;
+          break;
+        }
+        output += arc.output;
+      }
+      if (found && arc.isFinal()) {
+        sum += output + arc.nextFinalOutput;
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
+import org.apache.lucene.codecs.compressing.Decompressor;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LZ4 compression and decompression of a stored fields chunk, through the
+ * {@link CompressionMode}s that use LZ4: {@link CompressionMode#FAST} and
+ * {@link CompressionMode#FAST_DECOMPRESSION} (high-compression LZ4).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LZ4Benchmark {
+
+  private static final String[] WORDS = new String[] {
+      "\"id\":", "\"title\":", "\"body\":", "\"tags\":", "\"price\":", "lucene", "search", "index", "query",
+      "document", "field", "term", "the", "of", "and", "a", "to", "in", "is", "{", "}", ",", " "
+  };
+
+  @Param({"FAST", "FAST_DECOMPRESSION"})
+  public String mode;
+
+  /** Size of the chunk, the default stored fields format uses chunks of 16kB. */
+  @Param({"16384", "61440"})
+  public int chunkSize;
+
+  private Compressor compressor;
+  private Decompressor decompressor;
+  private byte[] uncompressed;
+  private byte[] compressed;
+  private int compressedLength;
+  private final BytesRef restored = new BytesRef();
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final CompressionMode compressionMode;
+    switch (mode) {
+      case "FAST":
+        compressionMode = CompressionMode.FAST;
+        break;
+      case "FAST_DECOMPRESSION":
+        compressionMode = CompressionMode.FAST_DECOMPRESSION;
+        break;
+      default:
+        throw new AssertionError(mode);
+    }
+    compressor = compressionMode.newCompressor();
+    decompressor = compressionMode.newDecompressor();
+
+    // text that looks like small JSON documents, with some redundancy
+    final Random random = new Random(0);
+    final StringBuilder text = new StringBuilder();
+    while (text.length() < chunkSize) {
+      text.append(WORDS[random.nextInt(WORDS.length)]);
+      if (random.nextInt(10) == 0) {
+        text.append(random.nextInt(100000));
+      }
+    }
+    uncompressed = Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), chunkSize);
+    compressed = new byte[chunkSize * 2];
+    compressedLength = compress();
+  }
+
+  @Benchmark
+  public int compress() throws IOException {
+    final ByteArrayDataOutput out = new ByteArrayDataOutput(compressed);
+    compressor.compress(uncompressed, 0, uncompressed.length, out);
+    return out.getPosition();
+  }
+
+  @Benchmark
+  public int decompress() throws IOException {
+    final ByteArrayDataInput in = new ByteArrayDataInput(compressed, 0, compressedLength);
+    decompressor.decompress(in, uncompressed.length, 0, uncompressed.length, restored);
+    return restored.length;
+  }
+}
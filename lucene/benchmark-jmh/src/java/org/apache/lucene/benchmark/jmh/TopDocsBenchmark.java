@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.jmh;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Top-10 retrieval with {@link TopScoreDocCollector} over term queries,
+ * conjunctions and disjunctions of high-frequency terms. When total hits are
+ * not tracked, disjunctions are scored by {@code WANDScorer} and all queries
+ * can skip non-competitive blocks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopDocsBenchmark {
+
+  private static final String FIELD = "body";
+  private static final int NUM_WORDS = 1000;
+  private static final int TOKENS_PER_DOC = 20;
+
+  @Param({"1000000"})
+  public int numDocs;
+
+  @Param({"term", "and", "or"})
+  public String queryType;
+
+  @Param({"true", "false"})
+  public boolean trackTotalHits;
+
+  private Path path;
+  private Directory dir;
+  private DirectoryReader reader;
+  private IndexSearcher searcher;
+  private Query query;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    path = Files.createTempDirectory("topDocsBenchmark");
+    dir = new MMapDirectory(path);
+    final Random random = new Random(0);
+    try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+      final Document doc = new Document();
+      final StringBuilder body = new StringBuilder();
+      for (int i = 0; i < numDocs; ++i) {
+        body.setLength(0);
+        final int numTokens = 1 + random.nextInt(2 * TOKENS_PER_DOC);
+        for (int j = 0; j < numTokens; ++j) {
+          // skew towards low word ids so that there are high-frequency terms
+          final double r = random.nextDouble();
+          body.append('w').append((int) (r * r * NUM_WORDS)).append(' ');
+        }
+        doc.clear();
+        doc.add(new TextField(FIELD, body.toString(), Store.NO));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+    }
+    reader = DirectoryReader.open(dir);
+    searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+
+    final Query w0 = new TermQuery(new Term(FIELD, "w0"));
+    final Query w1 = new TermQuery(new Term(FIELD, "w1"));
+    switch (queryType) {
+      case "term":
+        query = w0;
+        break;
+      case "and":
+        query = new BooleanQuery.Builder().add(w0, Occur.MUST).add(w1, Occur.MUST).build();
+        break;
+      case "or":
+        query = new BooleanQuery.Builder().add(w0, Occur.SHOULD).add(w1, Occur.SHOULD).build();
+        break;
+      default:
+        throw new AssertionError(queryType);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    IOUtils.close(reader, dir);
+    IOUtils.rm(path);
+  }
+
+  @Benchmark
+  public int topDocs() throws IOException {
+    final TopScoreDocCollector collector = TopScoreDocCollector.create(10, null, trackTotalHits);
+    searcher.search(query, collector);
+    return collector.topDocs().scoreDocs.length;
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * <a href="http://openjdk.java.net/projects/code-tools/jmh/">JMH</a>
+ * microbenchmarks for Lucene's hot paths.
+ * <p>
+ * Benchmarks use fixed seeds so that results are comparable across runs and
+ * commits. Run them from the {@code lucene/benchmark-jmh} directory with
+ * {@code ant run-jmh}, optionally passing a filter and JMH options, eg.
+ * {@code ant run-jmh -Djmh.args="TopDocsBenchmark -p queryType=or"}.
+ * Benchmarks of package-private classes live in the package of the
+ * benchmarked class, like {@code org.apache.lucene.codecs.lucene50.ForUtilBenchmark}.
+ */
+package org.apache.lucene.benchmark.jmh;
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.lucene50;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.PackedInts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_DATA_SIZE;
+import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_ENCODED_LONGS;
+import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_ENCODED_SIZE;
+import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.BLOCK_SIZE;
+
+/**
+ * Decoding of postings blocks with {@link ForUtil}. This benchmark lives in
+ * the codec's package since {@link ForUtil} is package-private.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForUtilBenchmark {
+
+  private static final int NUM_BLOCKS = 1024;
+
+  /** Number of bits per value of encoded blocks, 0 means that all values are equal. */
+  @Param({"0", "1", "4", "7", "12", "20"})
+  public int bitsPerValue;
+
+  private Path path;
+  private Directory dir;
+  private IndexInput in;
+  private ForUtil forUtil;
+  private long dataStart;
+
+  private final byte[] encoded = new byte[MAX_ENCODED_SIZE];
+  private final long[] encodedLongs = new long[MAX_ENCODED_LONGS];
+  private final int[] decoded = new int[MAX_DATA_SIZE];
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    path = Files.createTempDirectory("forUtilBenchmark");
+    dir = new MMapDirectory(path);
+    final Random random = new Random(0);
+    try (IndexOutput out = dir.createOutput("blocks", IOContext.DEFAULT)) {
+      final ForUtil writer = new ForUtil(PackedInts.COMPACT, out);
+      final int[] values = new int[MAX_DATA_SIZE];
+      for (int i = 0; i < NUM_BLOCKS; ++i) {
+        for (int j = 0; j < BLOCK_SIZE; ++j) {
+          values[j] = bitsPerValue == 0 ? 1 : random.nextInt(1 << bitsPerValue);
+        }
+        if (bitsPerValue > 0) {
+          // make sure that the block requires exactly bitsPerValue bits
+          values[random.nextInt(BLOCK_SIZE)] = (1 << bitsPerValue) - 1;
+        }
+        writer.writeBlock(values, new byte[MAX_ENCODED_SIZE], out);
+      }
+    }
+    in = dir.openInput("blocks", IOContext.READ);
+    forUtil = new ForUtil(in);
+    dataStart = in.getFilePointer();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    IOUtils.close(in, dir);
+    IOUtils.rm(path);
+  }
+
+  /** Byte-oriented decoding followed by a scalar prefix sum, like Lucene 7.x. */
+  @Benchmark
+  public int readBlockBytes() throws IOException {
+    in.seek(dataStart);
+    int doc = 0;
+    for (int i = 0; i < NUM_BLOCKS; ++i) {
+      forUtil.readBlock(in, encoded, decoded);
+      for (int j = 0; j < BLOCK_SIZE; ++j) {
+        // turn deltas into absolute doc IDs, like postings do
+        doc += decoded[j];
+        decoded[j] = doc;
+      }
+    }
+    return doc;
+  }
+
+  /** Decoding from longs followed by a scalar prefix sum. */
+  @Benchmark
+  public int readBlockLongs() throws IOException {
+    in.seek(dataStart);
+    int doc = 0;
+    for (int i = 0; i < NUM_BLOCKS; ++i) {
+      forUtil.readBlock(in, encoded, encodedLongs, decoded);
+      for (int j = 0; j < BLOCK_SIZE; ++j) {
+        // turn deltas into absolute doc IDs, like postings do
+        doc += decoded[j];
+        decoded[j] = doc;
+      }
+    }
+    return doc;
+  }
+
+  /** Decoding of doc deltas straight into doc IDs. */
+  @Benchmark
+  public int readDocIDBlock() throws IOException {
+    in.seek(dataStart);
+    int doc = 0;
+    for (int i = 0; i < NUM_BLOCKS; ++i) {
+      forUtil.readDocIDBlock(in, encoded, encodedLongs, decoded, doc);
+      doc = decoded[BLOCK_SIZE - 1];
+    }
+    return doc;
+  }
+}
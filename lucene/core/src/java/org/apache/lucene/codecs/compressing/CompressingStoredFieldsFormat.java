@@ -50,6 +50,7 @@ public class CompressingStoredFieldsFormat extends StoredFieldsFormat {
   private final int chunkSize;
   private final int maxDocsPerChunk;
   private final int blockSize;
+  private final int subBlockSize;
 
   /**
    * Create a new {@link CompressingStoredFieldsFormat} with an empty segment 
@@ -98,6 +99,29 @@ public class CompressingStoredFieldsFormat extends StoredFieldsFormat {
    */
   public CompressingStoredFieldsFormat(String formatName, String segmentSuffix, 
                                        CompressionMode compressionMode, int chunkSize, int maxDocsPerChunk, int blockSize) {
+    this(formatName, segmentSuffix, compressionMode, chunkSize, maxDocsPerChunk, blockSize, 0);
+  }
+
+  /**
+   * Create a new {@link CompressingStoredFieldsFormat} whose chunks are made
+   * of independently compressed sub-blocks.
+   * <p>
+   * When <code>subBlockSize</code> is positive, documents of a chunk are
+   * grouped into sub-blocks of at least <code>subBlockSize</code> bytes (or
+   * fewer for the last sub-block) that are compressed independently, and the
+   * compressed length of every sub-block is recorded in the chunk metadata.
+   * Loading a document then only requires to decompress the sub-block that
+   * contains it rather than the chunk up to the document. Smaller sub-blocks
+   * make random access to documents faster but hurt the compression ratio,
+   * which a {@link DictionaryCompressionMode} can help recover. A value of
+   * <code>0</code> disables sub-blocks.
+   *
+   * @param subBlockSize the minimum number of bytes of a sub-block, or 0 to compress chunks as a whole
+   * @see #CompressingStoredFieldsFormat(String, String, CompressionMode, int, int, int)
+   */
+  public CompressingStoredFieldsFormat(String formatName, String segmentSuffix,
+                                       CompressionMode compressionMode, int chunkSize, int maxDocsPerChunk, int blockSize,
+                                       int subBlockSize) {
     this.formatName = formatName;
     this.segmentSuffix = segmentSuffix;
     this.compressionMode = compressionMode;
@@ -113,6 +137,10 @@ public class CompressingStoredFieldsFormat extends StoredFieldsFormat {
       throw new IllegalArgumentException("blockSize must be >= 1");
     }
     this.blockSize = blockSize;
+    if (subBlockSize < 0) {
+      throw new IllegalArgumentException("subBlockSize must be >= 0");
+    }
+    this.subBlockSize = subBlockSize;
   }
 
   @Override
@@ -126,13 +154,13 @@ public class CompressingStoredFieldsFormat extends StoredFieldsFormat {
   public StoredFieldsWriter fieldsWriter(Directory directory, SegmentInfo si,
       IOContext context) throws IOException {
     return new CompressingStoredFieldsWriter(directory, si, segmentSuffix, context,
-        formatName, compressionMode, chunkSize, maxDocsPerChunk, blockSize);
+        formatName, compressionMode, chunkSize, maxDocsPerChunk, blockSize, subBlockSize);
   }
 
   @Override
   public String toString() {
     return getClass().getSimpleName() + "(compressionMode=" + compressionMode
-        + ", chunkSize=" + chunkSize + ", maxDocsPerChunk=" + maxDocsPerChunk + ", blockSize=" + blockSize + ")";
+        + ", chunkSize=" + chunkSize + ", maxDocsPerChunk=" + maxDocsPerChunk + ", blockSize=" + blockSize + ", subBlockSize=" + subBlockSize + ")";
   }
 
 }
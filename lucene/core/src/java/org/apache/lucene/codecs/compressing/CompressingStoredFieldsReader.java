@@ -37,6 +37,7 @@ import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter
 import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.TYPE_MASK;
 import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.VERSION_CURRENT;
 import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.VERSION_START;
+import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.VERSION_SUB_BLOCKS;
 
 import java.io.EOFException;
 import java.io.IOException;
@@ -67,6 +68,7 @@ import org.apache.lucene.util.BitUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.LongsRef;
 import org.apache.lucene.util.packed.PackedInts;
 
 /**
@@ -82,8 +84,11 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   private final IndexInput fieldsStream;
   private final int chunkSize;
   private final int packedIntsVersion;
+  private final int subBlockSize;
   private final CompressionMode compressionMode;
   private final Decompressor decompressor;
+  private final StoredFieldsChunkCache chunkCache;
+  private final Object chunkCacheKey; // shared with clones
   private final int numDocs;
   private final boolean merging;
   private final BlockState state;
@@ -100,8 +105,11 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     this.maxPointer = reader.maxPointer;
     this.chunkSize = reader.chunkSize;
     this.packedIntsVersion = reader.packedIntsVersion;
+    this.subBlockSize = reader.subBlockSize;
     this.compressionMode = reader.compressionMode;
     this.decompressor = reader.decompressor.clone();
+    this.chunkCache = reader.chunkCache;
+    this.chunkCacheKey = reader.chunkCacheKey;
     this.numDocs = reader.numDocs;
     this.numChunks = reader.numChunks;
     this.numDirtyChunks = reader.numDirtyChunks;
@@ -114,6 +122,8 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   public CompressingStoredFieldsReader(Directory d, SegmentInfo si, String segmentSuffix, FieldInfos fn,
       IOContext context, String formatName, CompressionMode compressionMode) throws IOException {
     this.compressionMode = compressionMode;
+    this.chunkCache = StoredFieldsChunkCache.getDefault();
+    this.chunkCacheKey = new Object();
     final String segment = si.name;
     boolean success = false;
     fieldInfos = fn;
@@ -157,7 +167,25 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
 
       chunkSize = fieldsStream.readVInt();
       packedIntsVersion = fieldsStream.readVInt();
-      decompressor = compressionMode.newDecompressor();
+      if (version >= VERSION_SUB_BLOCKS) {
+        subBlockSize = fieldsStream.readVInt();
+        if (subBlockSize < 0) {
+          throw new CorruptIndexException("Invalid sub-block size: " + subBlockSize, fieldsStream);
+        }
+      } else {
+        subBlockSize = 0;
+      }
+      if (compressionMode instanceof DictionaryCompressionMode) {
+        final int dictLength = fieldsStream.readVInt();
+        if (dictLength < 0 || dictLength > maxPointer - fieldsStream.getFilePointer()) {
+          throw new CorruptIndexException("Invalid dictionary length: " + dictLength, fieldsStream);
+        }
+        final byte[] dictionary = new byte[dictLength];
+        fieldsStream.readBytes(dictionary, 0, dictLength);
+        decompressor = ((DictionaryCompressionMode) compressionMode).newDecompressor(new BytesRef(dictionary));
+      } else {
+        decompressor = compressionMode.newDecompressor();
+      }
       this.merging = false;
       this.state = new BlockState();
 
@@ -197,6 +225,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   @Override
   public void close() throws IOException {
     if (!closed) {
+      if (chunkCache != null) {
+        chunkCache.clear(chunkCacheKey);
+      }
       IOUtils.close(fieldsStream);
       closed = true;
     }
@@ -366,6 +397,11 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     // whether the block has been sliced, this happens for large documents
     private boolean sliced;
 
+    // independently compressed sub-blocks, only if subBlockSize > 0 and the block is not sliced
+    private int numSubBlocks;
+    private int[] subBlockDocStarts = IntsRef.EMPTY_INTS; // index of the first doc of every sub-block
+    private long[] subBlockPointers = LongsRef.EMPTY_LONGS; // start pointer of every sub-block, relative to startPointer
+
     private int[] offsets = IntsRef.EMPTY_INTS;
     private int[] numStoredFields = IntsRef.EMPTY_INTS;
 
@@ -464,12 +500,38 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
 
       }
 
+      numSubBlocks = 0;
+      if (subBlockSize > 0 && sliced == false) {
+        numSubBlocks = fieldsStream.readVInt();
+        if (numSubBlocks < 1 || numSubBlocks > chunkDocs) {
+          throw new CorruptIndexException("numSubBlocks=" + numSubBlocks + ", chunkDocs=" + chunkDocs, fieldsStream);
+        }
+        subBlockDocStarts = ArrayUtil.grow(subBlockDocStarts, numSubBlocks + 1);
+        subBlockPointers = ArrayUtil.grow(subBlockPointers, numSubBlocks + 1);
+        for (int i = 0; i < numSubBlocks; ++i) {
+          subBlockDocStarts[i + 1] = subBlockDocStarts[i] + fieldsStream.readVInt();
+          subBlockPointers[i + 1] = subBlockPointers[i] + fieldsStream.readVInt();
+        }
+        if (subBlockDocStarts[numSubBlocks] != chunkDocs) {
+          throw new CorruptIndexException("Sub-blocks have " + subBlockDocStarts[numSubBlocks] + " docs, expected " + chunkDocs, fieldsStream);
+        }
+      }
+
       startPointer = fieldsStream.getFilePointer();
 
       if (merging) {
         final int totalLength = offsets[chunkDocs];
         // decompress eagerly
-        if (sliced) {
+        if (numSubBlocks > 0) {
+          bytes.offset = bytes.length = 0;
+          for (int i = 0; i < numSubBlocks; ++i) {
+            final int subBlockLength = offsets[subBlockDocStarts[i + 1]] - offsets[subBlockDocStarts[i]];
+            decompressor.decompress(fieldsStream, subBlockLength, 0, subBlockLength, spare);
+            bytes.bytes = ArrayUtil.grow(bytes.bytes, bytes.length + spare.length);
+            System.arraycopy(spare.bytes, spare.offset, bytes.bytes, bytes.length, spare.length);
+            bytes.length += spare.length;
+          }
+        } else if (sliced) {
           bytes.offset = bytes.length = 0;
           for (int decompressed = 0; decompressed < totalLength; ) {
             final int toDecompress = Math.min(totalLength - decompressed, chunkSize);
@@ -550,6 +612,27 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
           }
 
         };
+      } else if (numSubBlocks > 0) {
+        // only decompress the sub-block that contains the document
+        int subBlock = Arrays.binarySearch(subBlockDocStarts, 0, numSubBlocks, index);
+        if (subBlock < 0) {
+          subBlock = -2 - subBlock;
+        }
+        final int subBlockStart = offsets[subBlockDocStarts[subBlock]];
+        final int subBlockLength = offsets[subBlockDocStarts[subBlock + 1]] - subBlockStart;
+        final long subBlockPointer = startPointer + subBlockPointers[subBlock];
+        if (chunkCache != null) {
+          final byte[] block = cachedBlock(subBlockPointer, subBlockLength);
+          documentInput = new ByteArrayDataInput(block, offset - subBlockStart, length);
+        } else {
+          fieldsStream.seek(subBlockPointer);
+          decompressor.decompress(fieldsStream, subBlockLength, offset - subBlockStart, length, bytes);
+          assert bytes.length == length;
+          documentInput = new ByteArrayDataInput(bytes.bytes, bytes.offset, bytes.length);
+        }
+      } else if (chunkCache != null) {
+        final byte[] block = cachedBlock(startPointer, totalLength);
+        documentInput = new ByteArrayDataInput(block, offset, length);
       } else {
         fieldsStream.seek(startPointer);
         decompressor.decompress(fieldsStream, totalLength, offset, length, bytes);
@@ -560,6 +643,27 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       return new SerializedDocument(documentInput, length, numStoredFields);
     }
 
+    /**
+     * Get the decompressed block of <code>length</code> bytes that starts at
+     * <code>pointer</code> from the chunk cache, decompressing and caching it
+     * on a miss.
+     */
+    private byte[] cachedBlock(long pointer, int length) throws IOException {
+      byte[] block = chunkCache.get(chunkCacheKey, pointer);
+      if (block == null) {
+        fieldsStream.seek(pointer);
+        decompressor.decompress(fieldsStream, length, 0, length, bytes);
+        if (bytes.length != length) {
+          throw new CorruptIndexException("Corrupted: expected block size = " + length + ", got " + bytes.length, fieldsStream);
+        }
+        block = Arrays.copyOfRange(bytes.bytes, bytes.offset, bytes.offset + bytes.length);
+        chunkCache.put(chunkCacheKey, pointer, block);
+      } else if (block.length != length) {
+        throw new CorruptIndexException("Corrupted: expected block size = " + length + ", got " + block.length + " from the cache", fieldsStream);
+      }
+      return block;
+    }
+
   }
 
   SerializedDocument document(int docID) throws IOException {
@@ -617,6 +721,10 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     return version;
   }
 
+  int getSubBlockSize() {
+    return subBlockSize;
+  }
+
   CompressionMode getCompressionMode() {
     return compressionMode;
   }
@@ -74,7 +74,8 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
   static final String CODEC_SFX_IDX = "Index";
   static final String CODEC_SFX_DAT = "Data";
   static final int VERSION_START = 1;
-  static final int VERSION_CURRENT = VERSION_START;
+  static final int VERSION_SUB_BLOCKS = 2;
+  static final int VERSION_CURRENT = VERSION_SUB_BLOCKS;
 
   private final String segment;
   private CompressingStoredFieldsIndexWriter indexWriter;
@@ -82,10 +83,15 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
 
   private Compressor compressor;
   private final CompressionMode compressionMode;
+  private boolean dictionaryWritten; // only used with a DictionaryCompressionMode
   private final int chunkSize;
   private final int maxDocsPerChunk;
+  private final int subBlockSize;
 
   private final GrowableByteArrayDataOutput bufferedDocs;
+  private final GrowableByteArrayDataOutput compressedSubBlocks;
+  private int[] subBlockDocs; // number of documents per sub-block
+  private int[] subBlockLengths; // compressed length of each sub-block
   private int[] numStoredFields; // number of stored fields
   private int[] endOffsets; // end offsets in bufferedDocs
   private int docBase; // doc ID at the beginning of the chunk
@@ -96,15 +102,26 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
 
   /** Sole constructor. */
   public CompressingStoredFieldsWriter(Directory directory, SegmentInfo si, String segmentSuffix, IOContext context,
-      String formatName, CompressionMode compressionMode, int chunkSize, int maxDocsPerChunk, int blockSize) throws IOException {
+      String formatName, CompressionMode compressionMode, int chunkSize, int maxDocsPerChunk, int blockSize, int subBlockSize) throws IOException {
     assert directory != null;
     this.segment = si.name;
     this.compressionMode = compressionMode;
-    this.compressor = compressionMode.newCompressor();
+    if (compressionMode instanceof DictionaryCompressionMode == false) {
+      // dictionary compressors are created on the first flush, see writeDictionary
+      this.compressor = compressionMode.newCompressor();
+    }
     this.chunkSize = chunkSize;
     this.maxDocsPerChunk = maxDocsPerChunk;
+    this.subBlockSize = subBlockSize;
     this.docBase = 0;
     this.bufferedDocs = new GrowableByteArrayDataOutput(chunkSize);
+    if (subBlockSize > 0) {
+      this.compressedSubBlocks = new GrowableByteArrayDataOutput(chunkSize);
+      this.subBlockDocs = new int[16];
+      this.subBlockLengths = new int[16];
+    } else {
+      this.compressedSubBlocks = null;
+    }
     this.numStoredFields = new int[16];
     this.endOffsets = new int[16];
     this.numBufferedDocs = 0;
@@ -128,6 +145,7 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
 
       fieldsStream.writeVInt(chunkSize);
       fieldsStream.writeVInt(PackedInts.VERSION_CURRENT);
+      fieldsStream.writeVInt(subBlockSize);
 
       success = true;
     } finally {
@@ -220,7 +238,25 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
         numBufferedDocs >= maxDocsPerChunk;
   }
 
+  /**
+   * Write the dictionary of a {@link DictionaryCompressionMode} and create the
+   * compressor that uses it. The dictionary is trained on the content of the
+   * first chunk and stored right before it.
+   */
+  private void writeDictionary() throws IOException {
+    assert dictionaryWritten == false;
+    final DictionaryCompressionMode mode = (DictionaryCompressionMode) compressionMode;
+    final BytesRef dictionary = mode.trainDictionary(bufferedDocs.getBytes(), 0, bufferedDocs.getPosition());
+    fieldsStream.writeVInt(dictionary.length);
+    fieldsStream.writeBytes(dictionary.bytes, dictionary.offset, dictionary.length);
+    compressor = mode.newCompressor(dictionary);
+    dictionaryWritten = true;
+  }
+
   private void flush() throws IOException {
+    if (compressionMode instanceof DictionaryCompressionMode && dictionaryWritten == false) {
+      writeDictionary();
+    }
     indexWriter.writeIndex(numBufferedDocs, fieldsStream.getFilePointer());
 
     // transform end offsets into lengths
@@ -238,6 +274,8 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
       for (int compressed = 0; compressed < bufferedDocs.getPosition(); compressed += chunkSize) {
         compressor.compress(bufferedDocs.getBytes(), compressed, Math.min(chunkSize, bufferedDocs.getPosition() - compressed), fieldsStream);
       }
+    } else if (subBlockSize > 0) {
+      writeSubBlocks(lengths);
     } else {
       compressor.compress(bufferedDocs.getBytes(), 0, bufferedDocs.getPosition(), fieldsStream);
     }
@@ -249,6 +287,40 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     numChunks++;
   }
   
+  /**
+   * Compress the buffered documents as independent sub-blocks of about
+   * <code>subBlockSize</code> bytes, so that a single document can be read
+   * without decompressing the whole chunk. Sub-blocks never split documents.
+   */
+  private void writeSubBlocks(int[] lengths) throws IOException {
+    int numSubBlocks = 0;
+    compressedSubBlocks.reset();
+    for (int doc = 0, start = 0; doc < numBufferedDocs; ) {
+      int end = start;
+      int docs = 0;
+      do {
+        end += lengths[doc++];
+        docs++;
+      } while (doc < numBufferedDocs && end - start < subBlockSize);
+
+      final int compressedStart = compressedSubBlocks.getPosition();
+      compressor.compress(bufferedDocs.getBytes(), start, end - start, compressedSubBlocks);
+      subBlockDocs = ArrayUtil.grow(subBlockDocs, numSubBlocks + 1);
+      subBlockLengths = ArrayUtil.grow(subBlockLengths, numSubBlocks + 1);
+      subBlockDocs[numSubBlocks] = docs;
+      subBlockLengths[numSubBlocks] = compressedSubBlocks.getPosition() - compressedStart;
+      numSubBlocks++;
+      start = end;
+    }
+
+    fieldsStream.writeVInt(numSubBlocks);
+    for (int i = 0; i < numSubBlocks; ++i) {
+      fieldsStream.writeVInt(subBlockDocs[i]);
+      fieldsStream.writeVInt(subBlockLengths[i]);
+    }
+    fieldsStream.writeBytes(compressedSubBlocks.getBytes(), compressedSubBlocks.getPosition());
+  }
+
   @Override
   public void writeField(FieldInfo info, IndexableField field)
       throws IOException {
@@ -470,6 +542,10 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     if (docBase != numDocs) {
       throw new RuntimeException("Wrote " + docBase + " docs, finish called with numDocs=" + numDocs);
     }
+    if (compressionMode instanceof DictionaryCompressionMode && dictionaryWritten == false) {
+      assert numDocs == 0;
+      writeDictionary();
+    }
     indexWriter.finish(numDocs, fieldsStream.getFilePointer());
     fieldsStream.writeVLong(numChunks);
     fieldsStream.writeVLong(numDirtyChunks);
@@ -563,7 +639,9 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
           ++docCount;
         }
       } else if (matchingFieldsReader.getCompressionMode() == compressionMode && 
+                 compressionMode instanceof DictionaryCompressionMode == false && // every segment has its own dictionary
                  matchingFieldsReader.getChunkSize() == chunkSize && 
+                 matchingFieldsReader.getSubBlockSize() == subBlockSize && 
                  matchingFieldsReader.getPackedIntsVersion() == PackedInts.VERSION_CURRENT &&
                  liveDocs == null &&
                  !tooDirty(matchingFieldsReader)) { 
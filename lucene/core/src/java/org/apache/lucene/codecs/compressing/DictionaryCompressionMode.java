@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FutureObjects;
+
+/**
+ * A {@link CompressionMode} that compresses data against a preset dictionary.
+ * <p>
+ * {@link CompressingStoredFieldsWriter} trains a dictionary on the first chunk
+ * of every segment, stores it once at the beginning of the stored fields data
+ * file and then compresses every chunk against it. This helps small documents
+ * that share a lot of structure, like JSON documents, which otherwise compress
+ * poorly since every chunk is compressed independently.
+ * <p>
+ * Compressors and decompressors that are created through
+ * {@link #newCompressor()} and {@link #newDecompressor()} use an empty
+ * dictionary.
+ * @lucene.experimental
+ */
+public abstract class DictionaryCompressionMode extends CompressionMode {
+
+  /**
+   * A compression mode that uses LZ4 with a preset dictionary of up to 4KB.
+   * Compression and decompression are about as fast as with {@link #FAST}.
+   */
+  public static final DictionaryCompressionMode FAST_WITH_DICTIONARY = new LZ4WithDictionaryMode(4 * 1024);
+
+  private static final int MAX_SAMPLE_LENGTH = 1 << 16;
+
+  /** Sole constructor. */
+  protected DictionaryCompressionMode() {}
+
+  /**
+   * Train a dictionary on <code>bytes[off:off+len]</code>. The returned
+   * dictionary may be empty, but never <code>null</code>.
+   */
+  public abstract BytesRef trainDictionary(byte[] bytes, int off, int len);
+
+  /**
+   * Create a new {@link Compressor} instance that compresses against the
+   * given dictionary.
+   */
+  public abstract Compressor newCompressor(BytesRef dictionary);
+
+  /**
+   * Create a new {@link Decompressor} instance for data that has been
+   * compressed against the given dictionary.
+   */
+  public abstract Decompressor newDecompressor(BytesRef dictionary);
+
+  @Override
+  public Compressor newCompressor() {
+    return newCompressor(new BytesRef());
+  }
+
+  @Override
+  public Decompressor newDecompressor() {
+    return newDecompressor(new BytesRef());
+  }
+
+  /**
+   * Builds a dictionary out of the segments of <code>bytes[off:off+len]</code>
+   * whose 4-byte sequences occur most often in the sample. Segments are
+   * concatenated in the order in which they appear in the sample. Only the
+   * first 64KB of the sample are considered.
+   */
+  static BytesRef trainDictionary(byte[] bytes, int off, int len, int maxDictLength, int segmentLength) {
+    FutureObjects.checkFromIndexSize(off, len, bytes.length);
+    len = Math.min(len, MAX_SAMPLE_LENGTH);
+    if (len < 2 * segmentLength || maxDictLength < segmentLength) {
+      return new BytesRef();
+    }
+
+    // count occurrences of every 4-byte sequence, modulo hash collisions
+    final int hashLog = 16;
+    final int[] counts = new int[1 << hashLog];
+    for (int i = off, end = off + len - 3; i < end; ++i) {
+      counts[hash(bytes, i, hashLog)]++;
+    }
+
+    // score segments: sequences that occur once can't help
+    final int numSegments = len / segmentLength;
+    final long[] scores = new long[numSegments];
+    for (int s = 0; s < numSegments; ++s) {
+      long score = 0;
+      for (int i = off + s * segmentLength, end = i + segmentLength - 3; i < end; ++i) {
+        score += counts[hash(bytes, i, hashLog)] - 1;
+      }
+      // pack the segment index in the low bits so that sorting breaks ties by position
+      scores[s] = (score << 32) | (numSegments - 1 - s);
+    }
+    Arrays.sort(scores);
+
+    final int maxSegments = Math.min(numSegments / 2, maxDictLength / segmentLength);
+    final boolean[] selected = new boolean[numSegments];
+    int numSelected = 0;
+    for (int i = numSegments - 1; i >= 0 && numSelected < maxSegments; --i) {
+      if ((scores[i] >>> 32) == 0) {
+        break;
+      }
+      selected[numSegments - 1 - (int) scores[i]] = true;
+      numSelected++;
+    }
+
+    final byte[] dictionary = new byte[numSelected * segmentLength];
+    int dictLength = 0;
+    for (int s = 0; s < numSegments; ++s) {
+      if (selected[s]) {
+        System.arraycopy(bytes, off + s * segmentLength, dictionary, dictLength, segmentLength);
+        dictLength += segmentLength;
+      }
+    }
+    assert dictLength == dictionary.length;
+    return new BytesRef(dictionary);
+  }
+
+  private static int hash(byte[] bytes, int i, int hashLog) {
+    final int v = ((bytes[i] & 0xFF) << 24) | ((bytes[i+1] & 0xFF) << 16) | ((bytes[i+2] & 0xFF) << 8) | (bytes[i+3] & 0xFF);
+    return (v * -1640531535) >>> (32 - hashLog);
+  }
+
+  private static final class LZ4WithDictionaryMode extends DictionaryCompressionMode {
+
+    private static final int SEGMENT_LENGTH = 64;
+
+    private final int maxDictLength;
+
+    LZ4WithDictionaryMode(int maxDictLength) {
+      this.maxDictLength = maxDictLength;
+    }
+
+    @Override
+    public BytesRef trainDictionary(byte[] bytes, int off, int len) {
+      return trainDictionary(bytes, off, len, maxDictLength, SEGMENT_LENGTH);
+    }
+
+    @Override
+    public Compressor newCompressor(BytesRef dictionary) {
+      return new LZ4WithDictionaryCompressor(dictionary);
+    }
+
+    @Override
+    public Decompressor newDecompressor(BytesRef dictionary) {
+      return new LZ4WithDictionaryDecompressor(dictionary);
+    }
+
+    @Override
+    public String toString() {
+      return "FAST_WITH_DICTIONARY";
+    }
+
+  }
+
+  private static final class LZ4WithDictionaryCompressor extends Compressor {
+
+    private final LZ4.HashTable ht;
+    private final int dictLength;
+    private byte[] buffer; // dictionary followed by the data to compress
+
+    LZ4WithDictionaryCompressor(BytesRef dictionary) {
+      ht = new LZ4.HashTable();
+      dictLength = dictionary.length;
+      buffer = Arrays.copyOfRange(dictionary.bytes, dictionary.offset, dictionary.offset + dictionary.length);
+    }
+
+    @Override
+    public void compress(byte[] bytes, int off, int len, DataOutput out) throws IOException {
+      buffer = ArrayUtil.grow(buffer, dictLength + len);
+      System.arraycopy(bytes, off, buffer, dictLength, len);
+      LZ4.compressWithDictionary(buffer, 0, dictLength, len, out, ht);
+    }
+
+    @Override
+    public void close() throws IOException {
+      // no-op
+    }
+  }
+
+  private static final class LZ4WithDictionaryDecompressor extends Decompressor {
+
+    private final byte[] dictionary;
+
+    LZ4WithDictionaryDecompressor(BytesRef dictionary) {
+      this.dictionary = Arrays.copyOfRange(dictionary.bytes, dictionary.offset, dictionary.offset + dictionary.length);
+    }
+
+    @Override
+    public void decompress(DataInput in, int originalLength, int offset, int length, BytesRef bytes) throws IOException {
+      assert offset + length <= originalLength;
+      final int dictLength = dictionary.length;
+      // add 7 padding bytes, this is not necessary but can help decompression run faster
+      if (bytes.bytes.length < dictLength + originalLength + 7) {
+        bytes.bytes = new byte[ArrayUtil.oversize(dictLength + originalLength + 7, 1)];
+      }
+      System.arraycopy(dictionary, 0, bytes.bytes, 0, dictLength);
+      final int decompressedLength = LZ4.decompress(in, dictLength + offset + length, bytes.bytes, dictLength) - dictLength;
+      if (decompressedLength > originalLength) {
+        throw new CorruptIndexException("Corrupted: lengths mismatch: " + decompressedLength + " > " + originalLength, in);
+      }
+      bytes.offset = dictLength + offset;
+      bytes.length = length;
+    }
+
+    @Override
+    public Decompressor clone() {
+      // stateless
+      return this;
+    }
+  }
+
+}
@@ -250,6 +250,73 @@ final class LZ4 {
     encodeLastLiterals(bytes, anchor, end - anchor, out);
   }
 
+  /**
+   * Compress <code>bytes[dictOff+dictLen:dictOff+dictLen+len]</code> into
+   * <code>out</code>, allowing matches to refer to the preset dictionary that
+   * is stored in <code>bytes[dictOff:dictOff+dictLen]</code>. The compressed
+   * data must be decompressed into a buffer that starts with the same
+   * dictionary, see {@link #decompress(DataInput, int, byte[], int)}.
+   */
+  public static void compressWithDictionary(byte[] bytes, int dictOff, int dictLen, int len, DataOutput out, HashTable ht) throws IOException {
+    if (dictLen == 0) {
+      compress(bytes, dictOff, len, out, ht);
+      return;
+    }
+
+    final int base = dictOff;
+    final int start = dictOff + dictLen;
+    final int end = start + len;
+
+    int off = start;
+    int anchor = start;
+
+    if (len > LAST_LITERALS + MIN_MATCH) {
+
+      final int limit = end - LAST_LITERALS;
+      final int matchLimit = limit - MIN_MATCH;
+      ht.reset(dictLen + len);
+      final int hashLog = ht.hashLog;
+      final PackedInts.Mutable hashTable = ht.hashTable;
+
+      // index the dictionary
+      for (int i = dictOff; i < start; ++i) {
+        hashTable.set(hash(readInt(bytes, i), hashLog), i - base);
+      }
+
+      main:
+      while (off <= limit) {
+        // find a match
+        int ref;
+        while (true) {
+          if (off >= matchLimit) {
+            break main;
+          }
+          final int v = readInt(bytes, off);
+          final int h = hash(v, hashLog);
+          ref = base + (int) hashTable.get(h);
+          assert PackedInts.bitsRequired(off - base) <= hashTable.getBitsPerValue();
+          hashTable.set(h, off - base);
+          if (off - ref < MAX_DISTANCE && readInt(bytes, ref) == v) {
+            break;
+          }
+          ++off;
+        }
+
+        // compute match length
+        final int matchLen = MIN_MATCH + commonBytes(bytes, ref + MIN_MATCH, off + MIN_MATCH, limit);
+
+        encodeSequence(bytes, anchor, ref, off, matchLen, out);
+        off += matchLen;
+        anchor = off;
+      }
+    }
+
+    // last literals
+    final int literalLen = end - anchor;
+    assert literalLen >= LAST_LITERALS || literalLen == len;
+    encodeLastLiterals(bytes, anchor, end - anchor, out);
+  }
+
   private static class Match {
     int start, ref, len;
 
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A bounded cache of decompressed stored fields chunks which is shared by all
+ * {@link CompressingStoredFieldsReader}s of the JVM. Entries are keyed by the
+ * segment and the start pointer of the chunk (or sub-block) in the fields
+ * data file, so that loading several documents of the same chunk, either
+ * within a single request or across requests, only decompresses the chunk
+ * once.
+ * <p>
+ * Entries are split into a fixed number of shards based on their hash code.
+ * Every shard evicts entries in least-recently-used order once it uses more
+ * than its share of the maximum memory usage. Chunks whose documents are
+ * larger than the chunk size, which are compressed in several slices, are
+ * never cached.
+ * <p>
+ * Readers capture the {@link #setDefault default cache} when they are
+ * opened, so the default cache must be configured before opening an index.
+ * Caching is disabled by default.
+ * <p>
+ * This class is thread-safe.
+ * @lucene.experimental
+ */
+public class StoredFieldsChunkCache implements Accountable {
+
+  /** Default number of shards. */
+  public static final int DEFAULT_NUM_SHARDS = 16;
+
+  // key + entry of the linked hash map (hash, key, value, next, before, after) + table slot + array header
+  private static final long ENTRY_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(Key.class)
+      + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + Integer.BYTES + 5 * RamUsageEstimator.NUM_BYTES_OBJECT_REF)
+      + RamUsageEstimator.NUM_BYTES_OBJECT_REF
+      + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+
+  private static volatile StoredFieldsChunkCache defaultCache;
+
+  /**
+   * Set the cache that {@link CompressingStoredFieldsReader}s that are opened
+   * from now on will use. Use <code>null</code> to disable caching.
+   */
+  public static void setDefault(StoredFieldsChunkCache cache) {
+    defaultCache = cache;
+  }
+
+  /**
+   * Return the default cache, or <code>null</code> if caching is disabled.
+   * @see #setDefault(StoredFieldsChunkCache)
+   */
+  public static StoredFieldsChunkCache getDefault() {
+    return defaultCache;
+  }
+
+  private final long maxRamBytesUsed;
+  private final Shard[] shards;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder cacheCount = new LongAdder();
+  private final LongAdder cacheSize = new LongAdder();
+
+  /**
+   * Expert: Create a new instance that uses at most <code>maxRamBytesUsed</code>
+   * bytes of memory, split across <code>numShards</code> shards.
+   */
+  public StoredFieldsChunkCache(long maxRamBytesUsed, int numShards) {
+    if (maxRamBytesUsed < 0) {
+      throw new IllegalArgumentException("maxRamBytesUsed must be >= 0, got " + maxRamBytesUsed);
+    }
+    if (numShards <= 0) {
+      throw new IllegalArgumentException("numShards must be > 0, got " + numShards);
+    }
+    this.maxRamBytesUsed = maxRamBytesUsed;
+    shards = new Shard[numShards];
+    for (int i = 0; i < numShards; ++i) {
+      shards[i] = new Shard(maxRamBytesUsed / numShards);
+    }
+  }
+
+  /**
+   * Create a new instance that uses at most <code>maxRamBytesUsed</code>
+   * bytes of memory, using {@link #DEFAULT_NUM_SHARDS} shards.
+   */
+  public StoredFieldsChunkCache(long maxRamBytesUsed) {
+    this(maxRamBytesUsed, DEFAULT_NUM_SHARDS);
+  }
+
+  private Shard shard(Key key) {
+    return shards[Math.floorMod(key.hashCode(), shards.length)];
+  }
+
+  /**
+   * Return the decompressed chunk that starts at <code>pointer</code> in the
+   * segment identified by <code>segmentKey</code>, or <code>null</code> if it
+   * is not cached.
+   */
+  byte[] get(Object segmentKey, long pointer) {
+    final Key key = new Key(segmentKey, pointer);
+    final Shard shard = shard(key);
+    final byte[] chunk;
+    synchronized (shard) {
+      chunk = shard.cache.get(key);
+    }
+    if (chunk == null) {
+      missCount.increment();
+    } else {
+      hitCount.increment();
+    }
+    return chunk;
+  }
+
+  /**
+   * Cache the decompressed chunk that starts at <code>pointer</code> in the
+   * segment identified by <code>segmentKey</code>.
+   */
+  void put(Object segmentKey, long pointer, byte[] chunk) {
+    final Key key = new Key(segmentKey, pointer);
+    final Shard shard = shard(key);
+    final long ramBytesUsed = ENTRY_RAM_BYTES_USED + chunk.length;
+    if (ramBytesUsed > shard.maxRamBytesUsed) {
+      // would evict everything else
+      return;
+    }
+    synchronized (shard) {
+      final byte[] previous = shard.cache.put(key, chunk);
+      if (previous == null) {
+        cacheCount.increment();
+        cacheSize.increment();
+      } else {
+        // another thread cached the same chunk concurrently
+        shard.ramBytesUsed -= ENTRY_RAM_BYTES_USED + previous.length;
+      }
+      shard.ramBytesUsed += ramBytesUsed;
+      for (Iterator<Map.Entry<Key, byte[]>> it = shard.cache.entrySet().iterator(); shard.ramBytesUsed > shard.maxRamBytesUsed; ) {
+        final byte[] evicted = it.next().getValue();
+        it.remove();
+        shard.ramBytesUsed -= ENTRY_RAM_BYTES_USED + evicted.length;
+        cacheSize.decrement();
+      }
+    }
+  }
+
+  /**
+   * Remove all cache entries of the segment identified by
+   * <code>segmentKey</code>. This is called when readers are closed.
+   */
+  void clear(Object segmentKey) {
+    for (Shard shard : shards) {
+      synchronized (shard) {
+        for (Iterator<Map.Entry<Key, byte[]>> it = shard.cache.entrySet().iterator(); it.hasNext(); ) {
+          final Map.Entry<Key, byte[]> entry = it.next();
+          if (entry.getKey().segmentKey == segmentKey) {
+            it.remove();
+            shard.ramBytesUsed -= ENTRY_RAM_BYTES_USED + entry.getValue().length;
+            cacheSize.decrement();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Clear the content of this cache.
+   */
+  public void clear() {
+    for (Shard shard : shards) {
+      synchronized (shard) {
+        // swap in an empty map rather than clearing entries one by one while holding the lock
+        cacheSize.add(-shard.cache.size());
+        shard.cache = Shard.newCache();
+        shard.ramBytesUsed = 0;
+      }
+    }
+  }
+
+  /** Return the maximum number of bytes that this cache may use. */
+  public long getMaxRamBytesUsed() {
+    return maxRamBytesUsed;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long ramBytesUsed = 0;
+    for (Shard shard : shards) {
+      synchronized (shard) {
+        ramBytesUsed += shard.ramBytesUsed;
+      }
+    }
+    return ramBytesUsed;
+  }
+
+  /**
+   * Return the total number of times that a chunk has been looked up in this
+   * cache.
+   */
+  public final long getTotalCount() {
+    return getHitCount() + getMissCount();
+  }
+
+  /**
+   * Over the {@link #getTotalCount() total} number of times that a chunk has
+   * been looked up, return how many times it was found in the cache.
+   */
+  public final long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Over the {@link #getTotalCount() total} number of times that a chunk has
+   * been looked up, return how many times it had to be decompressed.
+   */
+  public final long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Return the number of chunks which are currently stored in the cache.
+   */
+  public final long getCacheSize() {
+    return cacheSize.sum();
+  }
+
+  /**
+   * Return the total number of chunks that have been put in the cache.
+   */
+  public final long getCacheCount() {
+    return cacheCount.sum();
+  }
+
+  /**
+   * Return the number of chunks that have been removed from the cache either
+   * in order to stay under the maximum memory usage, or because a segment has
+   * been closed.
+   */
+  public final long getEvictionCount() {
+    return getCacheCount() - getCacheSize();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxRamBytesUsed=" + maxRamBytesUsed + ", numShards=" + shards.length + ")";
+  }
+
+  private static final class Key {
+    final Object segmentKey;
+    final long pointer;
+
+    Key(Object segmentKey, long pointer) {
+      this.segmentKey = segmentKey;
+      this.pointer = pointer;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || obj.getClass() != Key.class) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      return segmentKey == that.segmentKey && pointer == that.pointer;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(segmentKey) + Long.hashCode(pointer);
+    }
+  }
+
+  // only accessed while holding the lock of the shard
+  private static final class Shard {
+    final long maxRamBytesUsed;
+    LinkedHashMap<Key, byte[]> cache = newCache();
+    long ramBytesUsed;
+
+    Shard(long maxRamBytesUsed) {
+      this.maxRamBytesUsed = maxRamBytesUsed;
+    }
+
+    static LinkedHashMap<Key, byte[]> newCache() {
+      return new LinkedHashMap<>(16, 0.75f, true);
+    }
+  }
+}
@@ -46,6 +46,12 @@ final class ForUtil {
    */
   static final int MAX_ENCODED_SIZE = BLOCK_SIZE * 4;
 
+  /**
+   * Upper limit of the number of longs that might be required to store
+   * <code>BLOCK_SIZE</code> encoded values.
+   */
+  static final int MAX_ENCODED_LONGS = MAX_ENCODED_SIZE / Long.BYTES;
+
   /**
    * Upper limit of the number of values that might be decoded in a single call to
    * {@link #readBlock(IndexInput, byte[], int[])}. Although values after
@@ -78,6 +84,23 @@ final class ForUtil {
     return (int) Math.ceil((float) BLOCK_SIZE / decoder.byteValueCount());
   }
 
+  /**
+   * Compute the number of iterations required to decode <code>BLOCK_SIZE</code>
+   * values with the provided {@link Decoder} from long blocks, or 0 if the
+   * encoded block of <code>encodedSize</code> bytes cannot be read as a
+   * sequence of longs.
+   */
+  private static int computeLongIterations(PackedInts.Decoder decoder, int encodedSize) {
+    final int iterations = (int) Math.ceil((float) BLOCK_SIZE / decoder.longValueCount());
+    final int longCount = iterations * decoder.longBlockCount();
+    if (longCount * Long.BYTES != encodedSize
+        || longCount > MAX_ENCODED_LONGS
+        || iterations * decoder.longValueCount() > MAX_DATA_SIZE) {
+      return 0;
+    }
+    return iterations;
+  }
+
   /**
    * Compute the number of bytes required to encode a block of values that require
    * <code>bitsPerValue</code> bits per value with format <code>format</code>.
@@ -92,6 +115,7 @@ final class ForUtil {
   private final PackedInts.Encoder[] encoders;
   private final PackedInts.Decoder[] decoders;
   private final int[] iterations;
+  private final int[] longIterations;
 
   /**
    * Create a new {@link ForUtil} instance and save state into <code>out</code>.
@@ -102,6 +126,7 @@ final class ForUtil {
     encoders = new PackedInts.Encoder[33];
     decoders = new PackedInts.Decoder[33];
     iterations = new int[33];
+    longIterations = new int[33];
 
     for (int bpv = 1; bpv <= 32; ++bpv) {
       final FormatAndBits formatAndBits = PackedInts.fastestFormatAndBits(
@@ -114,6 +139,7 @@ final class ForUtil {
       decoders[bpv] = PackedInts.getDecoder(
           formatAndBits.format, PackedInts.VERSION_CURRENT, formatAndBits.bitsPerValue);
       iterations[bpv] = computeIterations(decoders[bpv]);
+      longIterations[bpv] = computeLongIterations(decoders[bpv], encodedSizes[bpv]);
 
       out.writeVInt(formatAndBits.format.getId() << 5 | (formatAndBits.bitsPerValue - 1));
     }
@@ -129,6 +155,7 @@ final class ForUtil {
     encoders = new PackedInts.Encoder[33];
     decoders = new PackedInts.Decoder[33];
     iterations = new int[33];
+    longIterations = new int[33];
 
     for (int bpv = 1; bpv <= 32; ++bpv) {
       final int code = in.readVInt();
@@ -143,6 +170,7 @@ final class ForUtil {
       decoders[bpv] = PackedInts.getDecoder(
           format, packedIntsVersion, bitsPerValue);
       iterations[bpv] = computeIterations(decoders[bpv]);
+      longIterations[bpv] = computeLongIterations(decoders[bpv], encodedSizes[bpv]);
     }
   }
 
@@ -203,6 +231,95 @@ final class ForUtil {
     decoder.decode(encoded, 0, decoded, 0, iters);
   }
 
+  /**
+   * Read the next block of data (<code>For</code> format), like
+   * {@link #readBlock(IndexInput, byte[], int[])}. Packed blocks whose size is
+   * a multiple of 8 bytes, which is the case for all bit widths with the
+   * formats that {@link Lucene50PostingsWriter} uses, are read as longs and
+   * decoded 64 bits at a time. This saves the copy into a byte buffer and
+   * the per-byte shifts of the byte-oriented decoders.
+   *
+   * @param in            the input to use to read data
+   * @param encoded       a buffer that can be used to store encoded data
+   * @param encodedLongs  a buffer of at least {@link #MAX_ENCODED_LONGS} longs
+   *                      that can be used to store encoded data
+   * @param decoded       where to write decoded data
+   * @throws IOException If there is a low-level I/O error
+   */
+  void readBlock(IndexInput in, byte[] encoded, long[] encodedLongs, int[] decoded) throws IOException {
+    final int numBits = in.readByte();
+    assert numBits <= 32 : numBits;
+
+    if (numBits == ALL_VALUES_EQUAL) {
+      final int value = in.readVInt();
+      Arrays.fill(decoded, 0, BLOCK_SIZE, value);
+      return;
+    }
+
+    decode(in, numBits, encoded, encodedLongs, decoded);
+  }
+
+  /**
+   * Read the next block of doc deltas and turn them into absolute doc IDs by
+   * computing their prefix sum on top of <code>base</code>, the last doc ID of
+   * the previous block or 0 for the first block. Blocks whose deltas are all
+   * equal, which is typical of dense postings, are expanded directly into doc
+   * IDs without decoding deltas first.
+   *
+   * @param in            the input to use to read data
+   * @param encoded       a buffer that can be used to store encoded data
+   * @param encodedLongs  a buffer of at least {@link #MAX_ENCODED_LONGS} longs
+   *                      that can be used to store encoded data
+   * @param docs          where to write doc IDs
+   * @param base          the doc ID that the first delta is relative to
+   * @throws IOException If there is a low-level I/O error
+   */
+  void readDocIDBlock(IndexInput in, byte[] encoded, long[] encodedLongs, int[] docs, int base) throws IOException {
+    final int numBits = in.readByte();
+    assert numBits <= 32 : numBits;
+
+    if (numBits == ALL_VALUES_EQUAL) {
+      final int delta = in.readVInt();
+      for (int i = 0; i < BLOCK_SIZE; ++i) {
+        docs[i] = base + (i + 1) * delta;
+      }
+      return;
+    }
+
+    decode(in, numBits, encoded, encodedLongs, docs);
+    prefixSum(docs, BLOCK_SIZE, base);
+  }
+
+  /**
+   * Turn the first <code>count</code> deltas of <code>buffer</code> into
+   * absolute values, starting from <code>base</code>.
+   */
+  static void prefixSum(int[] buffer, int count, int base) {
+    int sum = base;
+    for (int i = 0; i < count; ++i) {
+      sum += buffer[i];
+      buffer[i] = sum;
+    }
+  }
+
+  private void decode(IndexInput in, int numBits, byte[] encoded, long[] encodedLongs, int[] decoded) throws IOException {
+    final PackedInts.Decoder decoder = decoders[numBits];
+    final int longIters = longIterations[numBits];
+    if (longIters != 0) {
+      final int longCount = longIters * decoder.longBlockCount();
+      for (int i = 0; i < longCount; ++i) {
+        encodedLongs[i] = in.readLong();
+      }
+      decoder.decode(encodedLongs, 0, decoded, 0, longIters);
+    } else {
+      final int encodedSize = encodedSizes[numBits];
+      in.readBytes(encoded, 0, encodedSize);
+      final int iters = iterations[numBits];
+      assert iters * decoder.byteValueCount() >= BLOCK_SIZE;
+      decoder.decode(encoded, 0, decoded, 0, iters);
+    }
+  }
+
   /**
    * Skip the next block of data.
    *
@@ -41,6 +41,7 @@ import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.RamUsageEstimator;
 
 import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_DATA_SIZE;
+import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_ENCODED_LONGS;
 import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_ENCODED_SIZE;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.BLOCK_SIZE;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.DOC_CODEC;
@@ -250,8 +251,9 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
 
   final class BlockDocsEnum extends PostingsEnum {
     private final byte[] encoded;
+    private final long[] encodedLongs;
     
-    private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
+    private final int[] docBuffer = new int[MAX_DATA_SIZE];    // absolute doc IDs
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
 
     private int docBufferUpto;
@@ -271,7 +273,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     private long totalTermFreq;                       // sum of freqs in this posting list (or docFreq when omitted)
     private int docUpto;                              // how many docs we've read
     private int doc;                                  // doc we last read
-    private int accum;                                // accumulator for doc deltas
+    private int accum;                                // last doc ID of the previous block
     private int freq;                                 // freq we last read
 
     // Where this term's postings start in the .doc file:
@@ -296,7 +298,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       indexHasPos = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
       indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
       indexHasPayloads = fieldInfo.hasPayloads();
-      encoded = new byte[MAX_ENCODED_SIZE];    
+      encoded = new byte[MAX_ENCODED_SIZE];
+      encodedLongs = new long[MAX_ENCODED_LONGS];
     }
 
     public boolean canReuse(IndexInput docIn, FieldInfo fieldInfo) {
@@ -318,6 +321,9 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           docIn = startDocIn.clone();
         }
         docIn.seek(docTermStartFP);
+        // doc IDs are read when the enum is first used, which is
+        // usually after the postings of other terms were pulled:
+        docIn.prefetch(docTermStartFP, 1);
       }
 
       doc = -1;
@@ -368,21 +374,23 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       assert left > 0;
 
       if (left >= BLOCK_SIZE) {
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
+        forUtil.readDocIDBlock(docIn, encoded, encodedLongs, docBuffer, accum);
 
         if (indexHasFreq) {
           if (needsFreq) {
-            forUtil.readBlock(docIn, encoded, freqBuffer);
+            forUtil.readBlock(docIn, encoded, encodedLongs, freqBuffer);
           } else {
             forUtil.skipBlock(docIn); // skip over freqs
           }
         }
+        accum = docBuffer[BLOCK_SIZE - 1];
       } else if (docFreq == 1) {
-        docDeltaBuffer[0] = singletonDocID;
+        docBuffer[0] = singletonDocID;
         freqBuffer[0] = (int) totalTermFreq;
       } else {
         // Read vInts:
-        readVIntBlock(docIn, docDeltaBuffer, freqBuffer, left, indexHasFreq);
+        readVIntBlock(docIn, docBuffer, freqBuffer, left, indexHasFreq);
+        ForUtil.prefixSum(docBuffer, left, accum);
       }
       docBufferUpto = 0;
     }
@@ -396,10 +404,9 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
         refillDocs();
       }
 
-      accum += docDeltaBuffer[docBufferUpto];
+      doc = docBuffer[docBufferUpto];
       docUpto++;
 
-      doc = accum;
       freq = freqBuffer[docBufferUpto];
       docBufferUpto++;
       return doc;
@@ -459,10 +466,10 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       // Now scan... this is an inlined/pared down version
       // of nextDoc():
       while (true) {
-        accum += docDeltaBuffer[docBufferUpto];
+        doc = docBuffer[docBufferUpto];
         docUpto++;
 
-        if (accum >= target) {
+        if (doc >= target) {
           break;
         }
         docBufferUpto++;
@@ -473,7 +480,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
 
       freq = freqBuffer[docBufferUpto];
       docBufferUpto++;
-      return doc = accum;
+      return doc;
     }
     
     @Override
@@ -486,6 +493,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
   final class BlockPostingsEnum extends PostingsEnum {
     
     private final byte[] encoded;
+    private final long[] encodedLongs;
 
     private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
@@ -550,6 +558,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       this.docIn = null;
       this.posIn = Lucene50PostingsReader.this.posIn.clone();
       encoded = new byte[MAX_ENCODED_SIZE];
+      encodedLongs = new long[MAX_ENCODED_LONGS];
       indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
       indexHasPayloads = fieldInfo.hasPayloads();
     }
@@ -574,8 +583,12 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           docIn = startDocIn.clone();
         }
         docIn.seek(docTermStartFP);
+        // doc IDs are read when the enum is first used, which is
+        // usually after the postings of other terms were pulled:
+        docIn.prefetch(docTermStartFP, 1);
       }
       posPendingFP = posTermStartFP;
+      posIn.prefetch(posTermStartFP, 1);
       posPendingCount = 0;
       if (termState.totalTermFreq < BLOCK_SIZE) {
         lastPosBlockFP = posTermStartFP;
@@ -613,8 +626,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       assert left > 0;
 
       if (left >= BLOCK_SIZE) {
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
-        forUtil.readBlock(docIn, encoded, freqBuffer);
+        forUtil.readBlock(docIn, encoded, encodedLongs, docDeltaBuffer);
+        forUtil.readBlock(docIn, encoded, encodedLongs, freqBuffer);
       } else if (docFreq == 1) {
         docDeltaBuffer[0] = singletonDocID;
         freqBuffer[0] = (int) totalTermFreq;
@@ -650,7 +663,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           }
         }
       } else {
-        forUtil.readBlock(posIn, encoded, posDeltaBuffer);
+        forUtil.readBlock(posIn, encoded, encodedLongs, posDeltaBuffer);
       }
     }
 
@@ -819,6 +832,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
   final class EverythingEnum extends PostingsEnum {
     
     private final byte[] encoded;
+    private final long[] encodedLongs;
 
     private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
@@ -904,6 +918,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       this.posIn = Lucene50PostingsReader.this.posIn.clone();
       this.payIn = Lucene50PostingsReader.this.payIn.clone();
       encoded = new byte[MAX_ENCODED_SIZE];
+      encodedLongs = new long[MAX_ENCODED_LONGS];
       indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
       if (indexHasOffsets) {
         offsetStartDeltaBuffer = new int[MAX_DATA_SIZE];
@@ -947,8 +962,12 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           docIn = startDocIn.clone();
         }
         docIn.seek(docTermStartFP);
+        // doc IDs are read when the enum is first used, which is
+        // usually after the postings of other terms were pulled:
+        docIn.prefetch(docTermStartFP, 1);
       }
       posPendingFP = posTermStartFP;
+      posIn.prefetch(posTermStartFP, 1);
       payPendingFP = payTermStartFP;
       posPendingCount = 0;
       if (termState.totalTermFreq < BLOCK_SIZE) {
@@ -990,8 +1009,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       assert left > 0;
 
       if (left >= BLOCK_SIZE) {
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
-        forUtil.readBlock(docIn, encoded, freqBuffer);
+        forUtil.readBlock(docIn, encoded, encodedLongs, docDeltaBuffer);
+        forUtil.readBlock(docIn, encoded, encodedLongs, freqBuffer);
       } else if (docFreq == 1) {
         docDeltaBuffer[0] = singletonDocID;
         freqBuffer[0] = (int) totalTermFreq;
@@ -1037,11 +1056,11 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
         }
         payloadByteUpto = 0;
       } else {
-        forUtil.readBlock(posIn, encoded, posDeltaBuffer);
+        forUtil.readBlock(posIn, encoded, encodedLongs, posDeltaBuffer);
 
         if (indexHasPayloads) {
           if (needsPayloads) {
-            forUtil.readBlock(payIn, encoded, payloadLengthBuffer);
+            forUtil.readBlock(payIn, encoded, encodedLongs, payloadLengthBuffer);
             int numBytes = payIn.readVInt();
 
             if (numBytes > payloadBytes.length) {
@@ -1059,8 +1078,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
 
         if (indexHasOffsets) {
           if (needsOffsets) {
-            forUtil.readBlock(payIn, encoded, offsetStartDeltaBuffer);
-            forUtil.readBlock(payIn, encoded, offsetLengthBuffer);
+            forUtil.readBlock(payIn, encoded, encodedLongs, offsetStartDeltaBuffer);
+            forUtil.readBlock(payIn, encoded, encodedLongs, offsetLengthBuffer);
           } else {
             // this works, because when writing a vint block we always force the first length to be written
             forUtil.skipBlock(payIn); // skip over starts
@@ -1292,8 +1311,9 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
   final class BlockImpactsEverythingEnum extends ImpactsEnum {
     
     private final byte[] encoded;
+    private final long[] encodedLongs;
 
-    private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
+    private final int[] docBuffer = new int[MAX_DATA_SIZE];    // absolute doc IDs
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
     private final int[] posDeltaBuffer = new int[MAX_DATA_SIZE];
 
@@ -1328,7 +1348,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     private long totalTermFreq;                       // number of positions in this posting list
     private int docUpto;                              // how many docs we've read
     private int doc;                                  // doc we last read
-    private int accum;                                // accumulator for doc deltas
+    private int accum;                                // last doc ID of the previous block
     private int freq;                                 // freq we last read
     private int position;                             // current position
 
@@ -1380,6 +1400,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       this.docIn = Lucene50PostingsReader.this.docIn.clone();
       
       encoded = new byte[MAX_ENCODED_SIZE];
+      encodedLongs = new long[MAX_ENCODED_LONGS];
 
       if (indexHasPos && needsPositions) {
         this.posIn = Lucene50PostingsReader.this.posIn.clone();
@@ -1419,6 +1440,14 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       payTermStartFP = termState.payStartFP;
       totalTermFreq = termState.totalTermFreq;
       docIn.seek(docTermStartFP);
+      // doc IDs and the skip data, which has impacts, are read when the
+      // enum is first used, which is usually after the postings of other
+      // terms were pulled:
+      docIn.prefetch(docTermStartFP, 1);
+      docIn.prefetch(docTermStartFP + termState.skipOffset, 1);
+      if (posIn != null) {
+        posIn.prefetch(posTermStartFP, 1);
+      }
       posPendingFP = posTermStartFP;
       payPendingFP = payTermStartFP;
       posPendingCount = 0;
@@ -1464,12 +1493,14 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       assert left > 0;
 
       if (left >= BLOCK_SIZE) {
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
+        forUtil.readDocIDBlock(docIn, encoded, encodedLongs, docBuffer, accum);
         if (indexHasFreq) {
-          forUtil.readBlock(docIn, encoded, freqBuffer);
+          forUtil.readBlock(docIn, encoded, encodedLongs, freqBuffer);
         }
+        accum = docBuffer[BLOCK_SIZE - 1];
       } else {
-        readVIntBlock(docIn, docDeltaBuffer, freqBuffer, left, indexHasFreq);
+        readVIntBlock(docIn, docBuffer, freqBuffer, left, indexHasFreq);
+        ForUtil.prefixSum(docBuffer, left, accum);
       }
       docBufferUpto = 0;
     }
@@ -1510,11 +1541,11 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
         }
         payloadByteUpto = 0;
       } else {
-        forUtil.readBlock(posIn, encoded, posDeltaBuffer);
+        forUtil.readBlock(posIn, encoded, encodedLongs, posDeltaBuffer);
 
         if (indexHasPayloads && payIn != null) {
           if (needsPayloads) {
-            forUtil.readBlock(payIn, encoded, payloadLengthBuffer);
+            forUtil.readBlock(payIn, encoded, encodedLongs, payloadLengthBuffer);
             int numBytes = payIn.readVInt();
 
             if (numBytes > payloadBytes.length) {
@@ -1532,8 +1563,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
 
         if (indexHasOffsets && payIn != null) {
           if (needsOffsets) {
-            forUtil.readBlock(payIn, encoded, offsetStartDeltaBuffer);
-            forUtil.readBlock(payIn, encoded, offsetLengthBuffer);
+            forUtil.readBlock(payIn, encoded, encodedLongs, offsetStartDeltaBuffer);
+            forUtil.readBlock(payIn, encoded, encodedLongs, offsetLengthBuffer);
           } else {
             // this works, because when writing a vint block we always force the first length to be written
             forUtil.skipBlock(payIn); // skip over starts
@@ -1601,13 +1632,13 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
 
       // Now scan:
       while (true) {
-        accum += docDeltaBuffer[docBufferUpto];
+        doc = docBuffer[docBufferUpto];
         freq = freqBuffer[docBufferUpto];
         posPendingCount += freq;
         docBufferUpto++;
         docUpto++;
 
-        if (accum >= target) {
+        if (doc >= target) {
           break;
         }
         if (docUpto == docFreq) {
@@ -1617,7 +1648,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       position = 0;
       lastStartOffset = 0;
 
-      return doc = accum;
+      return doc;
     }
 
     // TODO: in theory we could avoid loading frq block
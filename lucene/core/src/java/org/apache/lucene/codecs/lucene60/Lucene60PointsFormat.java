@@ -25,6 +25,7 @@ import org.apache.lucene.codecs.PointsReader;
 import org.apache.lucene.codecs.PointsWriter;
 import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.util.bkd.BKDWriter;
 
 /**
  * Lucene 6.0 point format, which encodes dimensional values in a block KD-tree structure
@@ -94,13 +95,31 @@ public final class Lucene60PointsFormat extends PointsFormat {
   static final int INDEX_VERSION_START = 0;
   static final int INDEX_VERSION_CURRENT = INDEX_VERSION_START;
 
-  /** Sole constructor */
+  private final double maxMBSortOffHeap;
+
+  /** Default constructor, which sorts points that don't fit in heap in temporary files */
   public Lucene60PointsFormat() {
+    this(0);
+  }
+
+  /**
+   * Expert: creates a format that may use up to {@code maxMBSortOffHeap} MB
+   * of direct memory per field to build trees of more than one dimension whose
+   * points don't fit in heap, instead of sorting them in temporary files. This
+   * mostly helps merges of large segments with many multi-dimensional points,
+   * like {@code LatLonPoint}. Points of a single dimension never need
+   * temporary files on flush or merge.
+   */
+  public Lucene60PointsFormat(double maxMBSortOffHeap) {
+    if (maxMBSortOffHeap < 0) {
+      throw new IllegalArgumentException("maxMBSortOffHeap must be >= 0 (got: " + maxMBSortOffHeap + ")");
+    }
+    this.maxMBSortOffHeap = maxMBSortOffHeap;
   }
 
   @Override
   public PointsWriter fieldsWriter(SegmentWriteState state) throws IOException {
-    return new Lucene60PointsWriter(state);
+    return new Lucene60PointsWriter(state, BKDWriter.DEFAULT_MAX_POINTS_IN_LEAF_NODE, BKDWriter.DEFAULT_MAX_MB_SORT_IN_HEAP, maxMBSortOffHeap);
   }
 
   @Override
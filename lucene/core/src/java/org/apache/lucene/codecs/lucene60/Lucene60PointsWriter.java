@@ -53,14 +53,17 @@ public class Lucene60PointsWriter extends PointsWriter implements Closeable {
   final SegmentWriteState writeState;
   final int maxPointsInLeafNode;
   final double maxMBSortInHeap;
+  final double maxMBSortOffHeap;
   private boolean finished;
 
-  /** Full constructor */
-  public Lucene60PointsWriter(SegmentWriteState writeState, int maxPointsInLeafNode, double maxMBSortInHeap) throws IOException {
+  /** Full constructor
+   *  @see BKDWriter#BKDWriter(int, org.apache.lucene.store.Directory, String, int, int, int, double, long, boolean, double) */
+  public Lucene60PointsWriter(SegmentWriteState writeState, int maxPointsInLeafNode, double maxMBSortInHeap, double maxMBSortOffHeap) throws IOException {
     assert writeState.fieldInfos.hasPointValues();
     this.writeState = writeState;
     this.maxPointsInLeafNode = maxPointsInLeafNode;
     this.maxMBSortInHeap = maxMBSortInHeap;
+    this.maxMBSortOffHeap = maxMBSortOffHeap;
     String dataFileName = IndexFileNames.segmentFileName(writeState.segmentInfo.name,
                                                          writeState.segmentSuffix,
                                                          Lucene60PointsFormat.DATA_EXTENSION);
@@ -80,6 +83,11 @@ public class Lucene60PointsWriter extends PointsWriter implements Closeable {
     }
   }
 
+  /** Does not sort points in direct memory */
+  public Lucene60PointsWriter(SegmentWriteState writeState, int maxPointsInLeafNode, double maxMBSortInHeap) throws IOException {
+    this(writeState, maxPointsInLeafNode, maxMBSortInHeap, 0);
+  }
+
   /** Uses the defaults values for {@code maxPointsInLeafNode} (1024) and {@code maxMBSortInHeap} (16.0) */
   public Lucene60PointsWriter(SegmentWriteState writeState) throws IOException {
     this(writeState, BKDWriter.DEFAULT_MAX_POINTS_IN_LEAF_NODE, BKDWriter.DEFAULT_MAX_MB_SORT_IN_HEAP);
@@ -99,7 +107,8 @@ public class Lucene60PointsWriter extends PointsWriter implements Closeable {
                                           maxPointsInLeafNode,
                                           maxMBSortInHeap,
                                           values.size(),
-                                          singleValuePerDoc)) {
+                                          singleValuePerDoc,
+                                          maxMBSortOffHeap)) {
 
       if (values instanceof MutablePointValues) {
         final long fp = writer.writeField(dataOut, fieldInfo.name, (MutablePointValues) values);
@@ -23,20 +23,26 @@ import static org.apache.lucene.codecs.lucene70.Lucene70DocValuesFormat.NUMERIC_
 
 import java.io.Closeable; // javadocs
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.DocValuesConsumer;
 import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.lucene70.Lucene70DocValuesProducer.NumericEntry;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.EmptyDocValuesProducer;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.MergeState;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SegmentWriteState;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
@@ -50,6 +56,7 @@ import org.apache.lucene.store.RAMOutputStream;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.MathUtil;
 import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.packed.DirectMonotonicWriter;
@@ -115,6 +122,286 @@ final class Lucene70DocValuesConsumer extends DocValuesConsumer implements Close
     });
   }
 
+  @Override
+  public void mergeNumericField(FieldInfo mergeFieldInfo, MergeState mergeState) throws IOException {
+    final List<EncodedNumericSub> subs = getEncodedNumericSubs(mergeFieldInfo, mergeState);
+    if (subs == null) {
+      super.mergeNumericField(mergeFieldInfo, mergeState);
+    } else {
+      meta.writeInt(mergeFieldInfo.number);
+      meta.writeByte(Lucene70DocValuesFormat.NUMERIC);
+      mergeEncodedValues(subs);
+    }
+  }
+
+  /** A segment whose values are read from a single-valued numeric field of this format. */
+  private static class EncodedNumericSub {
+    final int docBase;
+    final NumericDocValues values;
+    final NumericEntry entry;
+
+    EncodedNumericSub(int docBase, NumericDocValues values, NumericEntry entry) {
+      this.docBase = docBase;
+      this.values = values;
+      this.entry = entry;
+    }
+  }
+
+  /**
+   * Return the segments to merge if their values can be merged in a single pass
+   * because segments are appended to each other, there are no deleted documents
+   * and the encoding of their values can be read from the metadata of the field,
+   * or {@code null} otherwise.
+   */
+  private List<EncodedNumericSub> getEncodedNumericSubs(FieldInfo mergeFieldInfo, MergeState mergeState) throws IOException {
+    if (mergeState.needsIndexSort) {
+      return null;
+    }
+    final List<EncodedNumericSub> subs = new ArrayList<>();
+    int docBase = 0;
+    for (int i = 0; i < mergeState.docValuesProducers.length; ++i) {
+      if (mergeState.liveDocs[i] != null) {
+        return null;
+      }
+      final DocValuesProducer docValuesProducer = mergeState.docValuesProducers[i];
+      if (docValuesProducer != null) {
+        final FieldInfo readerFieldInfo = mergeState.fieldInfos[i].fieldInfo(mergeFieldInfo.name);
+        if (readerFieldInfo != null && readerFieldInfo.getDocValuesType() == DocValuesType.NUMERIC) {
+          final NumericDocValues values = docValuesProducer.getNumeric(readerFieldInfo);
+          final NumericEntry entry = Lucene70DocValuesProducer.getNumericEntry(values);
+          if (entry == null || entry.blockShift >= 0 || entry.bitsPerValue == 64) {
+            // another format, or the min and max values are only known per block or may be anything
+            return null;
+          }
+          subs.add(new EncodedNumericSub(docBase, values, entry));
+        }
+      }
+      docBase += mergeState.maxDocs[i];
+    }
+    assert docBase == maxDoc;
+    return subs;
+  }
+
+  /**
+   * Write the values of the given segments after each other. This is equivalent to
+   * {@link #writeValues} except that statistics are computed from the metadata of
+   * the segments rather than by reading all values, which may require a few more
+   * bits per value than necessary, and that values are never split into blocks.
+   */
+  private void mergeEncodedValues(List<EncodedNumericSub> subs) throws IOException {
+    long numValues = 0;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    Set<Long> uniqueValues = new HashSet<>();
+    for (EncodedNumericSub sub : subs) {
+      final NumericEntry entry = sub.entry;
+      numValues += entry.numValues;
+      if (entry.numValues == 0) {
+        continue;
+      }
+      if (entry.bitsPerValue == 0) {
+        min = Math.min(min, entry.minValue);
+        max = Math.max(max, entry.minValue);
+        if (uniqueValues != null) {
+          uniqueValues.add(entry.minValue);
+        }
+      } else if (entry.table != null) {
+        for (long v : entry.table) {
+          min = Math.min(min, v);
+          max = Math.max(max, v);
+        }
+        if (uniqueValues != null) {
+          for (long v : entry.table) {
+            uniqueValues.add(v);
+          }
+        }
+      } else {
+        long entryMax;
+        try {
+          entryMax = Math.addExact(entry.minValue, Math.multiplyExact(entry.gcd, (1L << entry.bitsPerValue) - 1));
+        } catch (ArithmeticException e) {
+          // be lenient: this is only an upper bound of the actual values
+          entryMax = Long.MAX_VALUE;
+        }
+        min = Math.min(min, entry.minValue);
+        max = Math.max(max, entryMax);
+        uniqueValues = null;
+      }
+      if (uniqueValues != null && uniqueValues.size() > 256) {
+        uniqueValues = null;
+      }
+    }
+
+    long gcd = 0;
+    if (min < Long.MIN_VALUE / 2 || max > Long.MAX_VALUE / 2) {
+      // v - min might overflow, see writeValues
+      gcd = 1;
+    } else {
+      for (EncodedNumericSub sub : subs) {
+        final NumericEntry entry = sub.entry;
+        if (entry.numValues == 0) {
+          continue;
+        }
+        if (entry.bitsPerValue == 0) {
+          gcd = MathUtil.gcd(gcd, entry.minValue - min);
+        } else if (entry.table != null) {
+          for (long v : entry.table) {
+            gcd = MathUtil.gcd(gcd, v - min);
+          }
+        } else {
+          gcd = MathUtil.gcd(gcd, entry.minValue - min);
+          gcd = MathUtil.gcd(gcd, entry.gcd);
+        }
+        if (gcd == 1) {
+          break;
+        }
+      }
+    }
+
+    // single-valued, so there are as many documents as values
+    final long numDocsWithValue = numValues;
+    if (numDocsWithValue == 0) {
+      meta.writeLong(-2);
+      meta.writeLong(0L);
+    } else if (numDocsWithValue == maxDoc) {
+      meta.writeLong(-1);
+      meta.writeLong(0L);
+    } else {
+      long offset = data.getFilePointer();
+      meta.writeLong(offset);
+      IndexedDISI.writeBitSet(new DocIdSetIterator() {
+        int subIndex = -1;
+        EncodedNumericSub current;
+        int doc = -1;
+
+        @Override
+        public int docID() {
+          return doc;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+          while (true) {
+            if (current != null) {
+              final int subDoc = current.values.nextDoc();
+              if (subDoc != NO_MORE_DOCS) {
+                return doc = current.docBase + subDoc;
+              }
+            }
+            if (++subIndex == subs.size()) {
+              return doc = NO_MORE_DOCS;
+            }
+            current = subs.get(subIndex);
+          }
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long cost() {
+          return numDocsWithValue;
+        }
+      }, data);
+      meta.writeLong(data.getFilePointer() - offset);
+    }
+
+    meta.writeLong(numValues);
+    final int numBitsPerValue;
+    long[] table = null;
+    if (min >= max) {
+      numBitsPerValue = 0;
+      meta.writeInt(-1);
+    } else if (uniqueValues != null
+        && uniqueValues.size() > 1
+        && DirectWriter.unsignedBitsRequired(uniqueValues.size() - 1) < DirectWriter.unsignedBitsRequired((max - min) / gcd)) {
+      numBitsPerValue = DirectWriter.unsignedBitsRequired(uniqueValues.size() - 1);
+      table = new long[uniqueValues.size()];
+      int i = 0;
+      for (long v : uniqueValues) {
+        table[i++] = v;
+      }
+      Arrays.sort(table);
+      meta.writeInt(table.length);
+      for (long v : table) {
+        meta.writeLong(v);
+      }
+      min = 0;
+      gcd = 1;
+    } else {
+      numBitsPerValue = DirectWriter.unsignedBitsRequired((max - min) / gcd);
+      if (gcd == 1 && min > 0
+          && DirectWriter.unsignedBitsRequired(max) == DirectWriter.unsignedBitsRequired(max - min)) {
+        min = 0;
+      }
+      meta.writeInt(-1);
+    }
+
+    meta.writeByte((byte) numBitsPerValue);
+    meta.writeLong(min);
+    meta.writeLong(gcd);
+    long startOffset = data.getFilePointer();
+    meta.writeLong(startOffset);
+    if (numBitsPerValue != 0) {
+      DirectWriter writer = DirectWriter.getInstance(data, numValues, numBitsPerValue);
+      for (EncodedNumericSub sub : subs) {
+        writeEncodedValues(sub, writer, table, min, gcd);
+      }
+      writer.finish();
+    }
+    meta.writeLong(data.getFilePointer() - startOffset);
+  }
+
+  /** Re-encode the packed values of the given segment with the merged table, or min value and gcd. */
+  private static void writeEncodedValues(EncodedNumericSub sub, DirectWriter writer, long[] table, long min, long gcd) throws IOException {
+    final NumericEntry entry = sub.entry;
+    final long numValues = entry.numValues;
+    if (entry.bitsPerValue == 0) {
+      final long encoded = encode(entry.minValue, table, min, gcd);
+      for (long i = 0; i < numValues; ++i) {
+        writer.add(encoded);
+      }
+      return;
+    }
+
+    final LongValues packedValues = Lucene70DocValuesProducer.getPackedValues(sub.values);
+    if (entry.table != null) {
+      final long[] remap = new long[entry.table.length];
+      for (int i = 0; i < remap.length; ++i) {
+        remap[i] = encode(entry.table[i], table, min, gcd);
+      }
+      for (long i = 0; i < numValues; ++i) {
+        writer.add(remap[(int) packedValues.get(i)]);
+      }
+    } else if (entry.minValue == min && entry.gcd == gcd) {
+      // same encoding, copy packed values
+      for (long i = 0; i < numValues; ++i) {
+        writer.add(packedValues.get(i));
+      }
+    } else {
+      // entry.gcd is a multiple of gcd, so that v - min = packed * entry.gcd + entry.minValue - min
+      // is a multiple of gcd as well
+      assert table == null;
+      final long mul = entry.gcd / gcd;
+      final long delta = (entry.minValue - min) / gcd;
+      for (long i = 0; i < numValues; ++i) {
+        writer.add(packedValues.get(i) * mul + delta);
+      }
+    }
+  }
+
+  private static long encode(long v, long[] table, long min, long gcd) {
+    if (table == null) {
+      return (v - min) / gcd;
+    } else {
+      final int ord = Arrays.binarySearch(table, v);
+      assert ord >= 0;
+      return ord;
+    }
+  }
+
   private static class MinMaxTracker {
     long min, max, numValues, spaceInBits;
 
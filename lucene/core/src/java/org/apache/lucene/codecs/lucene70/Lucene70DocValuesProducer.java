@@ -18,6 +18,7 @@ package org.apache.lucene.codecs.lucene70;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -265,7 +266,7 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
     data.close();
   }
 
-  private static class NumericEntry {
+  static class NumericEntry {
     long[] table;
     int blockShift;
     byte bitsPerValue;
@@ -348,13 +349,15 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
     return getNumeric(entry);
   }
 
-  private static abstract class DenseNumericDocValues extends NumericDocValues {
+  private abstract class DenseNumericDocValues extends NumericDocValues {
 
     final int maxDoc;
+    final NumericEntry entry;
     int doc = -1;
 
-    DenseNumericDocValues(int maxDoc) {
+    DenseNumericDocValues(int maxDoc, NumericEntry entry) {
       this.maxDoc = maxDoc;
+      this.entry = entry;
     }
 
     @Override
@@ -381,19 +384,35 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
       return true;
     }
 
+    @Override
+    public int longValues(int[] docs, int count, long[] values) throws IOException {
+      // all documents have a value
+      for (int i = 0; i < count; ++i) {
+        doc = docs[i];
+        values[i] = longValue();
+      }
+      return count;
+    }
+
     @Override
     public long cost() {
       return maxDoc;
     }
 
+    Lucene70DocValuesProducer getProducer() {
+      return Lucene70DocValuesProducer.this;
+    }
+
   }
 
-  private static abstract class SparseNumericDocValues extends NumericDocValues {
+  private abstract class SparseNumericDocValues extends NumericDocValues {
 
     final IndexedDISI disi;
+    final NumericEntry entry;
 
-    SparseNumericDocValues(IndexedDISI disi) {
+    SparseNumericDocValues(IndexedDISI disi, NumericEntry entry) {
       this.disi = disi;
+      this.entry = entry;
     }
 
     @Override
@@ -420,6 +439,48 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
     public long cost() {
       return disi.cost();
     }
+
+    Lucene70DocValuesProducer getProducer() {
+      return Lucene70DocValuesProducer.this;
+    }
+  }
+
+  /**
+   * Return the entry of the field that {@code values} have been read from if they are
+   * single-valued numeric doc values of this format, or {@code null} otherwise.
+   */
+  static NumericEntry getNumericEntry(NumericDocValues values) {
+    if (values instanceof DenseNumericDocValues) {
+      return ((DenseNumericDocValues) values).entry;
+    } else if (values instanceof SparseNumericDocValues) {
+      return ((SparseNumericDocValues) values).entry;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Return the packed values, before the min value, gcd or table are applied, of the
+   * field that {@code values} have been read from. This only works on values whose
+   * {@link #getNumericEntry entry} stores values in a single block.
+   */
+  static LongValues getPackedValues(NumericDocValues values) throws IOException {
+    if (values instanceof DenseNumericDocValues) {
+      DenseNumericDocValues dense = (DenseNumericDocValues) values;
+      return dense.getProducer().getPackedValues(dense.entry);
+    } else {
+      SparseNumericDocValues sparse = (SparseNumericDocValues) values;
+      return sparse.getProducer().getPackedValues(sparse.entry);
+    }
+  }
+
+  private LongValues getPackedValues(NumericEntry entry) throws IOException {
+    assert entry.blockShift < 0;
+    if (entry.bitsPerValue == 0) {
+      return LongValues.ZEROES;
+    }
+    final RandomAccessInput slice = data.randomAccessSlice(entry.valuesOffset, entry.valuesLength);
+    return DirectReader.getInstance(slice, entry.bitsPerValue);
   }
 
   private NumericDocValues getNumeric(NumericEntry entry) throws IOException {
@@ -429,11 +490,20 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
     } else if (entry.docsWithFieldOffset == -1) {
       // dense
       if (entry.bitsPerValue == 0) {
-        return new DenseNumericDocValues(maxDoc) {
+        return new DenseNumericDocValues(maxDoc, entry) {
           @Override
           public long longValue() throws IOException {
             return entry.minValue;
           }
+
+          @Override
+          public int longValues(int[] docs, int count, long[] values) throws IOException {
+            if (count > 0) {
+              doc = docs[count - 1];
+              Arrays.fill(values, 0, count, entry.minValue);
+            }
+            return count;
+          }
         };
       } else {
         final RandomAccessInput slice = data.randomAccessSlice(entry.valuesOffset, entry.valuesLength);
@@ -442,7 +512,7 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
           final int shift = entry.blockShift;
           final long mul = entry.gcd;
           final int mask = (1 << shift) - 1;
-          return new DenseNumericDocValues(maxDoc) {
+          return new DenseNumericDocValues(maxDoc, entry) {
             int block = -1;
             long delta;
             long offset;
@@ -477,20 +547,42 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
           final LongValues values = DirectReader.getInstance(slice, entry.bitsPerValue);
           if (entry.table != null) {
             final long[] table = entry.table;
-            return new DenseNumericDocValues(maxDoc) {
+            return new DenseNumericDocValues(maxDoc, entry) {
               @Override
               public long longValue() throws IOException {
                 return table[(int) values.get(doc)];
               }
+
+              @Override
+              public int longValues(int[] docs, int count, long[] dest) throws IOException {
+                for (int i = 0; i < count; ++i) {
+                  dest[i] = table[(int) values.get(docs[i])];
+                }
+                if (count > 0) {
+                  doc = docs[count - 1];
+                }
+                return count;
+              }
             };
           } else {
             final long mul = entry.gcd;
             final long delta = entry.minValue;
-            return new DenseNumericDocValues(maxDoc) {
+            return new DenseNumericDocValues(maxDoc, entry) {
               @Override
               public long longValue() throws IOException {
                 return mul * values.get(doc) + delta;
               }
+
+              @Override
+              public int longValues(int[] docs, int count, long[] dest) throws IOException {
+                for (int i = 0; i < count; ++i) {
+                  dest[i] = mul * values.get(docs[i]) + delta;
+                }
+                if (count > 0) {
+                  doc = docs[count - 1];
+                }
+                return count;
+              }
             };
           }
         }
@@ -499,7 +591,7 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
       // sparse
       final IndexedDISI disi = new IndexedDISI(data, entry.docsWithFieldOffset, entry.docsWithFieldLength, entry.numValues);
       if (entry.bitsPerValue == 0) {
-        return new SparseNumericDocValues(disi) {
+        return new SparseNumericDocValues(disi, entry) {
           @Override
           public long longValue() throws IOException {
             return entry.minValue;
@@ -512,7 +604,7 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
           final int shift = entry.blockShift;
           final long mul = entry.gcd;
           final int mask = (1 << shift) - 1;
-          return new SparseNumericDocValues(disi) {
+          return new SparseNumericDocValues(disi, entry) {
             int block = -1;
             long delta;
             long offset;
@@ -548,7 +640,7 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
           final LongValues values = DirectReader.getInstance(slice, entry.bitsPerValue);
           if (entry.table != null) {
             final long[] table = entry.table;
-            return new SparseNumericDocValues(disi) {
+            return new SparseNumericDocValues(disi, entry) {
               @Override
               public long longValue() throws IOException {
                 return table[(int) values.get(disi.index())];
@@ -557,7 +649,7 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
           } else {
             final long mul = entry.gcd;
             final long delta = entry.minValue;
-            return new SparseNumericDocValues(disi) {
+            return new SparseNumericDocValues(disi, entry) {
               @Override
               public long longValue() throws IOException {
                 return mul * values.get(disi.index()) + delta;
@@ -268,11 +268,33 @@ class BufferedUpdatesStream implements Accountable {
     PostingsEnum postingsEnum;
     BytesRef term;
 
-    public SegmentState(IndexWriter.ReaderPool pool, SegmentCommitInfo info) throws IOException {
+    private final String termsBloomFilterField;
+    private TermsBloomFilter termsBloomFilter;
+
+    public SegmentState(IndexWriter.ReaderPool pool, SegmentCommitInfo info, String termsBloomFilterField) throws IOException {
       rld = pool.get(info, true);
       startDelCount = rld.getPendingDeleteCount();
       reader = rld.getReader(IOContext.READ);
       delGen = info.getBufferedDeletesGen();
+      this.termsBloomFilterField = termsBloomFilterField;
+    }
+
+    /**
+     * Return <code>false</code> if this segment certainly doesn't have the given
+     * term, so that looking it up in the terms dictionary can be skipped.
+     */
+    boolean mayContain(String field, BytesRef term) throws IOException {
+      if (field.equals(termsBloomFilterField) == false) {
+        return true;
+      }
+      if (termsBloomFilter == null) {
+        // built outside of the IndexWriter lock, on first use
+        termsBloomFilter = reader.core.getTermsBloomFilter(field);
+        if (termsBloomFilter == null) {
+          return false;
+        }
+      }
+      return termsBloomFilter.mayContain(term);
     }
 
     public void finish(IndexWriter.ReaderPool pool) throws IOException {
@@ -296,7 +318,7 @@ class BufferedUpdatesStream implements Accountable {
     try {
       for (SegmentCommitInfo info : infos) {
         if (info.getBufferedDeletesGen() <= delGen && alreadySeenSegments.contains(info) == false) {
-          segStates.add(new SegmentState(pool, info));
+          segStates.add(new SegmentState(pool, info, writer.getConfig().getTermsBloomFilterField()));
           alreadySeenSegments.add(info);
         }
       }
@@ -21,6 +21,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.index.MergePolicy.OneMerge;
 import org.apache.lucene.store.AlreadyClosedException;
@@ -50,6 +55,12 @@ import org.apache.lucene.util.ThreadInterruptedException;
  *  incoming threads by pausing until one more more merges
  *  complete.</p>
  *
+ *  <p>While fewer than {@link #getMaxThreadCount} merge threads
+ *  are running, the remaining threads are used to merge the
+ *  independent parts of running merges, like stored fields,
+ *  postings and doc values, concurrently. This can be disabled
+ *  with {@link #setIntraMergeParallelism}.</p>
+ *
  *  <p>This class attempts to detect whether the index is
  *  on rotational storage (traditional hard drive) or not
  *  (e.g. solid-state disk) and changes the default max merge
@@ -121,6 +132,18 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
 
   private double forceMergeMBPerSec = Double.POSITIVE_INFINITY;
 
+  /** true if parts of merges may be merged concurrently */
+  private boolean intraMergeParallelism = true;
+
+  /** Runs parts of merges, lazily created */
+  private IntraMergeExecutor intraMergeExecutor;
+
+  /** How many threads are currently running parts of merges on behalf of merge threads. */
+  private int activeIntraMergeThreadCount;
+
+  /** How many intra-merge threads have kicked off (this is used to name them). */
+  private int intraMergeThreadCount;
+
   /** Sole constructor, with all settings set to default
    *  values. */
   public ConcurrentMergeScheduler() {
@@ -281,9 +304,10 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
         assert context.context == IOContext.Context.MERGE: "got context=" + context.context;
         
         // Because rateLimiter is bound to a particular merge thread, this method should
-        // always be called from that context. Verify this.
-        assert mergeThread == Thread.currentThread() : "Not the same merge thread, current="
-          + Thread.currentThread() + ", expected=" + mergeThread;
+        // always be called from that context, or from a thread that merges parts of the
+        // merge on its behalf. Verify this.
+        assert mergeThread == Thread.currentThread() || Thread.currentThread() instanceof IntraMergeThread
+          : "Not the same merge thread, current=" + Thread.currentThread() + ", expected=" + mergeThread;
 
         return new RateLimitedIndexOutput(rateLimiter, in.createOutput(name, context));
       }
@@ -438,9 +462,42 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     }
   }
 
+  /** Set whether the independent parts of a merge may be merged concurrently by
+   *  otherwise idle threads, see {@link #getIntraMergeExecutor}. This is
+   *  enabled by default. */
+  public synchronized void setIntraMergeParallelism(boolean enable) {
+    intraMergeParallelism = enable;
+  }
+
+  /** Returns whether the independent parts of a merge may be merged concurrently.
+   *  @see #setIntraMergeParallelism */
+  public synchronized boolean getIntraMergeParallelism() {
+    return intraMergeParallelism;
+  }
+
+  /** Returns an executor that runs parts of the given merge on new threads as
+   *  long as the total number of merge threads and threads that run parts of
+   *  merges is less than {@link #getMaxThreadCount}, and in the calling thread
+   *  otherwise. */
+  @Override
+  public synchronized Executor getIntraMergeExecutor(OneMerge merge) {
+    if (intraMergeExecutor == null) {
+      intraMergeExecutor = new IntraMergeExecutor();
+    }
+    return intraMergeExecutor;
+  }
+
   @Override
   public void close() {
     sync();
+    final IntraMergeExecutor executor;
+    synchronized (this) {
+      executor = intraMergeExecutor;
+      intraMergeExecutor = null;
+    }
+    if (executor != null) {
+      executor.shutdown();
+    }
   }
 
   /** Wait for any running merge threads to finish. This call is not interruptible as used by {@link #close()}. */
@@ -633,6 +690,66 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     return thread;
   }
 
+  /** Runs parts of merges on pooled {@link IntraMergeThread}s while the number
+   *  of merge threads is below {@link #getMaxThreadCount}, and in the calling
+   *  thread otherwise. */
+  private class IntraMergeExecutor implements Executor {
+
+    private final ThreadPoolExecutor pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), task -> {
+          synchronized (ConcurrentMergeScheduler.this) {
+            final Thread thread = new IntraMergeThread(task);
+            thread.setDaemon(true);
+            thread.setName("Lucene Intra-Merge Thread #" + intraMergeThreadCount++);
+            return thread;
+          }
+        });
+
+    @Override
+    public void execute(Runnable task) {
+      final boolean fork;
+      synchronized (ConcurrentMergeScheduler.this) {
+        fork = intraMergeParallelism && mergeThreads.size() + activeIntraMergeThreadCount < maxThreadCount;
+        if (fork) {
+          activeIntraMergeThreadCount++;
+        }
+      }
+      if (fork == false) {
+        task.run();
+        return;
+      }
+      try {
+        pool.execute(() -> {
+          try {
+            task.run();
+          } finally {
+            intraMergeTaskDone();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // the scheduler is being closed
+        intraMergeTaskDone();
+        task.run();
+      }
+    }
+
+    void shutdown() {
+      pool.shutdown();
+    }
+  }
+
+  private synchronized void intraMergeTaskDone() {
+    activeIntraMergeThreadCount--;
+    assert activeIntraMergeThreadCount >= 0;
+  }
+
+  /** A thread that runs parts of merges on behalf of {@link MergeThread}s. */
+  private static final class IntraMergeThread extends Thread {
+    IntraMergeThread(Runnable task) {
+      super(task);
+    }
+  }
+
   /** Runs a merge thread to execute a single merge, then exits. */
   protected class MergeThread extends Thread implements Comparable<MergeThread> {
     final IndexWriter writer;
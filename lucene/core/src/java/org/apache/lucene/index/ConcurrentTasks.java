@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+/**
+ * Runs independent parts of a flush or a merge, like postings, stored fields
+ * or doc values, on an {@link Executor}.
+ */
+final class ConcurrentTasks {
+
+  private ConcurrentTasks() {}
+
+  /** A part of a flush or merge that writes its own files. */
+  @FunctionalInterface
+  interface Task {
+    void run() throws IOException;
+  }
+
+  /**
+   * Runs the given tasks on the executor and waits for all of them to
+   * complete, so that no files are still being written when this method
+   * returns. The executor may run tasks in the calling thread. Tasks that
+   * have not started yet when a task fails are skipped. The first exception
+   * is rethrown, with the other ones suppressed.
+   */
+  static void runAll(Executor executor, List<Task> tasks) throws IOException {
+    final AtomicBoolean failed = new AtomicBoolean();
+    final List<FutureTask<Void>> futures = new ArrayList<>(tasks.size());
+    for (Task task : tasks) {
+      final FutureTask<Void> future = new FutureTask<>(() -> {
+        if (failed.get() == false) {
+          try {
+            task.run();
+          } catch (Throwable t) {
+            failed.set(true);
+            throw t;
+          }
+        }
+        return null;
+      });
+      futures.add(future);
+      try {
+        executor.execute(future);
+      } catch (RejectedExecutionException e) {
+        future.run();
+      }
+    }
+
+    Throwable th = null;
+    boolean interrupted = false;
+    for (FutureTask<Void> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (ExecutionException e) {
+          th = IOUtils.useOrSuppress(th, e.getCause());
+          break;
+        } catch (InterruptedException e) {
+          // keep waiting: tasks may still be writing files
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      th = IOUtils.useOrSuppress(th, new ThreadInterruptedException(new InterruptedException()));
+    }
+    if (th != null) {
+      throw IOUtils.rethrowAlways(th);
+    }
+  }
+}
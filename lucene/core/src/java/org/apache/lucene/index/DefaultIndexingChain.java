@@ -123,69 +123,83 @@ final class DefaultIndexingChain extends DocConsumer {
     // aborting on any exception from this method
     Sorter.DocMap sortMap = maybeSortSegment(state);
     int maxDoc = state.segmentInfo.maxDoc();
-    long t0 = System.nanoTime();
-    writeNorms(state, sortMap);
-    if (docState.infoStream.isEnabled("IW")) {
-      docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write norms");
-    }
     SegmentReadState readState = new SegmentReadState(state.directory, state.segmentInfo, state.fieldInfos, IOContext.READ, state.segmentSuffix);
-    
-    t0 = System.nanoTime();
-    writeDocValues(state, sortMap);
-    if (docState.infoStream.isEnabled("IW")) {
-      docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write docValues");
-    }
 
-    t0 = System.nanoTime();
-    writePoints(state, sortMap);
-    if (docState.infoStream.isEnabled("IW")) {
-      docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write points");
-    }
-    
-    // it's possible all docs hit non-aborting exceptions...
-    t0 = System.nanoTime();
-    storedFieldsConsumer.finish(maxDoc);
-    storedFieldsConsumer.flush(state, sortMap);
-    if (docState.infoStream.isEnabled("IW")) {
-      docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to finish stored fields");
-    }
+    // Parts of the segment are independent of each other, except postings
+    // which need the norms. They may be written concurrently, see
+    // IndexWriterConfig#setFlushExecutor.
+    List<ConcurrentTasks.Task> tasks = new ArrayList<>();
+    tasks.add(() -> {
+      long t0 = System.nanoTime();
+      writeNorms(state, sortMap);
+      if (docState.infoStream.isEnabled("IW")) {
+        docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write norms");
+      }
 
-    t0 = System.nanoTime();
-    Map<String,TermsHashPerField> fieldsToFlush = new HashMap<>();
-    for (int i=0;i<fieldHash.length;i++) {
-      PerField perField = fieldHash[i];
-      while (perField != null) {
-        if (perField.invertState != null) {
-          fieldsToFlush.put(perField.fieldInfo.name, perField.termsHashPerField);
+      t0 = System.nanoTime();
+      Map<String,TermsHashPerField> fieldsToFlush = new HashMap<>();
+      for (int i=0;i<fieldHash.length;i++) {
+        PerField perField = fieldHash[i];
+        while (perField != null) {
+          if (perField.invertState != null) {
+            fieldsToFlush.put(perField.fieldInfo.name, perField.termsHashPerField);
+          }
+          perField = perField.next;
         }
-        perField = perField.next;
       }
-    }
 
-    try (NormsProducer norms = readState.fieldInfos.hasNorms()
-        ? state.segmentInfo.getCodec().normsFormat().normsProducer(readState)
-        : null) {
-      NormsProducer normsMergeInstance = null;
-      if (norms != null) {
-        // Use the merge instance in order to reuse the same IndexInput for all terms
-        normsMergeInstance = norms.getMergeInstance();
+      try (NormsProducer norms = readState.fieldInfos.hasNorms()
+          ? state.segmentInfo.getCodec().normsFormat().normsProducer(readState)
+          : null) {
+        NormsProducer normsMergeInstance = null;
+        if (norms != null) {
+          // Use the merge instance in order to reuse the same IndexInput for all terms
+          normsMergeInstance = norms.getMergeInstance();
+        }
+        termsHash.flush(fieldsToFlush, state, sortMap, normsMergeInstance);
       }
-      termsHash.flush(fieldsToFlush, state, sortMap, normsMergeInstance);
-    }
-    if (docState.infoStream.isEnabled("IW")) {
-      docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write postings and finish vectors");
-    }
+      if (docState.infoStream.isEnabled("IW")) {
+        docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write postings and finish vectors");
+      }
+    });
+    tasks.add(() -> {
+      long t0 = System.nanoTime();
+      writeDocValues(state, sortMap);
+      if (docState.infoStream.isEnabled("IW")) {
+        docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write docValues");
+      }
+    });
+    tasks.add(() -> {
+      long t0 = System.nanoTime();
+      writePoints(state, sortMap);
+      if (docState.infoStream.isEnabled("IW")) {
+        docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write points");
+      }
+    });
+    tasks.add(() -> {
+      // it's possible all docs hit non-aborting exceptions...
+      long t0 = System.nanoTime();
+      storedFieldsConsumer.finish(maxDoc);
+      storedFieldsConsumer.flush(state, sortMap);
+      if (docState.infoStream.isEnabled("IW")) {
+        docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to finish stored fields");
+      }
+    });
+    ConcurrentTasks.runAll(docWriter.flushExecutor, tasks);
 
     // Important to save after asking consumer to flush so
     // consumer can alter the FieldInfo* if necessary.  EG,
     // FreqProxTermsWriter does this with
     // FieldInfo.storePayload.
-    t0 = System.nanoTime();
+    long t0 = System.nanoTime();
     docWriter.codec.fieldInfosFormat().write(state.directory, state.segmentInfo, "", state.fieldInfos, IOContext.DEFAULT);
     if (docState.infoStream.isEnabled("IW")) {
       docState.infoStream.message("IW", ((System.nanoTime()-t0)/1000000) + " msec to write fieldInfos");
     }
 
+    // the in-memory index is not needed anymore, its blocks may be recycled
+    termsHash.release();
+
     return sortMap;
   }
 
@@ -421,6 +435,97 @@ final class DefaultIndexingChain extends DocConsumer {
     }
   }
 
+  @Override
+  public boolean canProcessDocuments(IndexableField[][] docs) {
+    // Term vectors are written one document at a time, with all the fields of the document:
+    for (IndexableField[] doc : docs) {
+      for (IndexableField field : doc) {
+        if (field.fieldType().storeTermVectors()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void processDocuments(IndexableField[][] docFields) throws IOException {
+    final int baseDocID = docState.docID;
+    // No docID is used until we start writing stored fields:
+    docState.docID = baseDocID - 1;
+
+    int blockFieldCount = 0;
+    try {
+      // First add stored fields, doc values and points one document at a time, and
+      // collect the instances of each indexed field:
+      for (int i = 0; i < docFields.length; i++) {
+        docState.docID = baseDocID + i;
+        startStoredFields(docState.docID);
+        try {
+          for (IndexableField field : docFields[i]) {
+            blockFieldCount = processBlockField(field, i, blockFieldCount);
+          }
+        } finally {
+          if (docWriter.hasHitAbortingException() == false) {
+            finishStoredFields();
+          }
+        }
+      }
+
+      // Then invert one field at a time for all documents, which keeps this field's
+      // analysis chain and terms hash hot:
+      termsHash.startDocument();
+      try {
+        for (int i = 0; i < blockFieldCount; i++) {
+          fields[i].invertBlock(baseDocID);
+        }
+      } finally {
+        // All docIDs of the block were used:
+        docState.docID = baseDocID + docFields.length - 1;
+      }
+
+      try {
+        termsHash.finishDocument();
+      } catch (Throwable th) {
+        // Must abort, on the possibility that on-disk term
+        // vectors are now corrupt:
+        docWriter.onAbortingException(th);
+        throw th;
+      }
+    } finally {
+      for (int i = 0; i < blockFieldCount; i++) {
+        fields[i].clearBlock();
+      }
+    }
+  }
+
+  /** Like {@link #processField}, but only records the instances of indexed fields
+   *  so that they can be inverted later by {@link PerField#invertBlock}. */
+  private int processBlockField(IndexableField field, int blockDoc, int blockFieldCount) throws IOException {
+    String fieldName = field.name();
+    IndexableFieldType fieldType = field.fieldType();
+
+    PerField fp = null;
+
+    if (fieldType.indexOptions() == null) {
+      throw new NullPointerException("IndexOptions must not be null (field: \"" + field.name() + "\")");
+    }
+
+    if (fieldType.indexOptions() != IndexOptions.NONE) {
+      fp = getOrAddField(fieldName, fieldType, true);
+      if (fp.blockCount == 0) {
+        fields[blockFieldCount++] = fp;
+      }
+      fp.addToBlock(blockDoc, field);
+    } else {
+      verifyUnIndexedFieldType(fieldName, fieldType);
+    }
+
+    processStoredFieldDocValueAndPoint(fp, field);
+
+    return blockFieldCount;
+  }
+
   private int processField(IndexableField field, long fieldGen, int fieldCount) throws IOException {
     String fieldName = field.name();
     IndexableFieldType fieldType = field.fieldType();
@@ -445,6 +550,16 @@ final class DefaultIndexingChain extends DocConsumer {
       verifyUnIndexedFieldType(fieldName, fieldType);
     }
 
+    processStoredFieldDocValueAndPoint(fp, field);
+
+    return fieldCount;
+  }
+
+  /** Adds the stored field, doc value and point of a field, if any. */
+  private void processStoredFieldDocValueAndPoint(PerField fp, IndexableField field) throws IOException {
+    String fieldName = field.name();
+    IndexableFieldType fieldType = field.fieldType();
+
     // Add stored fields:
     if (fieldType.stored()) {
       if (fp == null) {
@@ -480,8 +595,6 @@ final class DefaultIndexingChain extends DocConsumer {
       }
       indexPoint(fp, field);
     }
-    
-    return fieldCount;
   }
 
   private static void verifyUnIndexedFieldType(String name, IndexableFieldType ft) {
@@ -672,6 +785,12 @@ final class DefaultIndexingChain extends DocConsumer {
     // reused
     TokenStream tokenStream;
 
+    // Instances of this field in the block of documents being indexed,
+    // and the offsets of their documents in the block:
+    IndexableField[] blockValues;
+    int[] blockDocs;
+    int blockCount;
+
     public PerField(int indexCreatedVersionMajor, FieldInfo fieldInfo, boolean invert) {
       this.indexCreatedVersionMajor = indexCreatedVersionMajor;
       this.fieldInfo = fieldInfo;
@@ -716,6 +835,46 @@ final class DefaultIndexingChain extends DocConsumer {
       termsHashPerField.finish();
     }
 
+    void addToBlock(int blockDoc, IndexableField field) {
+      if (blockValues == null) {
+        blockValues = new IndexableField[1];
+        blockDocs = new int[1];
+      } else if (blockCount == blockValues.length) {
+        blockValues = ArrayUtil.grow(blockValues, blockCount + 1);
+        blockDocs = ArrayUtil.grow(blockDocs, blockCount + 1);
+      }
+      blockValues[blockCount] = field;
+      blockDocs[blockCount] = blockDoc;
+      blockCount++;
+    }
+
+    /** Inverts all instances of this field in the block,
+     *  one document after the other. */
+    void invertBlock(int baseDocID) throws IOException {
+      int i = 0;
+      while (i < blockCount) {
+        final int blockDoc = blockDocs[i];
+        docState.docID = baseDocID + blockDoc;
+        try {
+          boolean first = true;
+          do {
+            invert(blockValues[i++], first);
+            first = false;
+          } while (i < blockCount && blockDocs[i] == blockDoc);
+        } finally {
+          if (docWriter.hasHitAbortingException() == false) {
+            finish();
+          }
+        }
+      }
+    }
+
+    void clearBlock() {
+      // don't hang onto the block's documents:
+      Arrays.fill(blockValues, 0, blockCount, null);
+      blockCount = 0;
+    }
+
     /** Inverts one field for one document; first is true
      *  if this is the first time we are seeing this field
      *  name in this document. */
@@ -21,6 +21,22 @@ import java.io.IOException;
 
 abstract class DocConsumer {
   abstract void processDocument() throws IOException;
+
+  /** Returns true if the given block of documents, given as the fields of each document,
+   *  can be indexed at once with {@link #processDocuments}. Otherwise the documents must be
+   *  indexed one at a time with {@link #processDocument()}. This must not change any state. */
+  boolean canProcessDocuments(IndexableField[][] docs) {
+    return false;
+  }
+
+  /** Indexes a block of documents, given as the fields of each document, the first one
+   *  having docID {@code docState.docID}. This is only called if {@link #canProcessDocuments}
+   *  returned true for this block. On return, or on exception, {@code docState.docID} is
+   *  the last docID that was used. */
+  void processDocuments(IndexableField[][] docs) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
   abstract Sorter.DocMap flush(final SegmentWriteState state) throws IOException;
   abstract void abort() throws IOException;
 }
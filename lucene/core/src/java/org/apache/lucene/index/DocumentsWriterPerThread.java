@@ -18,11 +18,15 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -35,7 +39,6 @@ import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.TrackingDirectoryWrapper;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.ByteBlockPool.Allocator;
-import org.apache.lucene.util.ByteBlockPool.DirectTrackingAllocator;
 import org.apache.lucene.util.Counter;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.IntBlockPool;
@@ -168,6 +171,7 @@ class DocumentsWriterPerThread {
   final IntBlockPool.Allocator intBlockAllocator;
   private final AtomicLong pendingNumDocs;
   private final LiveIndexWriterConfig indexWriterConfig;
+  final Executor flushExecutor;
   private final boolean enableTestPoints;
   private final IndexWriter indexWriter;
   
@@ -183,10 +187,12 @@ class DocumentsWriterPerThread {
     this.docState = new DocState(this, infoStream);
     this.docState.similarity = indexWriterConfig.getSimilarity();
     this.pendingNumDocs = pendingNumDocs;
-    bytesUsed = Counter.newCounter();
-    byteBlockAllocator = new DirectTrackingAllocator(bytesUsed);
+    // parts of the segment may be flushed concurrently, which update bytesUsed
+    bytesUsed = Counter.newCounter(indexWriterConfig.getFlushExecutor() != null);
+    flushExecutor = indexWriterConfig.getFlushExecutor() == null ? Runnable::run : indexWriterConfig.getFlushExecutor();
+    byteBlockAllocator = indexWriterConfig.getIndexingBufferAllocator().newByteBlockAllocator(bytesUsed);
     pendingUpdates = new BufferedUpdates(segmentName);
-    intBlockAllocator = new IntBlockAllocator(bytesUsed);
+    intBlockAllocator = indexWriterConfig.getIndexingBufferAllocator().newIntBlockAllocator(bytesUsed);
     this.deleteQueue = deleteQueue;
     assert numDocsInRAM == 0 : "num docs " + numDocsInRAM;
     deleteSlice = deleteQueue.newSlice();
@@ -227,6 +233,14 @@ class DocumentsWriterPerThread {
     }
   }
 
+  private void reserveDocs(int numDocs) {
+    if (pendingNumDocs.addAndGet(numDocs) > IndexWriter.getActualMaxDocs()) {
+      // Reserve failed: put the docs back and throw exc:
+      pendingNumDocs.addAndGet(-numDocs);
+      throw new IllegalArgumentException("number of documents in the index cannot exceed " + IndexWriter.getActualMaxDocs());
+    }
+  }
+
   public long updateDocument(Iterable<? extends IndexableField> doc, Analyzer analyzer, DocumentsWriterDeleteQueue.Node<?> deleteNode) throws IOException {
     try {
       assert hasHitAbortingException() == false: "DWPT has hit aborting exception but is still indexing";
@@ -280,31 +294,74 @@ class DocumentsWriterPerThread {
       boolean allDocsIndexed = false;
       try {
 
-        for (Iterable<? extends IndexableField> doc : docs) {
-          // Even on exception, the document is still added (but marked
-          // deleted), so we don't need to un-reserve at that point.
-          // Aborting exceptions will actually "lose" more than one
-          // document, so the counter will be "wrong" in that case, but
-          // it's very hard to fix (we can't easily distinguish aborting
-          // vs non-aborting exceptions):
-          reserveOneDoc();
-          docState.doc = doc;
-          docState.docID = numDocsInRAM;
-          docCount++;
-
-          boolean success = false;
-          try {
-            consumer.processDocument();
-            success = true;
-          } finally {
-            if (!success) {
-              // Incr here because finishDocument will not
-              // be called (because an exc is being thrown):
-              numDocsInRAM++;
+        boolean processed = false;
+        Iterable<? extends Iterable<? extends IndexableField>> remaining = docs;
+        // Only blocks that are already materialized are indexed at once, so that
+        // lazy iterables that reuse document instances are still streamed:
+        if (docs instanceof List && ((List<?>) docs).size() > 1) {
+          final List<? extends Iterable<? extends IndexableField>> block = (List<? extends Iterable<? extends IndexableField>>) docs;
+          // Iterate the fields of each document only once, whether or not the
+          // block is indexed at once:
+          final IndexableField[][] blockFields = new IndexableField[block.size()][];
+          final List<IndexableField> fieldList = new ArrayList<>();
+          for (int i = 0; i < blockFields.length; i++) {
+            for (IndexableField field : block.get(i)) {
+              fieldList.add(field);
             }
+            blockFields[i] = fieldList.toArray(new IndexableField[fieldList.size()]);
+            fieldList.clear();
           }
 
-          numDocsInRAM++;
+          if (consumer.canProcessDocuments(blockFields)) {
+            reserveDocs(blockFields.length);
+            final int baseDocID = numDocsInRAM;
+            docState.docID = baseDocID;
+            try {
+              consumer.processDocuments(blockFields);
+            } finally {
+              // Even on exception, the docIDs that the consumer
+              // used are added (and marked deleted below):
+              docCount = docState.docID + 1 - baseDocID;
+              numDocsInRAM += docCount;
+              pendingNumDocs.addAndGet(docCount - blockFields.length);
+            }
+            processed = true;
+          } else {
+            final List<Iterable<IndexableField>> fallback = new ArrayList<>(blockFields.length);
+            for (IndexableField[] fields : blockFields) {
+              fallback.add(Arrays.asList(fields));
+            }
+            remaining = fallback;
+          }
+        }
+
+        if (processed == false) {
+          for (Iterable<? extends IndexableField> doc : remaining) {
+            // Even on exception, the document is still added (but marked
+            // deleted), so we don't need to un-reserve at that point.
+            // Aborting exceptions will actually "lose" more than one
+            // document, so the counter will be "wrong" in that case, but
+            // it's very hard to fix (we can't easily distinguish aborting
+            // vs non-aborting exceptions):
+            reserveOneDoc();
+            docState.doc = doc;
+            docState.docID = numDocsInRAM;
+            docCount++;
+
+            boolean success = false;
+            try {
+              consumer.processDocument();
+              success = true;
+            } finally {
+              if (!success) {
+                // Incr here because finishDocument will not
+                // be called (because an exc is being thrown):
+                numDocsInRAM++;
+              }
+            }
+
+            numDocsInRAM++;
+          }
         }
         allDocsIndexed = true;
 
@@ -634,7 +691,7 @@ class DocumentsWriterPerThread {
   final static int MAX_TERM_LENGTH_UTF8 = BYTE_BLOCK_SIZE-2;
 
 
-  private static class IntBlockAllocator extends IntBlockPool.Allocator {
+  static class IntBlockAllocator extends IntBlockPool.Allocator {
     private final Counter bytesUsed;
     
     public IntBlockAllocator(Counter bytesUsed) {
@@ -589,7 +589,7 @@ class FrozenBufferedUpdates {
         continue;
       }
 
-      if (termsEnum.seekExact(term)) {
+      if (segState.mayContain(termField, term) && termsEnum.seekExact(term)) {
 
         // we don't need term frequencies for this
         postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
@@ -760,6 +760,10 @@ class FrozenBufferedUpdates {
         }
 
         if (termsEnum != null) {
+          if (segState.mayContain(field, delTerm) == false) {
+            // move to next del term
+            continue;
+          }
           int cmp = delTerm.compareTo(readerTerm);
           if (cmp < 0) {
             // TODO: can we advance across del terms here?
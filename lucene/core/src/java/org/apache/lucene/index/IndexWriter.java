@@ -33,6 +33,8 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -470,6 +472,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
             applyAllDeletesAndUpdates();
           }
 
+          maybeMergeOnFullFlush(MergeTrigger.GET_READER);
+
           synchronized(this) {
 
             // NOTE: we cannot carry doc values updates in memory yet, so we always must write them through to disk and re-open each
@@ -2378,6 +2382,69 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     return newMergesFound;
   }
 
+  /**
+   * Called during the full flush of a commit or near-real-time reader, after
+   * all in-memory segments have been flushed: runs the merges that
+   * {@link MergePolicy#findFullFlushMerges} returns and waits for them for at
+   * most {@link LiveIndexWriterConfig#getMaxFullFlushMergeWaitMillis()}, so
+   * that the commit or reader sees the merged segments. Merges that don't
+   * complete in time keep running in the background.
+   */
+  private void maybeMergeOnFullFlush(MergeTrigger trigger) throws IOException {
+    assert trigger == MergeTrigger.COMMIT || trigger == MergeTrigger.GET_READER : trigger;
+    assert holdsFullFlushLock();
+    final long maxWaitMillis = config.getMaxFullFlushMergeWaitMillis();
+    if (maxWaitMillis <= 0) {
+      return;
+    }
+    final long startNS = System.nanoTime();
+
+    final List<MergePolicy.OneMerge> merges = new ArrayList<>();
+    synchronized (this) {
+      if (stopMerges || tragedy.get() != null) {
+        return;
+      }
+      final MergePolicy.MergeSpecification spec = config.getMergePolicy().findFullFlushMerges(trigger, segmentInfos, this);
+      if (spec != null) {
+        for (MergePolicy.OneMerge merge : spec.merges) {
+          if (registerMerge(merge)) {
+            merges.add(merge);
+          }
+        }
+      }
+    }
+    if (merges.isEmpty()) {
+      return;
+    }
+    if (infoStream.isEnabled("IW")) {
+      infoStream.message("IW", "now run " + merges.size() + " merges on " + trigger + ", waiting at most " + maxWaitMillis + " msec");
+    }
+    mergeScheduler.merge(this, trigger, true);
+
+    final long deadlineNS = startNS + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    synchronized (this) {
+      for (MergePolicy.OneMerge merge : merges) {
+        while (pendingMerges.contains(merge) || runningMerges.contains(merge)) {
+          final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNS - System.nanoTime());
+          if (remainingMillis <= 0) {
+            if (infoStream.isEnabled("IW")) {
+              infoStream.message("IW", "merges on " + trigger + " did not complete in time: " + segString(merge.segments));
+            }
+            return;
+          }
+          try {
+            wait(remainingMillis);
+          } catch (InterruptedException ie) {
+            throw new ThreadInterruptedException(ie);
+          }
+        }
+      }
+    }
+    if (infoStream.isEnabled("IW")) {
+      infoStream.message("IW", "merges on " + trigger + " took " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNS) + " msec");
+    }
+  }
+
   /** Expert: to be used by a {@link MergePolicy} to avoid
    *  selecting merges for segments already being merged.
    *  The returned collection is not cloned, and thus is
@@ -3354,6 +3421,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
 
             applyAllDeletesAndUpdates();
 
+            maybeMergeOnFullFlush(MergeTrigger.COMMIT);
+
             synchronized(this) {
 
               readerPool.commit(segmentInfos);
@@ -4464,10 +4533,12 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
         validateMergeReader(wrappedReader);
         mergeReaders.add(wrappedReader);
       }
+      final Executor intraMergeExecutor = merge.getMergeProgress().wrapIntraMergeExecutor(
+          mergeScheduler.getIntraMergeExecutor(merge));
       final SegmentMerger merger = new SegmentMerger(mergeReaders,
                                                      merge.info.info, infoStream, dirWrapper,
                                                      globalFieldNumberMap, 
-                                                     context);
+                                                     context, intraMergeExecutor);
 
       merge.checkAborted();
 
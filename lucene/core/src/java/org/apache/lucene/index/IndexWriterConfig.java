@@ -20,6 +20,7 @@ package org.apache.lucene.index;
 import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -109,6 +110,11 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
   
   /** Default value for whether calls to {@link IndexWriter#close()} include a commit. */
   public final static boolean DEFAULT_COMMIT_ON_CLOSE = true;
+
+  /** Default value for the maximum time to wait for merges on commit or
+   *  when opening a near-real-time reader (set to <code>0</code>, which
+   *  disables these merges). Change using {@link #setMaxFullFlushMergeWaitMillis(long)} */
+  public final static long DEFAULT_MAX_FULL_FLUSH_MERGE_WAIT_MILLIS = 0;
   
   // indicates whether this config instance is already attached to a writer.
   // not final so that it can be cloned properly.
@@ -433,6 +439,11 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     return (IndexWriterConfig) super.setMergedSegmentWarmer(mergeSegmentWarmer);
   }
   
+  @Override
+  public IndexWriterConfig setMaxFullFlushMergeWaitMillis(long maxFullFlushMergeWaitMillis) {
+    return (IndexWriterConfig) super.setMaxFullFlushMergeWaitMillis(maxFullFlushMergeWaitMillis);
+  }
+
   @Override
   public IndexWriterConfig setRAMBufferSizeMB(double ramBufferSizeMB) {
     return (IndexWriterConfig) super.setRAMBufferSizeMB(ramBufferSizeMB);
@@ -513,5 +524,66 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     this.softDeletesField = softDeletesField;
     return this;
   }
+
+  /**
+   * Expert: sets an {@link Executor} that writes the independent parts of a
+   * segment when it is flushed, like postings, stored fields, doc values and
+   * points, concurrently. This shortens the flushes of large RAM buffers,
+   * which indexing threads may otherwise stall on. The executor may run tasks
+   * in the calling thread, but it must not wait for indexing threads.
+   * <p>
+   * Note that the RAM usage of in-memory segments is then tracked with atomic
+   * operations, which makes indexing slightly slower.
+   * <p>
+   * The default value for this is <code>null</code>, which writes all parts
+   * sequentially in the flushing thread.
+   *
+   * <p>Only takes effect when IndexWriter is first created.
+   */
+  public IndexWriterConfig setFlushExecutor(Executor flushExecutor) {
+    this.flushExecutor = flushExecutor;
+    return this;
+  }
+
+  /**
+   * Expert: sets the allocator of the byte and int blocks that back the
+   * in-memory index of documents that have not been flushed yet. For
+   * instance, a {@link RecyclingIndexingBufferAllocator} reuses the blocks of
+   * flushed segments rather than leaving them to the garbage collector, which
+   * helps with large {@link #setRAMBufferSizeMB RAM buffers}.
+   * <p>
+   * The default allocator allocates new blocks for every in-memory segment.
+   *
+   * <p>Only takes effect when IndexWriter is first created.
+   */
+  public IndexWriterConfig setIndexingBufferAllocator(IndexingBufferAllocator indexingBufferAllocator) {
+    if (indexingBufferAllocator == null) {
+      throw new IllegalArgumentException("indexingBufferAllocator must not be null");
+    }
+    this.indexingBufferAllocator = indexingBufferAllocator;
+    return this;
+  }
+
+  /**
+   * Expert: sets a field, typically a primary key, whose terms should be
+   * indexed into an in-memory bloom filter per segment in order to speed up
+   * {@link IndexWriter#deleteDocuments(Term...) deletes} and
+   * {@link IndexWriter#updateDocument updates} by term on this field. When
+   * applying deletes and updates, segments whose filter tells that they
+   * can't contain the term are skipped rather than looked up in their terms
+   * dictionary, which helps most when deleted or updated terms are rare or
+   * new. Filters are built from the terms dictionary the first time that a
+   * segment is searched for deletes or updates, and then use about 10 bits
+   * per unique term until the segment is merged away.
+   * <p>
+   * The default value for this is <code>null</code>, which disables bloom
+   * filters.
+   *
+   * <p>Only takes effect when IndexWriter is first created.
+   */
+  public IndexWriterConfig setTermsBloomFilterField(String termsBloomFilterField) {
+    this.termsBloomFilterField = termsBloomFilterField;
+    return this;
+  }
   
 }
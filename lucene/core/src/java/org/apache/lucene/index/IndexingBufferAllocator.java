@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IntBlockPool;
+
+/**
+ * Expert: supplies the blocks of memory that back the in-memory index that
+ * {@link IndexWriter} builds for documents that have not been flushed yet.
+ * Every in-memory segment gets its own allocators, which must record the
+ * number of bytes that they hand out in the given {@link Counter} so that
+ * {@link IndexWriter} can decide when to flush.
+ *
+ * @see IndexWriterConfig#setIndexingBufferAllocator(IndexingBufferAllocator)
+ * @lucene.experimental
+ */
+public abstract class IndexingBufferAllocator {
+
+  /** Allocates new blocks for every in-memory segment and leaves freed blocks to the garbage collector. */
+  static final IndexingBufferAllocator DEFAULT = new IndexingBufferAllocator() {
+    @Override
+    public ByteBlockPool.Allocator newByteBlockAllocator(Counter bytesUsed) {
+      return new ByteBlockPool.DirectTrackingAllocator(bytesUsed);
+    }
+
+    @Override
+    public IntBlockPool.Allocator newIntBlockAllocator(Counter bytesUsed) {
+      return new DocumentsWriterPerThread.IntBlockAllocator(bytesUsed);
+    }
+
+    @Override
+    public String toString() {
+      return "IndexingBufferAllocator.DEFAULT";
+    }
+  };
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected IndexingBufferAllocator() {}
+
+  /**
+   * Return an allocator of blocks of {@link ByteBlockPool#BYTE_BLOCK_SIZE}
+   * bytes for a new in-memory segment. The returned allocator is only used by
+   * one thread at a time.
+   */
+  public abstract ByteBlockPool.Allocator newByteBlockAllocator(Counter bytesUsed);
+
+  /**
+   * Return an allocator of blocks of {@link IntBlockPool#INT_BLOCK_SIZE} ints
+   * for a new in-memory segment. The returned allocator is only used by one
+   * thread at a time.
+   */
+  public abstract IntBlockPool.Allocator newIntBlockAllocator(Counter bytesUsed);
+
+}
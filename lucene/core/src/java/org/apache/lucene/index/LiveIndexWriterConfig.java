@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
@@ -106,9 +107,21 @@ public class LiveIndexWriterConfig {
   /** if an indexing thread should check for pending flushes on update in order to help out on a full flush*/
   protected volatile boolean checkPendingFlushOnUpdate = true;
 
+  /** Maximum time to wait for {@link MergePolicy#findFullFlushMerges} merges on commit or getReader */
+  protected volatile long maxFullFlushMergeWaitMillis;
+
   /** soft deletes field */
   protected String softDeletesField = null;
 
+  /** Executor that writes the parts of flushed segments, or null to write them in the flushing thread */
+  protected Executor flushExecutor = null;
+
+  /** Supplies the blocks of memory of in-memory segments */
+  protected IndexingBufferAllocator indexingBufferAllocator;
+
+  /** Field whose terms are indexed into in-memory bloom filters to speed up resolution of deletes and updates */
+  protected String termsBloomFilterField = null;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
@@ -122,6 +135,7 @@ public class LiveIndexWriterConfig {
     similarity = IndexSearcher.getDefaultSimilarity();
     mergeScheduler = new ConcurrentMergeScheduler();
     indexingChain = DocumentsWriterPerThread.defaultIndexingChain;
+    indexingBufferAllocator = IndexingBufferAllocator.DEFAULT;
     codec = Codec.getDefault();
     if (codec == null) {
       throw new NullPointerException();
@@ -132,6 +146,7 @@ public class LiveIndexWriterConfig {
     readerPooling = IndexWriterConfig.DEFAULT_READER_POOLING;
     indexerThreadPool = new DocumentsWriterPerThreadPool();
     perThreadHardLimitMB = IndexWriterConfig.DEFAULT_RAM_PER_THREAD_HARD_LIMIT_MB;
+    maxFullFlushMergeWaitMillis = IndexWriterConfig.DEFAULT_MAX_FULL_FLUSH_MERGE_WAIT_MILLIS;
   }
   
   /** Returns the default analyzer to use for indexing documents. */
@@ -280,6 +295,37 @@ public class LiveIndexWriterConfig {
   public IndexReaderWarmer getMergedSegmentWarmer() {
     return mergedSegmentWarmer;
   }
+
+  /**
+   * Expert: sets the maximum time to wait for the merges that the
+   * {@link MergePolicy#findFullFlushMerges merge policy} selects when
+   * {@link IndexWriter#commit()} is called or when a near-real-time reader
+   * is opened. The commit point or reader then contains the merged segments
+   * rather than the small segments that were just flushed, provided that the
+   * merges complete in time. Merges that take longer keep running in the
+   * background. A value of <code>0</code>, the default, disables these merges.
+   * The wait happens within the full flush, so segments that indexing threads
+   * would flush in the meantime are held in memory until it is over.
+   *
+   * <p>
+   * Takes effect on the next commit or near-real-time reader.
+   */
+  public LiveIndexWriterConfig setMaxFullFlushMergeWaitMillis(long maxFullFlushMergeWaitMillis) {
+    if (maxFullFlushMergeWaitMillis < 0) {
+      throw new IllegalArgumentException("maxFullFlushMergeWaitMillis must be >= 0, got " + maxFullFlushMergeWaitMillis);
+    }
+    this.maxFullFlushMergeWaitMillis = maxFullFlushMergeWaitMillis;
+    return this;
+  }
+
+  /**
+   * Returns the maximum time to wait for merges on commit or when opening a
+   * near-real-time reader.
+   * @see #setMaxFullFlushMergeWaitMillis(long)
+   */
+  public long getMaxFullFlushMergeWaitMillis() {
+    return maxFullFlushMergeWaitMillis;
+  }
   
   /** Returns the {@link OpenMode} set by {@link IndexWriterConfig#setOpenMode(OpenMode)}. */
   public OpenMode getOpenMode() {
@@ -463,6 +509,32 @@ public class LiveIndexWriterConfig {
     return softDeletesField;
   }
 
+  /**
+   * Returns the executor that writes the parts of flushed segments concurrently, or
+   * <code>null</code> if they are written sequentially by the flushing thread.
+   * See {@link IndexWriterConfig#setFlushExecutor(Executor)} for details.
+   */
+  public Executor getFlushExecutor() {
+    return flushExecutor;
+  }
+
+  /**
+   * Returns the allocator of the blocks of memory of in-memory segments.
+   * See {@link IndexWriterConfig#setIndexingBufferAllocator(IndexingBufferAllocator)} for details.
+   */
+  public IndexingBufferAllocator getIndexingBufferAllocator() {
+    return indexingBufferAllocator;
+  }
+
+  /**
+   * Returns the field whose terms are indexed into per-segment bloom filters, or
+   * <code>null</code> if deletes and updates are resolved without bloom filters.
+   * See {@link IndexWriterConfig#setTermsBloomFilterField(String)} for details.
+   */
+  public String getTermsBloomFilterField() {
+    return termsBloomFilterField;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -487,6 +559,10 @@ public class LiveIndexWriterConfig {
     sb.append("indexSort=").append(getIndexSort()).append("\n");
     sb.append("checkPendingFlushOnUpdate=").append(isCheckPendingFlushOnUpdate()).append("\n");
     sb.append("softDeletesField=").append(getSoftDeletesField()).append("\n");
+    sb.append("flushExecutor=").append(getFlushExecutor()).append("\n");
+    sb.append("indexingBufferAllocator=").append(getIndexingBufferAllocator()).append("\n");
+    sb.append("maxFullFlushMergeWaitMillis=").append(getMaxFullFlushMergeWaitMillis()).append("\n");
+    sb.append("termsBloomFilterField=").append(getTermsBloomFilterField()).append("\n");
     return sb.toString();
   }
 }
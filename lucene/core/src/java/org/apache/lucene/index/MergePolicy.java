@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -96,6 +98,12 @@ public abstract class MergePolicy {
      */
     private Thread owner;
 
+    /**
+     * Threads that are currently merging parts of this merge on behalf of the
+     * {@link #owner}. They are permitted to call {@link #pauseNanos} too.
+     */
+    private final Set<Thread> helperThreads = ConcurrentHashMap.newKeySet();
+
     /** Creates a new merge progress info. */
     public OneMergeProgress() {
       // Place all the pause reasons in there immediately so that we can simply update values.
@@ -136,7 +144,7 @@ public abstract class MergePolicy {
      *      condition 
      */
     public void pauseNanos(long pauseNanos, PauseReason reason, BooleanSupplier condition) throws InterruptedException {
-      if (Thread.currentThread() != owner) {
+      if (Thread.currentThread() != owner && helperThreads.contains(Thread.currentThread()) == false) {
         throw new RuntimeException("Only the merge owner thread can call pauseNanos(). This thread: "
             + Thread.currentThread().getName() + ", owner thread: "
             + owner);
@@ -180,6 +188,25 @@ public abstract class MergePolicy {
       assert this.owner == null;
       this.owner = owner;
     }
+
+    /**
+     * Wraps the given executor so that threads that run tasks on behalf of
+     * this merge are permitted to call {@link #pauseNanos}.
+     */
+    final Executor wrapIntraMergeExecutor(Executor executor) {
+      return task -> executor.execute(() -> {
+        final Thread thread = Thread.currentThread();
+        if (thread == owner || helperThreads.add(thread) == false) {
+          task.run();
+        } else {
+          try {
+            task.run();
+          } finally {
+            helperThreads.remove(thread);
+          }
+        }
+      });
+    }
   }
 
   /** OneMerge provides the information necessary to perform
@@ -521,6 +548,28 @@ public abstract class MergePolicy {
   public abstract MergeSpecification findForcedDeletesMerges(
       SegmentInfos segmentInfos, IndexWriter writer) throws IOException;
 
+  /**
+   * Expert: Determine what set of merge operations to run before a commit
+   * point is written or a near-real-time reader is opened, typically merges
+   * of small segments that have just been flushed. {@link IndexWriter} waits
+   * for at most {@link IndexWriterConfig#setMaxFullFlushMergeWaitMillis} for
+   * these merges to complete, so that the commit point or reader contains
+   * fewer segments. Merges that take longer keep running in the background.
+   * <p>
+   * This is only called if the maximum wait time is positive. Segments that
+   * are already {@link IndexWriter#getMergingSegments() merging} must not be
+   * returned. This call is always synchronized on the {@link IndexWriter}
+   * instance. The default implementation returns <code>null</code>.
+   *
+   * @param mergeTrigger either {@link MergeTrigger#COMMIT} or {@link MergeTrigger#GET_READER}
+   * @param segmentInfos the total set of segments in the index
+   * @param writer the IndexWriter to find the merges on
+   */
+  public MergeSpecification findFullFlushMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, IndexWriter writer)
+      throws IOException {
+    return null;
+  }
+
   /**
    * Returns true if a new segment (regardless of its origin) should use the
    * compound file format. The default implementation returns <code>true</code>
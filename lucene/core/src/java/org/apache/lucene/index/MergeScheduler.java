@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.index.MergePolicy.OneMerge;
 import org.apache.lucene.store.Directory;
@@ -54,6 +55,16 @@ public abstract class MergeScheduler implements Closeable {
     return in;
   }
 
+  /**
+   * Provides an executor that is used to merge the independent parts of the
+   * given merge, like stored fields, postings and doc values, concurrently.
+   * Executors may run tasks in the calling thread. The default implementation
+   * always does so, which merges all parts sequentially in the merge thread.
+   */
+  public Executor getIntraMergeExecutor(OneMerge merge) {
+    return Runnable::run;
+  }
+
   /** Close this MergeScheduler. */
   @Override
   public abstract void close() throws IOException;
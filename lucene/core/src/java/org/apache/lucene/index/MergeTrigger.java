@@ -47,5 +47,16 @@ public enum MergeTrigger {
   /**
    * Merge was triggered by a closing IndexWriter.
    */
-  CLOSING
+  CLOSING,
+
+  /**
+   * Merge was triggered on commit, see {@link MergePolicy#findFullFlushMerges}.
+   */
+  COMMIT,
+
+  /**
+   * Merge was triggered on opening a near-real-time reader, see
+   * {@link MergePolicy#findFullFlushMerges}.
+   */
+  GET_READER
 }
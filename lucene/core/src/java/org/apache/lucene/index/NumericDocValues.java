@@ -36,4 +36,33 @@ public abstract class NumericDocValues extends DocValuesIterator {
    */
   public abstract long longValue() throws IOException;
 
+  /**
+   * Expert: Load the values of several documents at once. The first
+   * {@code count} entries of {@code docs} must be in strictly increasing order
+   * and greater than or equal to the current {@link #docID() doc ID}.
+   * <p>
+   * Documents that have a value are moved to the beginning of {@code docs},
+   * in order, and their values are stored at the same index in
+   * {@code values}. The number of documents that have a value is returned.
+   * Afterwards, this iterator is positioned as if {@link #advanceExact(int)}
+   * had been called on the last of the given documents, and
+   * {@link #longValue()} must not be called until the iterator is moved again.
+   * <p>
+   * The default implementation calls {@link #advanceExact(int)} and
+   * {@link #longValue()} on every document. Implementations are encouraged
+   * to override it with a tighter loop.
+   * @return the number of documents that have a value
+   */
+  public int longValues(int[] docs, int count, long[] values) throws IOException {
+    int numValues = 0;
+    for (int i = 0; i < count; ++i) {
+      final int doc = docs[i];
+      if (advanceExact(doc)) {
+        docs[numValues] = doc;
+        values[numValues++] = longValue();
+      }
+    }
+    return numValues;
+  }
+
 }
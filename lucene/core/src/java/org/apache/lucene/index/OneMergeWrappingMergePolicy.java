@@ -59,6 +59,12 @@ public class OneMergeWrappingMergePolicy extends MergePolicyWrapper {
     return wrapSpec(in.findForcedDeletesMerges(segmentInfos, writer));
   }
 
+  @Override
+  public MergeSpecification findFullFlushMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, IndexWriter writer)
+    throws IOException {
+    return wrapSpec(in.findFullFlushMerges(mergeTrigger, segmentInfos, writer));
+  }
+
   private MergeSpecification wrapSpec(MergeSpecification spec) {
     MergeSpecification wrapped = spec == null ? null : new MergeSpecification();
     if (wrapped != null) {
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IntBlockPool;
+
+/**
+ * An {@link IndexingBufferAllocator} that keeps the blocks that in-memory
+ * segments release, when they are flushed or when term vectors of a document
+ * have been written, and hands them out again to the next in-memory segments
+ * instead of allocating new ones. Blocks are shared across all indexing
+ * threads of all {@link IndexWriter}s that use this allocator.
+ * <p>
+ * With large RAM buffers, most blocks survive long enough to be promoted to
+ * the old generation of the heap before they are released. Recycling them
+ * means that they are tenured once and then reused, rather than having to be
+ * collected from the old generation after every flush.
+ * <p>
+ * At most <code>maxBufferedBytes</code> bytes of free blocks are retained.
+ * This memory is not counted by {@link IndexWriter} against the
+ * {@link IndexWriterConfig#setRAMBufferSizeMB RAM buffer}, so it should
+ * typically be about the size of the RAM buffer.
+ * <p>
+ * This class is thread-safe.
+ * @lucene.experimental
+ */
+public final class RecyclingIndexingBufferAllocator extends IndexingBufferAllocator implements Accountable {
+
+  private static final int BYTE_BLOCK_BYTES = ByteBlockPool.BYTE_BLOCK_SIZE;
+  private static final int INT_BLOCK_BYTES = IntBlockPool.INT_BLOCK_SIZE * Integer.BYTES;
+
+  private final long maxBufferedBytes;
+  private final AtomicLong bufferedBytes = new AtomicLong();
+  // LIFO, so that recently released blocks, which are more likely to be in CPU caches, are reused first
+  private final Deque<byte[]> freeByteBlocks = new ConcurrentLinkedDeque<>();
+  private final Deque<int[]> freeIntBlocks = new ConcurrentLinkedDeque<>();
+
+  /**
+   * Create a new instance that retains up to <code>maxBufferedBytes</code>
+   * bytes of free blocks.
+   */
+  public RecyclingIndexingBufferAllocator(long maxBufferedBytes) {
+    if (maxBufferedBytes < 0) {
+      throw new IllegalArgumentException("maxBufferedBytes must be >= 0, got " + maxBufferedBytes);
+    }
+    this.maxBufferedBytes = maxBufferedBytes;
+  }
+
+  @Override
+  public ByteBlockPool.Allocator newByteBlockAllocator(Counter bytesUsed) {
+    return new ByteBlockPool.Allocator(ByteBlockPool.BYTE_BLOCK_SIZE) {
+      @Override
+      public byte[] getByteBlock() {
+        byte[] block = freeByteBlocks.pollFirst();
+        if (block == null) {
+          block = new byte[blockSize];
+        } else {
+          bufferedBytes.addAndGet(-BYTE_BLOCK_BYTES);
+          // slices of the byte pool rely on blocks being filled with zeros
+          Arrays.fill(block, (byte) 0);
+        }
+        bytesUsed.addAndGet(blockSize);
+        return block;
+      }
+
+      @Override
+      public void recycleByteBlocks(byte[][] blocks, int start, int end) {
+        for (int i = start; i < end; ++i) {
+          if (reserve(BYTE_BLOCK_BYTES)) {
+            freeByteBlocks.offerFirst(blocks[i]);
+          }
+          blocks[i] = null;
+        }
+        bytesUsed.addAndGet(-((end - start) * blockSize));
+      }
+    };
+  }
+
+  @Override
+  public IntBlockPool.Allocator newIntBlockAllocator(Counter bytesUsed) {
+    return new IntBlockPool.Allocator(IntBlockPool.INT_BLOCK_SIZE) {
+      @Override
+      public int[] getIntBlock() {
+        int[] block = freeIntBlocks.pollFirst();
+        if (block == null) {
+          block = new int[blockSize];
+        } else {
+          bufferedBytes.addAndGet(-INT_BLOCK_BYTES);
+          Arrays.fill(block, 0);
+        }
+        bytesUsed.addAndGet(INT_BLOCK_BYTES);
+        return block;
+      }
+
+      @Override
+      public void recycleIntBlocks(int[][] blocks, int start, int end) {
+        for (int i = start; i < end; ++i) {
+          if (reserve(INT_BLOCK_BYTES)) {
+            freeIntBlocks.offerFirst(blocks[i]);
+          }
+          blocks[i] = null;
+        }
+        bytesUsed.addAndGet(-((end - start) * INT_BLOCK_BYTES));
+      }
+    };
+  }
+
+  /** Reserve room for a free block, returns false if the budget is exhausted. */
+  private boolean reserve(int bytes) {
+    long current;
+    do {
+      current = bufferedBytes.get();
+      if (current + bytes > maxBufferedBytes) {
+        return false;
+      }
+    } while (bufferedBytes.compareAndSet(current, current + bytes) == false);
+    return true;
+  }
+
+  /** Release all free blocks that are currently retained. */
+  public void clear() {
+    for (byte[] block = freeByteBlocks.pollFirst(); block != null; block = freeByteBlocks.pollFirst()) {
+      bufferedBytes.addAndGet(-BYTE_BLOCK_BYTES);
+    }
+    for (int[] block = freeIntBlocks.pollFirst(); block != null; block = freeIntBlocks.pollFirst()) {
+      bufferedBytes.addAndGet(-INT_BLOCK_BYTES);
+    }
+  }
+
+  /** Return the maximum number of bytes of free blocks that this allocator retains. */
+  public long getMaxBufferedBytes() {
+    return maxBufferedBytes;
+  }
+
+  /** Return the number of bytes of free blocks that this allocator currently retains. */
+  @Override
+  public long ramBytesUsed() {
+    return bufferedBytes.get();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxBufferedBytes=" + maxBufferedBytes + ")";
+  }
+}
@@ -24,7 +24,9 @@ import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.codecs.Codec;
@@ -86,6 +88,9 @@ final class SegmentCoreReaders {
     }
   };
 
+  // lazily built, see getTermsBloomFilter; read without locking on lookups
+  private final Map<String,TermsBloomFilter> termsBloomFilters = new ConcurrentHashMap<>();
+
   private final Set<IndexReader.ClosedListener> coreClosedListeners = 
       Collections.synchronizedSet(new LinkedHashSet<IndexReader.ClosedListener>());
   
@@ -162,6 +167,39 @@ final class SegmentCoreReaders {
     throw new AlreadyClosedException("SegmentCoreReaders is already closed");
   }
 
+  /**
+   * Return a bloom filter of the terms of the given field, which is built on
+   * first use and then kept in memory until this core is closed, or
+   * <code>null</code> if this segment has no terms for the field.
+   */
+  TermsBloomFilter getTermsBloomFilter(String field) throws IOException {
+    final TermsBloomFilter filter = termsBloomFilters.get(field);
+    if (filter != null) {
+      return filter;
+    }
+    final Terms terms = fields.terms(field);
+    if (terms == null) {
+      return null;
+    }
+    // only lock while building, so that a filter is built only once
+    synchronized (termsBloomFilters) {
+      TermsBloomFilter built = termsBloomFilters.get(field);
+      if (built == null) {
+        built = TermsBloomFilter.build(terms);
+        termsBloomFilters.put(field, built);
+      }
+      return built;
+    }
+  }
+
+  /**
+   * Return the bloom filter of the terms of the given field if it has already
+   * been built, or <code>null</code> otherwise.
+   */
+  TermsBloomFilter getTermsBloomFilterIfBuilt(String field) {
+    return termsBloomFilters.get(field);
+  }
+
   @SuppressWarnings("try")
   void decRef() throws IOException {
     if (ref.decrementAndGet() == 0) {
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * An in-memory bloom filter of the terms of a field of a segment, which tells
+ * when a term is certainly not in the segment. This is used to skip segments
+ * when resolving deletes and updates by term, on fields like primary keys
+ * where most terms only exist in one segment, and may be used the same way to
+ * skip segments on primary key lookups, see {@link #get(LeafReader, String)}.
+ *
+ * @lucene.experimental
+ */
+public final class TermsBloomFilter implements Accountable {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(TermsBloomFilter.class);
+
+  // 10 bits per term and 7 hash functions give a false positive rate of about 1%
+  static final int BITS_PER_TERM = 10;
+  static final int NUM_HASHES = 7;
+
+  // FixedBitSet can't hold more than Integer.MAX_VALUE bits
+  private static final int MAX_BITS = 1 << 30;
+
+  private static final int SEED1 = 0x9747b28c;
+  private static final int SEED2 = 0x5bd1e995;
+
+  /** Build a filter of all terms of the given {@link Terms}. */
+  static TermsBloomFilter build(Terms terms) throws IOException {
+    long numTerms = terms.size();
+    if (numTerms == -1) {
+      // the number of terms is unknown, assume one term per document like on primary keys
+      numTerms = Math.max(1, terms.getDocCount());
+    }
+    final long numBits = Math.max(Long.SIZE, Math.min(MAX_BITS, numTerms * BITS_PER_TERM));
+    final TermsBloomFilter filter = new TermsBloomFilter(1 << (64 - Long.numberOfLeadingZeros(numBits - 1)));
+    final TermsEnum termsEnum = terms.iterator();
+    for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+      filter.add(term);
+    }
+    return filter;
+  }
+
+  /**
+   * Return the filter of the terms of {@code field} in the segment that
+   * {@code reader} reads, building it on first use, or <code>null</code> if
+   * this segment has no terms for the field or if {@code reader} doesn't
+   * unwrap to a {@link SegmentReader}. Filters are shared by all readers of
+   * the same segment and kept in memory until the segment core is closed.
+   * <p><b>NOTE</b>: the filter reflects the terms of the underlying segment,
+   * it should not be used with {@link FilterLeafReader}s that add terms.
+   */
+  public static TermsBloomFilter get(LeafReader reader, String field) throws IOException {
+    reader = FilterLeafReader.unwrap(reader);
+    if (reader instanceof SegmentReader) {
+      return ((SegmentReader) reader).core.getTermsBloomFilter(field);
+    }
+    return null;
+  }
+
+  /**
+   * Same as {@link #get(LeafReader, String)}, but returns <code>null</code>
+   * instead of building the filter if it hasn't been built yet. This allows
+   * latency-sensitive lookups to use filters without paying for a scan of
+   * all terms, when filters are built ahead of time, e.g. when readers are
+   * opened or warmed.
+   */
+  public static TermsBloomFilter getIfBuilt(LeafReader reader, String field) {
+    reader = FilterLeafReader.unwrap(reader);
+    if (reader instanceof SegmentReader) {
+      return ((SegmentReader) reader).core.getTermsBloomFilterIfBuilt(field);
+    }
+    return null;
+  }
+
+  private final FixedBitSet bits;
+  private final int mask;
+
+  private TermsBloomFilter(int numBits) {
+    assert Integer.bitCount(numBits) == 1;
+    bits = new FixedBitSet(numBits);
+    mask = numBits - 1;
+  }
+
+  private void add(BytesRef term) {
+    final int hash1 = StringHelper.murmurhash3_x86_32(term, SEED1);
+    final int hash2 = StringHelper.murmurhash3_x86_32(term, SEED2);
+    for (int i = 0; i < NUM_HASHES; ++i) {
+      bits.set((hash1 + i * hash2) & mask);
+    }
+  }
+
+  /**
+   * Return <code>false</code> if the term is certainly not in the segment, or
+   * <code>true</code> if it may be.
+   */
+  public boolean mayContain(BytesRef term) {
+    final int hash1 = StringHelper.murmurhash3_x86_32(term, SEED1);
+    final int hash2 = StringHelper.murmurhash3_x86_32(term, SEED2);
+    for (int i = 0; i < NUM_HASHES; ++i) {
+      if (bits.get((hash1 + i * hash2) & mask) == false) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + bits.ramBytesUsed();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(numBits=" + bits.length() + ")";
+  }
+}
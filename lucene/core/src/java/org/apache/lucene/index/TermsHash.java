@@ -70,6 +70,17 @@ abstract class TermsHash {
     }
   }
 
+  /** Hand all blocks back to the allocators once the segment has been flushed. */
+  void release() {
+    try {
+      reset();
+    } finally {
+      if (nextTermsHash != null) {
+        nextTermsHash.release();
+      }
+    }
+  }
+
   // Clear all state
   void reset() {
     // we don't reuse so we drop everything and don't fill with 0
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
+
+/**
+ * A {@link SlicingPolicy} that tries to give every slice the same amount of
+ * work. Consecutive leaves are grouped together until their cumulated
+ * {@link #leafCost(LeafReaderContext) cost} reaches a target cost, which is
+ * the total cost divided by the maximum number of slices, but at least the
+ * configured minimum cost per slice. This way, many small segments, as
+ * created by near-real-time reopens, are searched in a single task, and
+ * leaves that are more costly than the target cost may optionally be
+ * split into doc-ID ranges so that they do not become stragglers.
+ * <p>
+ * Since slices hold consecutive leaves, hits are collected in the same order
+ * as with a single-threaded search.
+ * <p>
+ * This policy also records the time spent searching slices, see
+ * {@link #getImbalance()}.
+ *
+ * @lucene.experimental
+ */
+public class BalancedSlicingPolicy extends SlicingPolicy {
+
+  private final int maxSlices;
+  private final long minCostPerSlice;
+  private final boolean splitLeaves;
+
+  private long searchCount;
+  private long totalMaxSliceNanos;
+  private double totalMeanSliceNanos;
+
+  /**
+   * Sole constructor.
+   * @param maxSlices the number of slices to aim for, typically the number of threads of the executor
+   * @param minCostPerSlice the minimum cost of a slice, in order to avoid creating many tiny tasks
+   * @param splitLeaves whether leaves whose cost exceeds the target cost should be split into doc-ID ranges
+   */
+  public BalancedSlicingPolicy(int maxSlices, long minCostPerSlice, boolean splitLeaves) {
+    if (maxSlices <= 0) {
+      throw new IllegalArgumentException("maxSlices must be > 0, got " + maxSlices);
+    }
+    if (minCostPerSlice < 0) {
+      throw new IllegalArgumentException("minCostPerSlice must be >= 0, got " + minCostPerSlice);
+    }
+    this.maxSlices = maxSlices;
+    this.minCostPerSlice = minCostPerSlice;
+    this.splitLeaves = splitLeaves;
+  }
+
+  /**
+   * Return the cost of searching the given leaf. The default implementation
+   * returns the number of live documents. Sub-classes may override this
+   * method in order to use a different estimate, such as the
+   * {@link ScorerSupplier#cost() cost} of a representative query on this leaf.
+   */
+  protected long leafCost(LeafReaderContext leaf) {
+    return leaf.reader().numDocs();
+  }
+
+  @Override
+  protected LeafSlice[] computeSlices(List<LeafReaderContext> leaves) {
+    final long[] costs = new long[leaves.size()];
+    long totalCost = 0;
+    for (int i = 0; i < costs.length; ++i) {
+      costs[i] = leafCost(leaves.get(i));
+      if (costs[i] < 0) {
+        throw new IllegalStateException("Costs must be >= 0, got " + costs[i] + " for " + leaves.get(i));
+      }
+      totalCost += costs[i];
+    }
+    final long targetCost = Math.max(1, Math.max(minCostPerSlice, (totalCost + maxSlices - 1) / maxSlices));
+
+    final List<LeafSlice> slices = new ArrayList<>();
+    final List<LeafReaderContext> group = new ArrayList<>();
+    long groupCost = 0;
+    for (int i = 0; i < costs.length; ++i) {
+      final LeafReaderContext leaf = leaves.get(i);
+      final long cost = costs[i];
+      final int maxDoc = leaf.reader().maxDoc();
+      final boolean split = splitLeaves && cost > targetCost && maxDoc > 1;
+      // zero-cost leaves may still be in the group, flush them first to keep slices in leaf order
+      if ((split && group.isEmpty() == false) || (groupCost > 0 && groupCost + cost > targetCost)) {
+        slices.add(new LeafSlice(group.toArray(new LeafReaderContext[0])));
+        group.clear();
+        groupCost = 0;
+      }
+      if (split) {
+        final int numPartitions = (int) Math.min(maxDoc, (cost + targetCost - 1) / targetCost);
+        int minDoc = 0;
+        for (int j = 1; j <= numPartitions; ++j) {
+          final int upTo = (int) ((long) maxDoc * j / numPartitions);
+          slices.add(new LeafSlice(leaf, minDoc, upTo));
+          minDoc = upTo;
+        }
+      } else {
+        group.add(leaf);
+        groupCost += cost;
+      }
+    }
+    if (group.isEmpty() == false) {
+      slices.add(new LeafSlice(group.toArray(new LeafReaderContext[0])));
+    }
+    return slices.toArray(new LeafSlice[0]);
+  }
+
+  @Override
+  public void onSearch(LeafSlice[] slices, long[] tookNanos) {
+    long max = 0;
+    long sum = 0;
+    for (long took : tookNanos) {
+      max = Math.max(max, took);
+      sum += took;
+    }
+    synchronized (this) {
+      searchCount++;
+      if (tookNanos.length > 0) {
+        totalMaxSliceNanos += max;
+        totalMeanSliceNanos += (double) sum / tookNanos.length;
+      }
+    }
+  }
+
+  /** Return the number of concurrent searches that have been recorded. */
+  public synchronized long getSearchCount() {
+    return searchCount;
+  }
+
+  /**
+   * Return the ratio between the time spent on the slowest slice and the
+   * average time spent per slice, cumulated over all recorded searches. A
+   * value of {@code 1} means that slices are perfectly balanced, while high
+   * values indicate that searches are slowed down by stragglers. Returns
+   * {@code 1} if no searches have been recorded.
+   */
+  public synchronized double getImbalance() {
+    if (totalMeanSliceNanos == 0) {
+      return 1;
+    }
+    return totalMaxSliceNanos / totalMeanSliceNanos;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxSlices=" + maxSlices + ", minCostPerSlice=" + minCostPerSlice
+        + ", splitLeaves=" + splitLeaves + ")";
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Term;
+
+/**
+ * A {@link Weight} that serves scorers from cached {@link DocIdSet}s, computing
+ * and caching them on the fly if the {@link QueryCachingPolicy} allows it. This
+ * class is shared by {@link LRUQueryCache} and {@link ConcurrentQueryCache},
+ * which only differ by how cache entries are looked up and stored.
+ */
+abstract class CachingWrapperWeight extends ConstantScoreWeight {
+
+  /** Returned by {@link #get} when the cache could not be looked up without
+   *  blocking, in which case the wrapped weight is used directly. */
+  static final DocIdSet SKIP_CACHE = new DocIdSet() {
+    @Override
+    public DocIdSetIterator iterator() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return 0L;
+    }
+  };
+
+  final Weight in;
+  private final QueryCachingPolicy policy;
+  private final long maxRamBytesUsed;
+  private final Predicate<LeafReaderContext> leavesToCache;
+  // we use an AtomicBoolean because Weight.scorer may be called from multiple
+  // threads when IndexSearcher is created with threads
+  private final AtomicBoolean used;
+
+  CachingWrapperWeight(Weight in, QueryCachingPolicy policy,
+      long maxRamBytesUsed, Predicate<LeafReaderContext> leavesToCache) {
+    super(in.getQuery(), 1f);
+    this.in = in;
+    this.policy = policy;
+    this.maxRamBytesUsed = maxRamBytesUsed;
+    this.leavesToCache = leavesToCache;
+    used = new AtomicBoolean(false);
+  }
+
+  /** Return the cached {@link DocIdSet} for the wrapped query on the given
+   *  leaf, {@code null} on a cache miss or {@link #SKIP_CACHE} if the cache
+   *  should not be used for this leaf. */
+  abstract DocIdSet get(LeafReaderContext context, IndexReader.CacheHelper cacheHelper) throws IOException;
+
+  /** Store a {@link DocIdSet} for the wrapped query on the given leaf. */
+  abstract void putIfAbsent(LeafReaderContext context, DocIdSet set, IndexReader.CacheHelper cacheHelper) throws IOException;
+
+  /** Compute the {@link DocIdSet} to cache for the given leaf. */
+  abstract DocIdSet cache(LeafReaderContext context) throws IOException;
+
+  @Override
+  public void extractTerms(Set<Term> terms) {
+    in.extractTerms(terms);
+  }
+
+  /** Check whether entries of this segment are small enough to be cached,
+   *  regardless of the query. */
+  boolean cacheEntryHasReasonableWorstCaseSize(LeafReaderContext context) {
+    return cacheEntryHasReasonableWorstCaseSize(ReaderUtil.getTopLevelContext(context).reader().maxDoc(), maxRamBytesUsed);
+  }
+
+  static boolean cacheEntryHasReasonableWorstCaseSize(int maxDoc, long maxRamBytesUsed) {
+    // The worst-case (dense) is a bit set which needs one bit per document
+    final long worstCaseRamUsage = maxDoc / 8;
+    final long totalRamAvailable = maxRamBytesUsed;
+    // Imagine the worst-case that a cache entry is large than the size of
+    // the cache: not only will this entry be trashed immediately but it
+    // will also evict all current entries from the cache. For this reason
+    // we only cache on an IndexReader if we have available room for
+    // 5 different filters on this reader to avoid excessive trashing
+    return worstCaseRamUsage * 5 < totalRamAvailable;
+  }
+
+  /** Check whether this segment is eligible for caching, regardless of the query. */
+  private boolean shouldCache(LeafReaderContext context) throws IOException {
+    return cacheEntryHasReasonableWorstCaseSize(context)
+        && leavesToCache.test(context);
+  }
+
+  /** Return the cached {@link DocIdSet} for the given leaf, computing it if
+   *  necessary, or {@code null} if caching should not be used. */
+  private DocIdSet getOrCache(LeafReaderContext context) throws IOException {
+    if (used.compareAndSet(false, true)) {
+      policy.onUse(getQuery());
+    }
+
+    if (in.isCacheable(context) == false) {
+      // this segment is not suitable for caching
+      return null;
+    }
+
+    // Short-circuit: Check whether this segment is eligible for caching
+    // before we look up the cache
+    if (shouldCache(context) == false) {
+      return null;
+    }
+
+    final IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
+    if (cacheHelper == null) {
+      // this reader has no cache helper
+      return null;
+    }
+
+    DocIdSet docIdSet = get(context, cacheHelper);
+    if (docIdSet == SKIP_CACHE) {
+      return null;
+    } else if (docIdSet == null) {
+      if (policy.shouldCache(in.getQuery())) {
+        docIdSet = cache(context);
+        putIfAbsent(context, docIdSet, cacheHelper);
+      } else {
+        return null;
+      }
+    }
+
+    assert docIdSet != null;
+    return docIdSet;
+  }
+
+  @Override
+  public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
+    final DocIdSet docIdSet = getOrCache(context);
+    if (docIdSet == null) {
+      return in.scorerSupplier(context);
+    }
+    if (docIdSet == DocIdSet.EMPTY) {
+      return null;
+    }
+    final DocIdSetIterator disi = docIdSet.iterator();
+    if (disi == null) {
+      return null;
+    }
+
+    return new ScorerSupplier() {
+      @Override
+      public Scorer get(long leadCost) throws IOException {
+        return new ConstantScoreScorer(CachingWrapperWeight.this, 0f, disi);
+      }
+
+      @Override
+      public long cost() {
+        return disi.cost();
+      }
+    };
+  }
+
+  @Override
+  public Scorer scorer(LeafReaderContext context) throws IOException {
+    ScorerSupplier scorerSupplier = scorerSupplier(context);
+    if (scorerSupplier == null) {
+      return null;
+    }
+    return scorerSupplier.get(Long.MAX_VALUE);
+  }
+
+  @Override
+  public boolean isCacheable(LeafReaderContext ctx) {
+    return in.isCacheable(ctx);
+  }
+
+  @Override
+  public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
+    final DocIdSet docIdSet = getOrCache(context);
+    if (docIdSet == null) {
+      return in.bulkScorer(context);
+    }
+    if (docIdSet == DocIdSet.EMPTY) {
+      return null;
+    }
+    final DocIdSetIterator disi = docIdSet.iterator();
+    if (disi == null) {
+      return null;
+    }
+
+    return new DefaultBulkScorer(new ConstantScoreScorer(this, 0f, disi));
+  }
+
+}
@@ -0,0 +1,627 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import static org.apache.lucene.search.LRUQueryCache.HASHTABLE_RAM_BYTES_PER_ENTRY;
+import static org.apache.lucene.search.LRUQueryCache.LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY;
+import static org.apache.lucene.search.LRUQueryCache.QUERY_DEFAULT_RAM_BYTES_USED;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.BitDocIdSet;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RoaringDocIdSet;
+
+/**
+ * A {@link QueryCache} that is designed for high search concurrency. Unlike
+ * {@link LRUQueryCache}, which serializes all cache lookups through a single
+ * lock, this cache splits queries into a fixed number of shards based on
+ * their hash code. Lookups never take a lock, and writes only lock the shard
+ * that the query belongs to.
+ * <p>
+ * Since lookups do not take a lock, it is not possible to maintain a strict
+ * least-recently-used order. Instead, this cache uses the CLOCK algorithm,
+ * an approximation of LRU: lookups mark queries as recently used, and when
+ * evictions are required, a clock hand visits shards in a round-robin
+ * fashion and evicts the oldest query of the shard unless it has been marked
+ * since it was last inspected, in which case the mark is cleared and the
+ * query gets a second chance. The maximum number of cached queries and the
+ * maximum number of bytes used are global to all shards.
+ * <p>
+ * This class is thread-safe.
+ * <p>
+ * This cache exposes the same statistics and callbacks as
+ * {@link LRUQueryCache}. However, {@link #onHit} and {@link #onMiss} are
+ * called without holding any lock, and the other callbacks may be called
+ * concurrently for queries that belong to different shards, so
+ * implementations of these callbacks must be thread-safe.
+ *
+ * @see LRUQueryCache
+ * @see QueryCachingPolicy
+ * @lucene.experimental
+ */
+public class ConcurrentQueryCache implements QueryCache, Accountable {
+
+  /** Default number of shards. */
+  public static final int DEFAULT_NUM_SHARDS = 16;
+
+  private static final long QUERY_RAM_BYTES_USED = LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + QUERY_DEFAULT_RAM_BYTES_USED;
+
+  private final int maxSize;
+  private final long maxRamBytesUsed;
+  private final Predicate<LeafReaderContext> leavesToCache;
+  private final Shard[] shards;
+  // keys that we registered a closed listener on
+  private final Set<IndexReader.CacheKey> listenedKeys;
+  // keys of closed readers, so that entries that are put concurrently with
+  // or after the reader is closed are not leaked; weak since keys are
+  // released together with their reader
+  private final Set<IndexReader.CacheKey> clearedKeys;
+  // the next shard to evict from
+  private final AtomicInteger evictionHand;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder cacheCount = new LongAdder();
+  private final LongAdder cacheSize = new LongAdder();
+
+  /**
+   * Expert: Create a new instance that will cache at most <code>maxSize</code>
+   * queries with at most <code>maxRamBytesUsed</code> bytes of memory, only on
+   * leaves that satisfy {@code leavesToCache}, and that splits queries into
+   * <code>numShards</code> shards.
+   */
+  public ConcurrentQueryCache(int maxSize, long maxRamBytesUsed,
+      Predicate<LeafReaderContext> leavesToCache, int numShards) {
+    if (numShards <= 0) {
+      throw new IllegalArgumentException("numShards must be > 0, got " + numShards);
+    }
+    this.maxSize = maxSize;
+    this.maxRamBytesUsed = maxRamBytesUsed;
+    this.leavesToCache = leavesToCache;
+    shards = new Shard[numShards];
+    for (int i = 0; i < numShards; ++i) {
+      shards[i] = new Shard();
+    }
+    listenedKeys = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    clearedKeys = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    evictionHand = new AtomicInteger();
+  }
+
+  /**
+   * Create a new instance that will cache at most <code>maxSize</code> queries
+   * with at most <code>maxRamBytesUsed</code> bytes of memory, using
+   * {@link #DEFAULT_NUM_SHARDS} shards. Queries will only be cached on leaves
+   * that have more than 10k documents and have more than 3% of the total
+   * number of documents in the index, like {@link LRUQueryCache}.
+   */
+  public ConcurrentQueryCache(int maxSize, long maxRamBytesUsed) {
+    this(maxSize, maxRamBytesUsed, new LRUQueryCache.MinSegmentSizePredicate(10000, .03f), DEFAULT_NUM_SHARDS);
+  }
+
+  /**
+   * Expert: callback when there is a cache hit on a given query.
+   * This method is called without holding a lock and must be thread-safe.
+   * @see #onMiss
+   * @lucene.experimental
+   */
+  protected void onHit(Object readerCoreKey, Query query) {
+    hitCount.increment();
+  }
+
+  /**
+   * Expert: callback when there is a cache miss on a given query.
+   * This method is called without holding a lock and must be thread-safe.
+   * @see #onHit
+   * @lucene.experimental
+   */
+  protected void onMiss(Object readerCoreKey, Query query) {
+    assert query != null;
+    missCount.increment();
+  }
+
+  /**
+   * Expert: callback when a query is added to this cache.
+   * @see #onQueryEviction
+   * @lucene.experimental
+   */
+  protected void onQueryCache(Query query, long ramBytesUsed) {
+  }
+
+  /**
+   * Expert: callback when a query is evicted from this cache.
+   * @see #onQueryCache
+   * @lucene.experimental
+   */
+  protected void onQueryEviction(Query query, long ramBytesUsed) {
+  }
+
+  /**
+   * Expert: callback when a {@link DocIdSet} is added to this cache.
+   * @see #onDocIdSetEviction
+   * @lucene.experimental
+   */
+  protected void onDocIdSetCache(Object readerCoreKey, long ramBytesUsed) {
+    cacheSize.increment();
+    cacheCount.increment();
+  }
+
+  /**
+   * Expert: callback when one or more {@link DocIdSet}s are removed from this
+   * cache.
+   * @see #onDocIdSetCache
+   * @lucene.experimental
+   */
+  protected void onDocIdSetEviction(Object readerCoreKey, int numEntries, long sumRamBytesUsed) {
+    cacheSize.add(-numEntries);
+  }
+
+  /**
+   * Expert: callback when the cache is completely cleared.
+   * @lucene.experimental
+   */
+  protected void onClear() {
+    cacheSize.reset();
+  }
+
+  private Shard shard(Query query) {
+    final int h = query.hashCode();
+    return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
+  }
+
+  private int size() {
+    int size = 0;
+    for (Shard shard : shards) {
+      size += shard.queries.size();
+    }
+    return size;
+  }
+
+  /** Whether evictions are required. */
+  boolean requiresEviction() {
+    final int size = size();
+    if (size == 0) {
+      return false;
+    } else {
+      return size > maxSize || ramBytesUsed() > maxRamBytesUsed;
+    }
+  }
+
+  DocIdSet get(Query key, IndexReader.CacheHelper cacheHelper) {
+    assert key instanceof BoostQuery == false;
+    assert key instanceof ConstantScoreQuery == false;
+    final Shard shard = shard(key);
+    final IndexReader.CacheKey readerKey = cacheHelper.getKey();
+    final LeafCache leafCache = shard.cache.get(readerKey);
+    if (leafCache == null) {
+      onMiss(readerKey, key);
+      return null;
+    }
+    final CachedQuery cachedQuery = shard.queries.get(key);
+    if (cachedQuery == null) {
+      onMiss(readerKey, key);
+      return null;
+    }
+    final DocIdSet cached = leafCache.cache.get(cachedQuery.query);
+    if (cached == null) {
+      onMiss(readerKey, cachedQuery.query);
+    } else {
+      // give this query a second chance the next time evictions are required
+      cachedQuery.recentlyUsed = true;
+      onHit(readerKey, cachedQuery.query);
+    }
+    return cached;
+  }
+
+  void putIfAbsent(Query query, DocIdSet set, IndexReader.CacheHelper cacheHelper) {
+    assert query instanceof BoostQuery == false;
+    assert query instanceof ConstantScoreQuery == false;
+    final Shard shard = shard(query);
+    final IndexReader.CacheKey key = cacheHelper.getKey();
+    // under a lock to make sure that the queries and the per-leaf caches of
+    // this shard remain sync'ed
+    shard.lock.lock();
+    try {
+      if (clearedKeys.contains(key)) {
+        // the reader has been closed, there is nothing that would clear this entry
+        return;
+      }
+      CachedQuery cachedQuery = shard.queries.get(query);
+      if (cachedQuery == null) {
+        cachedQuery = new CachedQuery(query);
+        shard.queries.put(query, cachedQuery);
+        shard.clock.add(cachedQuery);
+        shard.ramBytesUsed += QUERY_RAM_BYTES_USED;
+        onQueryCache(query, QUERY_RAM_BYTES_USED);
+      }
+      LeafCache leafCache = shard.cache.get(key);
+      if (leafCache == null) {
+        leafCache = new LeafCache();
+        shard.cache.put(key, leafCache);
+        shard.ramBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY;
+        if (listenedKeys.add(key)) {
+          // first time we see this key, need to register a close listener
+          cacheHelper.addClosedListener(this::onReaderClosed);
+        }
+      }
+      if (leafCache.cache.putIfAbsent(cachedQuery.query, set) == null) {
+        // the set was actually put
+        final long ramBytesUsed = HASHTABLE_RAM_BYTES_PER_ENTRY + set.ramBytesUsed();
+        leafCache.ramBytesUsed += ramBytesUsed;
+        shard.ramBytesUsed += ramBytesUsed;
+        onDocIdSetCache(key, ramBytesUsed);
+      }
+    } finally {
+      shard.lock.unlock();
+    }
+    evictIfNecessary();
+  }
+
+  void evictIfNecessary() {
+    // only hold one shard lock at a time so that concurrent writers cannot deadlock
+    int emptyShards = 0;
+    int stepsSinceLastEviction = 0;
+    while (emptyShards < shards.length && requiresEviction()) {
+      final Shard shard = shards[Math.floorMod(evictionHand.getAndIncrement(), shards.length)];
+      // in case concurrent lookups keep marking queries as recently used,
+      // stop giving second chances after two rounds
+      final boolean force = stepsSinceLastEviction > 2 * (size() + shards.length);
+      shard.lock.lock();
+      try {
+        final Iterator<CachedQuery> iterator = shard.clock.iterator();
+        if (iterator.hasNext() == false) {
+          emptyShards++;
+        } else {
+          emptyShards = 0;
+          final CachedQuery candidate = iterator.next();
+          if (candidate.recentlyUsed && force == false) {
+            candidate.recentlyUsed = false;
+            // move to the tail of the clock
+            iterator.remove();
+            shard.clock.add(candidate);
+            stepsSinceLastEviction++;
+          } else {
+            onEviction(shard, candidate);
+            stepsSinceLastEviction = 0;
+          }
+        }
+      } finally {
+        shard.lock.unlock();
+      }
+    }
+  }
+
+  private void onEviction(Shard shard, CachedQuery cachedQuery) {
+    assert shard.lock.isHeldByCurrentThread();
+    final Query query = cachedQuery.query;
+    if (shard.queries.remove(query) != cachedQuery) {
+      // the hash of the query changed since it has been put into the cache
+      throw new ConcurrentModificationException("Removal from the cache failed! This " +
+          "is probably due to a query which has been modified after having been put into " +
+          " the cache or a badly implemented clone(). Query class: [" + query.getClass() +
+          "], query: [" + query + "]");
+    }
+    shard.clock.remove(cachedQuery);
+    shard.ramBytesUsed -= QUERY_RAM_BYTES_USED;
+    onQueryEviction(query, QUERY_RAM_BYTES_USED);
+    for (Map.Entry<IndexReader.CacheKey, LeafCache> entry : shard.cache.entrySet()) {
+      final LeafCache leafCache = entry.getValue();
+      final DocIdSet removed = leafCache.cache.remove(query);
+      if (removed != null) {
+        final long ramBytesUsed = HASHTABLE_RAM_BYTES_PER_ENTRY + removed.ramBytesUsed();
+        leafCache.ramBytesUsed -= ramBytesUsed;
+        shard.ramBytesUsed -= ramBytesUsed;
+        onDocIdSetEviction(entry.getKey(), 1, ramBytesUsed);
+      }
+    }
+  }
+
+  private void onReaderClosed(IndexReader.CacheKey key) {
+    // before clearing shards so that puts that acquire a shard lock after
+    // it has been cleared do not add entries back
+    clearedKeys.add(key);
+    clearCoreCacheKey(key);
+    listenedKeys.remove(key);
+  }
+
+  /**
+   * Remove all cache entries for the given core cache key.
+   */
+  public void clearCoreCacheKey(Object coreKey) {
+    for (Shard shard : shards) {
+      shard.lock.lock();
+      try {
+        final LeafCache leafCache = shard.cache.remove(coreKey);
+        if (leafCache != null) {
+          shard.ramBytesUsed -= HASHTABLE_RAM_BYTES_PER_ENTRY + leafCache.ramBytesUsed;
+          final int numEntries = leafCache.cache.size();
+          if (numEntries > 0) {
+            onDocIdSetEviction(coreKey, numEntries, leafCache.ramBytesUsed);
+          } else {
+            assert leafCache.ramBytesUsed == 0;
+          }
+        }
+      } finally {
+        shard.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Remove all cache entries for the given query.
+   */
+  public void clearQuery(Query query) {
+    final Shard shard = shard(query);
+    shard.lock.lock();
+    try {
+      final CachedQuery cachedQuery = shard.queries.get(query);
+      if (cachedQuery != null) {
+        onEviction(shard, cachedQuery);
+      }
+    } finally {
+      shard.lock.unlock();
+    }
+  }
+
+  /**
+   * Clear the content of this cache.
+   */
+  public void clear() {
+    // always acquire locks in the same order
+    for (Shard shard : shards) {
+      shard.lock.lock();
+    }
+    try {
+      for (Shard shard : shards) {
+        shard.queries.clear();
+        shard.clock.clear();
+        shard.cache.clear();
+        shard.ramBytesUsed = 0;
+      }
+      onClear();
+    } finally {
+      for (Shard shard : shards) {
+        shard.lock.unlock();
+      }
+    }
+  }
+
+  // pkg-private for testing
+  void assertConsistent() {
+    for (Shard shard : shards) {
+      shard.lock.lock();
+    }
+    try {
+      if (requiresEviction()) {
+        throw new AssertionError("requires evictions: size=" + size()
+            + ", maxSize=" + maxSize + ", ramBytesUsed=" + ramBytesUsed() + ", maxRamBytesUsed=" + maxRamBytesUsed);
+      }
+      long recomputedCacheSize = 0;
+      for (Shard shard : shards) {
+        long recomputedRamBytesUsed = HASHTABLE_RAM_BYTES_PER_ENTRY * shard.cache.size()
+            + QUERY_RAM_BYTES_USED * shard.queries.size();
+        for (LeafCache leafCache : shard.cache.values()) {
+          for (Query query : leafCache.cache.keySet()) {
+            if (shard.queries.containsKey(query) == false) {
+              throw new AssertionError("One leaf cache contains a query which is not in the top-level cache: " + query);
+            }
+          }
+          recomputedRamBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY * leafCache.cache.size();
+          for (DocIdSet set : leafCache.cache.values()) {
+            recomputedRamBytesUsed += set.ramBytesUsed();
+          }
+          recomputedCacheSize += leafCache.cache.size();
+        }
+        if (recomputedRamBytesUsed != shard.ramBytesUsed) {
+          throw new AssertionError("ramBytesUsed mismatch : " + shard.ramBytesUsed + " != " + recomputedRamBytesUsed);
+        }
+      }
+      if (recomputedCacheSize != getCacheSize()) {
+        throw new AssertionError("cacheSize mismatch : " + getCacheSize() + " != " + recomputedCacheSize);
+      }
+    } finally {
+      for (Shard shard : shards) {
+        shard.lock.unlock();
+      }
+    }
+  }
+
+  // pkg-private for testing
+  List<Query> cachedQueries() {
+    final List<Query> queries = new ArrayList<>();
+    for (Shard shard : shards) {
+      queries.addAll(shard.queries.keySet());
+    }
+    return queries;
+  }
+
+  @Override
+  public Weight doCache(Weight weight, QueryCachingPolicy policy) {
+    while (weight instanceof CachingWrapperWeight) {
+      weight = ((CachingWrapperWeight) weight).in;
+    }
+
+    return new ConcurrentCachingWrapperWeight(weight, policy);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long ramBytesUsed = 0;
+    for (Shard shard : shards) {
+      ramBytesUsed += shard.ramBytesUsed;
+    }
+    return ramBytesUsed;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    final Map<IndexReader.CacheKey, Long> ramBytesUsedPerKey = new HashMap<>();
+    for (Shard shard : shards) {
+      for (Map.Entry<IndexReader.CacheKey, LeafCache> entry : shard.cache.entrySet()) {
+        ramBytesUsedPerKey.merge(entry.getKey(), entry.getValue().ramBytesUsed, Long::sum);
+      }
+    }
+    final List<Accountable> resources = new ArrayList<>();
+    for (Map.Entry<IndexReader.CacheKey, Long> entry : ramBytesUsedPerKey.entrySet()) {
+      resources.add(Accountables.namedAccountable("segment '" + entry.getKey() + "'", entry.getValue()));
+    }
+    return Collections.unmodifiableList(resources);
+  }
+
+  /**
+   * Default cache implementation: uses {@link RoaringDocIdSet} for sets that
+   * have a density &lt; 1% and a {@link BitDocIdSet} over a {@link FixedBitSet}
+   * otherwise.
+   */
+  protected DocIdSet cacheImpl(BulkScorer scorer, int maxDoc) throws IOException {
+    if (scorer.cost() * 100 >= maxDoc) {
+      return LRUQueryCache.cacheIntoBitSet(scorer, maxDoc);
+    } else {
+      return LRUQueryCache.cacheIntoRoaringDocIdSet(scorer, maxDoc);
+    }
+  }
+
+  /**
+   * Return the total number of times that a {@link Query} has been looked up
+   * in this {@link QueryCache}.
+   * @see LRUQueryCache#getTotalCount()
+   */
+  public final long getTotalCount() {
+    return getHitCount() + getMissCount();
+  }
+
+  /**
+   * Over the {@link #getTotalCount() total} number of times that a query has
+   * been looked up, return how many times a cached {@link DocIdSet} has been
+   * found and returned.
+   */
+  public final long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Over the {@link #getTotalCount() total} number of times that a query has
+   * been looked up, return how many times this query was not contained in the
+   * cache.
+   */
+  public final long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Return the total number of {@link DocIdSet}s which are currently stored
+   * in the cache.
+   */
+  public final long getCacheSize() {
+    return cacheSize.sum();
+  }
+
+  /**
+   * Return the total number of cache entries that have been generated and put
+   * in the cache.
+   */
+  public final long getCacheCount() {
+    return cacheCount.sum();
+  }
+
+  /**
+   * Return the number of cache entries that have been removed from the cache
+   * either in order to stay under the maximum configured size/ram usage, or
+   * because a segment has been closed.
+   */
+  public final long getEvictionCount() {
+    return getCacheCount() - getCacheSize();
+  }
+
+  private static class CachedQuery {
+    final Query query;
+    // set on lookups, cleared when the clock hand passes over this query
+    volatile boolean recentlyUsed;
+
+    CachedQuery(Query query) {
+      this.query = query;
+      // so that new queries do not get evicted before they have a chance to be reused
+      this.recentlyUsed = true;
+    }
+  }
+
+  // maps and ramBytesUsed can be read concurrently, but must only be modified
+  // under the lock of the shard
+  private static class Shard {
+    final ReentrantLock lock = new ReentrantLock();
+    final Map<Query, CachedQuery> queries = new ConcurrentHashMap<>();
+    // clock order, only accessed under the lock
+    final Set<CachedQuery> clock = new LinkedHashSet<>();
+    final Map<IndexReader.CacheKey, LeafCache> cache = new ConcurrentHashMap<>();
+    volatile long ramBytesUsed;
+  }
+
+  private static class LeafCache {
+    final Map<Query, DocIdSet> cache = new ConcurrentHashMap<>();
+    volatile long ramBytesUsed;
+  }
+
+  private class ConcurrentCachingWrapperWeight extends CachingWrapperWeight {
+
+    ConcurrentCachingWrapperWeight(Weight in, QueryCachingPolicy policy) {
+      super(in, policy, maxRamBytesUsed, leavesToCache);
+    }
+
+    @Override
+    DocIdSet get(LeafReaderContext context, IndexReader.CacheHelper cacheHelper) {
+      // lookups never block
+      return ConcurrentQueryCache.this.get(in.getQuery(), cacheHelper);
+    }
+
+    @Override
+    void putIfAbsent(LeafReaderContext context, DocIdSet set, IndexReader.CacheHelper cacheHelper) {
+      ConcurrentQueryCache.this.putIfAbsent(in.getQuery(), set, cacheHelper);
+    }
+
+    @Override
+    DocIdSet cache(LeafReaderContext context) throws IOException {
+      final BulkScorer scorer = in.bulkScorer(context);
+      if (scorer == null) {
+        return DocIdSet.EMPTY;
+      } else {
+        return cacheImpl(scorer, context.reader().maxDoc());
+      }
+    }
+
+  }
+}
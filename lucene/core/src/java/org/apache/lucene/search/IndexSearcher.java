@@ -94,6 +94,7 @@ public class IndexSearcher {
 
   // These are only used for multi-threaded search
   private final ExecutorService executor;
+  private final SlicingPolicy slicingPolicy;
 
   // the default Similarity
   private static final Similarity defaultSimilarity = new BM25Similarity();
@@ -167,6 +168,17 @@ public class IndexSearcher {
     this(r.getContext(), executor);
   }
 
+  /**
+   * Runs searches for slices of segments that are computed by the given
+   * {@link SlicingPolicy}, using the provided ExecutorService. See
+   * {@link #IndexSearcher(IndexReader, ExecutorService)} for more information
+   * about how the ExecutorService is used.
+   *
+   * @lucene.experimental */
+  public IndexSearcher(IndexReader r, ExecutorService executor, SlicingPolicy slicingPolicy) {
+    this(r.getContext(), executor, slicingPolicy);
+  }
+
   /**
    * Creates a searcher searching the provided top-level {@link IndexReaderContext}.
    * <p>
@@ -184,9 +196,25 @@ public class IndexSearcher {
    * @lucene.experimental
    */
   public IndexSearcher(IndexReaderContext context, ExecutorService executor) {
+    this(context, executor, null);
+  }
+
+  /**
+   * Creates a searcher searching the provided top-level {@link IndexReaderContext}.
+   * <p>
+   * Given a non-<code>null</code> {@link ExecutorService} this method runs
+   * searches concurrently on slices of segments. If the provided
+   * {@link SlicingPolicy} is not <code>null</code>, it is used to compute
+   * slices, otherwise each segment is searched separately.
+   *
+   * @see #IndexSearcher(IndexReaderContext, ExecutorService)
+   * @lucene.experimental
+   */
+  public IndexSearcher(IndexReaderContext context, ExecutorService executor, SlicingPolicy slicingPolicy) {
     assert context.isTopLevel: "IndexSearcher's ReaderContext must be topLevel for reader" + context.reader();
     reader = context.reader();
     this.executor = executor;
+    this.slicingPolicy = slicingPolicy;
     this.readerContext = context;
     leafContexts = context.leaves();
     this.leafSlices = executor == null ? null : slices(leafContexts);
@@ -251,17 +279,64 @@ public class IndexSearcher {
 
   /**
    * Expert: Creates an array of leaf slices each holding a subset of the given leaves.
-   * Each {@link LeafSlice} is executed in a single thread. By default there
+   * Each {@link LeafSlice} is executed in a single thread. If a {@link SlicingPolicy}
+   * has been configured, it is used to compute slices. Otherwise there
    * will be one {@link LeafSlice} per leaf ({@link org.apache.lucene.index.LeafReaderContext}).
    */
   protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+    if (slicingPolicy != null) {
+      return slicingPolicy.slices(leaves);
+    }
     LeafSlice[] slices = new LeafSlice[leaves.size()];
     for (int i = 0; i < slices.length; i++) {
       slices[i] = new LeafSlice(leaves.get(i));
     }
     return slices;
   }
+
+  /**
+   * Expert: Creates an array of leaf slices that can be returned from
+   * {@link #slices(List)} in order to parallelize search within large leaves.
+   * Leaves that have at most {@code maxDocsPerPartition} documents get their
+   * own slice, while larger leaves are split into contiguous doc-ID ranges of
+   * roughly equal size, each range being searched in its own thread. This
+   * helps make use of the {@link ExecutorService} on indices that have few
+   * large segments, such as force-merged read-only indices.
+   * <p><b>NOTE</b>: Collectors that are used with such slices may be asked
+   * for a {@link LeafCollector} on the same leaf concurrently from different
+   * threads, each time with a different {@link Collector} instance.
+   * @lucene.experimental
+   */
+  public static LeafSlice[] partitionedSlices(List<LeafReaderContext> leaves, int maxDocsPerPartition) {
+    if (maxDocsPerPartition <= 0) {
+      throw new IllegalArgumentException("maxDocsPerPartition must be > 0, got " + maxDocsPerPartition);
+    }
+    final List<LeafSlice> slices = new ArrayList<>();
+    for (LeafReaderContext leaf : leaves) {
+      final int maxDoc = leaf.reader().maxDoc();
+      if (maxDoc <= maxDocsPerPartition) {
+        slices.add(new LeafSlice(leaf));
+      } else {
+        final int numPartitions = (int) ((maxDoc + (long) maxDocsPerPartition - 1) / maxDocsPerPartition);
+        int minDoc = 0;
+        for (int i = 1; i <= numPartitions; ++i) {
+          // spread documents evenly across partitions
+          final int upTo = (int) ((long) maxDoc * i / numPartitions);
+          slices.add(new LeafSlice(leaf, minDoc, upTo));
+          minDoc = upTo;
+        }
+      }
+    }
+    return slices.toArray(new LeafSlice[0]);
+  }
   
+  /** Return the {@link SlicingPolicy} of this searcher, or {@code null} if
+   *  segments are searched separately.
+   *  @lucene.experimental */
+  public SlicingPolicy getSlicingPolicy() {
+    return slicingPolicy;
+  }
+
   /** Return the {@link IndexReader} this searches. */
   public IndexReader getIndexReader() {
     return reader;
@@ -556,13 +631,21 @@ public class IndexSearcher {
 
       final Weight weight = createNormalizedWeight(query, scoreMode);
       final List<Future<C>> topDocsFutures = new ArrayList<>(leafSlices.length);
+      final long[] tookNanos = new long[leafSlices.length];
       for (int i = 0; i < leafSlices.length; ++i) {
-        final LeafReaderContext[] leaves = leafSlices[i].leaves;
+        final LeafSlice slice = leafSlices[i];
         final C collector = collectors.get(i);
+        final int sliceIndex = i;
         topDocsFutures.add(executor.submit(new Callable<C>() {
           @Override
           public C call() throws Exception {
-            search(Arrays.asList(leaves), weight, collector);
+            final long start = System.nanoTime();
+            if (slice.isPartition()) {
+              search(slice.leaves[0], slice.minDoc, slice.maxDoc, weight, collector);
+            } else {
+              search(Arrays.asList(slice.leaves), weight, collector);
+            }
+            tookNanos[sliceIndex] = System.nanoTime() - start;
             return collector;
           }
         }));
@@ -579,6 +662,11 @@ public class IndexSearcher {
         }
       }
 
+      if (slicingPolicy != null) {
+        // Future.get() makes the writes to tookNanos visible
+        slicingPolicy.onSearch(leafSlices, tookNanos);
+      }
+
       return collectorManager.reduce(collectors);
     }
   }
@@ -609,22 +697,45 @@ public class IndexSearcher {
     // threaded...?  the Collector could be sync'd?
     // always use single thread:
     for (LeafReaderContext ctx : leaves) { // search each subreader
-      final LeafCollector leafCollector;
+      search(ctx, 0, DocIdSetIterator.NO_MORE_DOCS, weight, collector);
+    }
+  }
+
+  /**
+   * Lower-level search API.
+   *
+   * <p>
+   * Search documents of the given leaf whose id is in {@code [minDoc, maxDoc)}.
+   * {@link LeafCollector#collect(int)} is called for every matching document.
+   *
+   * @param leaf
+   *          the leaf to execute the search on
+   * @param minDoc
+   *          the first doc ID (inclusive) of the range to search
+   * @param maxDoc
+   *          the last doc ID (exclusive) of the range to search, or
+   *          {@link DocIdSetIterator#NO_MORE_DOCS} to search until the end of the leaf
+   * @param weight
+   *          to match documents
+   * @param collector
+   *          to receive hits
+   * @lucene.experimental
+   */
+  protected void search(LeafReaderContext leaf, int minDoc, int maxDoc, Weight weight, Collector collector)
+      throws IOException {
+    final LeafCollector leafCollector;
+    try {
+      leafCollector = collector.getLeafCollector(leaf);
+    } catch (CollectionTerminatedException e) {
+      // there is no doc of interest in this reader context
+      return;
+    }
+    BulkScorer scorer = weight.bulkScorer(leaf);
+    if (scorer != null) {
       try {
-        leafCollector = collector.getLeafCollector(ctx);
+        scorer.score(leafCollector, leaf.reader().getLiveDocs(), minDoc, maxDoc);
       } catch (CollectionTerminatedException e) {
-        // there is no doc of interest in this reader context
-        // continue with the following leaf
-        continue;
-      }
-      BulkScorer scorer = weight.bulkScorer(ctx);
-      if (scorer != null) {
-        try {
-          scorer.score(leafCollector, ctx.reader().getLiveDocs());
-        } catch (CollectionTerminatedException e) {
-          // collection was terminated prematurely
-          // continue with the following leaf
-        }
+        // collection was terminated prematurely
       }
     }
   }
@@ -714,15 +825,35 @@ public class IndexSearcher {
 
   /**
    * A class holding a subset of the {@link IndexSearcher}s leaf contexts to be
-   * executed within a single thread.
+   * executed within a single thread. A slice either holds one or more entire
+   * leaves, or a range of doc IDs of a single leaf.
    * 
    * @lucene.experimental
    */
   public static class LeafSlice {
     final LeafReaderContext[] leaves;
+    final int minDoc, maxDoc;
     
     public LeafSlice(LeafReaderContext... leaves) {
       this.leaves = leaves;
+      this.minDoc = 0;
+      this.maxDoc = DocIdSetIterator.NO_MORE_DOCS;
+    }
+
+    /** Create a slice that only holds documents of {@code leaf} whose id is
+     *  in {@code [minDoc, maxDoc)}. */
+    public LeafSlice(LeafReaderContext leaf, int minDoc, int maxDoc) {
+      if (minDoc < 0 || minDoc >= maxDoc) {
+        throw new IllegalArgumentException("Invalid doc ID range: [" + minDoc + ", " + maxDoc + ")");
+      }
+      this.leaves = new LeafReaderContext[] { leaf };
+      this.minDoc = minDoc;
+      this.maxDoc = maxDoc;
+    }
+
+    /** Return true if this slice only holds a range of doc IDs of a single leaf. */
+    boolean isPartition() {
+      return minDoc != 0 || maxDoc != DocIdSetIterator.NO_MORE_DOCS;
     }
   }
 
@@ -28,7 +28,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
@@ -36,7 +35,6 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.ReaderUtil;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
@@ -464,7 +462,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
       weight = ((CachingWrapperWeight) weight).in;
     }
 
-    return new CachingWrapperWeight(weight, policy);
+    return new LRUCachingWrapperWeight(weight, policy);
   }
 
   @Override
@@ -497,7 +495,40 @@ public class LRUQueryCache implements QueryCache, Accountable {
     }
   }
 
-  private static DocIdSet cacheIntoBitSet(BulkScorer scorer, int maxDoc) throws IOException {
+  /**
+   * Expert: compute the {@link DocIdSet} to cache for the given {@link Weight}
+   * on the given leaf. The default implementation returns
+   * {@link DocIdSet#EMPTY} if the weight has no matches on this leaf, and
+   * otherwise calls {@link #cacheImpl(BulkScorer, int)}. This method may be
+   * overridden in order to load cache entries from another source or to
+   * decide how to store them based on the leaf.
+   * @lucene.experimental
+   */
+  protected DocIdSet cacheImpl(Weight weight, LeafReaderContext context) throws IOException {
+    final BulkScorer scorer = weight.bulkScorer(context);
+    if (scorer == null) {
+      return DocIdSet.EMPTY;
+    } else {
+      return cacheImpl(scorer, context.reader().maxDoc());
+    }
+  }
+
+  /**
+   * Expert: return whether entries of the given query on the given leaf are
+   * small enough to be cached. The default implementation only caches leaves
+   * of top-level readers whose dense bit sets, the worst case, take less than
+   * a fifth of {@code maxRamBytesUsed}, so that a single entry cannot trash
+   * the cache. This method may be overridden together with
+   * {@link #cacheImpl(Weight, LeafReaderContext)} when entries are not stored
+   * on the heap.
+   * @lucene.experimental
+   */
+  protected boolean cacheEntryHasReasonableWorstCaseSize(Query query, LeafReaderContext context) {
+    return CachingWrapperWeight.cacheEntryHasReasonableWorstCaseSize(
+        ReaderUtil.getTopLevelContext(context).reader().maxDoc(), maxRamBytesUsed);
+  }
+
+  static DocIdSet cacheIntoBitSet(BulkScorer scorer, int maxDoc) throws IOException {
     final FixedBitSet bitSet = new FixedBitSet(maxDoc);
     long cost[] = new long[1];
     scorer.score(new LeafCollector() {
@@ -515,7 +546,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
     return new BitDocIdSet(bitSet, cost[0]);
   }
 
-  private static DocIdSet cacheIntoRoaringDocIdSet(BulkScorer scorer, int maxDoc) throws IOException {
+  static DocIdSet cacheIntoRoaringDocIdSet(BulkScorer scorer, int maxDoc) throws IOException {
     RoaringDocIdSet.Builder builder = new RoaringDocIdSet.Builder(maxDoc);
     scorer.score(new LeafCollector() {
 
@@ -658,186 +689,38 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
   }
 
-  private class CachingWrapperWeight extends ConstantScoreWeight {
-
-    private final Weight in;
-    private final QueryCachingPolicy policy;
-    // we use an AtomicBoolean because Weight.scorer may be called from multiple
-    // threads when IndexSearcher is created with threads
-    private final AtomicBoolean used;
-
-    CachingWrapperWeight(Weight in, QueryCachingPolicy policy) {
-      super(in.getQuery(), 1f);
-      this.in = in;
-      this.policy = policy;
-      used = new AtomicBoolean(false);
-    }
-
-    @Override
-    public void extractTerms(Set<Term> terms) {
-      in.extractTerms(terms);
-    }
-
-    private boolean cacheEntryHasReasonableWorstCaseSize(int maxDoc) {
-      // The worst-case (dense) is a bit set which needs one bit per document
-      final long worstCaseRamUsage = maxDoc / 8;
-      final long totalRamAvailable = maxRamBytesUsed;
-      // Imagine the worst-case that a cache entry is large than the size of
-      // the cache: not only will this entry be trashed immediately but it
-      // will also evict all current entries from the cache. For this reason
-      // we only cache on an IndexReader if we have available room for
-      // 5 different filters on this reader to avoid excessive trashing
-      return worstCaseRamUsage * 5 < totalRamAvailable;
-    }
+  private class LRUCachingWrapperWeight extends CachingWrapperWeight {
 
-    private DocIdSet cache(LeafReaderContext context) throws IOException {
-      final BulkScorer scorer = in.bulkScorer(context);
-      if (scorer == null) {
-        return DocIdSet.EMPTY;
-      } else {
-        return cacheImpl(scorer, context.reader().maxDoc());
-      }
-    }
-
-    /** Check whether this segment is eligible for caching, regardless of the query. */
-    private boolean shouldCache(LeafReaderContext context) throws IOException {
-      return cacheEntryHasReasonableWorstCaseSize(ReaderUtil.getTopLevelContext(context).reader().maxDoc())
-          && leavesToCache.test(context);
+    LRUCachingWrapperWeight(Weight in, QueryCachingPolicy policy) {
+      super(in, policy, maxRamBytesUsed, leavesToCache);
     }
 
     @Override
-    public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
-      if (used.compareAndSet(false, true)) {
-        policy.onUse(getQuery());
-      }
-
-      if (in.isCacheable(context) == false) {
-        // this segment is not suitable for caching
-        return in.scorerSupplier(context);
-      }
-
-      // Short-circuit: Check whether this segment is eligible for caching
-      // before we take a lock because of #get
-      if (shouldCache(context) == false) {
-        return in.scorerSupplier(context);
-      }
-
+    DocIdSet get(LeafReaderContext context, IndexReader.CacheHelper cacheHelper) {
       // If the lock is already busy, prefer using the uncached version than waiting
       if (lock.tryLock() == false) {
-        return in.scorerSupplier(context);
+        return SKIP_CACHE;
       }
-
-      final IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
-      if (cacheHelper == null) {
-        // this reader has no cache helper
-        return in.scorerSupplier(context);
-      }
-      DocIdSet docIdSet;
       try {
-        docIdSet = get(in.getQuery(), context, cacheHelper);
+        return LRUQueryCache.this.get(in.getQuery(), context, cacheHelper);
       } finally {
         lock.unlock();
       }
-
-      if (docIdSet == null) {
-        if (policy.shouldCache(in.getQuery())) {
-          docIdSet = cache(context);
-          putIfAbsent(in.getQuery(), context, docIdSet, cacheHelper);
-        } else {
-          return in.scorerSupplier(context);
-        }
-      }
-
-      assert docIdSet != null;
-      if (docIdSet == DocIdSet.EMPTY) {
-        return null;
-      }
-      final DocIdSetIterator disi = docIdSet.iterator();
-      if (disi == null) {
-        return null;
-      }
-
-      return new ScorerSupplier() {
-        @Override
-        public Scorer get(long LeadCost) throws IOException {
-          return new ConstantScoreScorer(CachingWrapperWeight.this, 0f, disi);
-        }
-        
-        @Override
-        public long cost() {
-          return disi.cost();
-        }
-      };
-
     }
 
     @Override
-    public Scorer scorer(LeafReaderContext context) throws IOException {
-      ScorerSupplier scorerSupplier = scorerSupplier(context);
-      if (scorerSupplier == null) {
-        return null;
-      }
-      return scorerSupplier.get(Long.MAX_VALUE);
+    void putIfAbsent(LeafReaderContext context, DocIdSet set, IndexReader.CacheHelper cacheHelper) {
+      LRUQueryCache.this.putIfAbsent(in.getQuery(), context, set, cacheHelper);
     }
 
     @Override
-    public boolean isCacheable(LeafReaderContext ctx) {
-      return in.isCacheable(ctx);
+    DocIdSet cache(LeafReaderContext context) throws IOException {
+      return cacheImpl(in, context);
     }
 
     @Override
-    public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
-      if (used.compareAndSet(false, true)) {
-        policy.onUse(getQuery());
-      }
-
-      if (in.isCacheable(context) == false) {
-        // this segment is not suitable for caching
-        return in.bulkScorer(context);
-      }
-
-      // Short-circuit: Check whether this segment is eligible for caching
-      // before we take a lock because of #get
-      if (shouldCache(context) == false) {
-        return in.bulkScorer(context);
-      }
-
-      // If the lock is already busy, prefer using the uncached version than waiting
-      if (lock.tryLock() == false) {
-        return in.bulkScorer(context);
-      }
-
-      final IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
-      if (cacheHelper == null) {
-        // this reader has no cacheHelper
-        return in.bulkScorer(context);
-      }
-      DocIdSet docIdSet;
-      try {
-        docIdSet = get(in.getQuery(), context, cacheHelper);
-      } finally {
-        lock.unlock();
-      }
-
-      if (docIdSet == null) {
-        if (policy.shouldCache(in.getQuery())) {
-          docIdSet = cache(context);
-          putIfAbsent(in.getQuery(), context, docIdSet, cacheHelper);
-        } else {
-          return in.bulkScorer(context);
-        }
-      }
-
-      assert docIdSet != null;
-      if (docIdSet == DocIdSet.EMPTY) {
-        return null;
-      }
-      final DocIdSetIterator disi = docIdSet.iterator();
-      if (disi == null) {
-        return null;
-      }
-
-      return new DefaultBulkScorer(new ConstantScoreScorer(this, 0f, disi));
+    boolean cacheEntryHasReasonableWorstCaseSize(LeafReaderContext context) {
+      return LRUQueryCache.this.cacheEntryHasReasonableWorstCaseSize(in.getQuery(), context);
     }
 
   }
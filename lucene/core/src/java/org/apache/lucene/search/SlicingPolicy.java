@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
+
+/**
+ * A policy defining how the leaves of an {@link IndexSearcher} should be
+ * grouped into {@link LeafSlice slices} that are searched concurrently by the
+ * searcher's {@link java.util.concurrent.ExecutorService}.
+ * <p>
+ * Slices are computed once per top-level {@link IndexReader} and cached until
+ * the reader is closed, so that creating a new {@link IndexSearcher} on a
+ * reader that has already been searched is cheap.
+ * <p>
+ * Implementations of this class must be thread-safe.
+ *
+ * @see IndexSearcher#IndexSearcher(IndexReader, java.util.concurrent.ExecutorService, SlicingPolicy)
+ * @see BalancedSlicingPolicy
+ * @lucene.experimental
+ */
+public abstract class SlicingPolicy {
+
+  private final Map<IndexReader.CacheKey, LeafSlice[]> cache = new HashMap<>();
+
+  /** Sole constructor, typically called from sub-classes. */
+  protected SlicingPolicy() {}
+
+  /**
+   * Return the slices to use for the given leaves, which must be all leaves
+   * of a top-level reader. This returns cached slices if this reader has
+   * already been sliced by this policy and
+   * {@link #computeSlices(List) computes} them otherwise.
+   */
+  public final LeafSlice[] slices(List<LeafReaderContext> leaves) {
+    if (leaves.isEmpty()) {
+      return computeSlices(leaves);
+    }
+    final IndexReaderContext topLevelContext = ReaderUtil.getTopLevelContext(leaves.get(0));
+    final IndexReader.CacheHelper cacheHelper = topLevelContext.reader().getReaderCacheHelper();
+    if (cacheHelper == null) {
+      // this reader has no cache key, don't cache
+      return computeSlices(leaves);
+    }
+    final IndexReader.CacheKey key = cacheHelper.getKey();
+    synchronized (cache) {
+      LeafSlice[] slices = cache.get(key);
+      if (slices == null) {
+        slices = computeSlices(leaves);
+        cache.put(key, slices);
+        cacheHelper.addClosedListener(this::clearCacheKey);
+      }
+      return slices;
+    }
+  }
+
+  private void clearCacheKey(IndexReader.CacheKey key) {
+    synchronized (cache) {
+      cache.remove(key);
+    }
+  }
+
+  /** Return the number of readers whose slices are currently cached. */
+  int cacheSize() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Compute the slices for the given leaves. Every leaf must be covered
+   * exactly once, either by a slice that holds the entire leaf or by
+   * slices holding doc-ID ranges that together cover the leaf.
+   */
+  protected abstract LeafSlice[] computeSlices(List<LeafReaderContext> leaves);
+
+  /**
+   * Callback that is called after every concurrent search with the wall time
+   * that was spent searching each slice, in nanoseconds. This is typically
+   * useful to track how well balanced slices are. The default implementation
+   * does nothing.
+   * @param slices the searched slices
+   * @param tookNanos the time spent searching each slice, in the same order as {@code slices}
+   */
+  public void onSearch(LeafSlice[] slices, long[] tookNanos) {}
+
+}
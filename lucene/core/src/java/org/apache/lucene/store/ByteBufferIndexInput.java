@@ -44,13 +44,22 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
   protected ByteBuffer curBuf; // redundant for speed: buffers[curBufIndex]
 
   protected boolean isClone = false;
+
+  // handles prefetch hints if non-null, shared with clones and slices:
+  protected FileChannelPrefetcher prefetcher;
+  // where this input starts in the file, to prefetch:
+  protected long fileOffset;
   
-  public static ByteBufferIndexInput newInstance(String resourceDescription, ByteBuffer[] buffers, long length, int chunkSizePower, ByteBufferGuard guard) {
+  public static ByteBufferIndexInput newInstance(String resourceDescription, ByteBuffer[] buffers, long length, int chunkSizePower, ByteBufferGuard guard,
+      FileChannelPrefetcher prefetcher) {
+    final ByteBufferIndexInput in;
     if (buffers.length == 1) {
-      return new SingleBufferImpl(resourceDescription, buffers[0], length, chunkSizePower, guard);
+      in = new SingleBufferImpl(resourceDescription, buffers[0], length, chunkSizePower, guard);
     } else {
-      return new MultiBufferImpl(resourceDescription, buffers, 0, length, chunkSizePower, guard);
+      in = new MultiBufferImpl(resourceDescription, buffers, 0, length, chunkSizePower, guard);
     }
+    in.prefetcher = prefetcher;
+    return in;
   }
   
   ByteBufferIndexInput(String resourceDescription, ByteBuffer[] buffers, long length, int chunkSizePower, ByteBufferGuard guard) {
@@ -247,6 +256,8 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
   @Override
   public final ByteBufferIndexInput clone() {
     final ByteBufferIndexInput clone = buildSlice((String) null, 0L, this.length);
+    clone.prefetcher = prefetcher;
+    clone.fileOffset = fileOffset;
     try {
       clone.seek(getFilePointer());
     } catch(IOException ioe) {
@@ -265,7 +276,23 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
       throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length + ": "  + this);
     }
     
-    return buildSlice(sliceDescription, offset, length);
+    final ByteBufferIndexInput slice = buildSlice(sliceDescription, offset, length);
+    slice.prefetcher = prefetcher;
+    slice.fileOffset = fileOffset + offset;
+    return slice;
+  }
+
+  @Override
+  public final void prefetch(long offset, long length) throws IOException {
+    if (buffers == null) {
+      throw new AlreadyClosedException("Already closed: " + this);
+    }
+    if (offset < 0 || length < 0 || offset+length > this.length) {
+      throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length + ": "  + this);
+    }
+    if (prefetcher != null) {
+      prefetcher.prefetch(fileOffset + offset, length);
+    }
   }
 
   /** Builds the actual sliced IndexInput (may apply extra offset in subclasses). **/
@@ -327,8 +354,14 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
       
       if (isClone) return;
       
-      // tell the guard to invalidate and later unmap the bytebuffers (if supported):
-      guard.invalidateAndUnmap(bufs);
+      try {
+        // tell the guard to invalidate and later unmap the bytebuffers (if supported):
+        guard.invalidateAndUnmap(bufs);
+      } finally {
+        if (prefetcher != null) {
+          prefetcher.close();
+        }
+      }
     } finally {
       unsetBuffers();
     }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Implements {@link IndexInput#prefetch} for files: prefetched ranges are read
+ * in the background with positional reads, so that the operating system has
+ * them in its page cache by the time they are actually read. Java has no way
+ * to advise the OS about future reads like {@code madvise} or
+ * {@code posix_fadvise}, reading is what comes closest.
+ * <p>
+ * This reads from its own {@link FileChannel}, so that interrupting a thread
+ * of the executor, which closes the channel it was reading from, can only
+ * disable prefetching and never breaks the index input.
+ * <p>
+ * Hints are queued and served by at most one task at a time per file, which
+ * reuses its read buffer. A hint that starts close to the end of the previous
+ * pending hint is merged into it, and hints are dropped when too many are
+ * pending.
+ */
+final class FileChannelPrefetcher implements Closeable {
+
+  // size of the reads of prefetch tasks
+  private static final int BUFFER_SIZE = 16384;
+
+  // maximum number of pending ranges, further hints are ignored
+  private static final int MAX_PENDING_RANGES = 256;
+
+  private final Executor executor;
+  private final FileChannel channel;
+  private final Runnable drainTask = this::drain;
+
+  // pending ranges as (start, end) pairs, guarded by this
+  private long[] pending = new long[16];
+  private int numPending;
+  // whether a task is scheduled to read pending ranges, guarded by this
+  private boolean scheduled;
+
+  // only used by the task that reads pending ranges
+  private ByteBuffer buffer;
+  private long[] ranges = new long[0];
+
+  FileChannelPrefetcher(Executor executor, Path path) throws IOException {
+    this.executor = executor;
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+  }
+
+  /** Asynchronously reads {@code length} bytes of the file starting at {@code position}. */
+  void prefetch(long position, long length) {
+    if (length <= 0 || channel.isOpen() == false) {
+      return;
+    }
+    final long end = position + length;
+    synchronized (this) {
+      if (numPending > 0
+          && position >= pending[numPending - 2]
+          && position <= pending[numPending - 1] + BUFFER_SIZE) {
+        // close to the previous range, extend it
+        pending[numPending - 1] = Math.max(pending[numPending - 1], end);
+      } else if (numPending < 2 * MAX_PENDING_RANGES) {
+        if (numPending == pending.length) {
+          pending = Arrays.copyOf(pending, 2 * pending.length);
+        }
+        pending[numPending++] = position;
+        pending[numPending++] = end;
+      } else {
+        // prefetching can't keep up, this is only a hint
+        return;
+      }
+      if (scheduled) {
+        return;
+      }
+      scheduled = true;
+    }
+    try {
+      executor.execute(drainTask);
+    } catch (RejectedExecutionException e) {
+      // this is only a hint, e.g. the executor is shutting down
+      synchronized (this) {
+        numPending = 0;
+        scheduled = false;
+      }
+    }
+  }
+
+  private void drain() {
+    if (buffer == null) {
+      buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+    while (true) {
+      final int numRanges;
+      synchronized (this) {
+        if (numPending == 0 || channel.isOpen() == false) {
+          numPending = 0;
+          scheduled = false;
+          return;
+        }
+        if (ranges.length < numPending) {
+          ranges = new long[pending.length];
+        }
+        System.arraycopy(pending, 0, ranges, 0, numPending);
+        numRanges = numPending;
+        numPending = 0;
+      }
+      for (int i = 0; i < numRanges; i += 2) {
+        read(ranges[i], ranges[i + 1]);
+      }
+    }
+  }
+
+  private void read(long position, long end) {
+    try {
+      for (long pos = position; pos < end; ) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), end - pos));
+        final int read = channel.read(buffer, pos);
+        if (read < 0) {
+          break;
+        }
+        pos += read;
+      }
+    } catch (IOException e) {
+      // this is only a hint, e.g. the file was closed in the meantime
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
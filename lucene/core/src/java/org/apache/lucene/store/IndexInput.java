@@ -102,6 +102,18 @@ public abstract class IndexInput extends DataInput implements Cloneable,Closeabl
    */
   public abstract IndexInput slice(String sliceDescription, long offset, long length) throws IOException;
 
+  /**
+   * Optional method: gives a hint that {@code length} bytes starting at
+   * {@code offset} in this index input will be read in the near future, so that
+   * they may be fetched from storage in the background in the meantime. This
+   * doesn't move the file pointer.
+   * <p>
+   * The default implementation does nothing.
+   * @lucene.experimental
+   */
+  public void prefetch(long offset, long length) throws IOException {
+  }
+
   /** Subclasses call this to get the String for resourceDescription of a slice of this {@code IndexInput}. */
   protected String getFullSliceDescription(String sliceDescription) {
     if (sliceDescription == null) {
@@ -32,6 +32,7 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
@@ -39,6 +40,7 @@ import java.lang.reflect.Method;
 
 import org.apache.lucene.store.ByteBufferGuard.BufferCleaner;
 import org.apache.lucene.util.Constants;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.SuppressForbidden;
 
 /** File-based {@link Directory} implementation that uses
@@ -93,6 +95,7 @@ import org.apache.lucene.util.SuppressForbidden;
 public class MMapDirectory extends FSDirectory {
   private boolean useUnmapHack = UNMAP_SUPPORTED;
   private boolean preload;
+  private Executor prefetchExecutor;
 
   /** 
    * Default max chunk size.
@@ -221,6 +224,50 @@ public class MMapDirectory extends FSDirectory {
     return preload;
   }
   
+  /**
+   * Sets the executor that reads the ranges passed to {@link IndexInput#prefetch}
+   * in the background, so that the operating system loads them into the page
+   * cache before they are actually read, or {@code null} (the default) to ignore
+   * these hints. When set, each open file uses another file descriptor.
+   * @lucene.experimental
+   */
+  public void setPrefetchExecutor(Executor prefetchExecutor) {
+    this.prefetchExecutor = prefetchExecutor;
+  }
+
+  /**
+   * Returns the executor that prefetches data, or {@code null} if prefetching is disabled.
+   * @see #setPrefetchExecutor
+   */
+  public Executor getPrefetchExecutor() {
+    return prefetchExecutor;
+  }
+
+  /**
+   * Returns the advice to pass to {@link #madvise} for the buffers of a file
+   * that is opened with the given context. The default implementation returns
+   * {@link ReadAdvice#NORMAL} for all files, which keeps the operating system's
+   * read-ahead: the context doesn't tell how a file is going to be read, e.g.
+   * merges mostly reuse the readers that were opened for searching. Override it
+   * to ask for {@link ReadAdvice#RANDOM} or {@link ReadAdvice#SEQUENTIAL} on
+   * files whose access pattern is known.
+   * @lucene.experimental
+   */
+  protected ReadAdvice getReadAdvice(String name, IOContext context) {
+    return ReadAdvice.NORMAL;
+  }
+
+  /**
+   * Gives the operating system advice about how a mapped buffer is going to
+   * be read. Java has no API for this, so the default implementation does
+   * nothing; {@code NativeMMapDirectory} from the Lucene {@code misc} module
+   * implements it with {@code madvise}.
+   * @see #getReadAdvice
+   * @lucene.experimental
+   */
+  protected void madvise(ByteBuffer buffer, ReadAdvice advice) throws IOException {
+  }
+
   /**
    * Returns the current mmap chunk size.
    * @see #MMapDirectory(Path, LockFactory, int)
@@ -238,9 +285,38 @@ public class MMapDirectory extends FSDirectory {
     try (FileChannel c = FileChannel.open(path, StandardOpenOption.READ)) {
       final String resourceDescription = "MMapIndexInput(path=\"" + path.toString() + "\")";
       final boolean useUnmap = getUseUnmap();
-      return ByteBufferIndexInput.newInstance(resourceDescription,
-          map(resourceDescription, c, 0, c.size()), 
-          c.size(), chunkSizePower, new ByteBufferGuard(resourceDescription, useUnmap ? CLEANER : null));
+      final Executor prefetchExecutor = this.prefetchExecutor;
+      final FileChannelPrefetcher prefetcher = prefetchExecutor == null ? null : new FileChannelPrefetcher(prefetchExecutor, path);
+      ByteBuffer[] buffers = null;
+      boolean success = false;
+      try {
+        buffers = map(resourceDescription, c, 0, c.size());
+        final ReadAdvice advice = getReadAdvice(name, context);
+        for (ByteBuffer buffer : buffers) {
+          madvise(buffer, advice);
+        }
+        final IndexInput in = ByteBufferIndexInput.newInstance(resourceDescription, buffers,
+            c.size(), chunkSizePower, new ByteBufferGuard(resourceDescription, useUnmap ? CLEANER : null), prefetcher);
+        success = true;
+        return in;
+      } finally {
+        if (success == false) {
+          IOUtils.closeWhileHandlingException(prefetcher);
+          if (buffers != null && useUnmap) {
+            unmapWhileHandlingException(resourceDescription, buffers);
+          }
+        }
+      }
+    }
+  }
+
+  private static void unmapWhileHandlingException(String resourceDescription, ByteBuffer[] buffers) {
+    for (ByteBuffer buffer : buffers) {
+      try {
+        CLEANER.freeBuffer(resourceDescription, buffer);
+      } catch (IOException | RuntimeException e) {
+        // ignore, we are already handling an exception
+      }
     }
   }
 
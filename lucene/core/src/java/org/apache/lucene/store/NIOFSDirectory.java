@@ -23,8 +23,11 @@ import java.nio.channels.ClosedChannelException; // javadoc @link
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future; // javadoc
 
+import org.apache.lucene.util.IOUtils;
+
 /**
  * An {@link FSDirectory} implementation that uses java.nio's FileChannel's
  * positional read, which allows multiple threads to read from the same file
@@ -52,6 +55,8 @@ import java.util.concurrent.Future; // javadoc
  */
 public class NIOFSDirectory extends FSDirectory {
 
+  private Executor prefetchExecutor;
+
   /** Create a new NIOFSDirectory for the named location.
    *  The directory is created at the named location if it does not yet exist.
    * 
@@ -73,13 +78,43 @@ public class NIOFSDirectory extends FSDirectory {
     this(path, FSLockFactory.getDefault());
   }
 
+  /**
+   * Sets the executor that reads the ranges passed to {@link IndexInput#prefetch}
+   * in the background, so that the operating system loads them into the page
+   * cache before they are actually read, or {@code null} (the default) to ignore
+   * these hints. When set, each open file uses another file descriptor.
+   * @lucene.experimental
+   */
+  public void setPrefetchExecutor(Executor prefetchExecutor) {
+    this.prefetchExecutor = prefetchExecutor;
+  }
+
+  /**
+   * Returns the executor that prefetches data, or {@code null} if prefetching is disabled.
+   * @see #setPrefetchExecutor
+   */
+  public Executor getPrefetchExecutor() {
+    return prefetchExecutor;
+  }
+
   @Override
   public IndexInput openInput(String name, IOContext context) throws IOException {
     ensureOpen();
     ensureCanRead(name);
     Path path = getDirectory().resolve(name);
     FileChannel fc = FileChannel.open(path, StandardOpenOption.READ);
-    return new NIOFSIndexInput("NIOFSIndexInput(path=\"" + path + "\")", fc, context);
+    boolean success = false;
+    try {
+      final Executor prefetchExecutor = this.prefetchExecutor;
+      final FileChannelPrefetcher prefetcher = prefetchExecutor == null ? null : new FileChannelPrefetcher(prefetchExecutor, path);
+      final NIOFSIndexInput in = new NIOFSIndexInput("NIOFSIndexInput(path=\"" + path + "\")", fc, prefetcher, context);
+      success = true;
+      return in;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(fc);
+      }
+    }
   }
   
   /**
@@ -93,6 +128,8 @@ public class NIOFSDirectory extends FSDirectory {
     
     /** the file channel we will read from */
     protected final FileChannel channel;
+    /** handles prefetch hints if non-null */
+    protected final FileChannelPrefetcher prefetcher;
     /** is this instance a clone and hence does not own the file to close it */
     boolean isClone = false;
     /** start offset: non-zero in the slice case */
@@ -102,16 +139,18 @@ public class NIOFSDirectory extends FSDirectory {
     
     private ByteBuffer byteBuf; // wraps the buffer for NIO
 
-    public NIOFSIndexInput(String resourceDesc, FileChannel fc, IOContext context) throws IOException {
+    public NIOFSIndexInput(String resourceDesc, FileChannel fc, FileChannelPrefetcher prefetcher, IOContext context) throws IOException {
       super(resourceDesc, context);
       this.channel = fc; 
+      this.prefetcher = prefetcher;
       this.off = 0L;
       this.end = fc.size();
     }
     
-    public NIOFSIndexInput(String resourceDesc, FileChannel fc, long off, long length, int bufferSize) {
+    public NIOFSIndexInput(String resourceDesc, FileChannel fc, FileChannelPrefetcher prefetcher, long off, long length, int bufferSize) {
       super(resourceDesc, bufferSize);
       this.channel = fc;
+      this.prefetcher = prefetcher;
       this.off = off;
       this.end = off + length;
       this.isClone = true;
@@ -120,7 +159,7 @@ public class NIOFSDirectory extends FSDirectory {
     @Override
     public void close() throws IOException {
       if (!isClone) {
-        channel.close();
+        IOUtils.close(channel, prefetcher);
       }
     }
     
@@ -136,7 +175,17 @@ public class NIOFSDirectory extends FSDirectory {
       if (offset < 0 || length < 0 || offset + length > this.length()) {
         throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length() + ": "  + this);
       }
-      return new NIOFSIndexInput(getFullSliceDescription(sliceDescription), channel, off + offset, length, getBufferSize());
+      return new NIOFSIndexInput(getFullSliceDescription(sliceDescription), channel, prefetcher, off + offset, length, getBufferSize());
+    }
+
+    @Override
+    public void prefetch(long offset, long length) throws IOException {
+      if (offset < 0 || length < 0 || offset + length > this.length()) {
+        throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length() + ": "  + this);
+      }
+      if (prefetcher != null) {
+        prefetcher.prefetch(off + offset, length);
+      }
     }
 
     @Override
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+
+/**
+ * Advice about how a file is going to be read, which directories may pass to
+ * the operating system to tune read-ahead and caching of the file's pages.
+ * @see MMapDirectory#getReadAdvice
+ * @lucene.experimental
+ */
+public enum ReadAdvice {
+  /** No particular access pattern, the operating system's default behavior is used. */
+  NORMAL,
+  /**
+   * The file is read sequentially, once. Pages may be read ahead aggressively and
+   * dropped soon after they have been read.
+   */
+  SEQUENTIAL,
+  /** The file is read at random locations, read-ahead is not useful. */
+  RANDOM
+}
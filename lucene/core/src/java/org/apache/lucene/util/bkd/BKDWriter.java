@@ -26,6 +26,7 @@ import java.util.function.IntFunction;
 
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.MutablePointValues;
+import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.MergeState;
 import org.apache.lucene.index.PointValues.IntersectVisitor;
 import org.apache.lucene.index.PointValues.Relation;
@@ -34,6 +35,7 @@ import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.GrowableByteArrayDataOutput;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.RAMOutputStream;
 import org.apache.lucene.store.TrackingDirectoryWrapper;
@@ -151,16 +153,45 @@ public class BKDWriter implements Closeable {
 
   private final int maxDoc;
 
+  /** Whether points that don't fit in heap are buffered in direct memory rather than sorted offline */
+  private final boolean sortOffHeap;
+  private OffHeapMutablePointValues offHeapPoints;
+
   public BKDWriter(int maxDoc, Directory tempDir, String tempFileNamePrefix, int numDims, int bytesPerDim,
                    int maxPointsInLeafNode, double maxMBSortInHeap, long totalPointCount, boolean singleValuePerDoc) throws IOException {
+    this(maxDoc, tempDir, tempFileNamePrefix, numDims, bytesPerDim, maxPointsInLeafNode, maxMBSortInHeap, totalPointCount, singleValuePerDoc, 0);
+  }
+
+  /**
+   * Expert: create a writer that may use up to {@code maxMBSortOffHeap} MB of
+   * direct memory to build a tree of more than one dimension whose points don't
+   * fit in {@code maxMBSortInHeap}. The tree is then built in place, with
+   * radix selection, like on flush, instead of sorting points in temporary
+   * files. This only applies if all {@code totalPointCount} points fit in
+   * {@code maxMBSortOffHeap}.
+   */
+  public BKDWriter(int maxDoc, Directory tempDir, String tempFileNamePrefix, int numDims, int bytesPerDim,
+                   int maxPointsInLeafNode, double maxMBSortInHeap, long totalPointCount, boolean singleValuePerDoc,
+                   double maxMBSortOffHeap) throws IOException {
     this(maxDoc, tempDir, tempFileNamePrefix, numDims, bytesPerDim, maxPointsInLeafNode, maxMBSortInHeap, totalPointCount, singleValuePerDoc,
-         totalPointCount > Integer.MAX_VALUE, Math.max(1, (long) maxMBSortInHeap), OfflineSorter.MAX_TEMPFILES);
+         totalPointCount > Integer.MAX_VALUE, Math.max(1, (long) maxMBSortInHeap), OfflineSorter.MAX_TEMPFILES, maxMBSortOffHeap);
   }
 
   protected BKDWriter(int maxDoc, Directory tempDir, String tempFileNamePrefix, int numDims, int bytesPerDim,
                       int maxPointsInLeafNode, double maxMBSortInHeap, long totalPointCount,
                       boolean singleValuePerDoc, boolean longOrds, long offlineSorterBufferMB, int offlineSorterMaxTempFiles) throws IOException {
+    this(maxDoc, tempDir, tempFileNamePrefix, numDims, bytesPerDim, maxPointsInLeafNode, maxMBSortInHeap, totalPointCount,
+         singleValuePerDoc, longOrds, offlineSorterBufferMB, offlineSorterMaxTempFiles, 0);
+  }
+
+  protected BKDWriter(int maxDoc, Directory tempDir, String tempFileNamePrefix, int numDims, int bytesPerDim,
+                      int maxPointsInLeafNode, double maxMBSortInHeap, long totalPointCount,
+                      boolean singleValuePerDoc, boolean longOrds, long offlineSorterBufferMB, int offlineSorterMaxTempFiles,
+                      double maxMBSortOffHeap) throws IOException {
     verifyParams(numDims, maxPointsInLeafNode, maxMBSortInHeap, totalPointCount);
+    if (maxMBSortOffHeap < 0) {
+      throw new IllegalArgumentException("maxMBSortOffHeap must be >= 0 (got: " + maxMBSortOffHeap + ")");
+    }
     // We use tracking dir to deal with removing files on exception, so each place that
     // creates temp files doesn't need crazy try/finally/sucess logic:
     this.tempDir = new TrackingDirectoryWrapper(tempDir);
@@ -219,6 +250,13 @@ public class BKDWriter implements Closeable {
     heapPointWriter = new HeapPointWriter(16, maxPointsSortInHeap, packedBytesLength, longOrds, singleValuePerDoc);
 
     this.maxMBSortInHeap = maxMBSortInHeap;
+
+    // The 1D case never needs to sort offline on merge, and the tree is built in place on flush
+    final long bytesPerOffHeapPoint = packedBytesLength + Integer.BYTES;
+    sortOffHeap = numDims > 1
+        && totalPointCount > maxPointsSortInHeap
+        && totalPointCount < ArrayUtil.MAX_ARRAY_LENGTH
+        && totalPointCount * bytesPerOffHeapPoint <= maxMBSortOffHeap * 1024 * 1024;
   }
 
   public static void verifyParams(int numDims, int maxPointsInLeafNode, double maxMBSortInHeap, long totalPointCount) {
@@ -257,12 +295,30 @@ public class BKDWriter implements Closeable {
     heapPointWriter = null;
   }
 
+  /** If the current segment has too many points to sort in heap, then we move them to direct memory. */
+  private void spillToOffHeap() throws IOException {
+    offHeapPoints = new OffHeapMutablePointValues(maxDoc, numDims, bytesPerDim, Math.toIntExact(totalPointCount));
+    PointReader reader = heapPointWriter.getReader(0, pointCount);
+    for(int i=0;i<pointCount;i++) {
+      boolean hasNext = reader.next();
+      assert hasNext;
+      offHeapPoints.add(reader.packedValue(), heapPointWriter.docIDs[i]);
+    }
+
+    heapPointWriter = null;
+  }
+
   public void add(byte[] packedValue, int docID) throws IOException {
     if (packedValue.length != packedBytesLength) {
       throw new IllegalArgumentException("packedValue should be length=" + packedBytesLength + " (got: " + packedValue.length + ")");
     }
 
-    if (pointCount >= maxPointsSortInHeap) {
+    if (sortOffHeap && pointCount >= maxPointsSortInHeap) {
+      if (offHeapPoints == null) {
+        spillToOffHeap();
+      }
+      offHeapPoints.add(packedValue, docID);
+    } else if (pointCount >= maxPointsSortInHeap) {
       if (offlinePointWriter == null) {
         spillToOffline();
       }
@@ -332,6 +388,13 @@ public class BKDWriter implements Closeable {
       this.packedValues = new byte[bkd.maxPointsInLeafNode * bkd.packedBytesLength];
     }
 
+    /** Goes back to the first leaf block. */
+    void reset() throws IOException {
+      state.in.seek(bkd.getMinLeafBlockFP());
+      blockID = 0;
+      docBlockUpto = docsInBlock = 0;
+    }
+
     public boolean next() throws IOException {
       //System.out.println("MR.next this=" + this);
       while (true) {
@@ -442,20 +505,7 @@ public class BKDWriter implements Closeable {
     // Mark that we already finished:
     heapPointWriter = null;
 
-    long countPerLeaf = pointCount = values.size();
-    long innerNodeCount = 1;
-
-    while (countPerLeaf > maxPointsInLeafNode) {
-      countPerLeaf = (countPerLeaf+1)/2;
-      innerNodeCount *= 2;
-    }
-
-    int numLeaves = Math.toIntExact(innerNodeCount);
-
-    checkMaxLeafNodeCount(numLeaves);
-
-    final byte[] splitPackedValues = new byte[numLeaves * (bytesPerDim + 1)];
-    final long[] leafBlockFPs = new long[numLeaves];
+    pointCount = values.size();
 
     // compute the min/max for this slice
     Arrays.fill(minPackedValue, (byte) 0xff);
@@ -475,6 +525,27 @@ public class BKDWriter implements Closeable {
       docsSeen.set(values.getDocID(i));
     }
 
+    return buildInPlace(out, values);
+  }
+
+  /** Build the tree by reordering the {@code pointCount} points of {@code values} in place. The min/max
+   *  packed values and the docs that have points must already be known. */
+  private long buildInPlace(IndexOutput out, MutablePointValues values) throws IOException {
+    long countPerLeaf = pointCount;
+    long innerNodeCount = 1;
+
+    while (countPerLeaf > maxPointsInLeafNode) {
+      countPerLeaf = (countPerLeaf+1)/2;
+      innerNodeCount *= 2;
+    }
+
+    int numLeaves = Math.toIntExact(innerNodeCount);
+
+    checkMaxLeafNodeCount(numLeaves);
+
+    final byte[] splitPackedValues = new byte[numLeaves * (bytesPerDim + 1)];
+    final long[] leafBlockFPs = new long[numLeaves];
+
     final int[] parentSplits = new int[numDims];
     build(1, numLeaves, values, 0, Math.toIntExact(pointCount), out,
           minPackedValue, maxPackedValue, parentSplits,
@@ -516,12 +587,13 @@ public class BKDWriter implements Closeable {
   }
 
   /** More efficient bulk-add for incoming {@link BKDReader}s.  This does a merge sort of the already
-   *  sorted values and currently only works when numDims==1.  This returns -1 if all documents containing
-   *  dimensional values were deleted. */
+   *  sorted values and currently only works when numDims==1.  If the incoming readers have disjoint
+   *  value ranges, like segments of a time-series index, they are simply appended one after the other.
+   *  This returns -1 if all documents containing dimensional values were deleted. */
   public long merge(IndexOutput out, List<MergeState.DocMap> docMaps, List<BKDReader> readers) throws IOException {
     assert docMaps == null || readers.size() == docMaps.size();
 
-    BKDMergeQueue queue = new BKDMergeQueue(bytesPerDim, readers.size());
+    List<MergeReader> mergeReaders = new ArrayList<>(readers.size());
 
     for(int i=0;i<readers.size();i++) {
       BKDReader bkd = readers.get(i);
@@ -533,12 +605,25 @@ public class BKDWriter implements Closeable {
       }
       MergeReader reader = new MergeReader(bkd, docMap);
       if (reader.next()) {
-        queue.add(reader);
+        mergeReaders.add(reader);
       }
     }
 
     OneDimensionBKDWriter oneDimWriter = new OneDimensionBKDWriter(out);
 
+    if (sortByDisjointRanges(mergeReaders)) {
+      // No need for a merge sort: the values of each reader all sort after the values of the previous one
+      for (MergeReader reader : mergeReaders) {
+        oneDimWriter.append(reader);
+      }
+      return oneDimWriter.finish();
+    }
+
+    BKDMergeQueue queue = new BKDMergeQueue(bytesPerDim, mergeReaders.size());
+    for (MergeReader reader : mergeReaders) {
+      queue.add(reader);
+    }
+
     while (queue.size() != 0) {
       MergeReader reader = queue.top();
       // System.out.println("iter reader=" + reader);
@@ -556,6 +641,20 @@ public class BKDWriter implements Closeable {
     return oneDimWriter.finish();
   }
 
+  /** Sorts the readers by their minimum value and returns true if the value range of every reader is
+   *  strictly greater than the value range of the previous one. */
+  private boolean sortByDisjointRanges(List<MergeReader> mergeReaders) {
+    mergeReaders.sort((a, b) -> StringHelper.compare(bytesPerDim, a.bkd.getMinPackedValue(), 0, b.bkd.getMinPackedValue(), 0));
+    for (int i = 1; i < mergeReaders.size(); ++i) {
+      byte[] previousMax = mergeReaders.get(i-1).bkd.getMaxPackedValue();
+      byte[] min = mergeReaders.get(i).bkd.getMinPackedValue();
+      if (StringHelper.compare(bytesPerDim, previousMax, 0, min, 0) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   // reused when writing leaf blocks
   private final GrowableByteArrayDataOutput scratchOut = new GrowableByteArrayDataOutput(32*1024);
 
@@ -566,6 +665,9 @@ public class BKDWriter implements Closeable {
     final List<byte[]> leafBlockStartValues = new ArrayList<>();
     final byte[] leafValues = new byte[maxPointsInLeafNode * packedBytesLength];
     final int[] leafDocs = new int[maxPointsInLeafNode];
+    // first and last values of leaf blocks that are copied as they are
+    final byte[] copyFirstValue = new byte[packedBytesLength];
+    final byte[] copyLastValue = new byte[packedBytesLength];
     private long valueCount;
     private int leafCount;
 
@@ -617,6 +719,130 @@ public class BKDWriter implements Closeable {
       assert (lastDocID = docID) >= 0; // only assign when asserts are enabled
     }
 
+    /** Appends all the points of {@code reader}, whose values must all sort after the values that were
+     *  added so far. Leaf blocks without deleted documents are copied as they are, except for their doc IDs
+     *  which are mapped and re-encoded, instead of decoding and re-encoding every point. Other leaf blocks
+     *  are added point by point, and the partial leaf block that this leaves is written on its own before
+     *  the next copied block. */
+    void append(MergeReader reader) throws IOException {
+      final BKDReader bkd = reader.bkd;
+      final IndexInput in = reader.state.in;
+      final int[] docIDs = reader.state.scratchDocIDs;
+      reader.reset();
+      for (int leaf = 0; leaf < bkd.leafNodeOffset; leaf++) {
+        final long blockFP = in.getFilePointer();
+        final int count = bkd.readDocIDs(in, blockFP, docIDs);
+        if (count <= maxPointsInLeafNode && mapDocIDs(docIDs, count, reader.docMap)) {
+          if (leafCount > 0) {
+            writeLeafBlock();
+            leafCount = 0;
+          }
+          copyLeafBlock(in, docIDs, count);
+        } else {
+          // Add the points of this block one by one:
+          bkd.readDocIDs(in, blockFP, docIDs);
+          bkd.visitDocValues(reader.state.commonPrefixLengths, reader.state.scratchPackedValue, in, docIDs, count, new IntersectVisitor() {
+
+            @Override
+            public void visit(int docID) throws IOException {
+              throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void visit(int docID, byte[] packedValue) throws IOException {
+              final int mappedDocID = reader.docMap == null ? docID : reader.docMap.get(docID);
+              if (mappedDocID != -1) {
+                add(packedValue, mappedDocID);
+              }
+            }
+
+            @Override
+            public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+              throw new UnsupportedOperationException();
+            }
+          });
+        }
+      }
+    }
+
+    /** Maps the given doc IDs in place, and returns false if any of them was deleted. */
+    private boolean mapDocIDs(int[] docIDs, int count, MergeState.DocMap docMap) {
+      if (docMap != null) {
+        for (int i = 0; i < count; i++) {
+          final int mappedDocID = docMap.get(docIDs[i]);
+          if (mappedDocID == -1) {
+            return false;
+          }
+          docIDs[i] = mappedDocID;
+        }
+      }
+      return true;
+    }
+
+    /** Copies the values of a leaf block that {@code in} is positioned on, right after its doc IDs. Only the
+     *  first and last values of each run are decoded, to maintain the min/max values and the split values. */
+    private void copyLeafBlock(IndexInput in, int[] docIDs, int count) throws IOException {
+      assert leafCount == 0;
+      assert scratchOut.getPosition() == 0;
+      writeLeafBlockDocs(scratchOut, docIDs, 0, count);
+
+      final int prefix = in.readVInt();
+      if (prefix < 0 || prefix > bytesPerDim) {
+        throw new CorruptIndexException("Got commonPrefixLength=" + prefix, in);
+      }
+      in.readBytes(copyFirstValue, 0, prefix);
+      System.arraycopy(copyFirstValue, 0, copyLastValue, 0, prefix);
+      scratchOut.writeVInt(prefix);
+      scratchOut.writeBytes(copyFirstValue, 0, prefix);
+
+      final int compressedDim = in.readByte();
+      scratchOut.writeByte((byte) compressedDim);
+      if (compressedDim == -1) {
+        final int suffix = bytesPerDim - prefix;
+        if (suffix > 0) {
+          final int start = scratchOut.getPosition();
+          scratchOut.copyBytes(in, (long) count * suffix);
+          System.arraycopy(scratchOut.getBytes(), start, copyFirstValue, prefix, suffix);
+          System.arraycopy(scratchOut.getBytes(), scratchOut.getPosition() - suffix, copyLastValue, prefix, suffix);
+        }
+      } else if (compressedDim == 0 && prefix < bytesPerDim) {
+        // Each run shares the byte that follows the common prefix:
+        final int suffix = bytesPerDim - prefix - 1;
+        int i;
+        for (i = 0; i < count; ) {
+          final byte prefixByte = in.readByte();
+          final int runLen = Byte.toUnsignedInt(in.readByte());
+          scratchOut.writeByte(prefixByte);
+          scratchOut.writeByte((byte) runLen);
+          final int start = scratchOut.getPosition();
+          scratchOut.copyBytes(in, (long) runLen * suffix);
+          if (i == 0) {
+            copyFirstValue[prefix] = prefixByte;
+            System.arraycopy(scratchOut.getBytes(), start, copyFirstValue, prefix + 1, suffix);
+          }
+          copyLastValue[prefix] = prefixByte;
+          System.arraycopy(scratchOut.getBytes(), scratchOut.getPosition() - suffix, copyLastValue, prefix + 1, suffix);
+          i += runLen;
+        }
+        if (i != count) {
+          throw new CorruptIndexException("Sub blocks do not add up to the expected count: " + count + " != " + i, in);
+        }
+      } else {
+        throw new CorruptIndexException("Got compressedDim=" + compressedDim, in);
+      }
+
+      assert valueInOrder(valueCount, 0, lastPackedValue, copyFirstValue, 0, docIDs[0], lastDocID);
+      assert valueInOrder(valueCount + count - 1, 0, lastPackedValue, copyLastValue, 0, docIDs[count - 1], docIDs[count - 1]);
+      assert (lastDocID = docIDs[count - 1]) >= 0; // only assign when asserts are enabled
+
+      for (int i = 0; i < count; i++) {
+        docsSeen.set(docIDs[i]);
+      }
+      startLeafBlock(copyFirstValue, 0, copyLastValue, 0, count);
+      out.writeBytes(scratchOut.getBytes(), 0, scratchOut.getPosition());
+      scratchOut.reset();
+    }
+
     public long finish() throws IOException {
       if (leafCount > 0) {
         writeLeafBlock();
@@ -645,21 +871,26 @@ public class BKDWriter implements Closeable {
       return indexFP;
     }
 
-    private void writeLeafBlock() throws IOException {
-      assert leafCount != 0;
+    /** Records a new leaf block, whose first and last values are given, that is about to be written at the current file pointer. */
+    private void startLeafBlock(byte[] firstValue, int firstOffset, byte[] lastValue, int lastOffset, int count) {
       if (valueCount == 0) {
-        System.arraycopy(leafValues, 0, minPackedValue, 0, packedBytesLength);
+        System.arraycopy(firstValue, firstOffset, minPackedValue, 0, packedBytesLength);
       }
-      System.arraycopy(leafValues, (leafCount - 1) * packedBytesLength, maxPackedValue, 0, packedBytesLength);
+      System.arraycopy(lastValue, lastOffset, maxPackedValue, 0, packedBytesLength);
 
-      valueCount += leafCount;
+      valueCount += count;
 
       if (leafBlockFPs.size() > 0) {
         // Save the first (minimum) value in each leaf block except the first, to build the split value index in the end:
-        leafBlockStartValues.add(Arrays.copyOf(leafValues, packedBytesLength));
+        leafBlockStartValues.add(Arrays.copyOfRange(firstValue, firstOffset, firstOffset + packedBytesLength));
       }
       leafBlockFPs.add(out.getFilePointer());
       checkMaxLeafNodeCount(leafBlockFPs.size());
+    }
+
+    private void writeLeafBlock() throws IOException {
+      assert leafCount != 0;
+      startLeafBlock(leafValues, 0, leafValues, (leafCount - 1) * packedBytesLength, leafCount);
 
       // Find per-dim common prefix:
       int prefix = bytesPerDim;
@@ -930,10 +1161,21 @@ public class BKDWriter implements Closeable {
     // TODO: specialize the 1D case?  it's much faster at indexing time (no partitioning on recurse...)
 
     // Catch user silliness:
-    if (heapPointWriter == null && tempInput == null) {
+    if (heapPointWriter == null && tempInput == null && offHeapPoints == null) {
       throw new IllegalStateException("already finished");
     }
 
+    if (offHeapPoints != null) {
+      // min/max and docsSeen have been computed on add
+      assert offHeapPoints.size() == pointCount;
+      try {
+        return buildInPlace(out, offHeapPoints);
+      } finally {
+        offHeapPoints.close();
+        offHeapPoints = null;
+      }
+    }
+
     if (offlinePointWriter != null) {
       offlinePointWriter.close();
     }
@@ -1327,6 +1569,10 @@ public class BKDWriter implements Closeable {
 
   @Override
   public void close() throws IOException {
+    if (offHeapPoints != null) {
+      offHeapPoints.close();
+      offHeapPoints = null;
+    }
     if (tempInput != null) {
       // NOTE: this should only happen on exception, e.g. caller calls close w/o calling finish:
       try {
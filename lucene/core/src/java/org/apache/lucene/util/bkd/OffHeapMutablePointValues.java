@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.bkd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.lucene.codecs.MutablePointValues;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * {@link MutablePointValues} that buffers points in direct memory so that
+ * {@link BKDWriter} can build its tree in place, with radix selection, when
+ * there are more points than it may sort in heap.
+ * <p>
+ * Every point is stored as its packed value followed by its doc ID, in
+ * direct {@link ByteBuffer}s which are allocated as points are added. They
+ * are released by the garbage collector once this instance has been closed.
+ * <p>
+ * Since values do not live on the heap, {@link #getValue} copies the value
+ * into {@code packedValue.bytes}, which it replaces with a new array unless
+ * it already has a length of exactly {@code numDims * bytesPerDim}.
+ * <p>
+ * This class is not thread-safe.
+ * @lucene.internal
+ */
+final class OffHeapMutablePointValues extends MutablePointValues implements Closeable {
+
+  /** Target size of the direct buffers. */
+  private static final int CHUNK_BYTES = 1 << 24;
+
+  private final int maxDoc;
+  private final int numDims;
+  private final int bytesPerDim;
+  private final int packedBytesLength;
+  private final int bytesPerPoint;
+  private final int maxPoints;
+  private final int chunkShift;
+  private final int chunkMask;
+  private final byte[] scratch1;
+  private final byte[] scratch2;
+  private ByteBuffer[] chunks = new ByteBuffer[0];
+  private int size;
+
+  /** Create a buffer that may hold up to {@code maxPoints} points. */
+  OffHeapMutablePointValues(int maxDoc, int numDims, int bytesPerDim, int maxPoints) {
+    this.maxDoc = maxDoc;
+    this.numDims = numDims;
+    this.bytesPerDim = bytesPerDim;
+    this.packedBytesLength = numDims * bytesPerDim;
+    this.bytesPerPoint = packedBytesLength + Integer.BYTES;
+    this.maxPoints = maxPoints;
+    // power of two so that finding the chunk of a point is a shift
+    final int pointsPerChunk = Integer.highestOneBit(Math.max(1, CHUNK_BYTES / bytesPerPoint));
+    this.chunkShift = Integer.numberOfTrailingZeros(pointsPerChunk);
+    this.chunkMask = pointsPerChunk - 1;
+    this.scratch1 = new byte[bytesPerPoint];
+    this.scratch2 = new byte[bytesPerPoint];
+  }
+
+  /** Append a point. */
+  void add(byte[] packedValue, int docID) {
+    if (size >= maxPoints) {
+      throw new IllegalStateException("cannot add more than " + maxPoints + " points");
+    }
+    final int chunk = size >>> chunkShift;
+    if (chunk == chunks.length) {
+      chunks = ArrayUtil.grow(chunks, chunk + 1);
+    }
+    if (chunks[chunk] == null) {
+      final long pointsInChunk = Math.min(chunkMask + 1L, maxPoints - ((long) chunk << chunkShift));
+      chunks[chunk] = ByteBuffer.allocateDirect(Math.toIntExact(pointsInChunk * bytesPerPoint));
+    }
+    final ByteBuffer buffer = chunks[chunk];
+    buffer.position((size & chunkMask) * bytesPerPoint);
+    buffer.put(packedValue, 0, packedBytesLength);
+    buffer.putInt(docID);
+    size++;
+  }
+
+  private ByteBuffer chunk(int i) {
+    return chunks[i >>> chunkShift];
+  }
+
+  private int offset(int i) {
+    return (i & chunkMask) * bytesPerPoint;
+  }
+
+  private void read(int i, byte[] dest, int length) {
+    final ByteBuffer buffer = chunk(i);
+    buffer.position(offset(i));
+    buffer.get(dest, 0, length);
+  }
+
+  private void write(int i, byte[] src) {
+    final ByteBuffer buffer = chunk(i);
+    buffer.position(offset(i));
+    buffer.put(src, 0, bytesPerPoint);
+  }
+
+  @Override
+  public void getValue(int i, BytesRef packedValue) {
+    if (packedValue.bytes.length != packedBytesLength) {
+      packedValue.bytes = new byte[packedBytesLength];
+    }
+    read(i, packedValue.bytes, packedBytesLength);
+    packedValue.offset = 0;
+    packedValue.length = packedBytesLength;
+  }
+
+  @Override
+  public byte getByteAt(int i, int k) {
+    return chunk(i).get(offset(i) + k);
+  }
+
+  @Override
+  public int getDocID(int i) {
+    return chunk(i).getInt(offset(i) + packedBytesLength);
+  }
+
+  @Override
+  public void swap(int i, int j) {
+    read(i, scratch1, bytesPerPoint);
+    read(j, scratch2, bytesPerPoint);
+    write(i, scratch2);
+    write(j, scratch1);
+  }
+
+  @Override
+  public void intersect(IntersectVisitor visitor) throws IOException {
+    final byte[] packedValue = new byte[packedBytesLength];
+    for (int i = 0; i < size; ++i) {
+      read(i, packedValue, packedBytesLength);
+      visitor.visit(getDocID(i), packedValue);
+    }
+  }
+
+  @Override
+  public long estimatePointCount(IntersectVisitor visitor) {
+    return size;
+  }
+
+  @Override
+  public byte[] getMinPackedValue() {
+    return minMax(true);
+  }
+
+  @Override
+  public byte[] getMaxPackedValue() {
+    return minMax(false);
+  }
+
+  private byte[] minMax(boolean min) {
+    final byte[] result = new byte[packedBytesLength];
+    if (size == 0) {
+      return result;
+    }
+    final byte[] packedValue = new byte[packedBytesLength];
+    read(0, result, packedBytesLength);
+    for (int i = 1; i < size; ++i) {
+      read(i, packedValue, packedBytesLength);
+      for (int dim = 0; dim < numDims; ++dim) {
+        final int offset = dim * bytesPerDim;
+        final int cmp = StringHelper.compare(bytesPerDim, packedValue, offset, result, offset);
+        if (min ? cmp < 0 : cmp > 0) {
+          System.arraycopy(packedValue, offset, result, offset, bytesPerDim);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int getNumDimensions() {
+    return numDims;
+  }
+
+  @Override
+  public int getBytesPerDimension() {
+    return bytesPerDim;
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public int getDocCount() {
+    final FixedBitSet docs = new FixedBitSet(maxDoc);
+    for (int i = 0; i < size; ++i) {
+      docs.set(getDocID(i));
+    }
+    return docs.cardinality();
+  }
+
+  /** Release the direct buffers. */
+  @Override
+  public void close() {
+    Arrays.fill(chunks, null);
+    chunks = new ByteBuffer[0];
+    size = 0;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+public class TestFastWithDictionaryCompressionMode extends AbstractTestLZ4CompressionMode {
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    mode = DictionaryCompressionMode.FAST_WITH_DICTIONARY;
+  }
+
+  private static byte[] randomJsonDocs(int length) {
+    final String[] words = new String[] { "lucene", "search", "index", "query", "document", "field", "term" };
+    final StringBuilder sb = new StringBuilder();
+    while (sb.length() < length) {
+      sb.append("{\"id\":").append(random().nextInt(1000000))
+        .append(",\"title\":\"").append(words[random().nextInt(words.length)])
+        .append("\",\"price\":").append(random().nextInt(1000))
+        .append(",\"tags\":[\"").append(words[random().nextInt(words.length)]).append("\"]}");
+    }
+    return Arrays.copyOf(sb.toString().getBytes(StandardCharsets.UTF_8), length);
+  }
+
+  public void testDecompressWithDictionary() throws IOException {
+    final DictionaryCompressionMode mode = (DictionaryCompressionMode) this.mode;
+    final int iterations = atLeast(10);
+    for (int i = 0; i < iterations; ++i) {
+      final byte[] dict = random().nextBoolean() ? randomArray(random().nextInt(5000), random().nextInt(255)) : randomJsonDocs(random().nextInt(5000));
+      final BytesRef dictionary = new BytesRef(dict);
+      final byte[] decompressed = random().nextBoolean() ? randomArray() : randomJsonDocs(random().nextInt(1 << 16));
+      final byte[] compressed = compress(mode.newCompressor(dictionary), decompressed, 0, decompressed.length);
+
+      final byte[] restored = decompress(mode.newDecompressor(dictionary), compressed, decompressed.length);
+      assertArrayEquals(decompressed, restored);
+
+      // partial decompression
+      final int offset = decompressed.length == 0 ? 0 : random().nextInt(decompressed.length);
+      final int length = TestUtil.nextInt(random(), 0, decompressed.length - offset);
+      final BytesRef bytes = new BytesRef();
+      mode.newDecompressor(dictionary).decompress(new ByteArrayDataInput(compressed), decompressed.length, offset, length, bytes);
+      assertEquals(new BytesRef(decompressed, offset, length), bytes);
+    }
+  }
+
+  public void testTrainDictionary() throws IOException {
+    final DictionaryCompressionMode mode = (DictionaryCompressionMode) this.mode;
+    final byte[] sample = randomJsonDocs(1 << 14);
+    final BytesRef dictionary = mode.trainDictionary(sample, 0, sample.length);
+    assertTrue(dictionary.length > 0);
+    assertTrue(dictionary.length <= 4096);
+
+    // a small chunk of similar documents compresses better against the dictionary
+    final byte[] chunk = randomJsonDocs(512);
+    final byte[] withDictionary = compress(mode.newCompressor(dictionary), chunk, 0, chunk.length);
+    final byte[] withoutDictionary = compress(mode.newCompressor(), chunk, 0, chunk.length);
+    assertTrue(withDictionary.length + " >= " + withoutDictionary.length, withDictionary.length < withoutDictionary.length);
+    assertArrayEquals(chunk, decompress(mode.newDecompressor(dictionary), withDictionary, chunk.length));
+  }
+
+  public void testTrainDictionaryOnSmallSample() {
+    final DictionaryCompressionMode mode = (DictionaryCompressionMode) this.mode;
+    final byte[] sample = randomJsonDocs(random().nextInt(128));
+    assertEquals(0, mode.trainDictionary(sample, 0, sample.length).length);
+  }
+}
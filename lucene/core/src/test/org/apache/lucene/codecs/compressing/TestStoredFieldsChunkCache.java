@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestStoredFieldsChunkCache extends LuceneTestCase {
+
+  public void testHitsAndMisses() {
+    StoredFieldsChunkCache cache = new StoredFieldsChunkCache(1 << 20);
+    Object segment1 = new Object();
+    Object segment2 = new Object();
+    assertNull(cache.get(segment1, 42));
+    assertEquals(1, cache.getMissCount());
+
+    byte[] chunk = new byte[] { 1, 2, 3 };
+    cache.put(segment1, 42, chunk);
+    assertSame(chunk, cache.get(segment1, 42));
+    assertNull(cache.get(segment1, 43));
+    assertNull(cache.get(segment2, 42));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+    assertEquals(4, cache.getTotalCount());
+    assertEquals(1, cache.getCacheSize());
+    assertEquals(1, cache.getCacheCount());
+    assertTrue(cache.ramBytesUsed() > chunk.length);
+
+    cache.put(segment2, 42, new byte[10]);
+    cache.clear(segment1);
+    assertNull(cache.get(segment1, 42));
+    assertNotNull(cache.get(segment2, 42));
+    assertEquals(1, cache.getCacheSize());
+    assertEquals(1, cache.getEvictionCount());
+
+    cache.clear();
+    assertEquals(0, cache.getCacheSize());
+    assertEquals(0, cache.ramBytesUsed());
+    assertNull(cache.get(segment2, 42));
+
+    // the cache is still usable after having been cleared
+    cache.put(segment1, 42, chunk);
+    assertSame(chunk, cache.get(segment1, 42));
+    assertEquals(1, cache.getCacheSize());
+  }
+
+  public void testMaxRamBytesUsed() {
+    final long maxRamBytesUsed = TestUtil.nextInt(random(), 10000, 100000);
+    StoredFieldsChunkCache cache = new StoredFieldsChunkCache(maxRamBytesUsed, TestUtil.nextInt(random(), 1, 8));
+    Object segment = new Object();
+    final int numChunks = atLeast(1000);
+    for (int i = 0; i < numChunks; ++i) {
+      cache.put(segment, i, new byte[random().nextInt(2000)]);
+      assertTrue(cache.ramBytesUsed() <= maxRamBytesUsed);
+    }
+    assertTrue(cache.getEvictionCount() > 0);
+    assertEquals(cache.getCacheCount() - cache.getEvictionCount(), cache.getCacheSize());
+
+    // least recently used chunks are evicted first
+    StoredFieldsChunkCache singleShard = new StoredFieldsChunkCache(3 * (1000 + 200), 1);
+    for (int i = 0; i < 3; ++i) {
+      singleShard.put(segment, i, new byte[1000]);
+    }
+    assertNotNull(singleShard.get(segment, 0));
+    singleShard.put(segment, 3, new byte[1000]);
+    assertNotNull(singleShard.get(segment, 0));
+    assertNull(singleShard.get(segment, 1));
+  }
+
+  public void testReaders() throws IOException {
+    StoredFieldsChunkCache cache = new StoredFieldsChunkCache(1 << 20);
+    StoredFieldsChunkCache previous = StoredFieldsChunkCache.getDefault();
+    StoredFieldsChunkCache.setDefault(cache);
+    try (Directory dir = newDirectory()) {
+      IndexWriterConfig iwc = newIndexWriterConfig();
+      // stored fields of all codecs are not necessarily compressing
+      iwc.setCodec(TestUtil.getDefaultCodec());
+      iwc.setMergePolicy(newLogMergePolicy());
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        final int numDocs = atLeast(100);
+        for (int i = 0; i < numDocs; ++i) {
+          Document doc = new Document();
+          doc.add(new StoredField("id", i));
+          w.addDocument(doc);
+        }
+      }
+      try (IndexReader reader = DirectoryReader.open(dir)) {
+        for (int iter = 0; iter < 2; ++iter) {
+          for (int i = 0; i < reader.maxDoc(); ++i) {
+            assertEquals(i, reader.document(i).getField("id").numericValue().intValue());
+          }
+        }
+        assertTrue(cache.getHitCount() > 0);
+        assertTrue(cache.getCacheSize() > 0);
+      }
+      // closing the reader evicts its chunks
+      assertEquals(0, cache.getCacheSize());
+      assertEquals(0, cache.ramBytesUsed());
+    } finally {
+      StoredFieldsChunkCache.setDefault(previous);
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.lucene.codecs.lucene50;
 
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.BLOCK_SIZE;
 import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_DATA_SIZE;
+import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_ENCODED_LONGS;
 import static org.apache.lucene.codecs.lucene50.ForUtil.MAX_ENCODED_SIZE;
 
 import java.io.IOException;
@@ -93,4 +94,78 @@ public class TestForUtil extends LuceneTestCase {
     d.close();
   }
 
+  public void testReadBlockLongs() throws IOException {
+    final float acceptableOverheadRatio = random().nextFloat();
+    final Directory d = new RAMDirectory();
+    final int[][] blocks = new int[32][];
+    IndexOutput out = d.createOutput("test.bin", IOContext.DEFAULT);
+    final ForUtil writer = new ForUtil(acceptableOverheadRatio, out);
+    for (int bpv = 0; bpv < 32; ++bpv) {
+      final int[] values = new int[MAX_DATA_SIZE];
+      final int maxValue = bpv == 0 ? Integer.MAX_VALUE : (int) PackedInts.maxValue(bpv);
+      for (int j = 0; j < BLOCK_SIZE; ++j) {
+        values[j] = bpv == 0 && j > 0 ? values[0] : RandomNumbers.randomIntBetween(random(), 0, maxValue);
+      }
+      blocks[bpv] = values;
+      writer.writeBlock(values, new byte[MAX_ENCODED_SIZE], out);
+    }
+    final long endPointer = out.getFilePointer();
+    out.close();
+
+    IndexInput in = d.openInput("test.bin", IOContext.READONCE);
+    final ForUtil forUtil = new ForUtil(in);
+    final byte[] encoded = new byte[MAX_ENCODED_SIZE];
+    final long[] encodedLongs = new long[MAX_ENCODED_LONGS];
+    for (int bpv = 0; bpv < 32; ++bpv) {
+      final int[] restored = new int[MAX_DATA_SIZE];
+      forUtil.readBlock(in, encoded, encodedLongs, restored);
+      assertArrayEquals(Arrays.copyOf(blocks[bpv], BLOCK_SIZE), Arrays.copyOf(restored, BLOCK_SIZE));
+    }
+    assertEquals(endPointer, in.getFilePointer());
+    in.close();
+    d.close();
+  }
+
+  public void testReadDocIDBlock() throws IOException {
+    final int iterations = RandomNumbers.randomIntBetween(random(), 1, 100);
+    final float acceptableOverheadRatio = random().nextFloat();
+    final int[] docs = new int[iterations * BLOCK_SIZE];
+    final int[][] deltas = new int[iterations][];
+    int doc = -1;
+    for (int i = 0; i < iterations; ++i) {
+      deltas[i] = new int[MAX_DATA_SIZE];
+      // sometimes dense blocks whose deltas are all equal
+      final boolean dense = random().nextBoolean();
+      final int maxDelta = 1 + random().nextInt(1 << random().nextInt(16));
+      for (int j = 0; j < BLOCK_SIZE; ++j) {
+        final int delta = dense ? 1 : RandomNumbers.randomIntBetween(random(), 1, maxDelta);
+        // the first doc of the first block is encoded as-is
+        deltas[i][j] = i == 0 && j == 0 ? delta - 1 : delta;
+        doc += delta;
+        docs[i * BLOCK_SIZE + j] = doc;
+      }
+    }
+
+    final Directory d = new RAMDirectory();
+    IndexOutput out = d.createOutput("test.bin", IOContext.DEFAULT);
+    final ForUtil writer = new ForUtil(acceptableOverheadRatio, out);
+    for (int i = 0; i < iterations; ++i) {
+      writer.writeBlock(deltas[i], new byte[MAX_ENCODED_SIZE], out);
+    }
+    out.close();
+
+    IndexInput in = d.openInput("test.bin", IOContext.READONCE);
+    final ForUtil forUtil = new ForUtil(in);
+    final int[] restored = new int[MAX_DATA_SIZE];
+    int base = 0;
+    for (int i = 0; i < iterations; ++i) {
+      forUtil.readDocIDBlock(in, new byte[MAX_ENCODED_SIZE], new long[MAX_ENCODED_LONGS], restored, base);
+      assertArrayEquals(Arrays.copyOfRange(docs, i * BLOCK_SIZE, (i + 1) * BLOCK_SIZE),
+          Arrays.copyOf(restored, BLOCK_SIZE));
+      base = restored[BLOCK_SIZE - 1];
+    }
+    in.close();
+    d.close();
+  }
+
 }
@@ -686,4 +686,76 @@ public class TestLucene70DocValuesFormat extends BaseCompressingDocValuesFormatT
     ir.close();
     dir.close();
   }
+
+  public void testMergeNumericWithoutDeletes() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setMergePolicy(newLogMergePolicy());
+    IndexWriter writer = new IndexWriter(dir, conf);
+
+    final int numSegments = TestUtil.nextInt(random(), 2, 5);
+    for (int seg = 0; seg < numSegments; seg++) {
+      // every segment picks its own encoding
+      final LongSupplier longs;
+      switch (random().nextInt(5)) {
+        case 0: // single value
+          final long constant = random().nextInt(10);
+          longs = () -> constant;
+          break;
+        case 1: // table
+          final long[] table = new long[TestUtil.nextInt(random(), 2, 100)];
+          for (int i = 0; i < table.length; i++) {
+            table[i] = random().nextLong();
+          }
+          longs = () -> table[random().nextInt(table.length)];
+          break;
+        case 2: // gcd
+          final long min = random().nextInt();
+          final long gcd = TestUtil.nextInt(random(), 2, 1000);
+          longs = () -> min + gcd * random().nextInt(1 << 16);
+          break;
+        case 3: // large positive values
+          final long base = 1L << 40;
+          longs = () -> base + random().nextInt(1 << 12);
+          break;
+        default:
+          longs = () -> random().nextInt();
+          break;
+      }
+      final double density = random().nextBoolean() ? 1 : random().nextDouble();
+      final int numDocs = TestUtil.nextInt(random(), 1, 3000);
+      for (int i = 0; i < numDocs; i++) {
+        Document doc = new Document();
+        if (random().nextDouble() <= density) {
+          long value = longs.getAsLong();
+          doc.add(new StoredField("stored", Long.toString(value)));
+          doc.add(new NumericDocValuesField("dv", value));
+        }
+        writer.addDocument(doc);
+      }
+      writer.commit();
+    }
+
+    writer.forceMerge(1);
+    writer.close();
+
+    DirectoryReader ir = DirectoryReader.open(dir);
+    TestUtil.checkReader(ir);
+    LeafReader r = getOnlyLeafReader(ir);
+    NumericDocValues docValues = DocValues.getNumeric(r, "dv");
+    docValues.nextDoc();
+    for (int i = 0; i < r.maxDoc(); i++) {
+      String storedValue = r.document(i).get("stored");
+      if (storedValue == null) {
+        assertTrue(docValues.docID() > i);
+      } else {
+        assertEquals(i, docValues.docID());
+        assertEquals(Long.parseLong(storedValue), docValues.longValue());
+        docValues.nextDoc();
+      }
+    }
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, docValues.docID());
+    ir.close();
+    dir.close();
+  }
 }
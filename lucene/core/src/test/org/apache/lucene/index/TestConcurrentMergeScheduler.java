@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -26,6 +27,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
@@ -670,4 +673,53 @@ public class TestConcurrentMergeScheduler extends LuceneTestCase {
 
     assertFalse(failed.get());
   }
+
+  public void testIntraMergeParallelism() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 10, 100));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    int numDocs = atLeast(1000);
+    for(int i=0;i<numDocs;i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", ""+i, Field.Store.YES));
+      doc.add(newTextField("body", "some text " + random().nextInt(100), Field.Store.NO));
+      doc.add(new NumericDocValuesField("dv", random().nextLong()));
+      doc.add(new LongPoint("point", random().nextLong()));
+      w.addDocument(doc);
+    }
+    w.deleteDocuments(new Term("id", "0"));
+    w.close();
+
+    AtomicInteger intraMergeTasks = new AtomicInteger();
+    ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler() {
+        @Override
+        public Executor getIntraMergeExecutor(MergePolicy.OneMerge merge) {
+          Executor executor = super.getIntraMergeExecutor(merge);
+          return task -> executor.execute(() -> {
+            if (Thread.currentThread().getName().startsWith("Lucene Intra-Merge Thread")) {
+              intraMergeTasks.incrementAndGet();
+            }
+            task.run();
+          });
+        }
+      };
+    cms.setMaxMergesAndThreads(4, 4);
+    assertTrue(cms.getIntraMergeParallelism());
+    iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergeScheduler(cms);
+    w = new IndexWriter(dir, iwc);
+    w.forceMerge(1);
+    w.close();
+
+    // a single merge leaves 3 threads to merge parts of it
+    assertTrue(intraMergeTasks.get() > 0);
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    assertEquals(1, r.leaves().size());
+    assertEquals(numDocs - 1, r.numDocs());
+    r.close();
+    dir.close();
+  }
 }
@@ -38,7 +38,11 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CannedTokenStream;
@@ -55,6 +59,7 @@ import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.SortedNumericDocValuesField;
@@ -70,6 +75,8 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.AlreadyClosedException;
@@ -93,6 +100,7 @@ import org.apache.lucene.util.Constants;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.SetOnce;
 import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.TestUtil;
@@ -3158,4 +3166,157 @@ public class TestIndexWriter extends LuceneTestCase {
     }
     IOUtils.close(reader, writer, dir);
   }
+
+  public void testFlushExecutor() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestFlushExecutor"));
+    try {
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setFlushExecutor(executor);
+      iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 10, 100));
+      if (random().nextBoolean()) {
+        iwc.setIndexSort(new Sort(new SortField("dv", SortField.Type.LONG)));
+      }
+      assertSame(executor, iwc.getFlushExecutor());
+      IndexWriter w = new IndexWriter(dir, iwc);
+      FieldType withVectors = new FieldType(TextField.TYPE_NOT_STORED);
+      withVectors.setStoreTermVectors(true);
+      int numDocs = atLeast(1000);
+      for (int i = 0; i < numDocs; i++) {
+        Document doc = new Document();
+        doc.add(newStringField("id", "" + i, Field.Store.YES));
+        doc.add(new Field("body", "some text " + random().nextInt(100), withVectors));
+        doc.add(new NumericDocValuesField("dv", random().nextLong()));
+        doc.add(new LongPoint("point", i));
+        w.addDocument(doc);
+        if (random().nextInt(10) == 0) {
+          w.deleteDocuments(new Term("id", "" + random().nextInt(i + 1)));
+        }
+      }
+      DirectoryReader reader = DirectoryReader.open(w);
+      IndexSearcher searcher = newSearcher(reader);
+      for (int i = 0; i < 10; i++) {
+        int id = random().nextInt(numDocs);
+        assertEquals(searcher.count(new TermQuery(new Term("id", "" + id))), searcher.count(LongPoint.newExactQuery("point", id)));
+      }
+      reader.close();
+      w.close();
+      dir.close();
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+  }
+
+  public void testAddDocumentsSameAsAddDocument() throws Exception {
+    // blocks of documents are inverted one field at a time, unless they have term vectors:
+    FieldType withVectors = new FieldType(TextField.TYPE_NOT_STORED);
+    withVectors.setStoreTermVectors(true);
+    List<Document> docs = new ArrayList<>();
+    int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", "" + i, Field.Store.YES));
+      doc.add(new TextField("body", "some text " + random().nextInt(100), Field.Store.NO));
+      if (random().nextBoolean()) {
+        doc.add(new StringField("category", "" + random().nextInt(5), Field.Store.NO));
+      }
+      if (random().nextBoolean()) {
+        // another value of the same field, after other fields
+        doc.add(new TextField("body", "more text " + random().nextInt(10), Field.Store.YES));
+      }
+      if (random().nextInt(50) == 0) {
+        doc.add(new Field("vectors", "with term vectors", withVectors));
+      }
+      doc.add(new StoredField("category", "stored " + i));
+      doc.add(new SortedSetDocValuesField("dv", new BytesRef("" + random().nextInt(10))));
+      doc.add(new SortedSetDocValuesField("dv", new BytesRef("" + random().nextInt(10))));
+      doc.add(new LongPoint("point", random().nextLong()));
+      docs.add(doc);
+    }
+
+    Analyzer analyzer = new MockAnalyzer(random());
+    Directory dir1 = newDirectory();
+    IndexWriter w1 = new IndexWriter(dir1, new IndexWriterConfig(analyzer).setMergePolicy(NoMergePolicy.INSTANCE));
+    for (Document doc : docs) {
+      w1.addDocument(doc);
+    }
+    Directory dir2 = newDirectory();
+    IndexWriter w2 = new IndexWriter(dir2, new IndexWriterConfig(analyzer).setMergePolicy(NoMergePolicy.INSTANCE));
+    for (int i = 0; i < numDocs; ) {
+      int blockSize = Math.min(numDocs - i, TestUtil.nextInt(random(), 1, 50));
+      w2.addDocuments(docs.subList(i, i + blockSize));
+      i += blockSize;
+    }
+
+    DirectoryReader r1 = DirectoryReader.open(w1);
+    DirectoryReader r2 = DirectoryReader.open(w2);
+    assertEquals(1, r1.leaves().size());
+    assertEquals(1, r2.leaves().size());
+    assertReaderEquals("addDocuments", r1, r2);
+    IOUtils.close(r1, r2, w1, w2, dir1, dir2, analyzer);
+  }
+
+  public void testAddDocumentsReusesDocument() throws Exception {
+    // blocks that are not lists are streamed, so that documents may be reused:
+    final int numDocs = atLeast(100);
+    final Document doc = new Document();
+    final StringField id = new StringField("id", "", Field.Store.YES);
+    doc.add(id);
+    Iterable<Document> docs = () -> new Iterator<Document>() {
+      int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < numDocs;
+      }
+
+      @Override
+      public Document next() {
+        id.setStringValue(Integer.toString(i++));
+        return doc;
+      }
+    };
+
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    w.addDocuments(docs);
+    DirectoryReader r = DirectoryReader.open(w);
+    assertEquals(numDocs, r.numDocs());
+    for (int i = 0; i < numDocs; i++) {
+      assertEquals(1, r.docFreq(new Term("id", Integer.toString(i))));
+    }
+    IOUtils.close(r, w, dir);
+  }
+
+  public void testAddDocumentsWithTermVectorsIteratesOnce() throws Exception {
+    // blocks with term vectors are indexed one document at a time, without iterating
+    // over the fields of each document twice:
+    FieldType withVectors = new FieldType(TextField.TYPE_NOT_STORED);
+    withVectors.setStoreTermVectors(true);
+    final int numDocs = TestUtil.nextInt(random(), 2, 20);
+    final AtomicInteger iterations = new AtomicInteger();
+    List<Iterable<IndexableField>> docs = new ArrayList<>();
+    for (int i = 0; i < numDocs; i++) {
+      final Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+      doc.add(new Field("vectors", "with term vectors " + i, withVectors));
+      docs.add(() -> {
+        iterations.incrementAndGet();
+        return doc.iterator();
+      });
+    }
+
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    w.addDocuments(docs);
+    assertEquals(numDocs, iterations.get());
+    DirectoryReader r = DirectoryReader.open(w);
+    assertEquals(numDocs, r.numDocs());
+    for (int i = 0; i < numDocs; i++) {
+      assertEquals(1, r.docFreq(new Term("id", Integer.toString(i))));
+      assertEquals(1, r.docFreq(new Term("vectors", Integer.toString(i))));
+    }
+    IOUtils.close(r, w, dir);
+  }
 }
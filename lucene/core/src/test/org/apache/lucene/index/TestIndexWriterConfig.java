@@ -67,6 +67,10 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     assertEquals(IndexWriterConfig.DEFAULT_READER_POOLING, conf.getReaderPooling());
     assertTrue(DocumentsWriterPerThread.defaultIndexingChain == conf.getIndexingChain());
     assertNull(conf.getMergedSegmentWarmer());
+    assertNull(conf.getFlushExecutor());
+    assertEquals(IndexWriterConfig.DEFAULT_MAX_FULL_FLUSH_MERGE_WAIT_MILLIS, conf.getMaxFullFlushMergeWaitMillis());
+    assertSame(IndexingBufferAllocator.DEFAULT, conf.getIndexingBufferAllocator());
+    assertNull(conf.getTermsBloomFilterField());
     assertEquals(TieredMergePolicy.class, conf.getMergePolicy().getClass());
     assertEquals(DocumentsWriterPerThreadPool.class, conf.getIndexerThreadPool().getClass());
     assertEquals(FlushByRamOrCountsPolicy.class, conf.getFlushPolicy().getClass());
@@ -231,6 +235,18 @@ public class TestIndexWriterConfig extends LuceneTestCase {
       conf.setSimilarity(null);
     });
 
+    expectThrows(IllegalArgumentException.class, () -> {
+      conf.setMaxFullFlushMergeWaitMillis(-1);
+    });
+
+    // Test IndexingBufferAllocator
+    IndexingBufferAllocator allocator = new RecyclingIndexingBufferAllocator(1 << 20);
+    conf.setIndexingBufferAllocator(allocator);
+    assertSame(allocator, conf.getIndexingBufferAllocator());
+    expectThrows(IllegalArgumentException.class, () -> {
+      conf.setIndexingBufferAllocator(null);
+    });
+
     // Test IndexingChain
     assertTrue(DocumentsWriterPerThread.defaultIndexingChain == conf.getIndexingChain());
 
@@ -22,7 +22,9 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -40,6 +42,7 @@ import org.apache.lucene.document.StringField;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MockDirectoryWrapper;
 import org.apache.lucene.util.IOUtils;
@@ -94,6 +97,77 @@ public class TestIndexWriterDelete extends LuceneTestCase {
     dir.close();
   }
 
+  public void testTermsBloomFilter() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setTermsBloomFilterField("id");
+    IndexWriter writer = new IndexWriter(dir, iwc);
+
+    // live id -> version
+    Map<Integer,Long> expected = new HashMap<>();
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(new NumericDocValuesField("version", 0));
+      writer.addDocument(doc);
+      expected.put(i, 0L);
+      if (random().nextInt(20) == 0) {
+        writer.commit();
+      }
+    }
+
+    final int numUpdates = atLeast(100);
+    for (int i = 0; i < numUpdates; i++) {
+      // ids in [numDocs, 2 * numDocs) are new, filters should tell they are not in existing segments
+      final int id = random().nextInt(2 * numDocs);
+      final long version = i + 1;
+      switch (random().nextInt(3)) {
+        case 0:
+          Document doc = new Document();
+          doc.add(newStringField("id", Integer.toString(id), Field.Store.NO));
+          doc.add(new NumericDocValuesField("version", version));
+          writer.updateDocument(new Term("id", Integer.toString(id)), doc);
+          expected.put(id, version);
+          break;
+        case 1:
+          writer.updateNumericDocValue(new Term("id", Integer.toString(id)), "version", version);
+          if (expected.containsKey(id)) {
+            expected.put(id, version);
+          }
+          break;
+        default:
+          writer.deleteDocuments(new Term("id", Integer.toString(id)));
+          expected.remove(id);
+          break;
+      }
+      if (random().nextInt(20) == 0) {
+        writer.commit();
+      }
+    }
+
+    DirectoryReader reader = DirectoryReader.open(writer);
+    assertEquals(expected.size(), reader.numDocs());
+    IndexSearcher searcher = newSearcher(reader);
+    for (int id = 0; id < 2 * numDocs; id++) {
+      TopDocs hits = searcher.search(new TermQuery(new Term("id", Integer.toString(id))), 2);
+      Long version = expected.get(id);
+      if (version == null) {
+        assertEquals(0, hits.totalHits);
+      } else {
+        assertEquals(1, hits.totalHits);
+        int doc = hits.scoreDocs[0].doc;
+        LeafReaderContext leaf = reader.leaves().get(ReaderUtil.subIndex(doc, reader.leaves()));
+        NumericDocValues versions = leaf.reader().getNumericDocValues("version");
+        assertTrue(versions.advanceExact(doc - leaf.docBase));
+        assertEquals(version.longValue(), versions.longValue());
+      }
+    }
+    reader.close();
+    writer.close();
+    dir.close();
+  }
+
   // test when delete terms only apply to disk segments
   public void testNonRAMDelete() throws IOException {
 
@@ -18,6 +18,10 @@ package org.apache.lucene.index;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
@@ -293,4 +297,60 @@ public class TestIndexWriterMergePolicy extends LuceneTestCase {
     
     // TODO: Add more checks for other non-double setters!
   }
+
+  public void testMergeOnCommitAndGetReader() throws IOException {
+    Set<MergeTrigger> triggers = EnumSet.noneOf(MergeTrigger.class);
+    MergePolicy mergePolicy = new MergePolicyWrapper(NoMergePolicy.INSTANCE) {
+      @Override
+      public MergeSpecification findFullFlushMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, IndexWriter writer) {
+        triggers.add(mergeTrigger);
+        List<SegmentCommitInfo> segments = new ArrayList<>();
+        for (SegmentCommitInfo info : segmentInfos) {
+          if (writer.getMergingSegments().contains(info) == false) {
+            segments.add(info);
+          }
+        }
+        if (segments.size() < 2) {
+          return null;
+        }
+        MergeSpecification spec = new MergeSpecification();
+        spec.add(new OneMerge(segments));
+        return spec;
+      }
+    };
+    Directory dir = newDirectory();
+    IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random()))
+                                                .setMaxBufferedDocs(10)
+                                                .setMergePolicy(mergePolicy)
+                                                .setMaxFullFlushMergeWaitMillis(60_000));
+
+    for (int i = 0; i < 45; i++) {
+      addDoc(writer);
+    }
+    DirectoryReader reader = DirectoryReader.open(writer);
+    assertEquals(EnumSet.of(MergeTrigger.GET_READER), triggers);
+    assertEquals(1, reader.leaves().size());
+    assertEquals(45, reader.numDocs());
+    reader.close();
+
+    for (int i = 0; i < 50; i++) {
+      addDoc(writer);
+    }
+    writer.commit();
+    assertEquals(EnumSet.of(MergeTrigger.GET_READER, MergeTrigger.COMMIT), triggers);
+    reader = DirectoryReader.open(dir);
+    assertEquals(1, reader.leaves().size());
+    assertEquals(95, reader.numDocs());
+    reader.close();
+
+    writer.getConfig().setMaxFullFlushMergeWaitMillis(0);
+    triggers.clear();
+    for (int i = 0; i < 20; i++) {
+      addDoc(writer);
+    }
+    writer.commit();
+    assertTrue(triggers.isEmpty());
+    writer.close();
+    dir.close();
+  }
 }
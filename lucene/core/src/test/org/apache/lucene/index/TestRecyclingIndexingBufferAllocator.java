@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IntBlockPool;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestRecyclingIndexingBufferAllocator extends LuceneTestCase {
+
+  public void testRecycleByteBlocks() {
+    RecyclingIndexingBufferAllocator allocator = new RecyclingIndexingBufferAllocator(2 * ByteBlockPool.BYTE_BLOCK_SIZE);
+    Counter bytesUsed = Counter.newCounter();
+    ByteBlockPool.Allocator byteAllocator = allocator.newByteBlockAllocator(bytesUsed);
+    byte[][] blocks = new byte[3][];
+    for (int i = 0; i < blocks.length; ++i) {
+      blocks[i] = byteAllocator.getByteBlock();
+      blocks[i][random().nextInt(blocks[i].length)] = 42;
+    }
+    assertEquals(3 * ByteBlockPool.BYTE_BLOCK_SIZE, bytesUsed.get());
+    byte[] last = blocks[1];
+    byteAllocator.recycleByteBlocks(blocks, 0, 3);
+    assertEquals(0, bytesUsed.get());
+    assertArrayEquals(new byte[3][], blocks);
+    // only two blocks fit in the budget
+    assertEquals(2 * ByteBlockPool.BYTE_BLOCK_SIZE, allocator.ramBytesUsed());
+
+    // blocks are shared across allocators, reused last-in first-out and handed out zero-filled
+    ByteBlockPool.Allocator other = allocator.newByteBlockAllocator(bytesUsed);
+    byte[] block = other.getByteBlock();
+    assertSame(last, block);
+    assertArrayEquals(new byte[ByteBlockPool.BYTE_BLOCK_SIZE], block);
+    assertEquals(ByteBlockPool.BYTE_BLOCK_SIZE, bytesUsed.get());
+    assertEquals(ByteBlockPool.BYTE_BLOCK_SIZE, allocator.ramBytesUsed());
+
+    allocator.clear();
+    assertEquals(0, allocator.ramBytesUsed());
+  }
+
+  public void testRecycleIntBlocks() {
+    final int blockBytes = IntBlockPool.INT_BLOCK_SIZE * Integer.BYTES;
+    RecyclingIndexingBufferAllocator allocator = new RecyclingIndexingBufferAllocator(blockBytes);
+    Counter bytesUsed = Counter.newCounter();
+    IntBlockPool.Allocator intAllocator = allocator.newIntBlockAllocator(bytesUsed);
+    int[][] blocks = new int[2][];
+    for (int i = 0; i < blocks.length; ++i) {
+      blocks[i] = intAllocator.getIntBlock();
+      blocks[i][random().nextInt(blocks[i].length)] = 42;
+    }
+    assertEquals(2 * blockBytes, bytesUsed.get());
+    intAllocator.recycleIntBlocks(blocks, 0, 2);
+    assertEquals(0, bytesUsed.get());
+    assertEquals(blockBytes, allocator.ramBytesUsed());
+    assertArrayEquals(new int[IntBlockPool.INT_BLOCK_SIZE], intAllocator.getIntBlock());
+    assertEquals(0, allocator.ramBytesUsed());
+  }
+
+  public void testIndexing() throws Exception {
+    RecyclingIndexingBufferAllocator allocator = new RecyclingIndexingBufferAllocator(TestUtil.nextInt(random(), 0, 1 << 22));
+    FieldType withVectors = new FieldType(TextField.TYPE_NOT_STORED);
+    withVectors.setStoreTermVectors(true);
+    withVectors.setStoreTermVectorPositions(true);
+    // the second writer reuses the blocks of the first one
+    for (int iter = 0; iter < 2; ++iter) {
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setIndexingBufferAllocator(allocator);
+      iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 10, 100));
+      IndexWriter w = new IndexWriter(dir, iwc);
+      int numDocs = atLeast(500);
+      for (int i = 0; i < numDocs; i++) {
+        Document doc = new Document();
+        doc.add(newStringField("id", "" + i, Field.Store.NO));
+        doc.add(new Field("body", "doc" + i + " some text " + random().nextInt(100), withVectors));
+        w.addDocument(doc);
+      }
+      DirectoryReader reader = DirectoryReader.open(w);
+      IndexSearcher searcher = newSearcher(reader);
+      for (int i = 0; i < 10; i++) {
+        int id = random().nextInt(numDocs);
+        assertEquals(1, searcher.count(new TermQuery(new Term("id", "" + id))));
+        assertEquals(1, searcher.count(new TermQuery(new Term("body", "doc" + id))));
+      }
+      reader.close();
+      w.close();
+      dir.close();
+      assertTrue(allocator.ramBytesUsed() <= allocator.getMaxBufferedBytes());
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestTermsBloomFilter extends LuceneTestCase {
+
+  public void testMayContain() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    Set<String> ids = new HashSet<>();
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      String id = TestUtil.randomSimpleString(random(), 1, 20);
+      ids.add(id);
+      Document doc = new Document();
+      doc.add(new StringField("id", id, Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+
+    Terms terms = getOnlyLeafReader(reader).terms("id");
+    TermsBloomFilter filter = TermsBloomFilter.build(terms);
+    assertTrue(filter.ramBytesUsed() > ids.size() * TermsBloomFilter.BITS_PER_TERM / Byte.SIZE);
+
+    // no false negatives
+    for (String id : ids) {
+      assertTrue(filter.mayContain(new BytesRef(id)));
+    }
+
+    // few false positives
+    int numFalsePositives = 0;
+    final int numLookups = 10000;
+    for (int i = 0; i < numLookups; ++i) {
+      String id = TestUtil.randomSimpleString(random(), 21, 30);
+      if (filter.mayContain(new BytesRef(id))) {
+        numFalsePositives++;
+      }
+    }
+    assertTrue("numFalsePositives=" + numFalsePositives, numFalsePositives < numLookups / 20);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testCachedOnCore() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    Document doc = new Document();
+    doc.add(new StringField("id", "1", Store.NO));
+    w.addDocument(doc);
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+
+    SegmentReader segmentReader = (SegmentReader) getOnlyLeafReader(reader);
+    TermsBloomFilter filter = segmentReader.core.getTermsBloomFilter("id");
+    assertNotNull(filter);
+    assertSame(filter, segmentReader.core.getTermsBloomFilter("id"));
+    assertTrue(filter.mayContain(new BytesRef("1")));
+    assertNull(segmentReader.core.getTermsBloomFilter("missing"));
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testGet() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    Document doc = new Document();
+    doc.add(new StringField("id", "1", Store.NO));
+    w.addDocument(doc);
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+
+    LeafReader leafReader = getOnlyLeafReader(reader);
+    assertNull(TermsBloomFilter.getIfBuilt(leafReader, "id"));
+    TermsBloomFilter filter = TermsBloomFilter.get(leafReader, "id");
+    assertNotNull(filter);
+    assertSame(filter, TermsBloomFilter.getIfBuilt(leafReader, "id"));
+    assertSame(((SegmentReader) leafReader).core.getTermsBloomFilter("id"), filter);
+    assertNull(TermsBloomFilter.get(leafReader, "missing"));
+
+    // filters are resolved through wrappers
+    LeafReader wrapped = new FilterLeafReader(leafReader) {
+      @Override
+      public CacheHelper getCoreCacheHelper() {
+        return in.getCoreCacheHelper();
+      }
+
+      @Override
+      public CacheHelper getReaderCacheHelper() {
+        return in.getReaderCacheHelper();
+      }
+    };
+    assertSame(filter, TermsBloomFilter.get(wrapped, "id"));
+    assertSame(filter, TermsBloomFilter.getIfBuilt(wrapped, "id"));
+
+    // but not through other readers
+    LeafReader parallel = new ParallelLeafReader(false, leafReader);
+    assertNull(TermsBloomFilter.get(parallel, "id"));
+    parallel.close();
+
+    reader.close();
+    dir.close();
+  }
+}
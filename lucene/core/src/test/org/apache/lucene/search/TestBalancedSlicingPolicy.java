@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
+
+public class TestBalancedSlicingPolicy extends LuceneTestCase {
+
+  private static DirectoryReader buildReader(Directory dir) throws IOException {
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    final int numSegments = TestUtil.nextInt(random(), 1, 20);
+    for (int i = 0; i < numSegments; ++i) {
+      final int numDocs = random().nextBoolean() ? TestUtil.nextInt(random(), 1, 10) : TestUtil.nextInt(random(), 10, 200);
+      for (int j = 0; j < numDocs; ++j) {
+        Document doc = new Document();
+        doc.add(new StringField("foo", random().nextBoolean() ? "bar" : "baz", Store.NO));
+        w.addDocument(doc);
+      }
+      if (rarely()) {
+        w.deleteDocuments(new Term("foo", "baz"));
+      }
+      w.flush();
+    }
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+    return reader;
+  }
+
+  private static void assertCoversAllDocs(IndexReader reader, LeafSlice[] slices) {
+    int expectedOrd = 0;
+    int expectedMinDoc = 0;
+    for (LeafSlice slice : slices) {
+      if (slice.isPartition()) {
+        assertEquals(1, slice.leaves.length);
+        LeafReaderContext leaf = slice.leaves[0];
+        assertEquals(expectedOrd, leaf.ord);
+        assertEquals(expectedMinDoc, slice.minDoc);
+        if (slice.maxDoc == leaf.reader().maxDoc()) {
+          expectedOrd++;
+          expectedMinDoc = 0;
+        } else {
+          expectedMinDoc = slice.maxDoc;
+        }
+      } else {
+        assertEquals(0, expectedMinDoc);
+        for (LeafReaderContext leaf : slice.leaves) {
+          assertEquals(expectedOrd++, leaf.ord);
+        }
+      }
+    }
+    assertEquals(reader.leaves().size(), expectedOrd);
+  }
+
+  public void testSlices() throws IOException {
+    Directory dir = newDirectory();
+    DirectoryReader reader = buildReader(dir);
+    final int maxSlices = TestUtil.nextInt(random(), 1, 8);
+    BalancedSlicingPolicy policy = new BalancedSlicingPolicy(maxSlices, random().nextInt(100), random().nextBoolean());
+    LeafSlice[] slices = policy.slices(reader.leaves());
+    assertCoversAllDocs(reader, slices);
+    IOUtils.close(reader, dir);
+  }
+
+  public void testGroupSmallLeaves() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    for (int i = 0; i < 10; ++i) {
+      w.addDocument(new Document());
+      w.flush();
+    }
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+    assertEquals(10, reader.leaves().size());
+
+    LeafSlice[] slices = new BalancedSlicingPolicy(2, 0, false).slices(reader.leaves());
+    assertEquals(2, slices.length);
+    assertEquals(5, slices[0].leaves.length);
+    assertEquals(5, slices[1].leaves.length);
+
+    slices = new BalancedSlicingPolicy(8, 100, false).slices(reader.leaves());
+    assertEquals(1, slices.length);
+    assertEquals(10, slices[0].leaves.length);
+
+    IOUtils.close(reader, dir);
+  }
+
+  public void testSplitLargeLeaves() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    for (int i = 0; i < 100; ++i) {
+      w.addDocument(new Document());
+    }
+    w.forceMerge(1);
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+
+    LeafSlice[] slices = new BalancedSlicingPolicy(4, 0, true).slices(reader.leaves());
+    assertEquals(4, slices.length);
+    assertCoversAllDocs(reader, slices);
+
+    slices = new BalancedSlicingPolicy(4, 0, false).slices(reader.leaves());
+    assertEquals(1, slices.length);
+    assertFalse(slices[0].isPartition());
+
+    IOUtils.close(reader, dir);
+  }
+
+  public void testZeroCostLeavesBeforeSplitLeaf() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    for (int i = 0; i < 3; ++i) {
+      w.addDocument(new Document());
+      w.flush();
+    }
+    for (int i = 0; i < 100; ++i) {
+      w.addDocument(new Document());
+    }
+    w.flush();
+    DirectoryReader reader = DirectoryReader.open(w);
+    w.close();
+    assertEquals(4, reader.leaves().size());
+
+    BalancedSlicingPolicy policy = new BalancedSlicingPolicy(4, 0, true) {
+      @Override
+      protected long leafCost(LeafReaderContext leaf) {
+        return leaf.ord < 3 ? 0 : super.leafCost(leaf);
+      }
+    };
+    LeafSlice[] slices = policy.slices(reader.leaves());
+    assertEquals(5, slices.length);
+    assertFalse(slices[0].isPartition());
+    assertEquals(3, slices[0].leaves.length);
+    assertCoversAllDocs(reader, slices);
+
+    IOUtils.close(reader, dir);
+  }
+
+  public void testCaching() throws IOException {
+    Directory dir = newDirectory();
+    DirectoryReader reader = buildReader(dir);
+    BalancedSlicingPolicy policy = new BalancedSlicingPolicy(4, 0, true);
+    LeafSlice[] slices = policy.slices(reader.leaves());
+    assertEquals(1, policy.cacheSize());
+    assertSame(slices, policy.slices(reader.leaves()));
+    assertSame(slices, new IndexSearcher(reader, null, policy).slices(reader.leaves()));
+    assertEquals(1, policy.cacheSize());
+    reader.close();
+    assertEquals(0, policy.cacheSize());
+    dir.close();
+  }
+
+  public void testSearch() throws IOException {
+    Directory dir = newDirectory();
+    DirectoryReader reader = buildReader(dir);
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new NamedThreadFactory("TestBalancedSlicingPolicy"));
+    BalancedSlicingPolicy policy = new BalancedSlicingPolicy(4, random().nextInt(50), random().nextBoolean());
+    IndexSearcher sliced = new IndexSearcher(reader, service, policy);
+    assertSame(policy, sliced.getSlicingPolicy());
+    IndexSearcher single = new IndexSearcher(reader);
+    assertEquals(0, policy.getSearchCount());
+    assertEquals(1, policy.getImbalance(), 0d);
+    for (Query query : Arrays.asList(
+        new MatchAllDocsQuery(),
+        new TermQuery(new Term("foo", "bar")),
+        new ConstantScoreQuery(new TermQuery(new Term("foo", "baz"))))) {
+      TopDocs expected = single.search(query, 10);
+      TopDocs actual = sliced.search(query, 10);
+      assertEquals(expected.totalHits, actual.totalHits);
+      CheckHits.checkEqual(query, expected.scoreDocs, actual.scoreDocs);
+    }
+    assertEquals(3, policy.getSearchCount());
+    assertTrue(policy.getImbalance() >= 1);
+    TestUtil.shutdownExecutorService(service);
+    IOUtils.close(reader, dir);
+  }
+
+  public void testIllegalArgs() {
+    expectThrows(IllegalArgumentException.class, () -> {
+      new BalancedSlicingPolicy(0, 0, false);
+    });
+    expectThrows(IllegalArgumentException.class, () -> {
+      new BalancedSlicingPolicy(1, -1, false);
+    });
+  }
+}
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.carrotsearch.randomizedtesting.generators.RandomPicks;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestConcurrentQueryCache extends LuceneTestCase {
+
+  private static final QueryCachingPolicy NEVER_CACHE = new QueryCachingPolicy() {
+
+    @Override
+    public void onUse(Query query) {}
+
+    @Override
+    public boolean shouldCache(Query query) throws IOException {
+      return false;
+    }
+
+  };
+
+  public void testConcurrency() throws Throwable {
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(1 + random().nextInt(20), 1 + random().nextInt(10000),
+        context -> random().nextBoolean(), 1 + random().nextInt(8));
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final SearcherFactory searcherFactory = new SearcherFactory() {
+      @Override
+      public IndexSearcher newSearcher(IndexReader reader, IndexReader previous) throws IOException {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        searcher.setQueryCachingPolicy(MAYBE_CACHE_POLICY);
+        searcher.setQueryCache(queryCache);
+        return searcher;
+      }
+    };
+    final boolean applyDeletes = random().nextBoolean();
+    final SearcherManager mgr = new SearcherManager(w.w, applyDeletes, false, searcherFactory);
+    final AtomicBoolean indexing = new AtomicBoolean(true);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final int numDocs = atLeast(10000);
+    final String[] colors = new String[] {"blue", "red", "yellow", "green", "purple", "orange"};
+    Thread[] threads = new Thread[4];
+    threads[0] = new Thread() {
+      public void run() {
+        Document doc = new Document();
+        StringField f = new StringField("color", "", Store.NO);
+        doc.add(f);
+        for (int i = 0; indexing.get() && i < numDocs; ++i) {
+          f.setStringValue(RandomPicks.randomFrom(random(), colors));
+          try {
+            w.addDocument(doc);
+            if ((i & 63) == 0) {
+              mgr.maybeRefresh();
+              if (rarely()) {
+                queryCache.clear();
+              }
+              if (rarely()) {
+                w.deleteDocuments(new Term("color", RandomPicks.randomFrom(random(), colors)));
+              }
+            }
+          } catch (Throwable t) {
+            error.compareAndSet(null, t);
+            break;
+          }
+        }
+        indexing.set(false);
+      }
+    };
+    for (int i = 1; i < threads.length; ++i) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          while (indexing.get()) {
+            try {
+              final IndexSearcher searcher = mgr.acquire();
+              try {
+                final String value = RandomPicks.randomFrom(random(), colors);
+                final Query q = new TermQuery(new Term("color", value));
+                TotalHitCountCollector collector = new TotalHitCountCollector();
+                searcher.search(q, collector); // will use the cache
+                final int totalHits1 = collector.getTotalHits();
+                final long totalHits2 = searcher.search(q, 1).totalHits; // will not use the cache because of scores
+                assertEquals(totalHits2, totalHits1);
+              } finally {
+                mgr.release(searcher);
+              }
+            } catch (Throwable t) {
+              error.compareAndSet(null, t);
+            }
+          }
+        }
+      };
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    if (error.get() != null) {
+      throw error.get();
+    }
+    queryCache.assertConsistent();
+    mgr.close();
+    w.close();
+    dir.close();
+    queryCache.assertConsistent();
+    assertEquals(0, queryCache.getCacheSize());
+  }
+
+  public void testClockEviction() throws Exception {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    final List<String> colors = Arrays.asList("blue", "red", "green", "yellow");
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    for (String color : colors) {
+      f.setStringValue(color);
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    // no executor so that leaves are visited in order
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    // a single shard so that the clock order is deterministic
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(2, 100000, context -> true, 1);
+    searcher.setQueryCache(queryCache);
+
+    // the filter is not cached on any segment: no changes
+    searcher.setQueryCachingPolicy(NEVER_CACHE);
+    searcher.search(new ConstantScoreQuery(new TermQuery(new Term("color", "green"))), 1);
+    assertTrue(queryCache.cachedQueries().isEmpty());
+
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    searcher.search(new ConstantScoreQuery(new TermQuery(new Term("color", "blue"))), 1);
+    searcher.search(new ConstantScoreQuery(new TermQuery(new Term("color", "red"))), 1);
+    assertEquals(new HashSet<>(Arrays.asList(
+        new TermQuery(new Term("color", "blue")),
+        new TermQuery(new Term("color", "red")))),
+        new HashSet<>(queryCache.cachedQueries()));
+    queryCache.assertConsistent();
+
+    // all queries have been marked on insertion, so the clock hand clears
+    // all marks and then evicts the oldest query
+    searcher.search(new ConstantScoreQuery(new TermQuery(new Term("color", "green"))), 1);
+    assertEquals(new HashSet<>(Arrays.asList(
+        new TermQuery(new Term("color", "red")),
+        new TermQuery(new Term("color", "green")))),
+        new HashSet<>(queryCache.cachedQueries()));
+    queryCache.assertConsistent();
+
+    // a hit on "red" gives it a second chance, so "green" gets evicted
+    // although it has been added more recently
+    searcher.search(new ConstantScoreQuery(new TermQuery(new Term("color", "red"))), 1);
+    searcher.search(new ConstantScoreQuery(new TermQuery(new Term("color", "yellow"))), 1);
+    assertEquals(new HashSet<>(Arrays.asList(
+        new TermQuery(new Term("color", "red")),
+        new TermQuery(new Term("color", "yellow")))),
+        new HashSet<>(queryCache.cachedQueries()));
+    queryCache.assertConsistent();
+
+    // a query that has been cleared is not considered by the clock anymore
+    queryCache.clearQuery(new TermQuery(new Term("color", "red")));
+    searcher.search(new ConstantScoreQuery(new TermQuery(new Term("color", "blue"))), 1);
+    assertEquals(new HashSet<>(Arrays.asList(
+        new TermQuery(new Term("color", "yellow")),
+        new TermQuery(new Term("color", "blue")))),
+        new HashSet<>(queryCache.cachedQueries()));
+    queryCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testPutAfterReaderClosed() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    w.addDocument(new Document());
+    w.close();
+    final DirectoryReader reader = DirectoryReader.open(dir);
+    final IndexReader.CacheHelper cacheHelper = reader.leaves().get(0).reader().getCoreCacheHelper();
+    assumeTrue("test requires a core cache helper", cacheHelper != null);
+
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(Integer.MAX_VALUE, Long.MAX_VALUE, context -> true, 4);
+    final Query query = new TermQuery(new Term("color", "blue"));
+    queryCache.putIfAbsent(query, DocIdSet.EMPTY, cacheHelper);
+    assertEquals(1, queryCache.getCacheSize());
+
+    // simulates a put that races with the closing of the reader
+    reader.close();
+    assertEquals(0, queryCache.getCacheSize());
+    queryCache.putIfAbsent(query, DocIdSet.EMPTY, cacheHelper);
+    assertEquals(0, queryCache.getCacheSize());
+    queryCache.assertConsistent();
+
+    dir.close();
+  }
+
+  public void testCacheAfterClearCoreCacheKey() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    w.addDocument(new Document());
+    final DirectoryReader reader = w.getReader();
+    final IndexReader.CacheHelper cacheHelper = reader.leaves().get(0).reader().getCoreCacheHelper();
+    assumeTrue("test requires a core cache helper", cacheHelper != null);
+
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(Integer.MAX_VALUE, Long.MAX_VALUE, context -> true, 4);
+    final Query query = new TermQuery(new Term("color", "blue"));
+    queryCache.putIfAbsent(query, DocIdSet.EMPTY, cacheHelper);
+    assertEquals(1, queryCache.getCacheSize());
+
+    // clearing entries of a live reader doesn't prevent them from being cached again
+    queryCache.clearCoreCacheKey(cacheHelper.getKey());
+    assertEquals(0, queryCache.getCacheSize());
+    assertNull(queryCache.get(query, cacheHelper));
+    queryCache.putIfAbsent(query, DocIdSet.EMPTY, cacheHelper);
+    assertEquals(1, queryCache.getCacheSize());
+    assertSame(DocIdSet.EMPTY, queryCache.get(query, cacheHelper));
+    queryCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testClearQuery() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    final int numDocs = atLeast(10);
+    for (int i = 0; i < numDocs; ++i) {
+      f.setStringValue(random().nextBoolean() ? "red" : "blue");
+      w.addDocument(doc);
+    }
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = newSearcher(reader);
+
+    final Query query1 = new TermQuery(new Term("color", "blue"));
+    // different instance yet equal
+    final Query query2 = new TermQuery(new Term("color", "blue"));
+
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(Integer.MAX_VALUE, Long.MAX_VALUE, context -> true, 4);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    searcher.search(new BoostQuery(new ConstantScoreQuery(query1), random().nextFloat()), 1);
+    assertEquals(1, queryCache.cachedQueries().size());
+    assertTrue(queryCache.ramBytesUsed() > 0);
+
+    queryCache.clearQuery(query2);
+
+    assertTrue(queryCache.cachedQueries().isEmpty());
+    queryCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    dir.close();
+    assertEquals(0, queryCache.ramBytesUsed());
+  }
+
+  public void testStats() throws IOException {
+    final ConcurrentQueryCache queryCache = new ConcurrentQueryCache(10, 10000000, context -> true, 4);
+
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+
+    final List<String> colors = Arrays.asList("blue", "red", "green", "yellow");
+
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    for (int i = 0; i < 10; ++i) {
+      f.setStringValue(RandomPicks.randomFrom(random(), colors));
+      w.addDocument(doc);
+      if (random().nextBoolean()) {
+        w.getReader().close();
+      }
+    }
+
+    final DirectoryReader reader = w.getReader();
+    final int segmentCount = reader.leaves().size();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    final Query query = new TermQuery(new Term("color", "red"));
+
+    searcher.setQueryCache(queryCache);
+    // first pass, lookups without caching that all miss
+    searcher.setQueryCachingPolicy(NEVER_CACHE);
+    for (int i = 0; i < 10; ++i) {
+      searcher.search(new ConstantScoreQuery(query), 1);
+    }
+    assertEquals(10 * segmentCount, queryCache.getTotalCount());
+    assertEquals(0, queryCache.getHitCount());
+    assertEquals(10 * segmentCount, queryCache.getMissCount());
+    assertEquals(0, queryCache.getCacheCount());
+    assertEquals(0, queryCache.getCacheSize());
+
+    // second pass, lookups + caching, only the first one is a miss
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    for (int i = 0; i < 10; ++i) {
+      searcher.search(new ConstantScoreQuery(query), 1);
+    }
+    assertEquals(20 * segmentCount, queryCache.getTotalCount());
+    assertEquals(9 * segmentCount, queryCache.getHitCount());
+    assertEquals(11 * segmentCount, queryCache.getMissCount());
+    assertEquals(1 * segmentCount, queryCache.getCacheCount());
+    assertEquals(0, queryCache.getEvictionCount());
+    assertEquals(1 * segmentCount, queryCache.getCacheSize());
+
+    // now close, causing evictions due to the closing of segment cores
+    reader.close();
+    w.close();
+    assertEquals(1 * segmentCount, queryCache.getCacheCount());
+    assertEquals(1 * segmentCount, queryCache.getEvictionCount());
+    assertEquals(0, queryCache.getCacheSize());
+    queryCache.assertConsistent();
+
+    dir.close();
+  }
+
+  public void testOnUse() throws IOException {
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    w.addDocument(new Document());
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+
+    final AtomicInteger onUseCount = new AtomicInteger();
+    searcher.setQueryCache(new ConcurrentQueryCache(10, 10000, context -> true, 2));
+    searcher.setQueryCachingPolicy(new QueryCachingPolicy() {
+      @Override
+      public void onUse(Query query) {
+        onUseCount.incrementAndGet();
+      }
+
+      @Override
+      public boolean shouldCache(Query query) throws IOException {
+        return true;
+      }
+    });
+    searcher.search(new ConstantScoreQuery(new TermQuery(new Term("foo", "bar"))), 1);
+    assertEquals(1, onUseCount.get());
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testIllegalArgs() {
+    expectThrows(IllegalArgumentException.class, () -> {
+      new ConcurrentQueryCache(10, 10000, context -> true, 0);
+    });
+  }
+}
@@ -19,6 +19,8 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -30,10 +32,12 @@ import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
@@ -118,6 +122,64 @@ public class TestIndexSearcher extends LuceneTestCase {
     TestUtil.shutdownExecutorService(service);
   }
 
+  public void testPartitionedSlices() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("foo", random().nextBoolean() ? "bar" : "baz", Store.NO));
+      doc.add(new SortedDocValuesField("foo", new BytesRef(Integer.toString(random().nextInt(10)))));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader r = w.getReader();
+    w.close();
+
+    final int maxDocsPerPartition = TestUtil.nextInt(random(), 1, 50);
+    LeafSlice[] slices = IndexSearcher.partitionedSlices(r.leaves(), maxDocsPerPartition);
+    int expectedMinDoc = 0;
+    for (LeafSlice slice : slices) {
+      assertEquals(1, slice.leaves.length);
+      assertEquals(expectedMinDoc, slice.minDoc);
+      assertTrue(slice.maxDoc - slice.minDoc <= maxDocsPerPartition);
+      expectedMinDoc = slice.maxDoc;
+    }
+    assertEquals(r.maxDoc(), expectedMinDoc);
+
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new NamedThreadFactory("TestIndexSearcher"));
+    IndexSearcher partitioned = new IndexSearcher(r, service) {
+      @Override
+      protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        return partitionedSlices(leaves, maxDocsPerPartition);
+      }
+    };
+    IndexSearcher single = newSearcher(r);
+    for (Query query : Arrays.asList(
+        new MatchAllDocsQuery(),
+        new TermQuery(new Term("foo", "bar")),
+        new ConstantScoreQuery(new TermQuery(new Term("foo", "baz"))))) {
+      TopDocs expected = single.search(query, 20);
+      TopDocs actual = partitioned.search(query, 20);
+      CheckHits.checkEqual(query, expected.scoreDocs, actual.scoreDocs);
+      assertEquals(expected.totalHits, actual.totalHits);
+
+      Sort sort = new Sort(new SortField("foo", SortField.Type.STRING));
+      CheckHits.checkEqual(query, single.search(query, 20, sort).scoreDocs, partitioned.search(query, 20, sort).scoreDocs);
+    }
+
+    TestUtil.shutdownExecutorService(service);
+    IOUtils.close(r, dir);
+  }
+
+  public void testPartitionedSlicesIllegalArgs() {
+    expectThrows(IllegalArgumentException.class, () -> {
+      IndexSearcher.partitionedSlices(Collections.emptyList(), 0);
+    });
+  }
+
   @Test
   public void testSearchAfterPassedMaxDoc() throws Exception {
     // LUCENE-5128: ensure we get a meaningful message if searchAfter exceeds maxDoc
@@ -18,9 +18,14 @@ package org.apache.lucene.store;
 
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 
 import org.junit.Ignore;
 
@@ -36,6 +41,12 @@ public class TestMmapDirectory extends BaseDirectoryTestCase {
     m.setPreload(random().nextBoolean());
     return m;
   }
+
+  @Override
+  protected boolean setPrefetchExecutor(Directory dir, Executor executor) {
+    ((MMapDirectory) dir).setPrefetchExecutor(executor);
+    return true;
+  }
   
   @Override
   public void setUp() throws Exception {
@@ -77,4 +88,46 @@ public class TestMmapDirectory extends BaseDirectoryTestCase {
       dir.close();
     }
   }
+
+  public void testReadAdvice() throws Exception {
+    List<ReadAdvice> advices = new ArrayList<>();
+    MMapDirectory dir = new MMapDirectory(createTempDir("testReadAdviceOverride"), 64) {
+      @Override
+      protected void madvise(ByteBuffer buffer, ReadAdvice advice) {
+        advices.add(advice);
+      }
+    };
+    try (IndexOutput out = dir.createOutput("test", IOContext.DEFAULT)) {
+      out.writeBytes(new byte[100], 100);
+    }
+    // 64 + 36 bytes
+    dir.openInput("test", IOContext.DEFAULT).close();
+    assertEquals(Arrays.asList(ReadAdvice.NORMAL, ReadAdvice.NORMAL), advices);
+    advices.clear();
+    dir.openInput("test", IOContext.READONCE).close();
+    assertEquals(Arrays.asList(ReadAdvice.NORMAL, ReadAdvice.NORMAL), advices);
+    advices.clear();
+    dir.openInput("test", new IOContext(new MergeInfo(10, 100, false, -1))).close();
+    assertEquals(Arrays.asList(ReadAdvice.NORMAL, ReadAdvice.NORMAL), advices);
+    dir.close();
+
+    List<ReadAdvice> randomAdvices = new ArrayList<>();
+    dir = new MMapDirectory(createTempDir("testReadAdviceOverride"), 64) {
+      @Override
+      protected ReadAdvice getReadAdvice(String name, IOContext context) {
+        return ReadAdvice.RANDOM;
+      }
+
+      @Override
+      protected void madvise(ByteBuffer buffer, ReadAdvice advice) {
+        randomAdvices.add(advice);
+      }
+    };
+    try (IndexOutput out = dir.createOutput("test", IOContext.DEFAULT)) {
+      out.writeBytes(new byte[100], 100);
+    }
+    dir.openInput("test", IOContext.DEFAULT).close();
+    assertEquals(Arrays.asList(ReadAdvice.RANDOM, ReadAdvice.RANDOM), randomAdvices);
+    dir.close();
+  }
 }
@@ -19,6 +19,7 @@ package org.apache.lucene.store;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.concurrent.Executor;
 
 /**
  * Tests NIOFSDirectory
@@ -29,4 +30,10 @@ public class TestNIOFSDirectory extends BaseDirectoryTestCase {
   protected Directory getDirectory(Path path) throws IOException {
     return new NIOFSDirectory(path);
   }
+
+  @Override
+  protected boolean setPrefetchExecutor(Directory dir, Executor executor) {
+    ((NIOFSDirectory) dir).setPrefetchExecutor(executor);
+    return true;
+  }
 }
@@ -22,7 +22,10 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.MergeState;
@@ -254,6 +257,108 @@ public class TestBKD extends LuceneTestCase {
     }
   }
 
+  public void testSortOffHeap() throws Exception {
+    int numDocs = atLeast(10000);
+    int numDims = TestUtil.nextInt(random(), 2, 4);
+    int maxPointsInLeafNode = TestUtil.nextInt(random(), 50, 100);
+    try (Directory dir0 = newDirectory()) {
+      // points do not fit in heap, but sorting must not go offline
+      Directory dir = new FilterDirectory(dir0) {
+        @Override
+        public IndexOutput createTempOutput(String prefix, String suffix, IOContext context) throws IOException {
+          throw new AssertionError("should not sort offline: prefix=" + prefix + " suffix=" + suffix);
+        }
+      };
+      BKDWriter w = new BKDWriter(numDocs, dir, "tmp", numDims, 4, maxPointsInLeafNode, 0.05, numDocs, true, 16);
+
+      int[][] docs = new int[numDocs][];
+      byte[] scratch = new byte[4*numDims];
+      for(int docID=0;docID<numDocs;docID++) {
+        int[] values = new int[numDims];
+        for(int dim=0;dim<numDims;dim++) {
+          values[dim] = random().nextInt();
+          NumericUtils.intToSortableBytes(values[dim], scratch, dim * Integer.BYTES);
+        }
+        docs[docID] = values;
+        w.add(scratch, docID);
+      }
+
+      long indexFP;
+      try (IndexOutput out = dir.createOutput("bkd", IOContext.DEFAULT)) {
+        indexFP = w.finish(out);
+      }
+      w.close();
+
+      try (IndexInput in = dir.openInput("bkd", IOContext.DEFAULT)) {
+        in.seek(indexFP);
+        BKDReader r = new BKDReader(in);
+        assertEquals(numDocs, r.size());
+        assertEquals(numDocs, r.getDocCount());
+
+        int iters = atLeast(20);
+        for(int iter=0;iter<iters;iter++) {
+          int[] queryMin = new int[numDims];
+          int[] queryMax = new int[numDims];
+          for(int dim=0;dim<numDims;dim++) {
+            queryMin[dim] = random().nextInt();
+            queryMax[dim] = random().nextInt();
+            if (queryMin[dim] > queryMax[dim]) {
+              int x = queryMin[dim];
+              queryMin[dim] = queryMax[dim];
+              queryMax[dim] = x;
+            }
+          }
+
+          final BitSet hits = new BitSet();
+          r.intersect(new IntersectVisitor() {
+            @Override
+            public void visit(int docID) {
+              hits.set(docID);
+            }
+
+            @Override
+            public void visit(int docID, byte[] packedValue) {
+              for(int dim=0;dim<numDims;dim++) {
+                int x = NumericUtils.sortableBytesToInt(packedValue, dim * Integer.BYTES);
+                if (x < queryMin[dim] || x > queryMax[dim]) {
+                  return;
+                }
+              }
+              hits.set(docID);
+            }
+
+            @Override
+            public Relation compare(byte[] minPacked, byte[] maxPacked) {
+              boolean crosses = false;
+              for(int dim=0;dim<numDims;dim++) {
+                int min = NumericUtils.sortableBytesToInt(minPacked, dim * Integer.BYTES);
+                int max = NumericUtils.sortableBytesToInt(maxPacked, dim * Integer.BYTES);
+                if (max < queryMin[dim] || min > queryMax[dim]) {
+                  return Relation.CELL_OUTSIDE_QUERY;
+                } else if (min < queryMin[dim] || max > queryMax[dim]) {
+                  crosses = true;
+                }
+              }
+              return crosses ? Relation.CELL_CROSSES_QUERY : Relation.CELL_INSIDE_QUERY;
+            }
+          });
+
+          for(int docID=0;docID<numDocs;docID++) {
+            boolean expected = true;
+            for(int dim=0;dim<numDims;dim++) {
+              int x = docs[docID][dim];
+              if (x < queryMin[dim] || x > queryMax[dim]) {
+                expected = false;
+                break;
+              }
+            }
+            assertEquals("docID=" + docID, expected, hits.get(docID));
+          }
+        }
+      }
+    }
+  }
+
   // Tests on N-dimensional points where each dimension is a BigInteger
   public void testBigIntNDims() throws Exception {
 
@@ -546,6 +651,123 @@ public class TestBKD extends LuceneTestCase {
     verify(docValues, null, numDims, numBytesPerDim, TestUtil.nextInt(random(), 20, 50));
   }
 
+  // Segments have disjoint value ranges, like with timestamps, so merging can append them
+  public void testOneDimDisjointSegments() throws Exception {
+    final int numSegments = TestUtil.nextInt(random(), 2, 5);
+    final int maxPointsInLeafNode = TestUtil.nextInt(random(), 16, 512);
+    final int[] segmentSizes = new int[numSegments];
+    int totalDocs = 0;
+    for (int seg = 0; seg < numSegments; seg++) {
+      segmentSizes[seg] = TestUtil.nextInt(random(), 100, 2000);
+      totalDocs += segmentSizes[seg];
+    }
+
+    try (Directory dir = getDirectory(totalDocs)) {
+      // values of each segment are greater than the values of the previous one, with some duplicates
+      final long[][] segmentValues = new long[numSegments][];
+      long value = random().nextInt(1000);
+      for (int seg = 0; seg < numSegments; seg++) {
+        segmentValues[seg] = new long[segmentSizes[seg]];
+        value++;
+        for (int docID = 0; docID < segmentSizes[seg]; docID++) {
+          value += TestUtil.nextInt(random(), 0, 10);
+          segmentValues[seg][docID] = value;
+        }
+      }
+
+      // write segments in random order, some of them with deleted documents, so that
+      // both copied and re-encoded leaf blocks are merged
+      final List<Integer> order = new ArrayList<>();
+      for (int seg = 0; seg < numSegments; seg++) {
+        order.add(seg);
+      }
+      Collections.shuffle(order, random());
+      final Map<Integer,Long> expected = new HashMap<>();
+      final List<Long> toMerge = new ArrayList<>();
+      final List<MergeState.DocMap> docMaps = new ArrayList<>();
+      final byte[] scratch = new byte[Long.BYTES];
+      int docBase = 0;
+      try (IndexOutput out = dir.createOutput("bkd", IOContext.DEFAULT)) {
+        for (int seg : order) {
+          final int numDocs = segmentSizes[seg];
+          final boolean hasDeletions = random().nextBoolean();
+          BKDWriter w = new BKDWriter(numDocs, dir, "_" + seg, 1, Long.BYTES,
+              maxPointsInLeafNode, BKDWriter.DEFAULT_MAX_MB_SORT_IN_HEAP, numDocs, true);
+          final int[] newDocIDs = new int[numDocs];
+          int newDocID = docBase;
+          for (int docID = 0; docID < numDocs; docID++) {
+            NumericUtils.longToSortableBytes(segmentValues[seg][docID], scratch, 0);
+            w.add(scratch, docID);
+            if (hasDeletions && random().nextInt(10) == 0) {
+              newDocIDs[docID] = -1;
+            } else {
+              expected.put(newDocID, segmentValues[seg][docID]);
+              newDocIDs[docID] = newDocID++;
+            }
+          }
+          docBase = newDocID;
+          toMerge.add(w.finish(out));
+          w.close();
+          docMaps.add(new MergeState.DocMap() {
+            @Override
+            public int get(int docID) {
+              return newDocIDs[docID];
+            }
+          });
+        }
+      }
+
+      final long indexFP;
+      try (IndexInput in = dir.openInput("bkd", IOContext.DEFAULT);
+           IndexOutput out = dir.createOutput("bkd2", IOContext.DEFAULT)) {
+        final List<BKDReader> readers = new ArrayList<>();
+        for (long fp : toMerge) {
+          in.seek(fp);
+          readers.add(new BKDReader(in));
+        }
+        BKDWriter w = new BKDWriter(docBase, dir, "_merged", 1, Long.BYTES,
+            maxPointsInLeafNode, BKDWriter.DEFAULT_MAX_MB_SORT_IN_HEAP, totalDocs, true);
+        indexFP = w.merge(out, docMaps, readers);
+        w.close();
+      }
+
+      try (IndexInput in = dir.openInput("bkd2", IOContext.DEFAULT)) {
+        in.seek(indexFP);
+        BKDReader r = new BKDReader(in);
+        assertEquals(expected.size(), r.size());
+        assertEquals(expected.size(), r.getDocCount());
+        final long min = Collections.min(expected.values());
+        final long max = Collections.max(expected.values());
+        assertEquals(min, NumericUtils.sortableBytesToLong(r.getMinPackedValue(), 0));
+        assertEquals(max, NumericUtils.sortableBytesToLong(r.getMaxPackedValue(), 0));
+
+        final Map<Integer,Long> actual = new HashMap<>();
+        final long[] lastValue = new long[] {Long.MIN_VALUE};
+        r.intersect(new IntersectVisitor() {
+          @Override
+          public void visit(int docID) {
+            throw new AssertionError();
+          }
+
+          @Override
+          public void visit(int docID, byte[] packedValue) {
+            final long value = NumericUtils.sortableBytesToLong(packedValue, 0);
+            // the merged tree is sorted across segments
+            assertTrue(value >= lastValue[0]);
+            lastValue[0] = value;
+            assertNull(actual.put(docID, value));
+          }
+
+          @Override
+          public Relation compare(byte[] minPacked, byte[] maxPacked) {
+            return Relation.CELL_CROSSES_QUERY;
+          }
+        });
+        assertEquals(expected, actual);
+      }
+    }
+  }
+
   // this should trigger run-length compression with lengths that are greater than 255
   public void testOneDimTwoValues() throws Exception {
     int numBytesPerDim = TestUtil.nextInt(random(), 2, 30);
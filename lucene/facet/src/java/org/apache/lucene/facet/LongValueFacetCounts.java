@@ -59,6 +59,13 @@ public class LongValueFacetCounts extends Facets {
   /** Total number of values counted, which is the subset of hits that had a value for this field. */
   private int totCount;
 
+  /** Number of documents whose values are loaded at once. */
+  private static final int BULK_SIZE = 1024;
+
+  /** Buffers for bulk loading of values, lazily created. */
+  private int[] bulkDocs;
+  private long[] bulkValues;
+
   /** Create {@code LongValueFacetCounts}, using either single-valued {@link
    *  NumericDocValues} or multi-valued {@link SortedNumericDocValues} from the
    *  specified field. */
@@ -145,15 +152,37 @@ public class LongValueFacetCounts extends Facets {
   }
 
   private void countOneSegment(NumericDocValues values, MatchingDocs hits) throws IOException {
-    DocIdSetIterator it = ConjunctionDISI.intersectIterators(
-                             Arrays.asList(hits.bits.iterator(), values));
+    initBulkBuffers();
+
+    // load values in bulk rather than one document at a time
+    DocIdSetIterator it = hits.bits.iterator();
+    for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS;) {
+      int count = 0;
+      do {
+        bulkDocs[count++] = doc;
+        doc = it.nextDoc();
+      } while (count < BULK_SIZE && doc != DocIdSetIterator.NO_MORE_DOCS);
+
+      countBulk(values, count);
+    }
+  }
 
-    for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-      increment(values.longValue());
-      totCount++;
+  private void initBulkBuffers() {
+    if (bulkDocs == null) {
+      bulkDocs = new int[BULK_SIZE];
+      bulkValues = new long[BULK_SIZE];
     }
   }
 
+  /** Counts the values of the first {@code count} docs of {@code bulkDocs}. */
+  private void countBulk(NumericDocValues values, int count) throws IOException {
+    final int numValues = values.longValues(bulkDocs, count, bulkValues);
+    for (int i = 0; i < numValues; i++) {
+      increment(bulkValues[i]);
+    }
+    totCount += numValues;
+  }
+
   /** Counts directly from SortedNumericDocValues. */
   private void countMultiValued(String field, List<MatchingDocs> matchingDocs) throws IOException {
 
@@ -195,15 +224,29 @@ public class LongValueFacetCounts extends Facets {
         continue;
       }
 
-      countAllOneSegment(values);
+      countAllOneSegment(values, context.reader().maxDoc());
     }
   }
 
-  private void countAllOneSegment(NumericDocValues values) throws IOException {
-    int doc;
-    while ((doc = values.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-      totCount++;
-      increment(values.longValue());
+  private void countAllOneSegment(NumericDocValues values, int maxDoc) throws IOException {
+    if (values.cost() < maxDoc) {
+      // sparse values: only visit the docs that have a value
+      int doc;
+      while ((doc = values.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        totCount++;
+        increment(values.longValue());
+      }
+      return;
+    }
+
+    // dense values: load them in bulk rather than one document at a time
+    initBulkBuffers();
+    for (int start = 0; start < maxDoc; start += BULK_SIZE) {
+      final int count = Math.min(BULK_SIZE, maxDoc - start);
+      for (int i = 0; i < count; i++) {
+        bulkDocs[i] = start + i;
+      }
+      countBulk(values, count);
     }
   }
 
@@ -234,7 +277,7 @@ public class LongValueFacetCounts extends Facets {
       }
       NumericDocValues singleValues = DocValues.unwrapSingleton(values);
       if (singleValues != null) {
-        countAllOneSegment(singleValues);
+        countAllOneSegment(singleValues, context.reader().maxDoc());
       } else {
         int doc;
         while ((doc = values.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
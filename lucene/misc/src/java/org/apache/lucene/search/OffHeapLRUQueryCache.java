@@ -0,0 +1,453 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexFormatTooNewException;
+import org.apache.lucene.index.IndexFormatTooOldException;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.BitDocIdSet;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * A {@link LRUQueryCache} that stores dense cache entries as bit sets in
+ * memory-mapped files rather than on the heap.
+ * <p>
+ * Large filter caches otherwise consist of many {@code long[]} arrays in the
+ * old generation, which increases GC pause times. Entries of this cache only
+ * use a few bytes of heap, while the bits live in the OS page cache. Entries
+ * are stored in files under the provided directory, one file per segment
+ * and query, and are named after the segment name, the segment's unique id
+ * and a hash of the query. Since segment ids survive reopens and restarts,
+ * a new instance of this cache on the same directory will reload existing
+ * files instead of recomputing matches, which makes warming cheaper after a
+ * restart.
+ * <p>
+ * Only entries for {@link SegmentReader}s and for queries that have a
+ * {@link #persistentKey persistent key} are stored off-heap. Sparse entries,
+ * which are cheap to store on the heap, and all other entries are cached
+ * like in {@link LRUQueryCache}.
+ * <p>
+ * Mapped entries are accounted against their own budget rather than the heap
+ * budget of {@link LRUQueryCache}: dense entries on leaves whose bit sets
+ * take less than a fifth of {@code maxOffHeapBytesUsed} are stored off-heap
+ * as long as the mapped files take at most {@code maxOffHeapBytesUsed}
+ * bytes, and on the heap otherwise. Files that are stale or corrupt are
+ * deleted and their entries recomputed.
+ * <p>
+ * Files are not deleted when entries are evicted from the cache, so that they
+ * can be reused later. Use {@link #deleteUnusedFiles(IndexReader)} in order
+ * to remove files of segments that no longer exist. Files are unmapped when
+ * the segment they belong to is closed, or when this cache is closed.
+ *
+ * @lucene.experimental
+ */
+public class OffHeapLRUQueryCache extends LRUQueryCache implements Closeable {
+
+  static final String CODEC_NAME = "OffHeapQueryCache";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+  static final String EXTENSION = "qc";
+
+  private final MMapDirectory directory;
+  private final long maxOffHeapBytesUsed;
+  // number of bytes of bit sets that are currently mapped
+  private final AtomicLong offHeapBytesUsed;
+  // names of the files that exist in the directory
+  private final Set<String> files;
+  // mapped sets per core cache key: entries may be evicted while other threads
+  // are still iterating over them, so we only unmap when the core is closed
+  // and reuse mappings if evicted entries get cached again
+  private final Map<IndexReader.CacheKey, Map<String, MMapBitDocIdSet>> mappedSets;
+
+  /**
+   * Create a new instance that will cache at most <code>maxSize</code>
+   * queries with at most <code>maxRamBytesUsed</code> bytes of heap memory
+   * and <code>maxOffHeapBytesUsed</code> bytes of mapped bit sets, only on
+   * leaves that satisfy {@code leavesToCache}, and that stores dense entries
+   * under the given {@code path}.
+   */
+  public OffHeapLRUQueryCache(int maxSize, long maxRamBytesUsed, long maxOffHeapBytesUsed,
+      Predicate<LeafReaderContext> leavesToCache, Path path) throws IOException {
+    super(maxSize, maxRamBytesUsed, leavesToCache);
+    if (maxOffHeapBytesUsed < 0) {
+      throw new IllegalArgumentException("maxOffHeapBytesUsed must be >= 0, got " + maxOffHeapBytesUsed);
+    }
+    this.maxOffHeapBytesUsed = maxOffHeapBytesUsed;
+    this.offHeapBytesUsed = new AtomicLong();
+    this.directory = new MMapDirectory(path);
+    this.files = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    this.mappedSets = new ConcurrentHashMap<>();
+    for (String file : directory.listAll()) {
+      if (file.endsWith("." + EXTENSION)) {
+        files.add(file);
+      }
+    }
+  }
+
+  /**
+   * Return a key that identifies the given query across restarts, or
+   * {@code null} if entries of this query should not be stored off-heap. The
+   * default implementation returns {@link Query#toString()}, which works
+   * with queries whose string representation contains all their parameters,
+   * such as term and point queries.
+   */
+  protected String persistentKey(Query query) {
+    return query.toString();
+  }
+
+  private static SegmentReader segmentReader(LeafReaderContext context) {
+    final LeafReader reader = FilterLeafReader.unwrap(context.reader());
+    if (reader instanceof SegmentReader) {
+      return (SegmentReader) reader;
+    }
+    return null;
+  }
+
+  /** Return the number of bytes of the bit sets that are currently mapped. */
+  public long offHeapBytesUsed() {
+    return offHeapBytesUsed.get();
+  }
+
+  private static long bitSetBytes(int maxDoc) {
+    return (long) FixedBitSet.bits2words(maxDoc) * Long.BYTES;
+  }
+
+  /** Reserve room for a mapped bit set, returns {@code false} if it doesn't fit in the budget. */
+  private boolean reserveOffHeap(long numBytes) {
+    while (true) {
+      final long used = offHeapBytesUsed.get();
+      if (used + numBytes > maxOffHeapBytesUsed) {
+        return false;
+      }
+      if (offHeapBytesUsed.compareAndSet(used, used + numBytes)) {
+        return true;
+      }
+    }
+  }
+
+  @Override
+  protected boolean cacheEntryHasReasonableWorstCaseSize(Query query, LeafReaderContext context) {
+    if (segmentReader(context) == null || persistentKey(query) == null) {
+      return super.cacheEntryHasReasonableWorstCaseSize(query, context);
+    }
+    // dense entries of this leaf are stored off-heap, and its sparse entries
+    // are much smaller than a dense bit set
+    return bitSetBytes(context.reader().maxDoc()) * 5 < maxOffHeapBytesUsed;
+  }
+
+  private static String segmentPrefix(SegmentReader reader) {
+    return reader.getSegmentInfo().info.name + "_" + StringHelper.idToString(reader.getSegmentInfo().info.getId());
+  }
+
+  @Override
+  protected DocIdSet cacheImpl(Weight weight, LeafReaderContext context) throws IOException {
+    final SegmentReader segmentReader = segmentReader(context);
+    final String key = persistentKey(weight.getQuery());
+    if (segmentReader == null || key == null) {
+      return super.cacheImpl(weight, context);
+    }
+    final byte[] segmentId = segmentReader.getSegmentInfo().info.getId();
+    final int maxDoc = context.reader().maxDoc();
+    final BytesRef keyBytes = new BytesRef(key);
+    final String fileName = segmentPrefix(segmentReader) + "_"
+        + Integer.toHexString(StringHelper.murmurhash3_x86_32(keyBytes, 0)) + "." + EXTENSION;
+
+    final Map<String, MMapBitDocIdSet> sets = mappedSets.computeIfAbsent(
+        context.reader().getCoreCacheHelper().getKey(), k -> new ConcurrentHashMap<>());
+    final MMapBitDocIdSet mapped = sets.get(fileName);
+    if (mapped != null) {
+      if (mapped.key.equals(key)) {
+        return mapped;
+      }
+      // hash collision with a query whose file is in use, keep this one on the heap
+      return super.cacheImpl(weight, context);
+    }
+
+    if (offHeapBytesUsed.get() + bitSetBytes(maxDoc) > maxOffHeapBytesUsed) {
+      // the off-heap budget is exhausted until segments get closed
+      return super.cacheImpl(weight, context);
+    }
+
+    if (files.contains(fileName)) {
+      final DocIdSet set = load(sets, fileName, segmentId, key, maxDoc);
+      if (set != null) {
+        return set;
+      }
+    }
+
+    final BulkScorer scorer = weight.bulkScorer(context);
+    if (scorer == null) {
+      return DocIdSet.EMPTY;
+    }
+    if (scorer.cost() * 100 < maxDoc) {
+      // sparse sets are small enough to live on the heap
+      return cacheImpl(scorer, maxDoc);
+    }
+    final FixedBitSet bitSet = new FixedBitSet(maxDoc);
+    scorer.score(new LeafCollector() {
+
+      @Override
+      public void setScorer(Scorer scorer) throws IOException {}
+
+      @Override
+      public void collect(int doc) throws IOException {
+        bitSet.set(doc);
+      }
+
+    }, null);
+    store(fileName, segmentId, key, bitSet);
+    final DocIdSet stored = load(sets, fileName, segmentId, key, maxDoc);
+    return stored == null ? new BitDocIdSet(bitSet) : stored;
+  }
+
+  /** Return the off-heap set stored in the given file, or {@code null} if
+   *  the file is for a different query, is stale or corrupt, or if the set
+   *  doesn't fit in the off-heap budget. The set is registered in
+   *  {@code sets} so that it gets unmapped when its core is closed. */
+  private DocIdSet load(Map<String, MMapBitDocIdSet> sets, String fileName,
+      byte[] segmentId, String key, int maxDoc) throws IOException {
+    final long numBytes = bitSetBytes(maxDoc);
+    if (reserveOffHeap(numBytes) == false) {
+      return null;
+    }
+    IndexInput in = null;
+    boolean success = false;
+    try {
+      in = directory.openInput(fileName, IOContext.READ);
+      CodecUtil.checkIndexHeader(in, CODEC_NAME, VERSION_START, VERSION_CURRENT, segmentId, "");
+      if (key.equals(in.readString()) == false) {
+        // hash collision, don't use this file
+        return null;
+      }
+      final int fileMaxDoc = in.readVInt();
+      if (fileMaxDoc != maxDoc) {
+        throw new CorruptIndexException("maxDoc mismatch: expected " + maxDoc + ", got " + fileMaxDoc, in);
+      }
+      final long cardinality = in.readVLong();
+      // retrieveChecksum seeks to the end of the file
+      final long bitsStart = in.getFilePointer();
+      CodecUtil.retrieveChecksum(in);
+      final RandomAccessInput bits = in.randomAccessSlice(bitsStart, numBytes);
+      final MMapBitDocIdSet set = new MMapBitDocIdSet(in, bits, key, maxDoc, cardinality);
+      final MMapBitDocIdSet previous = sets.putIfAbsent(fileName, set);
+      if (previous != null) {
+        // another thread loaded the same file concurrently
+        return previous.key.equals(key) ? previous : null;
+      }
+      success = true;
+      return set;
+    } catch (CorruptIndexException | IndexFormatTooOldException | IndexFormatTooNewException | EOFException e) {
+      // the file is stale or corrupt, this is just a cache miss
+      IOUtils.closeWhileHandlingException(in);
+      in = null;
+      IOUtils.deleteFilesIgnoringExceptions(directory, fileName);
+      files.remove(fileName);
+      return null;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(in);
+        offHeapBytesUsed.addAndGet(-numBytes);
+      }
+    }
+  }
+
+  private void store(String fileName, byte[] segmentId, String key, FixedBitSet bitSet) throws IOException {
+    final String tempFileName;
+    try (IndexOutput out = directory.createTempOutput(fileName, "tmp", IOContext.DEFAULT)) {
+      tempFileName = out.getName();
+      CodecUtil.writeIndexHeader(out, CODEC_NAME, VERSION_CURRENT, segmentId, "");
+      out.writeString(key);
+      out.writeVInt(bitSet.length());
+      out.writeVLong(bitSet.cardinality());
+      for (long word : bitSet.getBits()) {
+        out.writeLong(word);
+      }
+      CodecUtil.writeFooter(out);
+    }
+    // the rename makes sure that other instances never see partially written files
+    directory.rename(tempFileName, fileName);
+    files.add(fileName);
+  }
+
+  /**
+   * Delete files of segments that are not part of the given reader. Files of
+   * segments that are still in use by other readers must not be deleted.
+   */
+  public void deleteUnusedFiles(IndexReader reader) throws IOException {
+    final Set<String> prefixes = new HashSet<>();
+    for (LeafReaderContext context : reader.leaves()) {
+      final SegmentReader segmentReader = segmentReader(context);
+      if (segmentReader != null) {
+        prefixes.add(segmentPrefix(segmentReader) + "_");
+      }
+    }
+    for (String file : files.toArray(new String[0])) {
+      boolean used = false;
+      for (String prefix : prefixes) {
+        if (file.startsWith(prefix)) {
+          used = true;
+          break;
+        }
+      }
+      if (used == false) {
+        directory.deleteFile(file);
+        files.remove(file);
+      }
+    }
+  }
+
+  /** Return the names of the files that this cache stored, sorted. */
+  String[] listFiles() {
+    final String[] names = files.toArray(new String[0]);
+    Arrays.sort(names);
+    return names;
+  }
+
+  @Override
+  public void clearCoreCacheKey(Object coreKey) {
+    super.clearCoreCacheKey(coreKey);
+    final Map<String, MMapBitDocIdSet> sets = mappedSets.remove(coreKey);
+    if (sets != null) {
+      for (MMapBitDocIdSet set : sets.values()) {
+        offHeapBytesUsed.addAndGet(-bitSetBytes(set.maxDoc));
+      }
+      IOUtils.closeWhileHandlingException(sets.values());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    clear();
+    final List<Closeable> toClose = new ArrayList<>();
+    for (Map<String, MMapBitDocIdSet> sets : mappedSets.values()) {
+      toClose.addAll(sets.values());
+    }
+    mappedSets.clear();
+    offHeapBytesUsed.set(0);
+    toClose.add(directory);
+    IOUtils.close(toClose);
+  }
+
+  /** A {@link DocIdSet} over a bit set that is stored in a memory-mapped file. */
+  static class MMapBitDocIdSet extends DocIdSet implements Closeable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(MMapBitDocIdSet.class);
+
+    private final IndexInput in;
+    private final RandomAccessInput bits;
+    final String key;
+    final int maxDoc;
+    private final long cardinality;
+
+    MMapBitDocIdSet(IndexInput in, RandomAccessInput bits, String key, int maxDoc, long cardinality) {
+      this.in = in;
+      this.bits = bits;
+      this.key = key;
+      this.maxDoc = maxDoc;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    @Override
+    public DocIdSetIterator iterator() throws IOException {
+      return new DocIdSetIterator() {
+
+        int doc = -1;
+
+        @Override
+        public int docID() {
+          return doc;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+          return advance(doc + 1);
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+          if (target >= maxDoc) {
+            return doc = NO_MORE_DOCS;
+          }
+          int i = target >> 6;
+          long word = bits.readLong((long) i << 3) >> target; // skip all the bits to the right of target
+          if (word != 0) {
+            return doc = target + Long.numberOfTrailingZeros(word);
+          }
+          final int numWords = FixedBitSet.bits2words(maxDoc);
+          while (++i < numWords) {
+            word = bits.readLong((long) i << 3);
+            if (word != 0) {
+              return doc = (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+          }
+          return doc = NO_MORE_DOCS;
+        }
+
+        @Override
+        public long cost() {
+          return cardinality;
+        }
+      };
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED;
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(maxDoc=" + maxDoc + ",cardinality=" + cardinality + ")";
+    }
+  }
+}
@@ -0,0 +1,464 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.apache.lucene.store.IOContext.Context;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A {@link Directory} wrapper that uses direct IO through a {@link FileChannel}
+ * to bypass the OS level IO caching for inputs and outputs of large merges, so
+ * that merges don't evict pages that are used for searching. For all other
+ * cases, the wrapped {@link FSDirectory} is used. Unlike
+ * {@link NativeUnixDirectory}, this is pure Java and doesn't require compiling
+ * native code.
+ *
+ * <p>This requires a Java 10+ runtime, which adds
+ * {@code com.sun.nio.file.ExtendedOpenOption#DIRECT}, and a file system that
+ * supports direct IO, such as most Linux local file systems; merges fail with
+ * an {@link IOException} otherwise.
+ *
+ * @lucene.experimental
+ */
+public class DirectIODirectory extends FilterDirectory {
+
+  /** Default buffer size before writing to disk (256 KB);
+   *  larger means less IO load but more RAM and direct
+   *  buffer storage space consumed during merging. */
+  public final static int DEFAULT_MERGE_BUFFER_SIZE = 256 * 1024;
+
+  /** Default min expected merge size before direct IO is
+   *  used (10 MB): */
+  public final static long DEFAULT_MIN_BYTES_DIRECT = 10 * 1024 * 1024;
+
+  /** The open option for direct IO, or {@code null} if this JVM doesn't support it. */
+  private static final OpenOption DIRECT_OPEN_OPTION;
+  private static final MethodHandle ALIGNED_SLICE;
+  private static final MethodHandle GET_BLOCK_SIZE;
+
+  /** Reason why direct IO is not supported by this JVM, or {@code null} if it is. */
+  public static final String UNSUPPORTED_REASON;
+
+  static {
+    OpenOption directOpenOption = null;
+    MethodHandle alignedSlice = null;
+    MethodHandle getBlockSize = null;
+    String unsupportedReason = null;
+    try {
+      final Class<? extends OpenOption> clazz = Class.forName("com.sun.nio.file.ExtendedOpenOption").asSubclass(OpenOption.class);
+      for (OpenOption option : clazz.getEnumConstants()) {
+        if (option.toString().equals("DIRECT")) {
+          directOpenOption = option;
+        }
+      }
+      if (directOpenOption == null) {
+        throw new ClassNotFoundException("com.sun.nio.file.ExtendedOpenOption.DIRECT");
+      }
+      final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      alignedSlice = lookup.findVirtual(ByteBuffer.class, "alignedSlice", MethodType.methodType(ByteBuffer.class, int.class));
+      getBlockSize = lookup.findVirtual(FileStore.class, "getBlockSize", MethodType.methodType(long.class));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      directOpenOption = null;
+      unsupportedReason = "Direct IO requires Java 10 or later: " + e;
+    }
+    DIRECT_OPEN_OPTION = directOpenOption;
+    ALIGNED_SLICE = alignedSlice;
+    GET_BLOCK_SIZE = getBlockSize;
+    UNSUPPORTED_REASON = unsupportedReason;
+  }
+
+  private final int blockSize;
+  private final int mergeBufferSize;
+  private final long minBytesDirect;
+  private volatile boolean isOpen = true;
+
+  /** Create a new DirectIODirectory wrapping the given directory.
+   *
+   * @param delegate Directory for non-merges, also used as reference to file system path
+   * @param mergeBufferSize Size of buffer to use for
+   *    merging, rounded up to a multiple of the file system's block size.
+   *    Every input that uses direct IO allocates a direct buffer of this
+   *    size, and so does each of its clones and slices, which Lucene creates
+   *    often: keep it small if merged segments are read with many clones.
+   *    See {@link #DEFAULT_MERGE_BUFFER_SIZE}.
+   * @param minBytesDirect Merges, or files to be opened for
+   *   reading, smaller than this will
+   *   not use direct IO.  See {@link
+   *   #DEFAULT_MIN_BYTES_DIRECT}
+   * @throws UnsupportedOperationException If this JVM doesn't support direct IO
+   * @throws IOException If there is a low-level I/O error
+   */
+  public DirectIODirectory(FSDirectory delegate, int mergeBufferSize, long minBytesDirect) throws IOException {
+    super(delegate);
+    if (DIRECT_OPEN_OPTION == null) {
+      throw new UnsupportedOperationException(UNSUPPORTED_REASON);
+    }
+    if (mergeBufferSize <= 0) {
+      throw new IllegalArgumentException("mergeBufferSize must be > 0 (got: " + mergeBufferSize + ")");
+    }
+    final Path path = delegate.getDirectory();
+    // the directory might not exist yet, find the block size of the closest existing parent
+    Path existing = path;
+    while (existing.getParent() != null && Files.exists(existing) == false) {
+      existing = existing.getParent();
+    }
+    try {
+      this.blockSize = Math.toIntExact((long) GET_BLOCK_SIZE.invokeExact(Files.getFileStore(existing)));
+    } catch (IOException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new AssertionError(t);
+    }
+    this.mergeBufferSize = Math.toIntExact((mergeBufferSize + blockSize - 1L) / blockSize * blockSize);
+    this.minBytesDirect = minBytesDirect;
+  }
+
+  /** Create a new DirectIODirectory wrapping the given directory with
+   *  {@link #DEFAULT_MERGE_BUFFER_SIZE} and {@link #DEFAULT_MIN_BYTES_DIRECT}.
+   *
+   * @param delegate Directory for non-merges, also used as reference to file system path
+   * @throws UnsupportedOperationException If this JVM doesn't support direct IO
+   * @throws IOException If there is a low-level I/O error
+   */
+  public DirectIODirectory(FSDirectory delegate) throws IOException {
+    this(delegate, DEFAULT_MERGE_BUFFER_SIZE, DEFAULT_MIN_BYTES_DIRECT);
+  }
+
+  private Path getDirectory() {
+    return ((FSDirectory) in).getDirectory();
+  }
+
+  @Override
+  protected void ensureOpen() throws AlreadyClosedException {
+    if (isOpen == false) {
+      throw new AlreadyClosedException("this Directory is closed");
+    }
+  }
+
+  /**
+   * Returns whether direct IO should be used for the given file. The default
+   * implementation only uses it for merges that are expected to be larger
+   * than {@code minBytesDirect}, and files that are at least as large.
+   * Inputs are first checked with a length of {@code -1}, so that the length
+   * of the file is only looked up if the context may use direct IO.
+   * @param fileLength the length of the file to read, or {@code -1} for outputs
+   *        and if the length is not known yet
+   */
+  protected boolean useDirectIO(String name, IOContext context, long fileLength) {
+    return context.context == Context.MERGE
+        && context.mergeInfo.estimatedMergeBytes >= minBytesDirect
+        && (fileLength == -1 || fileLength >= minBytesDirect);
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    if (useDirectIO(name, context, -1) && useDirectIO(name, context, fileLength(name))) {
+      return new DirectIOIndexInput(getDirectory().resolve(name), blockSize, mergeBufferSize);
+    } else {
+      return in.openInput(name, context);
+    }
+  }
+
+  @Override
+  public IndexOutput createOutput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    if (useDirectIO(name, context, -1)) {
+      return new DirectIOIndexOutput(getDirectory().resolve(name), name, blockSize, mergeBufferSize);
+    } else {
+      return in.createOutput(name, context);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    isOpen = false;
+    super.close();
+  }
+
+  /** Allocate a direct buffer whose address is a multiple of the block size. */
+  private static ByteBuffer allocateAligned(int size, int blockSize) {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(size + blockSize - 1);
+    try {
+      return (ByteBuffer) ALIGNED_SLICE.invokeExact(buffer, blockSize);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new AssertionError(t);
+    }
+  }
+
+  private final static class DirectIOIndexOutput extends IndexOutput {
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+    private final Checksum digest;
+
+    private long filePos;
+    private boolean isOpen;
+
+    DirectIOIndexOutput(Path path, String name, int blockSize, int bufferSize) throws IOException {
+      super("DirectIOIndexOutput(path=\"" + path.toString() + "\")", name);
+      channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW, DIRECT_OPEN_OPTION);
+      buffer = allocateAligned(bufferSize, blockSize);
+      digest = new BufferedChecksum(new CRC32());
+      isOpen = true;
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+      buffer.put(b);
+      digest.update(b);
+      if (buffer.hasRemaining() == false) {
+        dump();
+      }
+    }
+
+    @Override
+    public void writeBytes(byte[] src, int offset, int len) throws IOException {
+      int toWrite = len;
+      while (true) {
+        final int left = buffer.remaining();
+        if (left <= toWrite) {
+          buffer.put(src, offset, left);
+          digest.update(src, offset, left);
+          toWrite -= left;
+          offset += left;
+          dump();
+        } else {
+          buffer.put(src, offset, toWrite);
+          digest.update(src, offset, toWrite);
+          break;
+        }
+      }
+    }
+
+    private void dump() throws IOException {
+      final int size = buffer.position();
+      // direct IO can only write whole blocks, the file is truncated on close
+      buffer.rewind();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, filePos + buffer.position());
+      }
+      filePos += size;
+      buffer.clear();
+    }
+
+    @Override
+    public long getFilePointer() {
+      return filePos + buffer.position();
+    }
+
+    @Override
+    public long getChecksum() {
+      return digest.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (isOpen) {
+        isOpen = false;
+        try {
+          dump();
+        } finally {
+          try (FileChannel ch = channel) {
+            ch.truncate(getFilePointer());
+          }
+        }
+      }
+    }
+  }
+
+  private final static class DirectIOIndexInput extends IndexInput {
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+    private final int blockSize;
+    private final long offset;
+    private final long length;
+    private final boolean isClosable; // clones and slices don't close the channel
+
+    private boolean isOpen;
+    // position in the file of the start of the buffer
+    private long filePos;
+
+    DirectIOIndexInput(Path path, int blockSize, int bufferSize) throws IOException {
+      super("DirectIOIndexInput(path=\"" + path + "\")");
+      this.channel = FileChannel.open(path, StandardOpenOption.READ, DIRECT_OPEN_OPTION);
+      this.blockSize = blockSize;
+      this.buffer = allocateAligned(bufferSize, blockSize);
+      this.isOpen = true;
+      this.isClosable = true;
+      this.offset = 0L;
+      boolean success = false;
+      try {
+        this.length = channel.size();
+        // fill the buffer so that the file pointer is valid before the first read
+        seekInternal(0L);
+        success = true;
+      } finally {
+        if (success == false) {
+          IOUtils.closeWhileHandlingException(channel);
+        }
+      }
+    }
+
+    // for clone and slice, each of them needs its own aligned buffer since direct IO can't read into heap arrays
+    private DirectIOIndexInput(String description, DirectIOIndexInput other, long offset, long length) throws IOException {
+      super(description);
+      this.channel = other.channel;
+      this.blockSize = other.blockSize;
+      final int bufferSize = other.buffer.capacity();
+      this.buffer = allocateAligned(bufferSize, blockSize);
+      this.isOpen = true;
+      this.isClosable = false;
+      this.offset = offset;
+      this.length = length;
+      this.filePos = -bufferSize;
+      this.buffer.limit(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (isOpen && isClosable) {
+        channel.close();
+        isOpen = false;
+      }
+    }
+
+    @Override
+    public long getFilePointer() {
+      return filePos + buffer.position() - offset;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      if (pos > length) {
+        throw new EOFException("seek past EOF: pos=" + pos + " vs length=" + length + ": " + this);
+      }
+      if (pos != getFilePointer()) {
+        final long absolutePos = pos + offset;
+        if (absolutePos >= filePos && absolutePos <= filePos + buffer.limit()) {
+          // the new position is within the buffer
+          buffer.position(Math.toIntExact(absolutePos - filePos));
+        } else {
+          seekInternal(pos);
+        }
+      }
+      assert pos == getFilePointer();
+    }
+
+    private void seekInternal(long pos) throws IOException {
+      final long absolutePos = pos + offset;
+      final long alignedPos = absolutePos - (absolutePos % blockSize);
+      filePos = alignedPos - buffer.capacity();
+      final int delta = (int) (absolutePos - alignedPos);
+      refill(delta);
+      buffer.position(delta);
+    }
+
+    @Override
+    public long length() {
+      return length;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      if (buffer.hasRemaining() == false) {
+        refill(1);
+      }
+      return buffer.get();
+    }
+
+    private void refill(int bytesToRead) throws IOException {
+      final long newFilePos = filePos + buffer.capacity();
+      final long end = offset + length;
+      // throw before reading so that the state of the buffer is preserved on EOF
+      if (newFilePos > end || end - newFilePos < bytesToRead) {
+        throw new EOFException("read past EOF: " + this);
+      }
+      filePos = newFilePos;
+      buffer.clear();
+      try {
+        // reads are short at the end of the file, direct IO can only continue from a block boundary
+        int read;
+        do {
+          read = channel.read(buffer, filePos + buffer.position());
+        } while (read > 0 && buffer.hasRemaining() && buffer.position() % blockSize == 0);
+      } catch (IOException ioe) {
+        throw new IOException(ioe.getMessage() + ": " + this, ioe);
+      }
+      buffer.flip();
+      if (filePos + buffer.limit() > end) {
+        // don't read past the end of slices
+        buffer.limit(Math.toIntExact(end - filePos));
+      }
+    }
+
+    @Override
+    public void readBytes(byte[] dst, int offset, int len) throws IOException {
+      int toRead = len;
+      while (true) {
+        final int left = buffer.remaining();
+        if (left < toRead) {
+          buffer.get(dst, offset, left);
+          toRead -= left;
+          offset += left;
+          refill(toRead);
+        } else {
+          buffer.get(dst, offset, toRead);
+          break;
+        }
+      }
+    }
+
+    @Override
+    public DirectIOIndexInput clone() {
+      try {
+        final DirectIOIndexInput clone = new DirectIOIndexInput("clone:" + this, this, offset, length);
+        clone.seekInternal(getFilePointer());
+        return clone;
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }
+
+    @Override
+    public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+      if (offset < 0 || length < 0 || offset + length > this.length) {
+        throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: " + this);
+      }
+      final DirectIOIndexInput slice = new DirectIOIndexInput(sliceDescription, this, this.offset + offset, length);
+      slice.seekInternal(0L);
+      return slice;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import org.apache.lucene.index.IndexFileNames;
+
+/**
+ * A {@link MMapDirectory} that passes the {@link ReadAdvice} of each file to
+ * the operating system with <code>madvise</code>. By default, files that are
+ * opened for merges or read once are read {@link ReadAdvice#SEQUENTIAL
+ * sequentially}, terms index and doc values data files are read
+ * {@link ReadAdvice#RANDOM randomly}, which disables read-ahead, and other
+ * files keep the normal behavior. Override
+ * {@link #getReadAdvice(String, IOContext)} to change the advice per file.
+ *
+ * <p>Pages are shared by all mappings of a file, so sequential advice may
+ * also drop pages that searches still need from the page cache. Merges
+ * mostly reuse the readers that were opened for searching, which get the
+ * advice of their own context.
+ *
+ * <p>To use this you must compile NativePosixUtil.cpp, see
+ * {@link NativeUnixDirectory}.
+ *
+ * @lucene.experimental
+ */
+public class NativeMMapDirectory extends MMapDirectory {
+
+  // extensions of the block tree terms index and of the doc values data
+  private static final String TERMS_INDEX_EXTENSION = "tip";
+  private static final String DOC_VALUES_DATA_EXTENSION = "dvd";
+
+  /** Create a new NativeMMapDirectory for the named location.
+   *
+   * @param path the path of the directory
+   * @param lockFactory to use
+   * @throws IOException If there is a low-level I/O error
+   */
+  public NativeMMapDirectory(Path path, LockFactory lockFactory) throws IOException {
+    super(path, lockFactory);
+  }
+
+  /** Create a new NativeMMapDirectory for the named location and {@link FSLockFactory#getDefault()}.
+   *
+   * @param path the path of the directory
+   * @throws IOException If there is a low-level I/O error
+   */
+  public NativeMMapDirectory(Path path) throws IOException {
+    super(path);
+  }
+
+  @Override
+  protected ReadAdvice getReadAdvice(String name, IOContext context) {
+    if (context.context == IOContext.Context.MERGE || context.readOnce) {
+      return ReadAdvice.SEQUENTIAL;
+    }
+    if (IndexFileNames.matchesExtension(name, TERMS_INDEX_EXTENSION)
+        || IndexFileNames.matchesExtension(name, DOC_VALUES_DATA_EXTENSION)) {
+      return ReadAdvice.RANDOM;
+    }
+    return ReadAdvice.NORMAL;
+  }
+
+  @Override
+  protected void madvise(ByteBuffer buffer, ReadAdvice advice) throws IOException {
+    if (advice == ReadAdvice.NORMAL || buffer.capacity() == 0) {
+      // mapped pages have the normal behavior by default
+      return;
+    }
+    final int code;
+    switch (advice) {
+      case SEQUENTIAL:
+        code = NativePosixUtil.SEQUENTIAL;
+        break;
+      case RANDOM:
+        code = NativePosixUtil.RANDOM;
+        break;
+      default:
+        throw new AssertionError("unknown advice: " + advice);
+    }
+    NativePosixUtil.madvise(buffer, code);
+  }
+}
@@ -0,0 +1,539 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A {@link Directory} that stores segments on two tiers, typically a small
+ * and fast local disk and a large and slow one. New files are always written
+ * to the hot tier, and {@link #moveSegments()} moves large segments that are
+ * rarely read to the cold tier, and cold segments that are read frequently
+ * again back to the hot tier. This method is expected to be called
+ * periodically from a background thread, for instance with a
+ * {@link java.util.concurrent.ScheduledExecutorService}.
+ *
+ * <p>Reads are tracked per segment by counting how many times its files are
+ * opened, cloned or sliced, which happens at least once per query that reads
+ * the segment, rather than by counting bytes, which would slow down reads.
+ *
+ * <p>Files are moved by copying them to a temporary file of the target tier,
+ * which is then synced and renamed, and the file is deleted from the source
+ * tier only after that. Temporary files of moves are not listed by
+ * {@link #listAll()}, so that {@link org.apache.lucene.index.IndexWriter}
+ * never deletes them. If both tiers have a copy of the same index file when
+ * this directory is opened, which may happen if the process crashed while
+ * moving it, the copy on the cold tier is deleted, as well as temporary
+ * files of moves. Both directories must not be modified other than through
+ * this directory.
+ *
+ * <p>Files that are moved off a tier are deleted from it while readers may
+ * still have them open. On most file systems, their disk space is only
+ * released once these readers are closed, so moving segments to the cold
+ * tier only frees space on the hot tier after readers have been reopened.
+ *
+ * <p>Locks are delegated to the hot directory.
+ *
+ * @lucene.experimental
+ */
+public class TieredDirectory extends Directory {
+
+  // suffix of the temporary files that moved files are copied to
+  private static final String MOVE_SUFFIX = "tiered";
+  private static final Pattern MOVE_FILE_PATTERN = Pattern.compile(".*_" + MOVE_SUFFIX + "_[0-9a-z]+\\.tmp");
+
+  private final Directory hotDir;
+  private final Directory coldDir;
+  private final long minColdSegmentBytes;
+  private final long maxColdAccesses;
+  private boolean doClose;
+
+  // the tier of every file that was created through this directory or that existed when it was opened
+  private final Map<String,Directory> tiers = new ConcurrentHashMap<>();
+  // number of accesses per file since the last call to moveSegments
+  private final Map<String,LongAdder> accesses = new ConcurrentHashMap<>();
+  // files that are still being written, and may not be moved
+  private final Set<String> pendingOutputs = ConcurrentHashMap.newKeySet();
+  // segments that existed on the last call to moveSegments
+  private Set<String> previousSegments = Collections.emptySet();
+  private final Object moveLock = new Object();
+
+  /**
+   * Create a new TieredDirectory.
+   *
+   * @param hotDir the directory that new files are written to
+   * @param coldDir the directory that segments which are rarely read are moved to
+   * @param minColdSegmentBytes segments whose files are smaller than this number of bytes
+   *        in total are never moved to the cold tier
+   * @param maxColdAccesses segments whose files are accessed at most this number of
+   *        times between two calls to {@link #moveSegments()} are moved to the cold tier,
+   *        and segments whose files are accessed more often are moved to the hot tier
+   * @param doClose whether to close both directories when this directory is closed
+   * @throws IOException If there is a low-level I/O error
+   */
+  public TieredDirectory(Directory hotDir, Directory coldDir, long minColdSegmentBytes, long maxColdAccesses, boolean doClose) throws IOException {
+    if (minColdSegmentBytes < 0) {
+      throw new IllegalArgumentException("minColdSegmentBytes must be >= 0, got " + minColdSegmentBytes);
+    }
+    if (maxColdAccesses < 0) {
+      throw new IllegalArgumentException("maxColdAccesses must be >= 0, got " + maxColdAccesses);
+    }
+    this.hotDir = hotDir;
+    this.coldDir = coldDir;
+    this.minColdSegmentBytes = minColdSegmentBytes;
+    this.maxColdAccesses = maxColdAccesses;
+    this.doClose = doClose;
+
+    for (String file : listAllOrEmpty(coldDir)) {
+      if (MOVE_FILE_PATTERN.matcher(file).matches()) {
+        // we crashed while moving a file
+        coldDir.deleteFile(file);
+      } else {
+        tiers.put(file, coldDir);
+      }
+    }
+    for (String file : listAllOrEmpty(hotDir)) {
+      if (MOVE_FILE_PATTERN.matcher(file).matches()) {
+        hotDir.deleteFile(file);
+      } else if (tiers.put(file, hotDir) != null && IndexFileNames.CODEC_FILE_PATTERN.matcher(file).matches()) {
+        // we crashed after a file was moved, but before the source was deleted
+        coldDir.deleteFile(file);
+      }
+    }
+  }
+
+  private static String[] listAllOrEmpty(Directory dir) throws IOException {
+    try {
+      return dir.listAll();
+    } catch (NoSuchFileException | FileNotFoundException e) {
+      // the directory has not been created yet
+      return new String[0];
+    }
+  }
+
+  /** Return the directory that new files are written to */
+  public Directory getHotDir() {
+    return hotDir;
+  }
+
+  /** Return the directory that segments which are rarely read are moved to */
+  public Directory getColdDir() {
+    return coldDir;
+  }
+
+  private Directory getDirectory(String name) {
+    final Directory dir = tiers.get(name);
+    return dir == null ? hotDir : dir;
+  }
+
+  /** Whether {@code e} may have been caused by {@code name} moving away from {@code dir} concurrently. */
+  private boolean wasMoved(String name, Directory dir, IOException e) {
+    return (e instanceof NoSuchFileException || e instanceof FileNotFoundException)
+        && getDirectory(name) != dir;
+  }
+
+  @Override
+  public String[] listAll() throws IOException {
+    Set<String> files = new HashSet<>();
+    // same as FileSwitchDirectory: only throw if neither directory exists
+    NoSuchFileException exc = null;
+    try {
+      files.addAll(Arrays.asList(hotDir.listAll()));
+    } catch (NoSuchFileException e) {
+      exc = e;
+    }
+    try {
+      files.addAll(Arrays.asList(coldDir.listAll()));
+    } catch (NoSuchFileException e) {
+      if (exc != null) {
+        throw exc;
+      }
+      if (files.isEmpty()) {
+        throw e;
+      }
+    }
+    if (exc != null && files.isEmpty()) {
+      throw exc;
+    }
+    // files that are being moved are only visible under their own name
+    files.removeIf(file -> MOVE_FILE_PATTERN.matcher(file).matches());
+    String[] result = files.toArray(new String[files.size()]);
+    Arrays.sort(result);
+    return result;
+  }
+
+  @Override
+  public void deleteFile(String name) throws IOException {
+    // once removed from the map, a concurrent move of this file deletes its copy
+    final Directory dir = tiers.remove(name);
+    accesses.remove(name);
+    (dir == null ? hotDir : dir).deleteFile(name);
+  }
+
+  @Override
+  public long fileLength(String name) throws IOException {
+    while (true) {
+      final Directory dir = getDirectory(name);
+      try {
+        return dir.fileLength(name);
+      } catch (IOException e) {
+        if (wasMoved(name, dir, e) == false) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  @Override
+  public IndexOutput createOutput(String name, IOContext context) throws IOException {
+    final IndexOutput out = hotDir.createOutput(name, context);
+    tiers.put(name, hotDir);
+    return new PendingIndexOutput(out);
+  }
+
+  @Override
+  public IndexOutput createTempOutput(String prefix, String suffix, IOContext context) throws IOException {
+    final IndexOutput out = hotDir.createTempOutput(prefix, suffix, context);
+    tiers.put(out.getName(), hotDir);
+    return new PendingIndexOutput(out);
+  }
+
+  @Override
+  public void sync(Collection<String> names) throws IOException {
+    for (String name : names) {
+      while (true) {
+        final Directory dir = getDirectory(name);
+        try {
+          dir.sync(Collections.singleton(name));
+          break;
+        } catch (IOException e) {
+          // moved files are synced on their new tier before being made visible
+          if (wasMoved(name, dir, e) == false) {
+            throw e;
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void rename(String source, String dest) throws IOException {
+    // only used for commit points, which are never moved
+    final Directory dir = getDirectory(source);
+    dir.rename(source, dest);
+    tiers.put(dest, dir);
+    tiers.remove(source);
+    accesses.remove(source);
+  }
+
+  @Override
+  public void syncMetaData() throws IOException {
+    hotDir.syncMetaData();
+    coldDir.syncMetaData();
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    while (true) {
+      final Directory dir = getDirectory(name);
+      final IndexInput in;
+      try {
+        in = dir.openInput(name, context);
+      } catch (IOException e) {
+        if (wasMoved(name, dir, e)) {
+          continue;
+        }
+        throw e;
+      }
+      final LongAdder counter = accesses.computeIfAbsent(name, k -> new LongAdder());
+      counter.increment();
+      return new AccessCountingIndexInput(in, counter);
+    }
+  }
+
+  @Override
+  public Lock obtainLock(String name) throws IOException {
+    return hotDir.obtainLock(name);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (doClose) {
+      IOUtils.close(hotDir, coldDir);
+      doClose = false;
+    }
+  }
+
+  /**
+   * Move segments between tiers according to how often they were accessed
+   * since the previous call to this method. Segments are only considered
+   * once they existed on the previous call and all their files are fully
+   * written. Large segments that were accessed rarely are moved to the cold
+   * tier and segments that were accessed frequently are moved to the hot
+   * tier.
+   *
+   * @return the number of files that were moved
+   * @throws IOException If there is a low-level I/O error
+   */
+  public int moveSegments() throws IOException {
+    synchronized (moveLock) {
+      final Map<String,List<String>> segments = new HashMap<>();
+      for (String file : tiers.keySet()) {
+        if (IndexFileNames.CODEC_FILE_PATTERN.matcher(file).matches() && file.endsWith(".tmp") == false) {
+          segments.computeIfAbsent(IndexFileNames.parseSegmentName(file), k -> new ArrayList<>()).add(file);
+        }
+      }
+
+      int moved = 0;
+      for (Map.Entry<String,List<String>> segment : segments.entrySet()) {
+        final List<String> files = segment.getValue();
+        long segmentAccesses = 0;
+        for (String file : files) {
+          final LongAdder counter = accesses.get(file);
+          if (counter != null) {
+            segmentAccesses += counter.sumThenReset();
+          }
+        }
+        if (previousSegments.contains(segment.getKey()) == false
+            || Collections.disjoint(files, pendingOutputs) == false) {
+          // keep new segments on the hot tier for at least one period
+          continue;
+        }
+
+        long segmentBytes = 0;
+        try {
+          for (String file : files) {
+            segmentBytes += fileLength(file);
+          }
+        } catch (NoSuchFileException | FileNotFoundException e) {
+          // the segment is being deleted
+          continue;
+        }
+        final boolean hot = segmentAccesses > maxColdAccesses || segmentBytes < minColdSegmentBytes;
+        final Directory from = hot ? coldDir : hotDir;
+        final Directory to = hot ? hotDir : coldDir;
+        for (String file : files) {
+          if (tiers.get(file) == from && moveFile(file, from, to)) {
+            moved++;
+          }
+        }
+      }
+      previousSegments = segments.keySet();
+      return moved;
+    }
+  }
+
+  /** Move a file to another tier, returns {@code false} if it was deleted in the meantime. */
+  private boolean moveFile(String name, Directory from, Directory to) throws IOException {
+    final IndexOutput out = to.createTempOutput(name, MOVE_SUFFIX, IOContext.DEFAULT);
+    final String tmpName = out.getName();
+    tiers.put(tmpName, to);
+    boolean success = false;
+    try {
+      try (IndexInput in = from.openInput(name, IOContext.READONCE)) {
+        out.copyBytes(in, in.length());
+      } catch (NoSuchFileException | FileNotFoundException e) {
+        // the file was deleted
+        return false;
+      }
+      out.close();
+      to.sync(Collections.singleton(tmpName));
+      to.rename(tmpName, name);
+      to.syncMetaData();
+      success = true;
+    } finally {
+      tiers.remove(tmpName);
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(out);
+        IOUtils.deleteFilesIgnoringExceptions(to, tmpName);
+      }
+    }
+
+    if (tiers.replace(name, from, to)) {
+      from.deleteFile(name);
+      return true;
+    } else {
+      // the file was deleted while being copied
+      to.deleteFile(name);
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(hot=" + hotDir + ", cold=" + coldDir + ")";
+  }
+
+  /** Records that a file is being written until the output is closed. */
+  private final class PendingIndexOutput extends IndexOutput {
+
+    private final IndexOutput out;
+
+    PendingIndexOutput(IndexOutput out) {
+      super(out.toString(), out.getName());
+      this.out = out;
+      pendingOutputs.add(out.getName());
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+      out.writeByte(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+      out.writeBytes(b, offset, length);
+    }
+
+    @Override
+    public long getFilePointer() {
+      return out.getFilePointer();
+    }
+
+    @Override
+    public long getChecksum() throws IOException {
+      return out.getChecksum();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        out.close();
+      } finally {
+        pendingOutputs.remove(out.getName());
+      }
+    }
+  }
+
+  /** Counts opened, cloned and sliced inputs of a file. */
+  private static final class AccessCountingIndexInput extends IndexInput {
+
+    private final IndexInput in;
+    private final LongAdder accesses;
+
+    AccessCountingIndexInput(IndexInput in, LongAdder accesses) {
+      super(in.toString());
+      this.in = in;
+      this.accesses = accesses;
+    }
+
+    @Override
+    public AccessCountingIndexInput clone() {
+      accesses.increment();
+      return new AccessCountingIndexInput(in.clone(), accesses);
+    }
+
+    @Override
+    public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+      accesses.increment();
+      return new AccessCountingIndexInput(in.slice(sliceDescription, offset, length), accesses);
+    }
+
+    @Override
+    public RandomAccessInput randomAccessSlice(long offset, long length) throws IOException {
+      accesses.increment();
+      return in.randomAccessSlice(offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    @Override
+    public long getFilePointer() {
+      return in.getFilePointer();
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      in.seek(pos);
+    }
+
+    @Override
+    public long length() {
+      return in.length();
+    }
+
+    @Override
+    public void prefetch(long offset, long length) throws IOException {
+      in.prefetch(offset, length);
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      return in.readByte();
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len) throws IOException {
+      in.readBytes(b, offset, len);
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len, boolean useBuffer) throws IOException {
+      in.readBytes(b, offset, len, useBuffer);
+    }
+
+    @Override
+    public short readShort() throws IOException {
+      return in.readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+      return in.readInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+      return in.readLong();
+    }
+
+    @Override
+    public int readVInt() throws IOException {
+      return in.readVInt();
+    }
+
+    @Override
+    public long readVLong() throws IOException {
+      return in.readVLong();
+    }
+
+    @Override
+    public void skipBytes(long numBytes) throws IOException {
+      in.skipBytes(numBytes);
+    }
+  }
+}
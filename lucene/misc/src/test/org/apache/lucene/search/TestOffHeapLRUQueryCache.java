@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestOffHeapLRUQueryCache extends LuceneTestCase {
+
+  private static int countWithCache(IndexSearcher searcher, LRUQueryCache cache, Query query) throws IOException {
+    searcher.setQueryCache(cache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    TotalHitCountCollector collector = new TotalHitCountCollector();
+    searcher.search(new ConstantScoreQuery(query), collector);
+    return collector.getTotalHits();
+  }
+
+  public void testPersistAndReload() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("all", "yes", Store.NO));
+      if (i % 1000 == 0) {
+        doc.add(new StringField("rare", "yes", Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.commit();
+    DirectoryReader reader = DirectoryReader.open(w);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+
+    final Query all = new TermQuery(new Term("all", "yes"));
+    final Query rare = new TermQuery(new Term("rare", "yes"));
+    final int expectedAll = searcher.count(all);
+    final int expectedRare = searcher.count(rare);
+
+    final Path path = createTempDir("queryCache");
+    OffHeapLRUQueryCache cache = new OffHeapLRUQueryCache(100, 1L << 20, 1L << 20, context -> true, path);
+    assertEquals(0, cache.listFiles().length);
+    assertEquals(expectedAll, countWithCache(searcher, cache, all));
+    // dense entries are stored on disk, one file per segment
+    assertEquals(reader.leaves().size(), cache.listFiles().length);
+    // sparse entries stay on the heap
+    assertEquals(expectedRare, countWithCache(searcher, cache, rare));
+    assertEquals(reader.leaves().size(), cache.listFiles().length);
+    // hits are served from the mapped files
+    assertEquals(expectedAll, countWithCache(searcher, cache, all));
+    assertEquals(reader.leaves().size(), cache.getHitCount());
+    cache.close();
+
+    // a new cache on the same path reloads existing files
+    OffHeapLRUQueryCache cache2 = new OffHeapLRUQueryCache(100, 1L << 20, 1L << 20, context -> true, path);
+    assertEquals(reader.leaves().size(), cache2.listFiles().length);
+    assertEquals(expectedAll, countWithCache(searcher, cache2, all));
+    assertEquals(reader.leaves().size(), cache2.listFiles().length);
+
+    // merge all segments, files of the old segments are no longer needed
+    Document doc = new Document();
+    doc.add(new StringField("all", "yes", Store.NO));
+    w.addDocument(doc);
+    w.forceMerge(1);
+    DirectoryReader newReader = DirectoryReader.openIfChanged(reader, w);
+    if (newReader != null) {
+      reader.close();
+      reader = newReader;
+    }
+    searcher = new IndexSearcher(reader);
+    assertEquals(expectedAll + 1, countWithCache(searcher, cache2, all));
+    assertEquals(2, cache2.listFiles().length);
+    cache2.deleteUnusedFiles(reader);
+    assertEquals(1, cache2.listFiles().length);
+    cache2.close();
+
+    IOUtils.close(reader, w, dir);
+  }
+
+  private static DirectoryReader buildDenseReader(Directory dir) throws IOException {
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    for (int i = 0; i < 10000; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("all", "yes", Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+    return DirectoryReader.open(dir);
+  }
+
+  public void testOffHeapBudget() throws IOException {
+    Directory dir = newDirectory();
+    DirectoryReader reader = buildDenseReader(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    final Query all = new TermQuery(new Term("all", "yes"));
+    final int maxDoc = reader.maxDoc();
+
+    // the heap budget is too small for dense bit sets, which doesn't prevent caching off-heap
+    assertFalse(maxDoc / 8 * 5 < 4096);
+    OffHeapLRUQueryCache cache = new OffHeapLRUQueryCache(100, 4096, 1L << 20, context -> true, createTempDir("queryCache"));
+    assertEquals(maxDoc, countWithCache(searcher, cache, all));
+    assertEquals(1, cache.listFiles().length);
+    assertEquals(1, cache.getCacheSize());
+    assertEquals(((maxDoc + 63) / 64) * 8, cache.offHeapBytesUsed());
+    cache.close();
+    assertEquals(0, cache.offHeapBytesUsed());
+
+    // no room off-heap
+    cache = new OffHeapLRUQueryCache(100, 1L << 20, 8, context -> true, createTempDir("queryCache"));
+    assertEquals(maxDoc, countWithCache(searcher, cache, all));
+    assertEquals(0, cache.listFiles().length);
+    assertEquals(0, cache.offHeapBytesUsed());
+    cache.close();
+
+    IOUtils.close(reader, dir);
+  }
+
+  public void testCorruptFile() throws IOException {
+    Directory dir = newDirectory();
+    DirectoryReader reader = buildDenseReader(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    final Query all = new TermQuery(new Term("all", "yes"));
+    final int maxDoc = reader.maxDoc();
+
+    final Path path = createTempDir("queryCache");
+    OffHeapLRUQueryCache cache = new OffHeapLRUQueryCache(100, 1L << 20, 1L << 20, context -> true, path);
+    assertEquals(maxDoc, countWithCache(searcher, cache, all));
+    final String[] files = cache.listFiles();
+    assertEquals(1, files.length);
+    cache.close();
+
+    try (Directory cacheDir = FSDirectory.open(path)) {
+      cacheDir.deleteFile(files[0]);
+      try (IndexOutput out = cacheDir.createOutput(files[0], IOContext.DEFAULT)) {
+        out.writeInt(42);
+      }
+    }
+
+    // the corrupt file is a cache miss, it gets recomputed
+    cache = new OffHeapLRUQueryCache(100, 1L << 20, 1L << 20, context -> true, path);
+    assertEquals(maxDoc, countWithCache(searcher, cache, all));
+    assertEquals(0, cache.getHitCount());
+    assertArrayEquals(files, cache.listFiles());
+    assertEquals(maxDoc, countWithCache(searcher, cache, all));
+    assertEquals(1, cache.getHitCount());
+    cache.close();
+
+    IOUtils.close(reader, dir);
+  }
+}
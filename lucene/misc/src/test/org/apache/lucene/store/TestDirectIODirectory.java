@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.util.TestUtil;
+import org.junit.BeforeClass;
+
+public class TestDirectIODirectory extends BaseDirectoryTestCase {
+
+  @BeforeClass
+  public static void checkSupported() throws IOException {
+    assumeTrue(DirectIODirectory.UNSUPPORTED_REASON, DirectIODirectory.UNSUPPORTED_REASON == null);
+    try (Directory dir = new DirectIODirectory(FSDirectory.open(createTempDir("checkSupported")))) {
+      dir.createOutput("test", new IOContext(new MergeInfo(1, Long.MAX_VALUE, false, -1))).close();
+    } catch (IOException e) {
+      assumeNoException("test requires a file system that supports direct IO", e);
+    }
+  }
+
+  @Override
+  protected Directory getDirectory(Path path) throws IOException {
+    return new DirectIODirectory(FSDirectory.open(path), TestUtil.nextInt(random(), 1, 1 << 16), 0) {
+      @Override
+      protected boolean useDirectIO(String name, IOContext context, long fileLength) {
+        return true;
+      }
+    };
+  }
+
+  public void testUseDirectIO() throws IOException {
+    try (DirectIODirectory dir = new DirectIODirectory(FSDirectory.open(createTempDir()), 4096, 1000)) {
+      IOContext smallMerge = new IOContext(new MergeInfo(10, 100, false, -1));
+      IOContext largeMerge = new IOContext(new MergeInfo(10, 10000, false, -1));
+      assertFalse(dir.useDirectIO("test", IOContext.DEFAULT, -1));
+      assertFalse(dir.useDirectIO("test", smallMerge, -1));
+      assertTrue(dir.useDirectIO("test", largeMerge, -1));
+      assertFalse(dir.useDirectIO("test", largeMerge, 100));
+      assertTrue(dir.useDirectIO("test", largeMerge, 1000));
+    }
+  }
+
+  public void testCloneBeforeFirstRead() throws IOException {
+    try (Directory dir = getDirectory(createTempDir())) {
+      try (IndexOutput out = dir.createOutput("test", IOContext.DEFAULT)) {
+        for (int i = 0; i < 1000; i++) {
+          out.writeInt(i);
+        }
+      }
+      try (IndexInput in = dir.openInput("test", IOContext.DEFAULT)) {
+        assertEquals(0, in.getFilePointer());
+        IndexInput clone = in.clone();
+        assertEquals(0, clone.getFilePointer());
+        assertEquals(0, clone.readInt());
+        assertEquals(0, in.getFilePointer());
+        in.seek(400);
+        assertEquals(100, in.readInt());
+        assertEquals(1, clone.readInt());
+      }
+    }
+  }
+
+  public void testFileLengthOnlyForMerges() throws IOException {
+    int[] fileLengthCalls = new int[1];
+    FSDirectory fsDir = new NIOFSDirectory(createTempDir()) {
+      @Override
+      public long fileLength(String name) throws IOException {
+        fileLengthCalls[0]++;
+        return super.fileLength(name);
+      }
+    };
+    try (DirectIODirectory dir = new DirectIODirectory(fsDir, 4096, 1000)) {
+      try (IndexOutput out = dir.createOutput("test", IOContext.DEFAULT)) {
+        out.writeInt(42);
+      }
+      dir.openInput("test", IOContext.DEFAULT).close();
+      assertEquals(0, fileLengthCalls[0]);
+      dir.openInput("test", new IOContext(new MergeInfo(10, 10000, false, -1))).close();
+      assertEquals(1, fileLengthCalls[0]);
+    }
+  }
+
+  public void testMerges() throws IOException {
+    Path path = createTempDir();
+    try (Directory dir = new DirectIODirectory(FSDirectory.open(path), TestUtil.nextInt(random(), 1, 1 << 16), 0)) {
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 10, 100));
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        int numDocs = atLeast(1000);
+        for (int i = 0; i < numDocs; i++) {
+          Document doc = new Document();
+          doc.add(new TextField("body", TestUtil.randomSimpleString(random()), Field.Store.YES));
+          w.addDocument(doc);
+        }
+        w.forceMerge(1);
+      }
+      TestUtil.checkIndex(dir);
+    }
+  }
+}
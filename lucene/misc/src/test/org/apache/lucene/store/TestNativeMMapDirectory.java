@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestNativeMMapDirectory extends LuceneTestCase {
+
+  public void testReadAdvice() throws Exception {
+    try (NativeMMapDirectory dir = new NativeMMapDirectory(createTempDir("testReadAdvice"))) {
+      IOContext merge = new IOContext(new MergeInfo(10, 100, false, -1));
+      assertEquals(ReadAdvice.NORMAL, dir.getReadAdvice("_0.fdt", IOContext.DEFAULT));
+      assertEquals(ReadAdvice.NORMAL, dir.getReadAdvice("_0.cfs", IOContext.READ));
+      assertEquals(ReadAdvice.RANDOM, dir.getReadAdvice("_0.tip", IOContext.DEFAULT));
+      assertEquals(ReadAdvice.RANDOM, dir.getReadAdvice("_0_Lucene70_0.dvd", IOContext.READ));
+      assertEquals(ReadAdvice.SEQUENTIAL, dir.getReadAdvice("_0.fdt", merge));
+      assertEquals(ReadAdvice.SEQUENTIAL, dir.getReadAdvice("_0.tip", merge));
+      assertEquals(ReadAdvice.SEQUENTIAL, dir.getReadAdvice("_0.si", IOContext.READONCE));
+    }
+  }
+}
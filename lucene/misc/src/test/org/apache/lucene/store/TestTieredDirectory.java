@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.TestUtil;
+
+public class TestTieredDirectory extends BaseDirectoryTestCase {
+
+  @Override
+  protected Directory getDirectory(Path path) throws IOException {
+    return new TieredDirectory(FSDirectory.open(path.resolve("hot")), FSDirectory.open(path.resolve("cold")),
+        random().nextInt(1000), random().nextInt(3), true);
+  }
+
+  public void testMoveSegments() throws IOException {
+    Path path = createTempDir();
+    Directory hotDir = FSDirectory.open(path.resolve("hot"));
+    Directory coldDir = FSDirectory.open(path.resolve("cold"));
+    TieredDirectory dir = new TieredDirectory(hotDir, coldDir, 1, 0, true);
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 100; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+      w.addDocument(doc);
+    }
+    w.commit();
+    // new segments stay on the hot tier for one period
+    assertEquals(0, dir.moveSegments());
+    assertEquals(0, indexFiles(coldDir).size());
+
+    // the segment has not been read since the last call
+    assertTrue(dir.moveSegments() > 0);
+    assertEquals(Arrays.asList("segments_1"), indexFiles(hotDir));
+
+    try (DirectoryReader reader = DirectoryReader.open(dir)) {
+      IndexSearcher searcher = new IndexSearcher(reader);
+      assertEquals(1, searcher.count(new TermQuery(new Term("id", "42"))));
+      // the segment was read, it goes back to the hot tier
+      assertTrue(dir.moveSegments() > 0);
+      assertEquals(0, indexFiles(coldDir).size());
+      assertEquals(1, searcher.count(new TermQuery(new Term("id", "42"))));
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testDuplicateIsDeletedOnOpen() throws IOException {
+    Path path = createTempDir();
+    Directory hotDir = FSDirectory.open(path.resolve("hot"));
+    Directory coldDir = FSDirectory.open(path.resolve("cold"));
+    for (Directory d : new Directory[] { hotDir, coldDir }) {
+      try (IndexOutput out = d.createOutput("_0.fdt", IOContext.DEFAULT)) {
+        out.writeInt(42);
+      }
+    }
+    TieredDirectory dir = new TieredDirectory(hotDir, coldDir, 0, 0, true);
+    assertFalse(Arrays.asList(coldDir.listAll()).contains("_0.fdt"));
+    try (IndexInput in = dir.openInput("_0.fdt", IOContext.DEFAULT)) {
+      assertEquals(42, in.readInt());
+    }
+    dir.close();
+  }
+
+  public void testMoveFilesAreNotListed() throws IOException {
+    Path path = createTempDir();
+    Directory hotDir = FSDirectory.open(path.resolve("hot"));
+    TieredDirectory[] tiered = new TieredDirectory[1];
+    List<String> renamed = new ArrayList<>();
+    Directory coldDir = new FilterDirectory(FSDirectory.open(path.resolve("cold"))) {
+      @Override
+      public void rename(String source, String dest) throws IOException {
+        // IndexWriter must not see the temporary file while it is being moved
+        assertTrue(Arrays.asList(in.listAll()).contains(source));
+        assertFalse(Arrays.asList(tiered[0].listAll()).contains(source));
+        renamed.add(source);
+        super.rename(source, dest);
+      }
+    };
+    TieredDirectory dir = new TieredDirectory(hotDir, coldDir, 0, 0, true);
+    tiered[0] = dir;
+    try (IndexOutput out = dir.createOutput("_0.fdt", IOContext.DEFAULT)) {
+      out.writeInt(42);
+    }
+    assertEquals(0, dir.moveSegments());
+    assertEquals(1, dir.moveSegments());
+    assertEquals(1, renamed.size());
+    assertEquals(Arrays.asList("_0.fdt"), indexFiles(coldDir));
+    dir.close();
+  }
+
+  public void testMoveFilesAreDeletedOnOpen() throws IOException {
+    Path path = createTempDir();
+    Directory hotDir = FSDirectory.open(path.resolve("hot"));
+    Directory coldDir = FSDirectory.open(path.resolve("cold"));
+    try (IndexOutput out = hotDir.createOutput("_0.fdt", IOContext.DEFAULT)) {
+      out.writeInt(42);
+    }
+    // we crashed while moving _0.fdt to the cold tier
+    try (IndexOutput out = coldDir.createTempOutput("_0.fdt", "tiered", IOContext.DEFAULT)) {
+      out.writeInt(42);
+    }
+    TieredDirectory dir = new TieredDirectory(hotDir, coldDir, 0, 0, true);
+    assertEquals(0, indexFiles(coldDir).size());
+    assertEquals(Arrays.asList("_0.fdt"), indexFiles(dir));
+    dir.close();
+  }
+
+  public void testIndexing() throws IOException {
+    Path path = createTempDir();
+    TieredDirectory dir = new TieredDirectory(FSDirectory.open(path.resolve("hot")), FSDirectory.open(path.resolve("cold")),
+        random().nextInt(10000), random().nextInt(3), true);
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+      w.addDocument(doc);
+      if (random().nextInt(100) == 0) {
+        w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(i + 1))));
+      }
+      if (random().nextInt(50) == 0) {
+        dir.moveSegments();
+      }
+    }
+    w.close();
+    dir.moveSegments();
+    dir.moveSegments();
+    TestUtil.checkIndex(dir);
+    dir.close();
+  }
+
+  private static List<String> indexFiles(Directory dir) throws IOException {
+    List<String> files = new ArrayList<>();
+    for (String file : dir.listAll()) {
+      if (file.startsWith("_") || file.startsWith(IndexFileNames.SEGMENTS)) {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+}
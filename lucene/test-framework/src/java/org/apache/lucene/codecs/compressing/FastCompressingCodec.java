@@ -21,9 +21,14 @@ public class FastCompressingCodec extends CompressingCodec {
 
   /** Constructor that allows to configure the chunk size. */
   public FastCompressingCodec(int chunkSize, int maxDocsPerChunk, boolean withSegmentSuffix, int blockSize) {
+    this(chunkSize, maxDocsPerChunk, withSegmentSuffix, blockSize, 0);
+  }
+
+  /** Constructor that allows to configure the chunk size and the sub-block size. */
+  public FastCompressingCodec(int chunkSize, int maxDocsPerChunk, boolean withSegmentSuffix, int blockSize, int subBlockSize) {
     super("FastCompressingStoredFields", 
           withSegmentSuffix ? "FastCompressingStoredFields" : "",
-          CompressionMode.FAST, chunkSize, maxDocsPerChunk, blockSize);
+          CompressionMode.FAST, chunkSize, maxDocsPerChunk, blockSize, subBlockSize);
   }
 
   /** Default constructor. */
@@ -600,6 +600,26 @@ public class AssertingLeafReader extends FilterLeafReader {
       return in.longValue();
     }    
 
+    @Override
+    public int longValues(int[] docs, int count, long[] values) throws IOException {
+      assertThread("Numeric doc values", creationThread);
+      assert count >= 0 && count <= docs.length && count <= values.length;
+      for (int i = 0; i < count; ++i) {
+        assert docs[i] >= 0 && docs[i] < maxDoc;
+        assert i == 0 ? docs[i] >= in.docID() : docs[i] > docs[i - 1];
+      }
+      final int numValues = in.longValues(docs, count, values);
+      assert numValues >= 0 && numValues <= count;
+      for (int i = 1; i < numValues; ++i) {
+        assert docs[i] > docs[i - 1];
+      }
+      if (count > 0) {
+        lastDocID = in.docID();
+      }
+      exists = false;
+      return numValues;
+    }
+
     @Override
     public String toString() {
       return "AssertingNumericDocValues(" + in + ")";
@@ -1266,6 +1266,31 @@ public abstract class BaseDocValuesFormatTestCase extends BaseIndexFileFormatTes
         }
       }
       assertEquals(DocIdSetIterator.NO_MORE_DOCS, docValues.docID());
+
+      // bulk loading of random increasing docs
+      docValues = DocValues.getNumeric(r, "dv");
+      final int[] docs = new int[TestUtil.nextInt(random(), 1, 300)];
+      final long[] values = new long[docs.length];
+      for (int doc = random().nextInt(3); doc < r.maxDoc(); ) {
+        int count = 0;
+        while (count < docs.length && doc < r.maxDoc()) {
+          docs[count++] = doc;
+          doc += 1 + random().nextInt(3);
+        }
+        final int[] expectedDocs = Arrays.copyOf(docs, count);
+        final int numValues = docValues.longValues(docs, count, values);
+        int upto = 0;
+        for (int expectedDoc : expectedDocs) {
+          String storedValue = r.document(expectedDoc).get("stored");
+          if (storedValue != null) {
+            assertTrue(upto < numValues);
+            assertEquals(expectedDoc, docs[upto]);
+            assertEquals(Long.parseLong(storedValue), values[upto]);
+            upto++;
+          }
+        }
+        assertEquals(upto, numValues);
+      }
     }
     ir.close();
     dir.close();
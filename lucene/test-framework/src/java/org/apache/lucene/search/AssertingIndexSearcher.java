@@ -72,6 +72,12 @@ public class AssertingIndexSearcher extends IndexSearcher {
     super.search(leaves, weight, AssertingCollector.wrap(random, collector));
   }
 
+  @Override
+  protected void search(LeafReaderContext leaf, int minDoc, int maxDoc, Weight weight, Collector collector) throws IOException {
+    assert weight instanceof AssertingWeight;
+    super.search(leaf, minDoc, maxDoc, weight, AssertingCollector.wrap(random, collector));
+  }
+
   @Override
   public String toString() {
     return "AssertingIndexSearcher(" + super.toString() + ")";
@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.zip.CRC32;
 
 import org.apache.lucene.index.DirectoryReader;
@@ -47,6 +48,12 @@ public abstract class BaseDirectoryTestCase extends LuceneTestCase {
    *  an FS-based directory it should point to the specified
    *  path, else it can ignore it. */
   protected abstract Directory getDirectory(Path path) throws IOException;
+
+  /** Sets the executor that serves {@link IndexInput#prefetch} hints of the
+   *  given directory, or returns false if the directory can't prefetch. */
+  protected boolean setPrefetchExecutor(Directory dir, Executor executor) {
+    return false;
+  }
   
   // first some basic tests for the directory api
   
@@ -576,6 +583,41 @@ public abstract class BaseDirectoryTestCase extends LuceneTestCase {
     dir.close();    
   }
   
+  public void testPrefetchExecutor() throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    Directory dir = getDirectory(createTempDir("testPrefetchExecutor"));
+    assumeTrue("this directory doesn't prefetch", setPrefetchExecutor(dir, tasks::add));
+    try (IndexOutput out = dir.createOutput("test", IOContext.DEFAULT)) {
+      for (int i = 0; i < 10000; i++) {
+        out.writeInt(i);
+      }
+    }
+    IndexInput in = dir.openInput("test", IOContext.DEFAULT);
+    IndexInput slice = in.slice("slice", 400, 400);
+    slice.prefetch(0, 400);
+    in.prefetch(39000, 1000);
+    // pending hints are served by a single task
+    assertEquals(1, tasks.size());
+    assertEquals(0, slice.getFilePointer());
+    expectThrows(IllegalArgumentException.class, () -> {
+      slice.prefetch(1, 400);
+    });
+    expectThrows(IllegalArgumentException.class, () -> {
+      in.prefetch(-1, 1);
+    });
+    tasks.remove(0).run();
+    assertEquals(100, slice.readInt());
+
+    // hints are scheduled again once the previous ones have been served
+    in.prefetch(0, 40000);
+    assertEquals(1, tasks.size());
+
+    // pending hints are dropped once the file is closed
+    in.close();
+    tasks.remove(0).run();
+    dir.close();
+  }
+
   // LUCENE-3382 -- make sure we get exception if the directory really does not exist.
   public void testNoDir() throws Throwable {
     Path tempDir = createTempDir("doesnotexist");
@@ -134,6 +134,15 @@ public class MockIndexInputWrapper extends IndexInput {
     return delegate.length();
   }
 
+  @Override
+  public void prefetch(long offset, long length) throws IOException {
+    ensureOpen();
+    if (offset < 0 || length < 0 || offset + length > delegate.length()) {
+      throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + delegate.length() + ": "  + this);
+    }
+    delegate.prefetch(offset, length);
+  }
+
   @Override
   public byte readByte() throws IOException {
     ensureOpen();
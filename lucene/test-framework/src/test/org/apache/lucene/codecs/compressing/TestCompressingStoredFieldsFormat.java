@@ -36,6 +36,7 @@ import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.store.ByteArrayDataInput;
 import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.TestUtil;
 import com.carrotsearch.randomizedtesting.generators.RandomNumbers;
 
 public class TestCompressingStoredFieldsFormat extends BaseStoredFieldsFormatTestCase {
@@ -311,4 +312,42 @@ public class TestCompressingStoredFieldsFormat extends BaseStoredFieldsFormatTes
     iw.close();
     dir.close();
   }
+
+  public void testSubBlocks() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwConf = newIndexWriterConfig(new MockAnalyzer(random()));
+    final int subBlockSize = RandomNumbers.randomIntBetween(random(), 1, 1024);
+    iwConf.setCodec(new FastCompressingCodec(4 * 1024, 128, false, 1024, subBlockSize));
+    // preserve doc ID order
+    iwConf.setMergePolicy(newLogMergePolicy());
+    IndexWriter iw = new IndexWriter(dir, iwConf);
+    final int numDocs = atLeast(1000);
+    final String[] values = new String[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      // some documents are empty, some are larger than the sub-block size
+      values[i] = random().nextInt(10) == 0 ? null : TestUtil.randomSimpleString(random(), random().nextInt(10) == 0 ? 2000 : 50);
+      Document doc = new Document();
+      if (values[i] != null) {
+        doc.add(new StoredField("text", values[i]));
+      }
+      iw.addDocument(doc);
+    }
+    if (random().nextBoolean()) {
+      iw.forceMerge(1);
+    }
+    DirectoryReader ir = DirectoryReader.open(iw);
+    for (LeafReaderContext leaf : ir.leaves()) {
+      CodecReader sr = (CodecReader) leaf.reader();
+      CompressingStoredFieldsReader reader = (CompressingStoredFieldsReader) sr.getFieldsReader();
+      assertEquals(subBlockSize, reader.getSubBlockSize());
+    }
+    // random access
+    for (int iter = 0; iter < 1000; iter++) {
+      final int docID = random().nextInt(numDocs);
+      assertEquals(values[docID], ir.document(docID).get("text"));
+    }
+    ir.close();
+    iw.close();
+    dir.close();
+  }
 }
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.core;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.LockFactory;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.StrUtils;
+import org.apache.solr.metrics.SolrMetricManager;
+import org.apache.solr.metrics.SolrMetricProducer;
+import org.apache.solr.store.blockcache.BlockCache;
+import org.apache.solr.store.blockcache.BlockDirectory;
+import org.apache.solr.store.blockcache.BlockDirectoryCache;
+import org.apache.solr.store.blockcache.Cache;
+import org.apache.solr.store.blockcache.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wraps the {@link FSDirectory} of {@link StandardDirectoryFactory} in a
+ * {@link BlockDirectory}, which caches blocks of index files in a slab-based
+ * block cache, on or off heap. This gives control over how much memory is used
+ * to cache the hot parts of the index, for instance in containers whose page
+ * cache is constrained.
+ * <p>
+ * Can set the following parameters:
+ * <ul>
+ *  <li>blockcache.slab.count -- The number of slabs of the cache, defaults to 1</li>
+ *  <li>blockcache.blocksperbank -- The number of blocks per slab, defaults to 16384 blocks of
+ *  {@link BlockDirectory#BLOCK_SIZE} bytes, i.e. 128MB per slab</li>
+ *  <li>blockcache.direct.memory.allocation -- Whether slabs are allocated off heap, defaults to true</li>
+ *  <li>blockcache.global -- Whether all cores share a single cache, defaults to true. Otherwise,
+ *  all directories of this factory share a cache, which is released when the factory is closed.</li>
+ *  <li>blockcache.fileTypes -- Comma-separated suffixes of the files to cache, defaults to
+ *  {@link #DEFAULT_FILE_TYPES}, which excludes stored fields and term vectors, as well as
+ *  compound files since they contain the stored fields and term vectors of small segments.
+ *  Compound files are cached whole if {@code .cfs} is listed. An empty value caches all
+ *  files.</li>
+ *  <li>blockcache.cachemerges -- Whether to cache reads of merges, defaults to false</li>
+ *  <li>blockcache.cachereadonce -- Whether to cache files that are read once, defaults to false</li>
+ * </ul>
+ * Cache statistics are reported under the {@code blockCache} metric of the
+ * {@code directoryFactory} scope.
+ *
+ * @lucene.experimental
+ */
+public class BlockCacheDirectoryFactory extends StandardDirectoryFactory implements SolrMetricProducer {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final String BLOCKCACHE_SLAB_COUNT = "blockcache.slab.count";
+  public static final String NUMBEROFBLOCKSPERBANK = "blockcache.blocksperbank";
+  public static final String BLOCKCACHE_DIRECT_MEMORY_ALLOCATION = "blockcache.direct.memory.allocation";
+  public static final String BLOCKCACHE_GLOBAL = "blockcache.global";
+  public static final String BLOCKCACHE_FILE_TYPES = "blockcache.fileTypes";
+  public static final String CACHE_MERGES = "blockcache.cachemerges";
+  public static final String CACHE_READONCE = "blockcache.cachereadonce";
+
+  /** Terms dictionaries, postings, doc values, norms and points. */
+  public static final String DEFAULT_FILE_TYPES = ".tim,.tip,.doc,.pos,.pay,.dvd,.dvm,.nvd,.nvm,.kdd,.kdi";
+
+  private static BlockCache globalBlockCache;
+
+  private final static class MetricsHolder {
+    // Won't load until MetricsHolder is referenced
+    public static final Metrics metrics = new Metrics("blockCache", "Provides metrics for the BlockCacheDirectoryFactory BlockCache.");
+  }
+
+  private int slabCount;
+  private int numberOfBlocksPerBank;
+  private boolean directAllocation;
+  private boolean blockCacheGlobal;
+  private Set<String> fileTypes;
+  private boolean cacheMerges;
+  private boolean cacheReadOnce;
+  // the cache of the directories of this factory when the cache is not global
+  private BlockCache blockCache;
+
+  @Override
+  public void init(NamedList args) {
+    super.init(args);
+    SolrParams params = SolrParams.toSolrParams(args);
+    slabCount = params.getInt(BLOCKCACHE_SLAB_COUNT, 1);
+    if (slabCount <= 0) {
+      throw new IllegalArgumentException(BLOCKCACHE_SLAB_COUNT + " must be greater than 0");
+    }
+    numberOfBlocksPerBank = params.getInt(NUMBEROFBLOCKSPERBANK, 16384);
+    if (numberOfBlocksPerBank <= 0) {
+      throw new IllegalArgumentException(NUMBEROFBLOCKSPERBANK + " must be greater than 0");
+    }
+    directAllocation = params.getBool(BLOCKCACHE_DIRECT_MEMORY_ALLOCATION, true);
+    blockCacheGlobal = params.getBool(BLOCKCACHE_GLOBAL, true);
+    fileTypes = new HashSet<>();
+    for (String fileType : StrUtils.splitSmart(params.get(BLOCKCACHE_FILE_TYPES, DEFAULT_FILE_TYPES), ',')) {
+      if (fileType.trim().isEmpty() == false) {
+        fileTypes.add(fileType.trim());
+      }
+    }
+    cacheMerges = params.getBool(CACHE_MERGES, false);
+    cacheReadOnce = params.getBool(CACHE_READONCE, false);
+  }
+
+  @Override
+  protected Directory create(String path, LockFactory lockFactory, DirContext dirContext) throws IOException {
+    final Directory dir = super.create(path, lockFactory, dirContext);
+    if (dirContext == DirContext.META_DATA) {
+      return dir;
+    }
+    final BlockCache blockCache = getBlockCache();
+    // the cache is shared by several directories, release blocks of closed ones
+    final Cache cache = new BlockDirectoryCache(blockCache, path, MetricsHolder.metrics, true);
+    return new BlockDirectory(path, dir, cache, fileTypes, true, false, cacheMerges, cacheReadOnce);
+  }
+
+  BlockCache getBlockCache() {
+    if (!blockCacheGlobal) {
+      synchronized (this) {
+        if (blockCache == null) {
+          log.info("Creating new single instance BlockCache");
+          blockCache = createBlockCache();
+        }
+        return blockCache;
+      }
+    }
+    synchronized (BlockCacheDirectoryFactory.class) {
+      if (globalBlockCache == null) {
+        log.info("Creating new global BlockCache");
+        globalBlockCache = createBlockCache();
+      }
+    }
+    return globalBlockCache;
+  }
+
+  private BlockCache createBlockCache() {
+    final int blockSize = BlockDirectory.BLOCK_SIZE;
+    final int slabSize = numberOfBlocksPerBank * blockSize;
+    final long totalMemory = (long) slabCount * slabSize;
+    log.info("Block cache with {} slabs of {} bytes, ~{} bytes in total, direct memory allocation set to [{}], caching {}",
+        slabCount, slabSize, totalMemory, directAllocation, fileTypes.isEmpty() ? "all files" : fileTypes);
+    try {
+      return new BlockCache(MetricsHolder.metrics, directAllocation, totalMemory, slabSize, blockSize);
+    } catch (OutOfMemoryError e) {
+      throw new RuntimeException(
+          "The max direct memory is likely too low.  Either increase it (by adding -XX:MaxDirectMemorySize=<size>g to your startup args)"
+              + " or disable direct allocation using " + BLOCKCACHE_DIRECT_MEMORY_ALLOCATION + "=false in solrconfig.xml. If you are putting the block cache on the heap,"
+              + " your java heap size might not be large enough."
+              + " Failed allocating ~" + totalMemory / 1000000.0 + " MB.",
+          e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      synchronized (this) {
+        // directories are closed, the slabs are freed once they are garbage collected
+        blockCache = null;
+      }
+    }
+  }
+
+  /** Expert: mostly for tests */
+  static Metrics getMetrics() {
+    return MetricsHolder.metrics;
+  }
+
+  @Override
+  public void initializeMetrics(SolrMetricManager manager, String registry, String tag, String scope) {
+    MetricsHolder.metrics.initializeMetrics(manager, registry, tag, scope);
+  }
+}
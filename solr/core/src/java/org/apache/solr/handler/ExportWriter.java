@@ -85,6 +85,8 @@ import static org.apache.solr.common.util.Utils.makeMap;
 
 public class ExportWriter implements SolrCore.RawWriter, Closeable {
   private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  // number of documents whose sort values are loaded at once
+  private static final int LOAD_BATCH_SIZE = 1024;
   private OutputStreamWriter respWriter;
   final SolrQueryRequest req;
   final SolrQueryResponse res;
@@ -233,6 +235,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     int queueSize = 30000;
     SortQueue queue = new SortQueue(queueSize, sortDoc);
     SortDoc[] outDocs = new SortDoc[queueSize];
+    int[] docs = new int[LOAD_BATCH_SIZE];
 
     while(count < totalHits) {
       //long begin = System.nanoTime();
@@ -241,12 +244,21 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       for(int i=0; i<leaves.size(); i++) {
         sortDoc.setNextReader(leaves.get(i));
         DocIdSetIterator it = new BitSetIterator(sets[i], 0); // cost is not useful here
-        int docId = -1;
-        while((docId = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-          sortDoc.setValues(docId);
-          if(top.lessThan(sortDoc)) {
-            top.setValues(sortDoc);
-            top = queue.updateTop();
+        int docId = it.nextDoc();
+        while(docId != DocIdSetIterator.NO_MORE_DOCS) {
+          int numDocs = 0;
+          do {
+            docs[numDocs++] = docId;
+            docId = it.nextDoc();
+          } while(numDocs < docs.length && docId != DocIdSetIterator.NO_MORE_DOCS);
+
+          sortDoc.loadValues(docs, numDocs);
+          for(int j=0; j<numDocs; j++) {
+            sortDoc.setValues(docs[j]);
+            if(top.lessThan(sortDoc)) {
+              top.setValues(sortDoc);
+              top = queue.updateTop();
+            }
           }
         }
       }
@@ -513,6 +525,12 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       this.docId = -1;
     }
 
+    public void loadValues(int[] docs, int count) throws IOException {
+      for(SortValue sortValue : sortValues) {
+        sortValue.loadValues(docs, count);
+      }
+    }
+
     public void setValues(int docId) throws IOException {
       this.docId = docId;
       for(SortValue sortValue : sortValues) {
@@ -579,6 +597,10 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       this.value1.reset();
     }
 
+    public void loadValues(int[] docs, int count) throws IOException {
+      value1.loadValues(docs, count);
+    }
+
     public void setValues(int docId) throws IOException {
       this.docId = docId;
       value1.setCurrentValue(docId);
@@ -637,6 +659,11 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       value2.reset();
     }
 
+    public void loadValues(int[] docs, int count) throws IOException {
+      value1.loadValues(docs, count);
+      value2.loadValues(docs, count);
+    }
+
     public void setValues(int docId) throws IOException {
       this.docId = docId;
       value1.setCurrentValue(docId);
@@ -707,6 +734,12 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       value3.reset();
     }
 
+    public void loadValues(int[] docs, int count) throws IOException {
+      value1.loadValues(docs, count);
+      value2.loadValues(docs, count);
+      value3.loadValues(docs, count);
+    }
+
     public void setValues(int docId) throws IOException {
       this.docId = docId;
       value1.setCurrentValue(docId);
@@ -795,6 +828,13 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       value4.reset();
     }
 
+    public void loadValues(int[] docs, int count) throws IOException {
+      value1.loadValues(docs, count);
+      value2.loadValues(docs, count);
+      value3.loadValues(docs, count);
+      value4.loadValues(docs, count);
+    }
+
     public void setValues(int docId) throws IOException {
       this.docId = docId;
       value1.setCurrentValue(docId);
@@ -882,6 +922,64 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     public void setCurrentValue(SortValue value);
     public void reset();
     public SortValue copy();
+
+    /**
+     * Called with the next docs, in order, whose values are about to be set
+     * with {@link #setCurrentValue(int)}, so that they can be loaded in bulk.
+     */
+    public default void loadValues(int[] docs, int count) throws IOException {}
+  }
+
+  /**
+   * Numeric doc values of a batch of docs, which are loaded in bulk with
+   * {@link NumericDocValues#longValues} and then consumed in order.
+   */
+  static class NumericValuesBuffer {
+
+    private int[] docs = new int[0];
+    private long[] values = new long[0];
+    private int numValues;
+    private int upto;
+    private int lastDoc = -1;
+
+    void load(NumericDocValues vals, int[] docs, int count) throws IOException {
+      if (count == 0 || docs[0] < vals.docID()) {
+        // the iterator can't go backwards
+        clear();
+        return;
+      }
+      if (this.docs.length < count) {
+        this.docs = new int[ArrayUtil.oversize(count, Integer.BYTES)];
+        this.values = new long[this.docs.length];
+      }
+      System.arraycopy(docs, 0, this.docs, 0, count);
+      numValues = vals.longValues(this.docs, count, values);
+      upto = 0;
+      lastDoc = docs[count - 1];
+    }
+
+    void clear() {
+      numValues = 0;
+      upto = 0;
+      lastDoc = -1;
+    }
+
+    /** Whether the given doc is part of the current batch. */
+    boolean contains(int docId) {
+      return docId <= lastDoc;
+    }
+
+    /** Move to the given doc, which must be greater than or equal to the previous one, and return whether it has a value. */
+    boolean advanceExact(int docId) {
+      while (upto < numValues && docs[upto] < docId) {
+        ++upto;
+      }
+      return upto < numValues && docs[upto] == docId;
+    }
+
+    long longValue() {
+      return values[upto];
+    }
   }
 
   class IntValue implements SortValue {
@@ -891,6 +989,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     protected int currentValue;
     protected IntComp comp;
     private int lastDocID;
+    private final NumericValuesBuffer buffer = new NumericValuesBuffer();
 
     public IntValue copy() {
       return new IntValue(field, comp);
@@ -905,6 +1004,11 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     public void setNextReader(LeafReaderContext context) throws IOException {
       this.vals = DocValues.getNumeric(context.reader(), field);
       lastDocID = 0;
+      buffer.clear();
+    }
+
+    public void loadValues(int[] docs, int count) throws IOException {
+      buffer.load(vals, docs, count);
     }
 
     public void setCurrentValue(int docId) throws IOException {
@@ -912,6 +1016,14 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
         throw new AssertionError("docs were sent out-of-order: lastDocID=" + lastDocID + " vs doc=" + docId);
       }
       lastDocID = docId;
+      if (buffer.contains(docId)) {
+        if (buffer.advanceExact(docId)) {
+          currentValue = (int) buffer.longValue();
+        } else {
+          currentValue = 0;
+        }
+        return;
+      }
       int curDocID = vals.docID();
       if (docId > curDocID) {
         curDocID = vals.advance(docId);
@@ -983,6 +1095,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     protected long currentValue;
     protected LongComp comp;
     private int lastDocID;
+    private final NumericValuesBuffer buffer = new NumericValuesBuffer();
 
     public LongValue(String field, LongComp comp) {
       this.field = field;
@@ -997,6 +1110,11 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     public void setNextReader(LeafReaderContext context) throws IOException {
       this.vals = DocValues.getNumeric(context.reader(), field);
       lastDocID = 0;
+      buffer.clear();
+    }
+
+    public void loadValues(int[] docs, int count) throws IOException {
+      buffer.load(vals, docs, count);
     }
 
     public void setCurrentValue(int docId) throws IOException {
@@ -1004,6 +1122,14 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
         throw new AssertionError("docs were sent out-of-order: lastDocID=" + lastDocID + " vs doc=" + docId);
       }
       lastDocID = docId;
+      if (buffer.contains(docId)) {
+        if (buffer.advanceExact(docId)) {
+          currentValue = buffer.longValue();
+        } else {
+          currentValue = 0;
+        }
+        return;
+      }
       int curDocID = vals.docID();
       if (docId > curDocID) {
         curDocID = vals.advance(docId);
@@ -1076,6 +1202,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     protected float currentValue;
     protected FloatComp comp;
     private int lastDocID;
+    private final NumericValuesBuffer buffer = new NumericValuesBuffer();
 
     public FloatValue(String field, FloatComp comp) {
       this.field = field;
@@ -1090,6 +1217,11 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     public void setNextReader(LeafReaderContext context) throws IOException {
       this.vals = DocValues.getNumeric(context.reader(), field);
       lastDocID = 0;
+      buffer.clear();
+    }
+
+    public void loadValues(int[] docs, int count) throws IOException {
+      buffer.load(vals, docs, count);
     }
 
     public void setCurrentValue(int docId) throws IOException {
@@ -1097,6 +1229,14 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
         throw new AssertionError("docs were sent out-of-order: lastDocID=" + lastDocID + " vs doc=" + docId);
       }
       lastDocID = docId;
+      if (buffer.contains(docId)) {
+        if (buffer.advanceExact(docId)) {
+          currentValue = Float.intBitsToFloat((int)buffer.longValue());
+        } else {
+          currentValue = 0f;
+        }
+        return;
+      }
       int curDocID = vals.docID();
       if (docId > curDocID) {
         curDocID = vals.advance(docId);
@@ -1167,6 +1307,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     protected double currentValue;
     protected DoubleComp comp;
     private int lastDocID;
+    private final NumericValuesBuffer buffer = new NumericValuesBuffer();
     private LeafReader reader;
 
     public DoubleValue(String field, DoubleComp comp) {
@@ -1183,14 +1324,28 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       this.reader = context.reader();
       this.vals = DocValues.getNumeric(this.reader, this.field);
       lastDocID = 0;
+      buffer.clear();
+    }
+
+    public void loadValues(int[] docs, int count) throws IOException {
+      buffer.load(vals, docs, count);
     }
 
     public void setCurrentValue(int docId) throws IOException {
       if (docId < lastDocID) {
         // TODO: can we enforce caller to go in order instead?
         this.vals = DocValues.getNumeric(this.reader, this.field);
+        buffer.clear();
       }
       lastDocID = docId;
+      if (buffer.contains(docId)) {
+        if (buffer.advanceExact(docId)) {
+          currentValue = Double.longBitsToDouble(buffer.longValue());
+        } else {
+          currentValue = 0f;
+        }
+        return;
+      }
       int curDocID = vals.docID();
       if (docId > curDocID) {
         curDocID = vals.advance(docId);
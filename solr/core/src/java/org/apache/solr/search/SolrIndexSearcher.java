@@ -49,6 +49,7 @@ import org.apache.lucene.index.StoredFieldVisitor;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermStates;
 import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsBloomFilter;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.BooleanClause.Occur;
@@ -114,6 +115,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   private final int queryResultWindowSize;
   private final int queryResultMaxDocsCached;
   private final boolean useFilterForSortedQuery;
+  private final boolean useIdBloomFilter;
 
   private final boolean cachingEnabled;
   private final SolrCache<Query,DocSet> filterCache;
@@ -277,6 +279,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     this.queryResultWindowSize = solrConfig.queryResultWindowSize;
     this.queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
     this.useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
+    this.useIdBloomFilter = solrConfig.indexConfig != null && solrConfig.indexConfig.idBloomFilter
+        && schema.getUniqueKeyField() != null;
+    if (useIdBloomFilter) {
+      // build the filters of new segments now rather than on the request path
+      buildIdBloomFilters();
+    }
 
     this.fieldInfos = leafReader.getFieldInfos();
     this.docFetcher = new SolrDocumentFetcher(this, solrConfig, enableCache);
@@ -695,6 +703,23 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return id == DocIdSetIterator.NO_MORE_DOCS ? -1 : id;
   }
 
+  /**
+   * Build the bloom filters of the unique key field for all segments that
+   * don't have one yet. Filters are shared by all searchers of a segment, so
+   * only segments that are new since the previous searcher are scanned.
+   */
+  private void buildIdBloomFilters() {
+    final String field = schema.getUniqueKeyField().getName();
+    try {
+      for (LeafReaderContext leaf : leafContexts) {
+        TermsBloomFilter.get(leaf.reader(), field);
+      }
+    } catch (IOException e) {
+      // lookups work without filters, this is only an optimization
+      log.warn("Could not build the bloom filters of [{}]", name, e);
+    }
+  }
+
   /**
    * lookup the docid by the unique key field, and return the id *within* the leaf reader in the low 32 bits, and the
    * index of the leaf reader in the high 32 bits. -1 is returned if not found.
@@ -711,6 +736,13 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       final Terms terms = reader.terms(field);
       if (terms == null) continue;
 
+      if (useIdBloomFilter) {
+        // most ids only exist in one segment: skip the terms dictionary of the segments that can't contain this one;
+        // filters are built when searchers are opened, never on the request path
+        final TermsBloomFilter filter = TermsBloomFilter.getIfBuilt(reader, field);
+        if (filter != null && filter.mayContain(idBytes) == false) continue;
+      }
+
       TermsEnum te = terms.iterator();
       if (te.seekExact(idBytes)) {
         PostingsEnum docs = te.postings(null, PostingsEnum.NONE);
@@ -49,6 +49,7 @@ import org.apache.solr.search.DocSetUtil;
  */
 class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
   static int MAXIMUM_STARTING_TABLE_SIZE=1024;  // must be a power of two, non-final to support setting by tests
+  private static final int NUMERIC_BATCH_SIZE = 1024; // number of docs whose numeric values are loaded at once
 
   /** a hash table with long keys (what we're counting) and integer values (counts) */
   private static class LongCounts {
@@ -372,55 +373,84 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
 
     } else { // Numeric:
 
-      if (sf.multiValued()) {
-        DocSetUtil.collectSortedDocSet(fcontext.base, fcontext.searcher.getIndexReader(), new SimpleCollector() {
-          SortedNumericDocValues values = null; //NN
+      collectNumericDocs();
+    }
+  }
 
-          @Override public ScoreMode scoreMode() { return ScoreMode.COMPLETE_NO_SCORES; }
+  /**
+   * Collects numerics. Single-valued numerics, including multi-valued fields whose segment
+   * has a single value per doc, are loaded in batches of docs rather than one doc at a time.
+   */
+  private void collectNumericDocs() throws IOException {
+    final int[] segDocs = new int[NUMERIC_BATCH_SIZE];
+    final long[] values = new long[NUMERIC_BATCH_SIZE];
+    class NumericBatchCollector extends SimpleCollector {
+      NumericDocValues docValues = null; // single values of this segment, or null if it has multiple values per doc
+      SortedNumericDocValues multiValues = null; // multiple values of this segment, or null if docValues is set
+      int numDocs = 0;
 
-          @Override
-          protected void doSetNextReader(LeafReaderContext ctx) throws IOException {
-            setNextReaderFirstPhase(ctx);
-            values = DocValues.getSortedNumeric(ctx.reader(), sf.getName());
-          }
-
-          @Override
-          public void collect(int segDoc) throws IOException {
-            if (values.advanceExact(segDoc)) {
-              long l = values.nextValue(); // This document must have at least one value
-              collectValFirstPhase(segDoc, l);
-              for (int i = 1; i < values.docValueCount(); i++) {
-                long lnew = values.nextValue();
-                if (lnew != l) { // Skip the value if it's equal to the last one, we don't want to double-count it
-                  collectValFirstPhase(segDoc, lnew);
-                }
-                l = lnew;
-              }
+      @Override public ScoreMode scoreMode() { return ScoreMode.COMPLETE_NO_SCORES; }
 
-            }
+      @Override
+      protected void doSetNextReader(LeafReaderContext ctx) throws IOException {
+        // values of the previous segment must be loaded before switching doc values
+        flush();
+        setNextReaderFirstPhase(ctx);
+        if (sf.multiValued()) {
+          multiValues = DocValues.getSortedNumeric(ctx.reader(), sf.getName());
+          docValues = DocValues.unwrapSingleton(multiValues);
+          if (docValues != null) {
+            multiValues = null;
           }
-        });
-      } else {
-        DocSetUtil.collectSortedDocSet(fcontext.base, fcontext.searcher.getIndexReader(), new SimpleCollector() {
-          NumericDocValues values = null; //NN
-
-          @Override public ScoreMode scoreMode() { return ScoreMode.COMPLETE_NO_SCORES; }
+        } else {
+          docValues = DocValues.getNumeric(ctx.reader(), sf.getName());
+        }
+      }
 
-          @Override
-          protected void doSetNextReader(LeafReaderContext ctx) throws IOException {
-            setNextReaderFirstPhase(ctx);
-            values = DocValues.getNumeric(ctx.reader(), sf.getName());
-          }
+      @Override
+      public void collect(int segDoc) throws IOException {
+        if (multiValues != null) {
+          collectMultiValued(segDoc);
+          return;
+        }
+        segDocs[numDocs++] = segDoc;
+        if (numDocs == segDocs.length) {
+          flush();
+        }
+      }
 
-          @Override
-          public void collect(int segDoc) throws IOException {
-            if (values.advanceExact(segDoc)) {
-              collectValFirstPhase(segDoc, values.longValue());
+      private void collectMultiValued(int segDoc) throws IOException {
+        if (multiValues.advanceExact(segDoc)) {
+          long l = multiValues.nextValue(); // This document must have at least one value
+          collectValFirstPhase(segDoc, l);
+          for (int i = 1; i < multiValues.docValueCount(); i++) {
+            long lnew = multiValues.nextValue();
+            if (lnew != l) { // Skip the value if it's equal to the last one, we don't want to double-count it
+              collectValFirstPhase(segDoc, lnew);
             }
+            l = lnew;
           }
-        });
+        }
+      }
+
+      void flush() throws IOException {
+        collectValsFirstPhase(docValues, segDocs, numDocs, values);
+        numDocs = 0;
       }
     }
+    final NumericBatchCollector collector = new NumericBatchCollector();
+    DocSetUtil.collectSortedDocSet(fcontext.base, fcontext.searcher.getIndexReader(), collector);
+    collector.flush();
+  }
+
+  private void collectValsFirstPhase(NumericDocValues docValues, int[] segDocs, int numDocs, long[] values) throws IOException {
+    if (numDocs == 0) {
+      return;
+    }
+    final int numValues = docValues.longValues(segDocs, numDocs, values);
+    for (int i = 0; i < numValues; i++) {
+      collectValFirstPhase(segDocs[i], values[i]);
+    }
   }
 
   private void collectValFirstPhase(int segDoc, long val) throws IOException {
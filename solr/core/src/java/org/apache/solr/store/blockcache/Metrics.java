@@ -59,6 +59,17 @@ public class Metrics extends SolrCacheBase implements SolrInfoBean, SolrMetricPr
   private SolrMetricManager metricManager;
   private String registryName;
   private long previous = System.nanoTime();
+  private final String name;
+  private final String description;
+
+  public Metrics() {
+    this("hdfsBlockCache", "Provides metrics for the HdfsDirectoryFactory BlockCache.");
+  }
+
+  public Metrics(String name, String description) {
+    this.name = name;
+    this.description = description;
+  }
 
   @Override
   public void initializeMetrics(SolrMetricManager manager, String registryName, String tag, String scope) {
@@ -119,12 +130,12 @@ public class Metrics extends SolrCacheBase implements SolrInfoBean, SolrMetricPr
 
   @Override
   public String getName() {
-    return "hdfsBlockCache";
+    return name;
   }
 
   @Override
   public String getDescription() {
-    return "Provides metrics for the HdfsDirectoryFactory BlockCache.";
+    return description;
   }
 
   @Override
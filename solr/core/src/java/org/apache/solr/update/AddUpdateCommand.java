@@ -179,6 +179,18 @@ public class AddUpdateCommand extends UpdateCommand implements Iterable<Document
     return solrDoc.hasChildDocuments();
   }
 
+  /** Creates and returns the lucene Documents of this block, children first and the root
+   * document last, as returned by {@link #iterator()}. Passing a list lets IndexWriter
+   * index the whole block at once.
+   */
+  public List<Document> getLuceneDocuments() {
+    List<Document> docs = new ArrayList<>();
+    for (Document doc : this) {
+      docs.add(doc);
+    }
+    return docs;
+  }
+
   @Override
   public Iterator<Document> iterator() {
     return new Iterator<Document>() {
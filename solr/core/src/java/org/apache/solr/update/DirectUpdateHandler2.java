@@ -307,7 +307,7 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
       IndexWriter writer = iw.get();
 
       if (cmd.isBlock()) {
-        writer.addDocuments(cmd);
+        writer.addDocuments(cmd.getLuceneDocuments());
       } else {
         writer.addDocument(cmd.getLuceneDocument());
       }
@@ -962,7 +962,7 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
   private void updateDocument(AddUpdateCommand cmd, IndexWriter writer, Term updateTerm) throws IOException {
     if (cmd.isBlock()) {
       log.debug("updateDocuments({})", cmd);
-      writer.updateDocuments(updateTerm, cmd);
+      writer.updateDocuments(updateTerm, cmd.getLuceneDocuments());
     } else {
       Document luceneDocument = cmd.getLuceneDocument(false);
       log.debug("updateDocument({})", cmd);
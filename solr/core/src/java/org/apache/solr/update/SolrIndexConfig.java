@@ -70,6 +70,9 @@ public class SolrIndexConfig implements MapSerializable {
 
   public final double ramBufferSizeMB;
 
+  /** Whether to keep per-segment bloom filters of the uniqueKey terms, to skip segments on id lookups. */
+  public final boolean idBloomFilter;
+
   public final int writeLockTimeout;
   public final String lockType;
   public final PluginInfo mergePolicyFactoryInfo;
@@ -88,6 +91,7 @@ public class SolrIndexConfig implements MapSerializable {
     useCompoundFile = false;
     maxBufferedDocs = -1;
     ramBufferSizeMB = 100;
+    idBloomFilter = false;
     writeLockTimeout = -1;
     lockType = DirectoryFactory.LOCK_TYPE_NATIVE;
     mergePolicyFactoryInfo = null;
@@ -134,6 +138,7 @@ public class SolrIndexConfig implements MapSerializable {
     useCompoundFile = solrConfig.getBool(prefix+"/useCompoundFile", def.useCompoundFile);
     maxBufferedDocs=solrConfig.getInt(prefix+"/maxBufferedDocs",def.maxBufferedDocs);
     ramBufferSizeMB = solrConfig.getDouble(prefix+"/ramBufferSizeMB", def.ramBufferSizeMB);
+    idBloomFilter = solrConfig.getBool(prefix+"/idBloomFilter", def.idBloomFilter);
 
     writeLockTimeout=solrConfig.getInt(prefix+"/writeLockTimeout", def.writeLockTimeout);
     lockType=solrConfig.get(prefix+"/lockType", def.lockType);
@@ -184,6 +189,7 @@ public class SolrIndexConfig implements MapSerializable {
     Map<String, Object> m = Utils.makeMap("useCompoundFile", useCompoundFile,
         "maxBufferedDocs", maxBufferedDocs,
         "ramBufferSizeMB", ramBufferSizeMB,
+        "idBloomFilter", idBloomFilter,
         "writeLockTimeout", writeLockTimeout,
         "lockType", lockType,
         "infoStreamEnabled", infoStream != InfoStream.NO_OUTPUT);
@@ -240,6 +246,10 @@ public class SolrIndexConfig implements MapSerializable {
 
     iwc.setUseCompoundFile(useCompoundFile);
 
+    if (idBloomFilter && schema.getUniqueKeyField() != null) {
+      iwc.setTermsBloomFilterField(schema.getUniqueKeyField().getName());
+    }
+
     if (mergedSegmentWarmerInfo != null) {
       // TODO: add infostream -> normal logging system (there is an issue somewhere)
       IndexReaderWarmer warmer = schema.getResourceLoader().newInstance(mergedSegmentWarmerInfo.className, 
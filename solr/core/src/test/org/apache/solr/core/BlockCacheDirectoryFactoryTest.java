@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.core;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.DirectoryFactory.DirContext;
+import org.apache.solr.store.blockcache.BlockCache;
+import org.apache.solr.store.blockcache.BlockDirectory;
+import org.apache.solr.store.blockcache.BlockDirectoryCache;
+import org.apache.solr.store.blockcache.Metrics;
+
+public class BlockCacheDirectoryFactoryTest extends SolrTestCaseJ4 {
+
+  public void testFileTypes() throws Exception {
+    NamedList<Object> args = new NamedList<>();
+    args.add(BlockCacheDirectoryFactory.NUMBEROFBLOCKSPERBANK, 16);
+    args.add(BlockCacheDirectoryFactory.BLOCKCACHE_DIRECT_MEMORY_ALLOCATION, random().nextBoolean());
+    args.add(BlockCacheDirectoryFactory.BLOCKCACHE_GLOBAL, false);
+    args.add(BlockCacheDirectoryFactory.BLOCKCACHE_FILE_TYPES, ".tim, .tip");
+    try (BlockCacheDirectoryFactory factory = new BlockCacheDirectoryFactory()) {
+      factory.init(args);
+      String path = createTempDir().toString();
+
+      Directory metaDataDir = factory.get(path + "/meta", DirContext.META_DATA, DirectoryFactory.LOCK_TYPE_SINGLE);
+      assertFalse(metaDataDir instanceof BlockDirectory);
+      factory.release(metaDataDir);
+
+      Directory dir = factory.get(path, DirContext.DEFAULT, DirectoryFactory.LOCK_TYPE_SINGLE);
+      assertTrue(dir instanceof BlockDirectory);
+      byte[] bytes = new byte[3 * BlockDirectory.BLOCK_SIZE];
+      random().nextBytes(bytes);
+      for (String name : new String[] {"_0.tim", "_0.fdt"}) {
+        try (IndexOutput out = dir.createOutput(name, IOContext.DEFAULT)) {
+          out.writeBytes(bytes, bytes.length);
+        }
+      }
+
+      Metrics metrics = BlockCacheDirectoryFactory.getMetrics();
+      long hits = metrics.blockCacheHit.get();
+      readFully(dir, "_0.fdt", bytes);
+      readFully(dir, "_0.fdt", bytes);
+      assertEquals(hits, metrics.blockCacheHit.get());
+
+      readFully(dir, "_0.tim", bytes);
+      readFully(dir, "_0.tim", bytes);
+      assertTrue(metrics.blockCacheHit.get() > hits);
+
+      factory.release(dir);
+    }
+  }
+
+  public void testSingleCachePerFactory() throws Exception {
+    NamedList<Object> args = new NamedList<>();
+    args.add(BlockCacheDirectoryFactory.NUMBEROFBLOCKSPERBANK, 16);
+    args.add(BlockCacheDirectoryFactory.BLOCKCACHE_DIRECT_MEMORY_ALLOCATION, random().nextBoolean());
+    args.add(BlockCacheDirectoryFactory.BLOCKCACHE_GLOBAL, false);
+    try (BlockCacheDirectoryFactory factory = new BlockCacheDirectoryFactory()) {
+      factory.init(args);
+      String path = createTempDir().toString();
+      Directory dir1 = factory.get(path + "/index", DirContext.DEFAULT, DirectoryFactory.LOCK_TYPE_SINGLE);
+      Directory dir2 = factory.get(path + "/snapshot", DirContext.DEFAULT, DirectoryFactory.LOCK_TYPE_SINGLE);
+      // directories of the same factory share its cache rather than allocating their own
+      BlockCache blockCache = factory.getBlockCache();
+      assertSame(blockCache, blockCache(dir1));
+      assertSame(blockCache, blockCache(dir2));
+      factory.release(dir1);
+      factory.release(dir2);
+    }
+  }
+
+  private static BlockCache blockCache(Directory dir) {
+    return ((BlockDirectoryCache) ((BlockDirectory) dir).getCache()).getBlockCache();
+  }
+
+  private static void readFully(Directory dir, String name, byte[] expected) throws Exception {
+    byte[] actual = new byte[expected.length];
+    try (IndexInput in = dir.openInput(name, IOContext.DEFAULT)) {
+      in.readBytes(actual, 0, actual.length);
+    }
+    assertArrayEquals(expected, actual);
+  }
+}
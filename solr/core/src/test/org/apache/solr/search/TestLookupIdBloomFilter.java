@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.TermsBloomFilter;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.LogDocMergePolicyFactory;
+import org.apache.solr.util.RefCounted;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/** Tests {@link SolrIndexSearcher#lookupId} when uniqueKey lookups skip segments using bloom filters. */
+public class TestLookupIdBloomFilter extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // one segment per commit, and no merges unless we optimize
+    systemSetPropertySolrTestsMergePolicyFactory(LogDocMergePolicyFactory.class.getName());
+    System.setProperty("solr.tests.idBloomFilter", "true");
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty("solr.tests.idBloomFilter");
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  public void testLookupId() throws Exception {
+    assertTrue(h.getCore().getSolrConfig().indexConfig.idBloomFilter);
+
+    final int numSegments = 3;
+    final int docsPerSegment = 20;
+    final int numDocs = numSegments * docsPerSegment;
+    for (int seg = 0; seg < numSegments; seg++) {
+      for (int i = 0; i < docsPerSegment; i++) {
+        assertU(adoc("id", Integer.toString(seg * docsPerSegment + i)));
+      }
+      assertU(commit());
+    }
+    final Set<String> deleted = new HashSet<>();
+    assertLookups(numDocs, deleted);
+
+    // deleted ids are not found anymore
+    for (String id : new String[] {"0", Integer.toString(docsPerSegment + 1), Integer.toString(numDocs - 1)}) {
+      assertU(delI(id));
+      deleted.add(id);
+    }
+    assertU(commit());
+    assertLookups(numDocs, deleted);
+
+    // same after merging all segments
+    assertU(optimize());
+    assertLookups(numDocs, deleted);
+  }
+
+  /** Check that ids below {@code numDocs} are found unless they have been deleted, and that others are not. */
+  private void assertLookups(int numDocs, Set<String> deleted) throws Exception {
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      final SolrIndexSearcher searcher = ref.get();
+      // filters are built when the searcher is opened, before any lookup
+      for (LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+        assertNotNull(TermsBloomFilter.getIfBuilt(leaf.reader(), "id"));
+      }
+      for (int i = 0; i < numDocs; i++) {
+        final String id = Integer.toString(i);
+        final long segAndId = searcher.lookupId(new BytesRef(id));
+        if (deleted.contains(id)) {
+          assertEquals("id=" + id, -1, segAndId);
+        } else {
+          assertTrue("id=" + id, segAndId >= 0);
+          final int leafIndex = (int) (segAndId >> 32);
+          final int docID = (int) segAndId;
+          final int globalDocID = searcher.getTopReaderContext().leaves().get(leafIndex).docBase + docID;
+          assertEquals(id, searcher.doc(globalDocID).get("id"));
+        }
+      }
+      for (int i = numDocs; i < 2 * numDocs; i++) {
+        assertEquals(-1, searcher.lookupId(new BytesRef(Integer.toString(i))));
+      }
+    } finally {
+      ref.decref();
+    }
+  }
+}
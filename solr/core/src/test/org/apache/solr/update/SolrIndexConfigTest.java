@@ -94,6 +94,9 @@ public class SolrIndexConfigTest extends SolrTestCaseJ4 {
     assertEquals("ms.maxMergeCount", 987, ms.getMaxMergeCount());
     assertEquals("ms.maxThreadCount", 42, ms.getMaxThreadCount());
 
+    assertFalse(solrIndexConfig.idBloomFilter);
+    assertNull(iwc.getTermsBloomFilterField());
+
   }
 
   public void testSortingMPSolrIndexConfigCreation() throws Exception {
@@ -155,6 +158,8 @@ public class SolrIndexConfigTest extends SolrTestCaseJ4 {
 
     ++mSizeExpected; assertTrue(m.get("ramBufferSizeMB") instanceof Double);
 
+    ++mSizeExpected; assertTrue(m.get("idBloomFilter") instanceof Boolean);
+
     ++mSizeExpected; assertTrue(m.get("writeLockTimeout") instanceof Integer);
 
     ++mSizeExpected; assertTrue(m.get("lockType") instanceof String);